@@ -0,0 +1,43 @@
+package voofai.lib.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR-событие генерации одного документа (длительность события = вся генерация)
+ */
+@Name("voofai.lib.Generation")
+@Label("Document Generation")
+@Description("Excel or Word document generated by template")
+@Category({"Reports", "Generation"})
+class GenerationEvent extends Event {
+
+    @Label("Generator")
+    String generator;
+
+    @Label("Format")
+    String format;
+
+    @Label("Rows Copied")
+    long rowsCopied;
+
+    @Label("Rows Shifted")
+    long rowsShifted;
+
+    @Label("Merged Regions Added")
+    long mergedRegionsAdded;
+
+    @Label("Placeholders Resolved")
+    long placeholdersResolved;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    @Label("Failure")
+    String failure;
+}
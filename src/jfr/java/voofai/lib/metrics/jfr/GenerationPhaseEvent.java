@@ -0,0 +1,32 @@
+package voofai.lib.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR-событие фазы генерации: начинается вместе с фазой, название фазы заполняется при окончании.
+ * Замеренная генератором длительность дополнительно хранится в отдельном поле
+ */
+@Name("voofai.lib.GenerationPhase")
+@Label("Document Generation Phase")
+@Description("Phase of document generation: parse, fill, shift rows, write, etc.")
+@Category({"Reports", "Generation"})
+class GenerationPhaseEvent extends Event {
+
+    @Label("Generator")
+    String generator;
+
+    @Label("Format")
+    String format;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Phase Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long phaseDuration;
+}
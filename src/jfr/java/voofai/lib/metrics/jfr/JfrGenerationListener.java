@@ -0,0 +1,78 @@
+package voofai.lib.metrics.jfr;
+
+import voofai.lib.metrics.GenerationListener;
+import voofai.lib.metrics.GenerationPhase;
+import voofai.lib.metrics.GenerationStats;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports generation metrics as JDK Flight Recorder events
+ * ({@code voofai.lib.Generation} and {@code voofai.lib.GenerationPhase}),
+ * so they can be correlated with GC and other events of production recordings.
+ * Requires JVM with JFR (JDK 11+ or 8u262+), so it is shipped as optional feature {@code jfr}
+ * (separate jar, the main library stays Java 8 compatible); events cost almost nothing while recording is off
+ */
+public class JfrGenerationListener implements GenerationListener {
+
+    // начатые события документов (документ генерируется одним потоком, но фазы листов - в других)
+    private final Map<GenerationStats, GenerationEvent> events = new ConcurrentHashMap<>();
+
+    // начатое событие фазы потока (фаза потока становится известна только в конце)
+    private final ThreadLocal<GenerationPhaseEvent> phases = new ThreadLocal<>();
+
+    @Override
+    public void onStart(GenerationStats stats) {
+        GenerationEvent event = new GenerationEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            events.put(stats, event);
+        }
+    }
+
+    @Override
+    public void onPhaseStart(GenerationStats stats) {
+        GenerationPhaseEvent event = new GenerationPhaseEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            phases.set(event);
+        } else {
+            phases.remove();
+        }
+    }
+
+    @Override
+    public void onPhase(GenerationStats stats, GenerationPhase phase, long durationNanos) {
+        GenerationPhaseEvent event = phases.get();
+        phases.remove();
+        if (event != null) {
+            event.end();
+            event.generator = stats.getGenerator();
+            event.format = stats.getFormat();
+            event.phase = phase.name();
+            event.phaseDuration = durationNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onFinish(GenerationStats stats, Throwable error) {
+        //фаза, прерванная ошибкой, не записывается
+        phases.remove();
+        GenerationEvent event = events.remove(stats);
+        if (event == null) {
+            return;
+        }
+        event.end();
+        event.generator = stats.getGenerator();
+        event.format = stats.getFormat();
+        event.rowsCopied = stats.getRowsCopied();
+        event.rowsShifted = stats.getRowsShifted();
+        event.mergedRegionsAdded = stats.getMergedRegionsAdded();
+        event.placeholdersResolved = stats.getPlaceholdersResolved();
+        event.bytesWritten = stats.getBytesWritten();
+        event.failure = error != null ? error.toString() : null;
+        event.commit();
+    }
+}
@@ -0,0 +1,57 @@
+package voofai.lib.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import voofai.lib.bench.SyntheticTemplates.ExcelLayout;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.excel.generator.ExcelGeneratorImpl;
+import voofai.lib.excel.template.CompiledExcelTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разные виды разметки (вложенные таблицы, range, merged regions) во всех форматах
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExcelLayoutBenchmark {
+
+    @Param({"NESTED", "RANGE", "MERGED"})
+    private ExcelLayout layout;
+
+    @Param({"XLS", "XLSX", "XLSX_STREAMING", "XLSX_DIRECT"})
+    private WorkBookType type;
+
+    @Param({"5000"})
+    private int rows;
+
+    private final ExcelGeneratorImpl generator = new ExcelGeneratorImpl();
+    private CompiledExcelTemplate template;
+    private ExcelData data;
+
+    @Setup
+    public void setUp() throws IOException {
+        template = CompiledExcelTemplate.compile(type, SyntheticTemplates.excelTemplate(type, layout));
+        data = SyntheticTemplates.excelData(layout, rows);
+    }
+
+    @Benchmark
+    public void createByTemplate() throws IOException {
+        generator.createByTemplate(template, data, SyntheticTemplates.discard());
+    }
+}
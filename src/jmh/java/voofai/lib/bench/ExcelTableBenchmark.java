@@ -0,0 +1,55 @@
+package voofai.lib.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import voofai.lib.bench.SyntheticTemplates.ExcelLayout;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.excel.generator.ExcelGeneratorImpl;
+import voofai.lib.excel.template.CompiledExcelTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одна #TABLE: зависимость от количества строк.
+ * XLS не участвует: 100k строк больше его предела (65536)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExcelTableBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int rows;
+
+    @Param({"XLSX", "XLSX_STREAMING", "XLSX_DIRECT"})
+    private WorkBookType type;
+
+    private final ExcelGeneratorImpl generator = new ExcelGeneratorImpl();
+    private CompiledExcelTemplate template;
+    private ExcelData data;
+
+    @Setup
+    public void setUp() throws IOException {
+        template = CompiledExcelTemplate.compile(type, SyntheticTemplates.excelTemplate(type, ExcelLayout.TABLE));
+        data = SyntheticTemplates.excelData(ExcelLayout.TABLE, rows);
+    }
+
+    @Benchmark
+    public void createByTemplate() throws IOException {
+        generator.createByTemplate(template, data, SyntheticTemplates.discard());
+    }
+}
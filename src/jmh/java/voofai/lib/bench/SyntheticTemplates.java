@@ -0,0 +1,270 @@
+package voofai.lib.bench;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableDataWrapper;
+import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.word.dto.WordData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Синтетические шаблоны и данные для бенчмарков (шаблоны строятся кодом, файлы не нужны)
+ */
+public final class SyntheticTemplates {
+
+    // колонок в строке таблицы
+    static final int COLUMNS = 8;
+
+    // строк дочерней таблицы на одну строку родительской
+    static final int CHILD_ROWS = 10;
+
+    // строк body на один range
+    static final int RANGE_BODY_ROWS = 50;
+
+    private SyntheticTemplates() {
+    }
+
+    /**
+     * Разметка эксель-шаблона
+     */
+    public enum ExcelLayout {
+        // одна #TABLE
+        TABLE,
+        // #TABLE внутри #TABLE
+        NESTED,
+        // #RANGE с header, body, bodyFooter и footer
+        RANGE,
+        // #TABLE, в каждой строке которой несколько merged regions
+        MERGED
+    }
+
+    /**
+     * Разметка ворд-шаблона
+     */
+    public enum WordLayout {
+        // много параграфов с несколькими ключами
+        PLACEHOLDERS,
+        // длинные параграфы с ключами между большими кусками текста
+        LONG_PARAGRAPHS,
+        // большая таблица, каждая ячейка - ключ
+        TABLE
+    }
+
+    public static byte[] excelTemplate(WorkBookType type, ExcelLayout layout) throws IOException {
+        try (Workbook workbook = WorkBookType.XLS.equals(type) ? new HSSFWorkbook() : new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Report");
+            row(sheet, 0, "Report", "#title#");
+            row(sheet, 1, headers());
+            switch (layout) {
+                case NESTED:
+                    row(sheet, 2, "#TABLE&parent#");
+                    row(sheet, 3, "Group", "#group#");
+                    row(sheet, 4, "#TABLE&child#");
+                    row(sheet, 5, placeholders());
+                    row(sheet, 6, "#TABLE&child#");
+                    row(sheet, 7, "#TABLE&parent#");
+                    row(sheet, 8, "Total", "#title#");
+                    break;
+                case RANGE:
+                    row(sheet, 2, "#RANGE&range#");
+                    row(sheet, 3, "Section", "#section#");
+                    row(sheet, 4, "#Body#RANGE&range#");
+                    row(sheet, 5, placeholders());
+                    row(sheet, 6, "#BodyFooter#RANGE&range#");
+                    row(sheet, 7, "Subtotal", "#subtotal#");
+                    row(sheet, 8, "#Footer#RANGE&range#");
+                    row(sheet, 9, "Section total", "#total#");
+                    row(sheet, 10, "#RANGE&range#");
+                    row(sheet, 11, "Total", "#title#");
+                    sheet.addMergedRegion(new CellRangeAddress(3, 3, 1, 3));
+                    sheet.addMergedRegion(new CellRangeAddress(9, 9, 1, 3));
+                    break;
+                case MERGED:
+                    row(sheet, 2, "#TABLE&table#");
+                    row(sheet, 3, placeholders());
+                    row(sheet, 4, "#TABLE&table#");
+                    row(sheet, 5, "Total", "#title#");
+                    for (int column = 0; column + 1 < COLUMNS; column += 2) {
+                        sheet.addMergedRegion(new CellRangeAddress(3, 3, column, column + 1));
+                    }
+                    break;
+                default:
+                    row(sheet, 2, "#TABLE&table#");
+                    row(sheet, 3, placeholders());
+                    row(sheet, 4, "#TABLE&table#");
+                    row(sheet, 5, "Total", "#title#");
+            }
+            return toBytes(workbook);
+        }
+    }
+
+    /**
+     * Данные примерно на rows строк результата
+     */
+    public static ExcelData excelData(ExcelLayout layout, int rows) {
+        ExcelData data = new ExcelData().addParam("title", "Synthetic report");
+        switch (layout) {
+            case NESTED:
+                ExcelSimpleTableData parent = new ExcelSimpleTableData("#TABLE&parent#");
+                for (int i = 0; i < Math.max(1, rows / CHILD_ROWS); i++) {
+                    parent.addTableRowData(singleton("group", "group" + i));
+                }
+                ExcelSimpleTableData child = new ExcelSimpleTableData("#TABLE&child#");
+                for (int i = 0; i < CHILD_ROWS; i++) {
+                    child.addTableRowData(tableRow(i));
+                }
+                data.getSimpleTables().add(parent);
+                data.getSimpleTables().add(child);
+                break;
+            case RANGE:
+                ExcelTemplateTableDataWrapper ranges = new ExcelTemplateTableDataWrapper("#RANGE&range#");
+                for (int section = 0; section < Math.max(1, rows / RANGE_BODY_ROWS); section++) {
+                    ExcelTemplateTableData range = new ExcelTemplateTableData();
+                    range.addHeader("section", "section" + section);
+                    for (int i = 0; i < RANGE_BODY_ROWS; i++) {
+                        range.addBody(tableRow(i));
+                    }
+                    range.addBodyFooter(singleton("subtotal", section));
+                    range.addFooter("total", String.valueOf(section));
+                    ranges.addTableRowData(range);
+                }
+                data.getExtendedTables().add(ranges);
+                break;
+            default:
+                ExcelSimpleTableData table = new ExcelSimpleTableData("#TABLE&table#");
+                for (int i = 0; i < rows; i++) {
+                    table.addTableRowData(tableRow(i));
+                }
+                data.getSimpleTables().add(table);
+        }
+        return data;
+    }
+
+    public static byte[] wordTemplate(WordLayout layout, int size) throws IOException {
+        try (XWPFDocument document = new XWPFDocument()) {
+            switch (layout) {
+                case LONG_PARAGRAPHS:
+                    String text = repeat("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ", 20);
+                    for (int i = 0; i < size; i++) {
+                        paragraph(document, "#*" + text, "#*key" + i % COLUMNS + "*#", text, "#*key" + (i + 1) % COLUMNS + "*#", text);
+                    }
+                    break;
+                case TABLE:
+                    XWPFTable table = document.createTable(size, COLUMNS);
+                    for (int i = 0; i < size; i++) {
+                        for (int column = 0; column < COLUMNS; column++) {
+                            table.getRow(i).getCell(column).setText("#*key" + column + "*#");
+                        }
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < size; i++) {
+                        paragraph(document, "#*Line " + i + ": ", "#*key" + i % COLUMNS + "*#", ", ",
+                                "#*key" + (i + 1) % COLUMNS + "*#", ", ", "#*key" + (i + 2) % COLUMNS + "*#");
+                    }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    public static WordData wordData() {
+        WordData data = new WordData();
+        for (int column = 0; column < COLUMNS; column++) {
+            data.addParam("key" + column, "value" + column);
+        }
+        return data;
+    }
+
+    /**
+     * Результат не нужен, важно только время и память на генерацию
+     */
+    public static OutputStream discard() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+    }
+
+    private static Map<String, Object> tableRow(int i) {
+        Map<String, Object> row = new HashMap<>();
+        for (int column = 0; column < COLUMNS; column++) {
+            row.put("c" + column, column % 2 == 0 ? "text" + i + "_" + column : (Object) (double) (i * column));
+        }
+        return row;
+    }
+
+    private static Map<String, Object> singleton(String key, Object value) {
+        Map<String, Object> row = new HashMap<>();
+        row.put(key, value);
+        return row;
+    }
+
+    private static String[] headers() {
+        String[] headers = new String[COLUMNS];
+        for (int column = 0; column < COLUMNS; column++) {
+            headers[column] = "Column " + column;
+        }
+        return headers;
+    }
+
+    private static String[] placeholders() {
+        String[] placeholders = new String[COLUMNS];
+        for (int column = 0; column < COLUMNS; column++) {
+            placeholders[column] = "#c" + column + "#";
+        }
+        return placeholders;
+    }
+
+    private static void row(Sheet sheet, int rowNum, String... values) {
+        Row row = sheet.createRow(rowNum);
+        for (int column = 0; column < values.length; column++) {
+            row.createCell(column).setCellValue(values[column]);
+        }
+    }
+
+    /**
+     * Каждый ключ в отдельном run, как в шаблонах, сохраненных из Word
+     */
+    private static void paragraph(XWPFDocument document, String... runs) {
+        XWPFParagraph paragraph = document.createParagraph();
+        for (String run : runs) {
+            paragraph.createRun().setText(run);
+        }
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder sb = new StringBuilder(text.length() * times);
+        for (int i = 0; i < times; i++) {
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] toBytes(Workbook workbook) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,54 @@
+package voofai.lib.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import voofai.lib.bench.SyntheticTemplates.WordLayout;
+import voofai.lib.word.dto.WordData;
+import voofai.lib.word.generator.WordGeneratorImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ворд-шаблоны: много ключей, длинные параграфы, большая таблица
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WordGeneratorBenchmark {
+
+    @Param({"PLACEHOLDERS", "LONG_PARAGRAPHS", "TABLE"})
+    private WordLayout layout;
+
+    // параграфов или строк таблицы
+    @Param({"1000"})
+    private int size;
+
+    private final WordGeneratorImpl generator = new WordGeneratorImpl();
+    private byte[] template;
+    private WordData data;
+
+    @Setup
+    public void setUp() throws IOException {
+        template = SyntheticTemplates.wordTemplate(layout, size);
+        data = SyntheticTemplates.wordData();
+    }
+
+    @Benchmark
+    public void createByTemplate() throws IOException {
+        generator.createByTemplate(data, new ByteArrayInputStream(template), SyntheticTemplates.discard());
+    }
+}
@@ -0,0 +1,18 @@
+package voofai.lib.batch;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Item of the batch that was not rendered
+ */
+@Getter
+@RequiredArgsConstructor
+public class BatchFailure {
+
+    // порядковый номер элемента в потоке (с нуля)
+    private final long index;
+    private final String id;
+    // Error рендеринга тоже попадает сюда (и пробрасывается дальше в поток исполнителя)
+    private final Throwable error;
+}
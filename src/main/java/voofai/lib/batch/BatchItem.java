@@ -0,0 +1,19 @@
+package voofai.lib.batch;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One document of the batch: data to fill template with and where to write the result
+ *
+ * @param <T> data type ({@link voofai.lib.excel.dto.ExcelData}, {@link voofai.lib.word.dto.WordData})
+ */
+@Getter
+@RequiredArgsConstructor
+public class BatchItem<T> {
+
+    // идентификатор для отчета об ошибках (номер договора, имя файла и т.д.)
+    private final String id;
+    private final T data;
+    private final BatchOutput output;
+}
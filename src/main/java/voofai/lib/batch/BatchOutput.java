@@ -0,0 +1,20 @@
+package voofai.lib.batch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output sink of one batch item.
+ * Stream is opened right before the item is rendered and closed after it is written
+ */
+@FunctionalInterface
+public interface BatchOutput {
+
+    /**
+     * Open stream to write rendered document to
+     *
+     * @return stream to write result data (closed by batch)
+     * @throws IOException exception while trying to open the stream
+     */
+    OutputStream open() throws IOException;
+}
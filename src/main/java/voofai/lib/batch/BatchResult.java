@@ -0,0 +1,27 @@
+package voofai.lib.batch;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Result of the batch: how many items were rendered and which ones failed
+ */
+@Getter
+@RequiredArgsConstructor
+public class BatchResult {
+
+    private final long submitted;
+    private final long succeeded;
+
+    // упорядочены по номеру элемента
+    private final List<BatchFailure> failures;
+
+    // вызывающий поток прерван: элементы после submitted не запускались
+    private final boolean interrupted;
+
+    public boolean isSuccess() {
+        return failures.isEmpty() && !interrupted;
+    }
+}
@@ -0,0 +1,169 @@
+package voofai.lib.batch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Renders a stream of items with bounded concurrency.
+ * Items are taken from the stream only when there is a free slot (backpressure),
+ * failure of one item is reported in {@link BatchResult} and does not abort the batch.
+ * Interrupt of the calling thread stops taking new items, waits for started ones
+ * and is reported by {@link BatchResult#isInterrupted()} (interrupt flag of the thread is kept)
+ */
+public final class BatchRunner {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private BatchRunner() {
+    }
+
+    /**
+     * Rendering of one item
+     *
+     * @param <T> data type
+     */
+    @FunctionalInterface
+    public interface ItemRenderer<T> {
+        void render(T data, OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Render all items of the stream
+     *
+     * @param items    data and output of every document
+     * @param settings concurrency settings
+     * @param renderer fills template with data of one item and writes it
+     * @param <T>      data type
+     * @return rendered items count, failures and interrupt flag
+     */
+    public static <T> BatchResult run(Stream<BatchItem<T>> items, BatchSettings settings, ItemRenderer<T> renderer) {
+        final int maxInFlight = Math.max(1, settings.getMaxInFlight());
+        final ExecutorService executor = settings.getExecutor() != null
+                ? settings.getExecutor()
+                : newExecutor(maxInFlight);
+        final Semaphore slots = new Semaphore(maxInFlight);
+        final Queue<BatchFailure> failures = new ConcurrentLinkedQueue<>();
+        final AtomicLong succeeded = new AtomicLong();
+        long submitted = 0;
+        boolean interrupted = false;
+
+        try {
+            //spliterator, а не iterator: iterator.hasNext() забирает следующий элемент заранее
+            Spliterator<BatchItem<T>> spliterator = items.spliterator();
+            Cursor<T> cursor = new Cursor<>();
+            while (true) {
+                if (Thread.currentThread().isInterrupted()) {
+                    interrupted = true;
+                    break;
+                }
+                //ждем свободное место, только потом берем следующий элемент
+                try {
+                    slots.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    interrupted = true;
+                    break;
+                }
+                final boolean hasNext;
+                try {
+                    hasNext = spliterator.tryAdvance(cursor);
+                } catch (RuntimeException e) {
+                    slots.release();
+                    throw e;
+                }
+                if (!hasNext) {
+                    slots.release();
+                    break;
+                }
+
+                final BatchItem<T> item = cursor.item;
+                final long index = submitted++;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            render(item, renderer);
+                            succeeded.incrementAndGet();
+                        } catch (Exception e) {
+                            failures.add(new BatchFailure(index, item.getId(), e));
+                        } catch (Error e) {
+                            //элемент не должен пропасть из результата, Error идет дальше в поток исполнителя
+                            failures.add(new BatchFailure(index, item.getId(), e));
+                            throw e;
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    failures.add(new BatchFailure(index, item.getId(), e));
+                    slots.release();
+                }
+            }
+        } finally {
+            //ждем окончания всех запущенных элементов
+            slots.acquireUninterruptibly(maxInFlight);
+            if (executor != settings.getExecutor()) {
+                executor.shutdown();
+            }
+        }
+
+        List<BatchFailure> sorted = new ArrayList<>(failures);
+        sorted.sort(Comparator.comparingLong(BatchFailure::getIndex));
+        return new BatchResult(submitted, succeeded.get(), sorted, interrupted);
+    }
+
+    /**
+     * Текущий элемент потока
+     */
+    private static final class Cursor<T> implements Consumer<BatchItem<T>> {
+        private BatchItem<T> item;
+
+        @Override
+        public void accept(BatchItem<T> item) {
+            this.item = item;
+        }
+    }
+
+    private static <T> void render(BatchItem<T> item, ItemRenderer<T> renderer) throws IOException {
+        try (OutputStream outputStream = item.getOutput().open()) {
+            renderer.render(item.getData(), outputStream);
+        }
+    }
+
+    /**
+     * Виртуальные потоки (Java 21+), иначе пул из maxInFlight потоков-демонов
+     */
+    private static ExecutorService newExecutor(int maxInFlight) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(maxInFlight, daemonThreads());
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        final String prefix = "batch-" + POOL_NUMBER.incrementAndGet() + "-";
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package voofai.lib.batch;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Настройки пакетной генерации {@link BatchRunner}
+ */
+@Getter
+@Builder
+public class BatchSettings {
+
+    /**
+     * Сколько документов может генерироваться одновременно (и сколько книг держится в памяти).
+     * Следующий элемент берется из потока только после того, как освободилось место
+     */
+    @Builder.Default
+    private final int maxInFlight = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Пул для генерации. Если не задан, создается на время пакета:
+     * виртуальные потоки, если они есть в JVM, иначе пул из maxInFlight потоков
+     */
+    private final ExecutorService executor;
+
+    public static BatchSettings defaults() {
+        return BatchSettings.builder().build();
+    }
+}
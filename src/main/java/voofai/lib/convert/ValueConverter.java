@@ -0,0 +1,93 @@
+package voofai.lib.convert;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Conversion of template parameter value into cell value or text
+ *
+ * @param <T> value type
+ */
+@FunctionalInterface
+public interface ValueConverter<T> {
+
+    /**
+     * Text representation (text cells of Excel, Word documents)
+     *
+     * @param value not null value
+     * @return text
+     */
+    String toText(T value);
+
+    /**
+     * @return true if value is written into Excel as number (see {@link #toNumber(Object)})
+     */
+    default boolean isNumeric() {
+        return false;
+    }
+
+    /**
+     * @param value not null value
+     * @return true if this value is written into Excel as number
+     * (false if number would lose precision, then value is written as text)
+     */
+    default boolean isNumeric(T value) {
+        return isNumeric();
+    }
+
+    /**
+     * Numeric representation for Excel cells, used only if {@link #isNumeric()} is true
+     *
+     * @param value not null value
+     * @return number
+     */
+    default double toNumber(T value) {
+        throw new UnsupportedOperationException("Converter is not numeric");
+    }
+
+    /**
+     * Converter of numeric values
+     *
+     * @param toNumber numeric representation
+     * @param toText   text representation
+     * @param <T>      value type
+     * @return converter
+     */
+    static <T> ValueConverter<T> numeric(ToDoubleFunction<T> toNumber, Function<T, String> toText) {
+        return numeric(toNumber, toText, value -> true);
+    }
+
+    /**
+     * Converter of numeric values, values not matching exact are written as text
+     *
+     * @param toNumber numeric representation
+     * @param toText   text representation
+     * @param exact    true if value is represented by double without loss of precision
+     * @param <T>      value type
+     * @return converter
+     */
+    static <T> ValueConverter<T> numeric(ToDoubleFunction<T> toNumber, Function<T, String> toText, Predicate<T> exact) {
+        return new ValueConverter<T>() {
+            @Override
+            public String toText(T value) {
+                return toText.apply(value);
+            }
+
+            @Override
+            public boolean isNumeric() {
+                return true;
+            }
+
+            @Override
+            public boolean isNumeric(T value) {
+                return exact.test(value);
+            }
+
+            @Override
+            public double toNumber(T value) {
+                return toNumber.applyAsDouble(value);
+            }
+        };
+    }
+}
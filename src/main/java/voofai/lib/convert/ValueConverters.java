@@ -0,0 +1,267 @@
+package voofai.lib.convert;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable registry of {@link ValueConverter} by value class.
+ * Converter for a class is looked up once (exact class, then superclasses and interfaces)
+ * and cached in {@link ClassValue}, so per value dispatch is a single lookup without allocations.
+ * Values without registered converter are written with toString()
+ * <p>
+ * Defaults: dates as dd.MM.yyyy (date-time as dd.MM.yyyy HH:mm:ss), numbers as numeric cells
+ * (as text: up to 5 fraction digits with decimal separator of the locale, ',' by default),
+ * Long and BigInteger beyond ±2^53 as text (double would lose digits), booleans as true/false
+ */
+public final class ValueConverters {
+    private static final ValueConverter<Object> TO_STRING = Object::toString;
+    //целые с модулем больше 2^53 в double теряют младшие разряды
+    private static final long MAX_EXACT_LONG = 1L << 53;
+    private static final ValueConverters DEFAULTS = builder().build();
+
+    private final Map<Class<?>, ValueConverter<?>> converters;
+    // классы, для которых не зарегистрированы свои конвертеры
+    private final Set<Class<?>> defaultTypes;
+    private final int fractionDigits;
+    private final char decimalSeparator;
+    private final ClassValue<ValueConverter<Object>> lookup = new ClassValue<ValueConverter<Object>>() {
+        @Override
+        protected ValueConverter<Object> computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    private ValueConverters(Map<Class<?>, ValueConverter<?>> converters, Set<Class<?>> defaultTypes,
+                            int fractionDigits, char decimalSeparator) {
+        this.converters = Collections.unmodifiableMap(new LinkedHashMap<>(converters));
+        this.defaultTypes = Collections.unmodifiableSet(new HashSet<>(defaultTypes));
+        this.fractionDigits = fractionDigits;
+        this.decimalSeparator = decimalSeparator;
+    }
+
+    /**
+     * @return registry with default converters
+     */
+    public static ValueConverters defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @return builder prefilled with default converters
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Converter for value class
+     *
+     * @param type value class
+     * @return registered converter or toString() converter
+     */
+    public ValueConverter<Object> find(Class<?> type) {
+        return lookup.get(type);
+    }
+
+    /**
+     * Text representation of value
+     *
+     * @param value value
+     * @return text (empty string for null)
+     */
+    public String toText(Object value) {
+        return value == null ? "" : find(value.getClass()).toText(value);
+    }
+
+    /**
+     * Text representation of double without boxing (same as {@link #toText(Object)} for Double)
+     *
+     * @param value value
+     * @return text
+     */
+    public String doubleToText(double value) {
+        return isDefault(Double.class) ? formatNumber(value, fractionDigits, decimalSeparator) : toText((Object) value);
+    }
+
+    /**
+     * Text representation of long without boxing (same as {@link #toText(Object)} for Long)
+     *
+     * @param value value
+     * @return text
+     */
+    public String longToText(long value) {
+        return isDefault(Long.class) ? Long.toString(value) : toText((Object) value);
+    }
+
+    /**
+     * @param type value class
+     * @return true if values of exactly this class are converted by the default converter
+     * (primitive values may then be written directly: doubles as numbers, longs as numbers if {@link #isExact(long)})
+     */
+    public boolean isDefault(Class<?> type) {
+        return defaultTypes.contains(type);
+    }
+
+    /**
+     * @param value value
+     * @return true if long is represented by double without loss of precision (|value| &lt;= 2^53)
+     */
+    public static boolean isExact(long value) {
+        return value >= -MAX_EXACT_LONG && value <= MAX_EXACT_LONG;
+    }
+
+    private static String formatNumber(double number, int fractionDigits, char decimalSeparator) {
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return Double.toString(number);
+        }
+        return formatDecimal(BigDecimal.valueOf(number), fractionDigits, decimalSeparator);
+    }
+
+    private static String formatDecimal(BigDecimal decimal, int fractionDigits, char decimalSeparator) {
+        String text = decimal.setScale(fractionDigits, RoundingMode.HALF_EVEN)
+                .stripTrailingZeros()
+                .toPlainString();
+        return decimalSeparator == '.' ? text : text.replace('.', decimalSeparator);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ValueConverter<Object> resolve(Class<?> type) {
+        //класс и его суперклассы, затем интерфейсы (в ширину)
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            ValueConverter<?> converter = converters.get(current);
+            if (converter != null) {
+                return (ValueConverter<Object>) converter;
+            }
+        }
+        Deque<Class<?>> interfaces = new ArrayDeque<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            Collections.addAll(interfaces, current.getInterfaces());
+        }
+        while (!interfaces.isEmpty()) {
+            Class<?> current = interfaces.poll();
+            ValueConverter<?> converter = converters.get(current);
+            if (converter != null) {
+                return (ValueConverter<Object>) converter;
+            }
+            Collections.addAll(interfaces, current.getInterfaces());
+        }
+        return TO_STRING;
+    }
+
+    public static final class Builder {
+        private final Map<Class<?>, ValueConverter<?>> converters = new LinkedHashMap<>();
+        private Locale locale = new Locale("ru");
+        private String datePattern = "dd.MM.yyyy";
+        private String dateTimePattern = "dd.MM.yyyy HH:mm:ss";
+        private int maxFractionDigits = 5;
+        private String trueText = "true";
+        private String falseText = "false";
+
+        private Builder() {
+        }
+
+        /**
+         * Locale of dates and decimal separator of numbers (ru by default)
+         */
+        public Builder locale(Locale locale) {
+            this.locale = locale;
+            return this;
+        }
+
+        public Builder datePattern(String datePattern) {
+            this.datePattern = datePattern;
+            return this;
+        }
+
+        public Builder dateTimePattern(String dateTimePattern) {
+            this.dateTimePattern = dateTimePattern;
+            return this;
+        }
+
+        /**
+         * Max fraction digits of numbers written as text (5 by default)
+         */
+        public Builder maxFractionDigits(int maxFractionDigits) {
+            this.maxFractionDigits = maxFractionDigits;
+            return this;
+        }
+
+        /**
+         * Text of boolean values (true/false by default)
+         */
+        public Builder booleanText(String trueText, String falseText) {
+            this.trueText = trueText;
+            this.falseText = falseText;
+            return this;
+        }
+
+        /**
+         * Register converter (replaces default one for the same class)
+         *
+         * @param type      value class (converter is also used for subclasses without own converter)
+         * @param converter converter
+         * @param <T>       value type
+         * @return builder
+         */
+        public <T> Builder register(Class<T> type, ValueConverter<? super T> converter) {
+            converters.put(type, converter);
+            return this;
+        }
+
+        public ValueConverters build() {
+            DateTimeFormatter date = DateTimeFormatter.ofPattern(datePattern, locale);
+            DateTimeFormatter dateTime = DateTimeFormatter.ofPattern(dateTimePattern, locale);
+            char decimalSeparator = DecimalFormatSymbols.getInstance(locale).getDecimalSeparator();
+            int fractionDigits = maxFractionDigits;
+            String trueValue = trueText;
+            String falseValue = falseText;
+
+            Map<Class<?>, ValueConverter<?>> all = new LinkedHashMap<>();
+            all.put(String.class, (ValueConverter<String>) value -> value);
+            all.put(LocalDate.class, (ValueConverter<LocalDate>) date::format);
+            all.put(LocalDateTime.class, (ValueConverter<LocalDateTime>) dateTime::format);
+            all.put(Date.class, (ValueConverter<Date>) value ->
+                    date.format(Instant.ofEpochMilli(value.getTime()).atZone(ZoneId.systemDefault())));
+            all.put(Double.class, ValueConverter.<Double>numeric(Double::doubleValue,
+                    value -> formatNumber(value, fractionDigits, decimalSeparator)));
+            all.put(Float.class, ValueConverter.<Float>numeric(Float::doubleValue,
+                    value -> formatNumber(value, fractionDigits, decimalSeparator)));
+            all.put(BigDecimal.class, ValueConverter.<BigDecimal>numeric(BigDecimal::doubleValue,
+                    value -> formatNumber(value, fractionDigits, decimalSeparator)));
+            all.put(Integer.class, ValueConverter.<Integer>numeric(Integer::doubleValue, Object::toString));
+            all.put(Long.class, ValueConverter.<Long>numeric(Long::doubleValue, Object::toString, ValueConverters::isExact));
+            all.put(Short.class, ValueConverter.<Short>numeric(Short::doubleValue, Object::toString));
+            all.put(Byte.class, ValueConverter.<Byte>numeric(Byte::doubleValue, Object::toString));
+            all.put(BigInteger.class, ValueConverter.<BigInteger>numeric(BigInteger::doubleValue, Object::toString,
+                    value -> value.abs().compareTo(BigInteger.valueOf(MAX_EXACT_LONG)) <= 0));
+            all.put(Boolean.class, (ValueConverter<Boolean>) value -> value ? trueValue : falseValue);
+            Set<Class<?>> defaultTypes = new HashSet<>(all.keySet());
+            defaultTypes.removeAll(converters.keySet());
+            all.putAll(converters);
+            return new ValueConverters(all, defaultTypes, fractionDigits, decimalSeparator);
+        }
+
+        private static String formatNumber(Number value, int fractionDigits, char decimalSeparator) {
+            if (value instanceof BigDecimal) {
+                return formatDecimal((BigDecimal) value, fractionDigits, decimalSeparator);
+            }
+            return ValueConverters.formatNumber(value.doubleValue(), fractionDigits, decimalSeparator);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package voofai.lib.excel.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk loader of nested table rows (see {@link ExcelChildTableData})
+ */
+@FunctionalInterface
+public interface ChildRowsResolver {
+
+    /**
+     * Child rows for a batch of parent rows
+     *
+     * @param parents parent rows of the batch, in output order
+     * @return child rows of every parent, in the same order as parents (null item = no child rows)
+     */
+    List<List<Map<String, Object>>> resolve(List<Map<String, Object>> parents);
+}
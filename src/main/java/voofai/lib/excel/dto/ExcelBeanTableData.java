@@ -0,0 +1,86 @@
+package voofai.lib.excel.dto;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Данные для эксель-таблицы в виде объектов (POJO)
+ * Значение ячейки #key# берется из getKey()/isKey(), метода key() или public-поля key объекта строки,
+ * без промежуточной Map на каждую строку (методы Object, например getClass(), свойствами не считаются)
+ *
+ * @param <T> тип объектов строк
+ */
+@Getter
+public class ExcelBeanTableData<T> {
+    private final String tableName;
+    private final Class<T> beanType;
+    @Getter(AccessLevel.NONE)
+    private final Collection<? extends T> rowsData;
+    @Getter(AccessLevel.NONE)
+    private final RowSource<T> rowSource;
+
+    /**
+     * @param tableName название таблицы
+     * @param beanType  тип объектов строк
+     * @param rows      строки таблицы (можно читать несколько раз, например во вложенной таблице)
+     */
+    public ExcelBeanTableData(String tableName, Class<T> beanType, Collection<? extends T> rows) {
+        this.tableName = tableName;
+        this.beanType = beanType;
+        this.rowsData = rows;
+        this.rowSource = null;
+    }
+
+    /**
+     * @param tableName название таблицы
+     * @param beanType  тип объектов строк
+     * @param rows      строки таблицы (читаются один раз, по одной, во время заполнения таблицы)
+     */
+    public ExcelBeanTableData(String tableName, Class<T> beanType, Iterator<T> rows) {
+        this.tableName = tableName;
+        this.beanType = beanType;
+        this.rowsData = null;
+        this.rowSource = RowSource.of(rows);
+    }
+
+    /**
+     * @param tableName название таблицы
+     * @param beanType  тип объектов строк
+     * @param rows      строки таблицы (читаются один раз; stream не закрывается, это делает вызывающий код)
+     */
+    public ExcelBeanTableData(String tableName, Class<T> beanType, Stream<T> rows) {
+        this.tableName = tableName;
+        this.beanType = beanType;
+        this.rowsData = null;
+        this.rowSource = RowSource.of(rows);
+    }
+
+    /**
+     * @return true, если строки передаются лениво и их количество заранее неизвестно
+     */
+    public boolean isLazy() {
+        return rowSource != null;
+    }
+
+    /**
+     * @return количество строк (-1 для ленивых строк)
+     */
+    public int size() {
+        return rowSource != null ? -1 : rowsData.size();
+    }
+
+    /**
+     * Строки таблицы
+     *
+     * @return строки (ленивые строки читаются один раз)
+     * @throws IllegalStateException если ленивые строки уже прочитаны
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<T> rows() {
+        return rowSource != null ? rowSource.iterator(tableName) : (Iterator<T>) rowsData.iterator();
+    }
+}
@@ -0,0 +1,36 @@
+package voofai.lib.excel.dto;
+
+import lombok.Getter;
+
+/**
+ * Данные вложенной таблицы (#TABLE внутри body простой таблицы или range), строки которой
+ * запрашиваются у {@link ChildRowsResolver} пакетами по batchSize родительских строк,
+ * непосредственно перед записью этих родительских строк.
+ * Строки потомков держатся в памяти только до записи своего пакета
+ */
+@Getter
+public class ExcelChildTableData {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final String tableName;
+    private final int batchSize;
+    private final ChildRowsResolver resolver;
+
+    public ExcelChildTableData(String tableName, ChildRowsResolver resolver) {
+        this(tableName, DEFAULT_BATCH_SIZE, resolver);
+    }
+
+    /**
+     * @param tableName название вложенной таблицы
+     * @param batchSize количество родительских строк на один вызов resolver
+     * @param resolver  загрузка строк вложенной таблицы
+     */
+    public ExcelChildTableData(String tableName, int batchSize, ChildRowsResolver resolver) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.tableName = tableName;
+        this.batchSize = batchSize;
+        this.resolver = resolver;
+    }
+}
@@ -0,0 +1,182 @@
+package voofai.lib.excel.dto;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Данные для эксель-таблицы в колоночном виде (для больших таблиц)
+ * Значения хранятся в примитивных массивах по колонкам (double[], long[], String[]) с битовой маской null,
+ * вместо отдельной Map на каждую строку. Колонка ищется по ключу ячейки шаблона один раз на таблицу
+ * <p>
+ * Пример:
+ * <pre>
+ * ExcelColumnarTableData table = new ExcelColumnarTableData("#TABLE&amp;table#");
+ * int name = table.addColumn("name", ExcelColumnarTableData.ColumnType.STRING);
+ * int amount = table.addColumn("amount", ExcelColumnarTableData.ColumnType.DOUBLE);
+ * table.addRow();
+ * table.setString(name, "first");
+ * table.setDouble(amount, 10.5);
+ * </pre>
+ */
+@Getter
+public class ExcelColumnarTableData {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final String tableName;
+    private int rowCount;
+    @Getter(AccessLevel.NONE)
+    private int capacity;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final List<Column> columns = new ArrayList<>();
+
+    public ExcelColumnarTableData(String tableName) {
+        this(tableName, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param tableName    название таблицы
+     * @param expectedRows ожидаемое количество строк (чтобы не расширять массивы)
+     */
+    public ExcelColumnarTableData(String tableName, int expectedRows) {
+        this.tableName = tableName;
+        this.capacity = Math.max(expectedRows, 1);
+    }
+
+    /**
+     * Тип значений колонки
+     */
+    public enum ColumnType {
+        STRING,
+        DOUBLE,
+        LONG
+    }
+
+    /**
+     * Добавление колонки (все значения колонки в уже добавленных строках = null)
+     *
+     * @param name ключ ячейки шаблона (#name#)
+     * @param type тип значений
+     * @return номер колонки
+     */
+    public int addColumn(String name, ColumnType type) {
+        if (columnIndexes.containsKey(name)) {
+            throw new IllegalArgumentException("Column " + name + " already exists in " + tableName);
+        }
+        columnIndexes.put(name, columns.size());
+        columns.add(new Column(type, capacity));
+        return columns.size() - 1;
+    }
+
+    /**
+     * Добавление строки (все значения = null), значения задаются через set* для последней строки
+     *
+     * @return номер добавленной строки
+     */
+    public int addRow() {
+        if (rowCount == capacity) {
+            capacity = capacity * 2;
+            columns.forEach(column -> column.grow(capacity));
+        }
+        return rowCount++;
+    }
+
+    public void setString(int column, String value) {
+        Column target = column(column, ColumnType.STRING);
+        target.strings[lastRow()] = value;
+        target.present.set(lastRow(), value != null);
+    }
+
+    public void setDouble(int column, double value) {
+        Column target = column(column, ColumnType.DOUBLE);
+        target.doubles[lastRow()] = value;
+        target.present.set(lastRow());
+    }
+
+    public void setLong(int column, long value) {
+        Column target = column(column, ColumnType.LONG);
+        target.longs[lastRow()] = value;
+        target.present.set(lastRow());
+    }
+
+    /**
+     * @param name ключ ячейки шаблона
+     * @return номер колонки или -1, если колонки нет
+     */
+    public int getColumnIndex(String name) {
+        return columnIndexes.getOrDefault(name, -1);
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columns.get(column).type;
+    }
+
+    public boolean isNull(int column, int row) {
+        return !columns.get(column).present.get(row);
+    }
+
+    public String getString(int column, int row) {
+        return columns.get(column).strings[row];
+    }
+
+    public double getDouble(int column, int row) {
+        return columns.get(column).doubles[row];
+    }
+
+    public long getLong(int column, int row) {
+        return columns.get(column).longs[row];
+    }
+
+    private int lastRow() {
+        if (rowCount == 0) {
+            throw new IllegalStateException("addRow() must be called before setting values of " + tableName);
+        }
+        return rowCount - 1;
+    }
+
+    private Column column(int column, ColumnType type) {
+        Column target = columns.get(column);
+        if (target.type != type) {
+            throw new IllegalArgumentException("Column " + column + " of " + tableName + " has type " + target.type);
+        }
+        return target;
+    }
+
+    /**
+     * Значения одной колонки (заполнен только массив ее типа)
+     */
+    private static final class Column {
+        private final ColumnType type;
+        private final BitSet present = new BitSet();
+        private double[] doubles;
+        private long[] longs;
+        private String[] strings;
+
+        private Column(ColumnType type, int capacity) {
+            this.type = type;
+            grow(capacity);
+        }
+
+        private void grow(int capacity) {
+            switch (type) {
+                case DOUBLE:
+                    doubles = doubles == null ? new double[capacity] : Arrays.copyOf(doubles, capacity);
+                    break;
+                case LONG:
+                    longs = longs == null ? new long[capacity] : Arrays.copyOf(longs, capacity);
+                    break;
+                default:
+                    strings = strings == null ? new String[capacity] : Arrays.copyOf(strings, capacity);
+            }
+        }
+    }
+}
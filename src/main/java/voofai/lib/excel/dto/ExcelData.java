@@ -1,29 +1,101 @@
 package voofai.lib.excel.dto;
 
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * DTO для генерации Excel-документа из существующего шаблона
+ * <p>
+ * Таблицы перебираются в порядке добавления. {@link #freeze()} создает неизменяемый снимок
+ * с поиском таблиц по названию через хэш-индекс: снимок можно одновременно использовать
+ * для генерации нескольких документов из разных потоков
+ * (если сами строки таблиц больше не меняются и не передаются лениво - ленивые строки читаются один раз)
  */
 @Getter
-@RequiredArgsConstructor
 public class ExcelData {
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
 
     // key = параметр в excel-ячейке, val = значение
-    private final Map<String, Object> params = new HashMap<>();
+    private final Map<String, Object> params;
 
-    private final Set<ExcelSimpleTableData> simpleTables = new HashSet<>();
+    private final Set<ExcelSimpleTableData> simpleTables;
 
-    private final Set<ExcelTemplateTableDataWrapper> extendedTables = new HashSet<>();
+    private final Set<ExcelTemplateTableDataWrapper> extendedTables;
+
+    private final Set<ExcelColumnarTableData> columnarTables;
+
+    private final Set<ExcelBeanTableData<?>> beanTables;
+
+    // вложенные таблицы, строки которых загружаются пакетами по родительским строкам
+    private final Set<ExcelChildTableData> childTables;
+
+    // листы, размножаемые из листа-шаблона #SHEETS
+    private final Set<ExcelSheetsData> sheetTables;
+
+    // индексы по названию таблицы (только для неизменяемого снимка)
+    @Getter(AccessLevel.NONE)
+    private final Map<String, ExcelSimpleTableData> simpleTableIndex;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, ExcelTemplateTableDataWrapper> extendedTableIndex;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, ExcelColumnarTableData> columnarTableIndex;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, ExcelBeanTableData<?>> beanTableIndex;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, ExcelChildTableData> childTableIndex;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, ExcelSheetsData> sheetTableIndex;
+
+    public ExcelData() {
+        this.params = new LinkedHashMap<>();
+        this.simpleTables = new LinkedHashSet<>();
+        this.extendedTables = new LinkedHashSet<>();
+        this.columnarTables = new LinkedHashSet<>();
+        this.beanTables = new LinkedHashSet<>();
+        this.childTables = new LinkedHashSet<>();
+        this.sheetTables = new LinkedHashSet<>();
+        this.simpleTableIndex = null;
+        this.extendedTableIndex = null;
+        this.columnarTableIndex = null;
+        this.beanTableIndex = null;
+        this.childTableIndex = null;
+        this.sheetTableIndex = null;
+    }
+
+    /**
+     * Неизменяемый снимок source (с дополнительными листами #SHEETS)
+     */
+    private ExcelData(ExcelData source, Collection<ExcelSheetsData> sheets) {
+        this.params = Collections.unmodifiableMap(new LinkedHashMap<>(source.params));
+        this.simpleTables = Collections.unmodifiableSet(new LinkedHashSet<>(source.simpleTables));
+        this.extendedTables = Collections.unmodifiableSet(new LinkedHashSet<>(source.extendedTables));
+        this.columnarTables = Collections.unmodifiableSet(new LinkedHashSet<>(source.columnarTables));
+        this.beanTables = Collections.unmodifiableSet(new LinkedHashSet<>(source.beanTables));
+        this.childTables = Collections.unmodifiableSet(new LinkedHashSet<>(source.childTables));
+        Set<ExcelSheetsData> allSheets = new LinkedHashSet<>(source.sheetTables);
+        allSheets.addAll(sheets);
+        this.sheetTables = Collections.unmodifiableSet(allSheets);
+        this.simpleTableIndex = index(simpleTables, ExcelSimpleTableData::getTableName);
+        this.extendedTableIndex = index(extendedTables, ExcelTemplateTableDataWrapper::getTableName);
+        this.columnarTableIndex = index(columnarTables, ExcelColumnarTableData::getTableName);
+        this.beanTableIndex = index(beanTables, ExcelBeanTableData::getTableName);
+        this.childTableIndex = index(childTables, ExcelChildTableData::getTableName);
+        this.sheetTableIndex = index(sheetTables, ExcelSheetsData::getTemplateName);
+    }
 
     public ExcelData addParam(String key, String val) {
         params.put(key, val);
@@ -40,4 +112,83 @@ public class ExcelData {
         params.put(key, valAsString);
         return this;
     }
+
+    /**
+     * Неизменяемый снимок данных (параметры и наборы таблиц копируются, сами таблицы - нет)
+     * Изменение снимка (addParam, getSimpleTables().add и т.д.) бросает UnsupportedOperationException
+     *
+     * @return снимок (или this, если данные уже неизменяемые)
+     */
+    public ExcelData freeze() {
+        return isFrozen() ? this : new ExcelData(this, Collections.emptyList());
+    }
+
+    /**
+     * Неизменяемый снимок данных с дополнительными листами, размножаемыми из листов-шаблонов #SHEETS
+     *
+     * @param sheets данные размножаемых листов
+     * @return снимок (данные this не меняются)
+     */
+    public ExcelData withSheets(Collection<ExcelSheetsData> sheets) {
+        return new ExcelData(this, sheets);
+    }
+
+    /**
+     * @return true для неизменяемого снимка, созданного {@link #freeze()}
+     */
+    public boolean isFrozen() {
+        return simpleTableIndex != null;
+    }
+
+    public Optional<ExcelSimpleTableData> findSimpleTable(String tableName) {
+        return find(simpleTables, simpleTableIndex, tableName, ExcelSimpleTableData::getTableName);
+    }
+
+    public Optional<ExcelTemplateTableDataWrapper> findExtendedTable(String tableName) {
+        return find(extendedTables, extendedTableIndex, tableName, ExcelTemplateTableDataWrapper::getTableName);
+    }
+
+    public Optional<ExcelColumnarTableData> findColumnarTable(String tableName) {
+        return find(columnarTables, columnarTableIndex, tableName, ExcelColumnarTableData::getTableName);
+    }
+
+    public Optional<ExcelBeanTableData<?>> findBeanTable(String tableName) {
+        return find(beanTables, beanTableIndex, tableName, ExcelBeanTableData::getTableName);
+    }
+
+    public Optional<ExcelChildTableData> findChildTable(String tableName) {
+        return find(childTables, childTableIndex, tableName, ExcelChildTableData::getTableName);
+    }
+
+    public Optional<ExcelSheetsData> findSheets(String templateName) {
+        return find(sheetTables, sheetTableIndex, templateName, ExcelSheetsData::getTemplateName);
+    }
+
+    /**
+     * Навороченные таблицы, название которых начинается с prefix
+     *
+     * @param prefix начало названия
+     * @return таблицы в порядке добавления
+     */
+    public List<ExcelTemplateTableDataWrapper> findExtendedTables(String prefix) {
+        return extendedTables.stream()
+                .filter(table -> table.getTableName().startsWith(prefix))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static <T> Map<String, T> index(Set<T> tables, Function<T, String> name) {
+        Map<String, T> index = new LinkedHashMap<>();
+        tables.forEach(table -> index.putIfAbsent(name.apply(table), table));
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static <T> Optional<T> find(Set<T> tables, Map<String, T> index, String tableName,
+                                        Function<T, String> name) {
+        if (index != null) {
+            return Optional.ofNullable(index.get(tableName));
+        }
+        return tables.stream()
+                .filter(table -> name.apply(table).equals(tableName))
+                .findFirst();
+    }
 }
@@ -0,0 +1,14 @@
+package voofai.lib.excel.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Один лист, созданный из листа-шаблона #SHEETS (см. {@link ExcelSheetsData}): название и данные листа
+ */
+@Getter
+@RequiredArgsConstructor
+public class ExcelSheetData {
+    private final String sheetName;
+    private final ExcelData data;
+}
@@ -0,0 +1,24 @@
+package voofai.lib.excel.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Данные для размножения листа-шаблона: лист, название которого начинается с #SHEETS (например #SHEETS&amp;clients#),
+ * создается один раз для каждого элемента sheets и заполняется его данными.
+ * Недопустимые символы в названиях листов заменяются, одинаковые названия получают суффикс " (2)", " (3)" и т.д.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ExcelSheetsData {
+    private final String templateName;
+    private final List<ExcelSheetData> sheets = new ArrayList<>();
+
+    public ExcelSheetsData addSheet(String sheetName, ExcelData data) {
+        this.sheets.add(new ExcelSheetData(sheetName, data));
+        return this;
+    }
+}
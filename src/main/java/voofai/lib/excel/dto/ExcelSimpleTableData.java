@@ -1,22 +1,77 @@
 package voofai.lib.excel.dto;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Данные для эксель-таблицы
  * Простые таблицы (key = параметр в excel-ячейке, val = строки таблицы)
+ * Строки можно передать лениво (Iterator, Stream, Supplier&lt;Spliterator&gt;), тогда они читаются один раз,
+ * по одной, во время заполнения таблицы (tableRowsData при этом пустой)
  */
 @Getter
 @RequiredArgsConstructor
 public class ExcelSimpleTableData {
     private final String tableName;
     private final LinkedList<Map<String, Object>> tableRowsData = new LinkedList<>();
+    @Getter(AccessLevel.NONE)
+    private RowSource<Map<String, Object>> rowSource;
 
+    public ExcelSimpleTableData(String tableName, Iterator<Map<String, Object>> rows) {
+        this(tableName);
+        this.rowSource = RowSource.of(rows);
+    }
+
+    /**
+     * @param tableName название таблицы
+     * @param rows      строки таблицы (stream не закрывается, это делает вызывающий код)
+     */
+    public ExcelSimpleTableData(String tableName, Stream<Map<String, Object>> rows) {
+        this(tableName);
+        this.rowSource = RowSource.of(rows);
+    }
+
+    public ExcelSimpleTableData(String tableName, Supplier<? extends Spliterator<Map<String, Object>>> rows) {
+        this(tableName);
+        this.rowSource = RowSource.ofSpliterator(rows);
+    }
+
+    /**
+     * @param stringObjectMap строка таблицы
+     * @throws IllegalStateException если строки таблицы передаются лениво
+     */
     public void addTableRowData(Map<String, Object> stringObjectMap) {
+        if (rowSource != null) {
+            throw new IllegalStateException("Rows of " + tableName + " are lazy, addTableRowData can't be used");
+        }
         this.tableRowsData.add(stringObjectMap);
     }
+
+    /**
+     * @return true, если строки передаются лениво и их количество заранее неизвестно
+     */
+    public boolean isLazy() {
+        return rowSource != null;
+    }
+
+    /**
+     * Строки таблицы
+     *
+     * @return ленивые строки (читаются один раз) или tableRowsData
+     * @throws IllegalStateException если ленивые строки уже прочитаны или заданы вместе с tableRowsData
+     */
+    public Iterator<Map<String, Object>> rows() {
+        if (rowSource != null && !tableRowsData.isEmpty()) {
+            throw new IllegalStateException("Rows of " + tableName + " are lazy, tableRowsData must be empty");
+        }
+        return rowSource != null ? rowSource.iterator(tableName) : tableRowsData.iterator();
+    }
 }
@@ -1,12 +1,17 @@
 package voofai.lib.excel.dto;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Данные, которыми будут заполнятся строки из {@link ExcelTemplateTableRows}
@@ -14,6 +19,8 @@ import java.util.Map;
  * копируются в {@link ExcelTemplateTableRows},
  * копируются в нужные места в эксель-документ,
  * заполняются значениями из этого класса {@link ExcelTemplateTableData}
+ * Строки body можно передать лениво (Iterator, Stream, Supplier&lt;Spliterator&gt;), тогда они читаются один раз,
+ * по одной, во время заполнения range (body при этом пустой)
  */
 @Getter
 @RequiredArgsConstructor
@@ -22,12 +29,36 @@ public class ExcelTemplateTableData {
     private final LinkedList<Map<String, Object>> body = new LinkedList<>();
     private final LinkedList<Map<String, Object>> bodyFooter = new LinkedList<>();
     private final Map<String, Object> footer = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    private RowSource<Map<String, Object>> bodySource;
+
+    public ExcelTemplateTableData(Iterator<Map<String, Object>> body) {
+        this.bodySource = RowSource.of(body);
+    }
+
+    /**
+     * @param body строки body (stream не закрывается, это делает вызывающий код)
+     */
+    public ExcelTemplateTableData(Stream<Map<String, Object>> body) {
+        this.bodySource = RowSource.of(body);
+    }
+
+    public ExcelTemplateTableData(Supplier<? extends Spliterator<Map<String, Object>>> body) {
+        this.bodySource = RowSource.ofSpliterator(body);
+    }
 
     public void addHeader(String key, Object data) {
         this.header.put(key, data);
     }
 
+    /**
+     * @param data строка body
+     * @throws IllegalStateException если строки body передаются лениво
+     */
     public void addBody(Map<String, Object> data) {
+        if (bodySource != null) {
+            throw new IllegalStateException("Rows of range body are lazy, addBody can't be used");
+        }
         this.body.add(data);
     }
 
@@ -38,4 +69,24 @@ public class ExcelTemplateTableData {
     public void addBodyFooter(Map<String, Object> data) {
         this.bodyFooter.add(data);
     }
+
+    /**
+     * @return true, если строки body передаются лениво и их количество заранее неизвестно
+     */
+    public boolean isLazyBody() {
+        return bodySource != null;
+    }
+
+    /**
+     * Строки body
+     *
+     * @return ленивые строки (читаются один раз) или body
+     * @throws IllegalStateException если ленивые строки уже прочитаны или заданы вместе с body
+     */
+    public Iterator<Map<String, Object>> bodyRows() {
+        if (bodySource != null && !body.isEmpty()) {
+            throw new IllegalStateException("Rows of range body are lazy, body must be empty");
+        }
+        return bodySource != null ? bodySource.iterator("range body") : body.iterator();
+    }
 }
@@ -0,0 +1,49 @@
+package voofai.lib.excel.dto;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Ленивый источник строк таблицы (курсор БД и т.п.), который можно прочитать только один раз
+ *
+ * @param <T> строка
+ */
+final class RowSource<T> {
+    private final Supplier<Iterator<T>> source;
+    private boolean consumed;
+
+    private RowSource(Supplier<Iterator<T>> source) {
+        this.source = source;
+    }
+
+    static <T> RowSource<T> of(Iterator<T> rows) {
+        return new RowSource<>(() -> rows);
+    }
+
+    static <T> RowSource<T> of(Stream<T> rows) {
+        return new RowSource<>(rows::iterator);
+    }
+
+    /**
+     * supplier вызывается только при чтении строк (например, запрос в БД выполняется во время генерации)
+     */
+    static <T> RowSource<T> ofSpliterator(Supplier<? extends Spliterator<T>> rows) {
+        return new RowSource<>(() -> Spliterators.iterator(rows.get()));
+    }
+
+    /**
+     * @param tableName название таблицы (для текста ошибки)
+     * @return строки
+     * @throws IllegalStateException если строки уже были прочитаны
+     */
+    synchronized Iterator<T> iterator(String tableName) {
+        if (consumed) {
+            throw new IllegalStateException("Rows of " + tableName + " can be read only once");
+        }
+        consumed = true;
+        return source.get();
+    }
+}
@@ -10,5 +10,19 @@ public enum WorkBookType {
     /**
      * XSSFWorkbook - ".xlsx" file format (starting at 2007 year)
      */
-    XLSX
+    XLSX,
+
+    /**
+     * SXSSFWorkbook - ".xlsx" file format, rows are written strictly in order
+     * and only a window of them is kept in memory (for very large tables)
+     */
+    XLSX_STREAMING,
+
+    /**
+     * ".xlsx" file format written directly: sheet xml of the template is read with StAX,
+     * tables and ranges are expanded while reading and zip entries go straight to the output stream
+     * (no workbook is built, memory does not depend on data size).
+     * Methods returning {@link org.apache.poi.ss.usermodel.Workbook} build it as {@link #XLSX_STREAMING}
+     */
+    XLSX_DIRECT
 }
@@ -0,0 +1,169 @@
+package voofai.lib.excel.generator;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Доступ к свойствам объектов строк по ключу ячейки шаблона.
+ * Для каждого класса и ключа accessor создается один раз (через LambdaMetafactory, а если класс
+ * недоступен из этого загрузчика или не public - через MethodHandle), дальше это обычный вызов без рефлексии.
+ * Accessors хранятся в самом классе объектов ({@link ClassValue}) и выгружаются вместе с ним, но ссылаются
+ * на классы библиотеки. Поэтому кэшируются только классы из загрузчика библиотеки или его потомков:
+ * для классов из родительских и сторонних загрузчиков (например, JDK или общие библиотеки сервера)
+ * кэш удерживал бы загрузчик библиотеки после ее выгрузки, и accessor создается заново при каждом запросе
+ * (один раз на таблицу)
+ */
+final class BeanAccessors {
+    // свойства нет = значение null (как для отсутствующего ключа в Map)
+    private static final Function<Object, Object> ABSENT = bean -> null;
+
+    private static final ClassValue<BeanAccessors> CACHE = new ClassValue<BeanAccessors>() {
+        @Override
+        protected BeanAccessors computeValue(Class<?> type) {
+            return new BeanAccessors(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Map<String, Function<Object, Object>> accessors = new ConcurrentHashMap<>();
+
+    private BeanAccessors(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * Accessor свойства: getKey(), isKey(), key() или public-поле key
+     *
+     * @param type класс объектов строк
+     * @param key  ключ ячейки шаблона
+     * @return функция объект -> значение свойства (null, если свойства нет)
+     */
+    static Function<Object, Object> accessor(Class<?> type, String key) {
+        if (!isCacheable(type)) {
+            return new BeanAccessors(type).create(key);
+        }
+        BeanAccessors beanAccessors = CACHE.get(type);
+        return beanAccessors.accessors.computeIfAbsent(key, beanAccessors::create);
+    }
+
+    /**
+     * Класс выгружается не позже библиотеки: его загрузчик - загрузчик библиотеки или его потомок
+     */
+    private static boolean isCacheable(Class<?> type) {
+        ClassLoader library = BeanAccessors.class.getClassLoader();
+        if (library == null) {
+            return true;
+        }
+        for (ClassLoader loader = type.getClassLoader(); loader != null; loader = loader.getParent()) {
+            if (loader == library) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Function<Object, Object> create(String key) {
+        //ячейка ## = пустой ключ, как и в Map значения нет
+        if (key.isEmpty()) {
+            return ABSENT;
+        }
+        try {
+            Method getter = findGetter(key);
+            if (getter != null) {
+                getter.setAccessible(true);
+                MethodHandle handle = MethodHandles.lookup().unreflect(getter);
+                return isLinkable(getter.getDeclaringClass()) ? lambda(handle) : invoker(handle);
+            }
+
+            Field field = findField(key);
+            if (field != null) {
+                field.setAccessible(true);
+                return invoker(MethodHandles.lookup().unreflectGetter(field));
+            }
+            return ABSENT;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create accessor for " + type.getName() + "." + key, e);
+        }
+    }
+
+    /**
+     * Методы Object (getClass(), hashCode() и т.п.) свойствами не считаются: #class# не должен возвращать класс объекта
+     */
+    private Method findGetter(String key) {
+        String suffix = Character.toUpperCase(key.charAt(0)) + key.substring(1);
+        for (String name : new String[]{"get" + suffix, "is" + suffix, key}) {
+            for (Method method : type.getMethods()) {
+                if (method.getName().equals(name)
+                        && method.getDeclaringClass() != Object.class
+                        && method.getParameterCount() == 0
+                        && !Modifier.isStatic(method.getModifiers())
+                        && method.getReturnType() != void.class
+                        && (!name.startsWith("is") || name.equals(key) || isBoolean(method.getReturnType()))) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Field findField(String key) {
+        for (Field field : type.getFields()) {
+            if (field.getName().equals(key) && !Modifier.isStatic(field.getModifiers())) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBoolean(Class<?> type) {
+        return type == boolean.class || type == Boolean.class;
+    }
+
+    /**
+     * Сгенерированный класс лямбды ссылается на класс объекта, поэтому класс должен быть public
+     * и виден из загрузчика этой библиотеки
+     */
+    private static boolean isLinkable(Class<?> declaringClass) {
+        if (!Modifier.isPublic(declaringClass.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(declaringClass.getName(), false, BeanAccessors.class.getClassLoader()) == declaringClass;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> lambda(MethodHandle getter) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class),
+                getter,
+                getter.type().wrap());
+        return (Function<Object, Object>) site.getTarget().invokeExact();
+    }
+
+    private static Function<Object, Object> invoker(MethodHandle getter) {
+        MethodHandle generic = getter.asType(MethodType.methodType(Object.class, Object.class));
+        return bean -> {
+            try {
+                return (Object) generic.invokeExact(bean);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+}
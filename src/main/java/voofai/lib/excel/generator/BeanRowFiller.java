@@ -0,0 +1,62 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import voofai.lib.excel.template.Placeholder;
+import voofai.lib.excel.template.TemplateRow;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Заполнение строк из объектов (POJO): accessors для ячеек-параметров строки шаблона
+ * находятся один раз, значения читаются прямым вызовом без промежуточной Map
+ */
+final class BeanRowFiller implements RowFiller {
+    private final Class<?> beanType;
+    private final CellValueWriter writer;
+    // строка шаблона -> accessor для каждого placeholder
+    private final Map<TemplateRow, List<Function<Object, Object>>> slots = new IdentityHashMap<>();
+    private Object bean;
+
+    BeanRowFiller(Class<?> beanType, CellValueWriter writer) {
+        this.beanType = beanType;
+        this.writer = writer;
+    }
+
+    /**
+     * @param bean объект, которым заполнять следующие строки шаблона
+     */
+    void moveTo(Object bean) {
+        this.bean = bean;
+    }
+
+    @Override
+    public void fill(Row row, TemplateRow template) {
+        if (row == null || template.getPlaceholders().isEmpty()) {
+            return;
+        }
+
+        List<Placeholder> placeholders = template.getPlaceholders();
+        List<Function<Object, Object>> accessors = slots.computeIfAbsent(template, this::resolve);
+        for (int i = 0; i < accessors.size(); i++) {
+            Placeholder placeholder = placeholders.get(i);
+            Cell cell = row.getCell(placeholder.getColumn());
+            if (cell != null) {
+                writer.write(cell, placeholder, bean == null ? null : accessors.get(i).apply(bean));
+            }
+        }
+    }
+
+    private List<Function<Object, Object>> resolve(TemplateRow template) {
+        List<Placeholder> placeholders = template.getPlaceholders();
+        List<Function<Object, Object>> accessors = new ArrayList<>(placeholders.size());
+        for (Placeholder placeholder : placeholders) {
+            accessors.add(BeanAccessors.accessor(beanType, placeholder.getKey()));
+        }
+        return accessors;
+    }
+}
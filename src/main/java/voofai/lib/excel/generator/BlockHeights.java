@@ -0,0 +1,158 @@
+package voofai.lib.excel.generator;
+
+import voofai.lib.excel.dto.ExcelBeanTableData;
+import voofai.lib.excel.dto.ExcelColumnarTableData;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableDataWrapper;
+import voofai.lib.excel.template.ExcelTemplateCompiler;
+import voofai.lib.excel.template.RangeBlock;
+import voofai.lib.excel.template.TableBlock;
+import voofai.lib.excel.template.TemplateNode;
+import voofai.lib.excel.template.TemplateRow;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Высота блоков шаблона, развернутых по данным, до их заполнения:
+ * место под блок в XLS/XLSX освобождается одним сдвигом, ссылки формул потоковых движков сдвигаются на эту высоту
+ */
+final class BlockHeights {
+
+    private BlockHeights() {
+    }
+
+    /**
+     * Высота (в строках) развернутой по данным таблицы или range, повторяет логику заполнения блока.
+     * Ленивые строки не учитываются (их количество неизвестно): строки сверх зарезервированного места
+     * пишутся подряд (в XLS/XLSX место расширяется с удвоением, незанятые строки удаляются вместе с шаблонами).
+     * Строки {@link voofai.lib.excel.dto.ExcelChildTableData} тоже не учитываются: место под них резервируется
+     * после загрузки каждого пакета (см. {@link ChildBatchIterator})
+     *
+     * @param node шаблон таблицы или range
+     * @param dto  данные
+     * @return минимальное количество строк, которые будут созданы
+     */
+    static int measureBlock(TemplateNode node, ExcelData dto) {
+        if (node instanceof TableBlock) {
+            TableBlock table = (TableBlock) node;
+            if (table.getBody().isEmpty()) {
+                return 0;
+            }
+            Optional<ExcelSimpleTableData> data = dto.findSimpleTable(table.getName());
+            if (data.isPresent()) {
+                return data.get().isLazy() ? 0 : data.get().getTableRowsData().size() * measureRows(table.getBody(), dto);
+            }
+            Optional<ExcelColumnarTableData> columnar = dto.findColumnarTable(table.getName());
+            if (columnar.isPresent()) {
+                return columnar.get().getRowCount() * measureRows(table.getBody(), dto);
+            }
+            return dto.findBeanTable(table.getName())
+                    .filter(beans -> !beans.isLazy())
+                    .map(beans -> beans.size() * measureRows(table.getBody(), dto))
+                    .orElse(0);
+        }
+
+        RangeBlock range = (RangeBlock) node;
+        if (!range.getName().startsWith(ExcelTemplateCompiler.RANGE_LIST)) {
+            return measureRange(range, dto, range.getName());
+        }
+        int height = 0;
+        for (ExcelTemplateTableDataWrapper dataItem : dto.findExtendedTables(ExcelTemplateCompiler.RANGE_LIST)) {
+            height += measureRange(range, dto, dataItem.getTableName());
+        }
+        return height;
+    }
+
+    /**
+     * Высота range, повторяет логику fillRange
+     */
+    private static int measureRange(RangeBlock template, ExcelData dto, String mapKey) {
+        Optional<LinkedList<ExcelTemplateTableData>> tables = dto.findExtendedTable(mapKey).map(ExcelTemplateTableDataWrapper::getTableRowsData);
+        if (template.getBody().isEmpty() || !tables.isPresent()) {
+            return 0;
+        }
+
+        int header = measureRows(template.getHeader(), dto);
+        int body = measureRows(template.getBody(), dto);
+        int bodyFooter = measureRows(template.getBodyFooter(), dto);
+        int footer = measureRows(template.getFooter(), dto);
+
+        int height = 0;
+        for (ExcelTemplateTableData dataItem : tables.get()) {
+            if (!dataItem.getHeader().isEmpty() && !template.getHeader().isEmpty()) {
+                height += header;
+            }
+            if (!dataItem.isLazyBody()) {
+                height += dataItem.getBody().size() * body;
+            }
+            height += RangeAggregator.bodyFooterRows(template, dataItem).size() * bodyFooter;
+            if ((!dataItem.getFooter().isEmpty() || template.isFooterAggregated()) && !template.getFooter().isEmpty()) {
+                height += footer;
+            }
+        }
+        return height;
+    }
+
+    /**
+     * Высота одной копии шаблона строк (с учетом вложенных таблиц)
+     */
+    static int measureRows(List<TemplateNode> sourceRows, ExcelData dto) {
+        int height = 0;
+        for (TemplateNode node : sourceRows) {
+            height += node instanceof TemplateRow ? 1 : measureBlock(node, dto);
+        }
+        return height;
+    }
+
+    /**
+     * Совпадает ли высота по {@link #measureBlock} с фактической: в блоке нет ленивых строк
+     * и строк {@link voofai.lib.excel.dto.ExcelChildTableData} (их количество известно только при заполнении)
+     *
+     * @param node шаблон таблицы или range
+     * @param dto  данные
+     * @return true, если высоту блока можно знать до его заполнения
+     */
+    static boolean isExact(TemplateNode node, ExcelData dto) {
+        if (node instanceof TemplateRow) {
+            return true;
+        }
+        if (node instanceof TableBlock) {
+            TableBlock table = (TableBlock) node;
+            if (dto.findChildTable(table.getName()).isPresent()) {
+                return false;
+            }
+            Optional<ExcelSimpleTableData> data = dto.findSimpleTable(table.getName());
+            boolean lazy = data.isPresent()
+                    ? data.get().isLazy()
+                    : !dto.findColumnarTable(table.getName()).isPresent()
+                    && dto.findBeanTable(table.getName()).map(ExcelBeanTableData::isLazy).orElse(false);
+            return !lazy && isExact(table.getBody(), dto);
+        }
+
+        RangeBlock range = (RangeBlock) node;
+        List<ExcelTemplateTableDataWrapper> tables = range.getName().startsWith(ExcelTemplateCompiler.RANGE_LIST)
+                ? dto.findExtendedTables(ExcelTemplateCompiler.RANGE_LIST)
+                : dto.findExtendedTable(range.getName()).map(Collections::singletonList).orElse(Collections.emptyList());
+        for (ExcelTemplateTableDataWrapper wrapper : tables) {
+            if (wrapper.getTableRowsData().stream().anyMatch(ExcelTemplateTableData::isLazyBody)) {
+                return false;
+            }
+        }
+        return isExact(range.getHeader(), dto) && isExact(range.getBody(), dto)
+                && isExact(range.getBodyFooter(), dto) && isExact(range.getFooter(), dto);
+    }
+
+    private static boolean isExact(List<TemplateNode> nodes, ExcelData dto) {
+        for (TemplateNode node : nodes) {
+            if (!isExact(node, dto)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.usermodel.Cell;
+import voofai.lib.excel.template.Placeholder;
+
+/**
+ * Запись значения в ячейку-параметр с учетом типа значения
+ */
+@FunctionalInterface
+interface CellValueWriter {
+
+    /**
+     * @param cell        ячейка-параметр
+     * @param placeholder скомпилированный параметр
+     * @param value       значение (null = пустая строка)
+     */
+    void write(Cell cell, Placeholder placeholder, Object value);
+}
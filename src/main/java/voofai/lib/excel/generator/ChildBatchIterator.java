@@ -0,0 +1,233 @@
+package voofai.lib.excel.generator;
+
+import voofai.lib.excel.dto.ExcelChildTableData;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.template.TableBlock;
+import voofai.lib.excel.template.TemplateNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Родительские строки таблицы или range, для которых строки вложенных таблиц ({@link ExcelChildTableData})
+ * загружаются пакетами: перед первой строкой пакета resolver вызывается один раз на пакет,
+ * перед каждой строкой ее потомки кладутся в {@link SheetContext#getChildRows()}.
+ * Потомки следующих уровней (таблицы в body вложенных таблиц) загружаются тогда же для всего пакета:
+ * resolver каждого уровня вызывается один раз на пакет внешних строк (кусками по batchSize своей таблицы),
+ * а не на каждую родительскую строку; итераторы вложенных таблиц берут их из {@link SheetContext#getResolvedRows()}.
+ * Пакет освобождается при загрузке следующего, после последней строки восстанавливаются прежние потомки
+ * (для вложенности нескольких уровней).
+ * Количество потомков известно только после resolve, поэтому высота пакета (родители и потомки всех уровней)
+ * сообщается после загрузки пакета: XLS/XLSX резервируют под нее место одним сдвигом
+ */
+final class ChildBatchIterator implements Iterator<Map<String, Object>> {
+    private final Iterator<Map<String, Object>> parents;
+    private final List<ExcelChildTableData> tables;
+    private final List<TableBlock> blocks;
+    private final List<TemplateNode> body;
+    private final ExcelData dto;
+    private final IntConsumer reserve;
+    private final Map<String, List<Map<String, Object>>> childRows;
+    private final Map<String, Map<Map<String, Object>, Deque<List<Map<String, Object>>>>> resolvedRows;
+    private final Map<String, List<Map<String, Object>>> previous = new HashMap<>();
+    private final int batchSize;
+    private final List<List<List<Map<String, Object>>>> children;
+
+    private List<Map<String, Object>> batch = Collections.emptyList();
+    private int position;
+
+    private ChildBatchIterator(Iterator<Map<String, Object>> parents, List<ExcelChildTableData> tables, List<TableBlock> blocks,
+                               List<TemplateNode> body, ExcelData dto, SheetContext context, IntConsumer reserve) {
+        this.parents = parents;
+        this.tables = tables;
+        this.blocks = blocks;
+        this.body = body;
+        this.dto = dto;
+        this.reserve = reserve;
+        this.childRows = context.getChildRows();
+        this.resolvedRows = context.getResolvedRows();
+        this.batchSize = tables.stream().mapToInt(ExcelChildTableData::getBatchSize).min().orElse(1);
+        this.children = new ArrayList<>(tables.size());
+        for (ExcelChildTableData table : tables) {
+            previous.put(table.getTableName(), childRows.get(table.getTableName()));
+            children.add(Collections.emptyList());
+        }
+    }
+
+    /**
+     * Родительские строки с пакетной загрузкой потомков
+     *
+     * @param parents строки таблицы или range body
+     * @param body    шаблон строк body
+     * @param dto     данные
+     * @param context лист, в котором хранятся потомки текущей строки
+     * @return parents, если в body нет вложенных таблиц с {@link ExcelChildTableData}
+     */
+    static Iterator<Map<String, Object>> wrap(Iterator<Map<String, Object>> parents, List<TemplateNode> body,
+                                              ExcelData dto, SheetContext context) {
+        return wrap(parents, body, dto, context, null);
+    }
+
+    /**
+     * Родительские строки с пакетной загрузкой потомков
+     *
+     * @param parents строки таблицы или range body
+     * @param body    шаблон строк body
+     * @param dto     данные
+     * @param context лист, в котором хранятся потомки текущей строки
+     * @param reserve получает высоту каждого загруженного пакета (строк родителей и потомков всех уровней), null = не нужна
+     *                (пакетам, потомки которых загружены внешним пакетом, место уже зарезервировано)
+     * @return parents, если в body нет вложенных таблиц с {@link ExcelChildTableData}
+     */
+    static Iterator<Map<String, Object>> wrap(Iterator<Map<String, Object>> parents, List<TemplateNode> body,
+                                              ExcelData dto, SheetContext context, IntConsumer reserve) {
+        List<ExcelChildTableData> tables = null;
+        List<TableBlock> blocks = null;
+        for (TemplateNode node : body) {
+            if (node instanceof TableBlock) {
+                ExcelChildTableData table = dto.findChildTable(((TableBlock) node).getName()).orElse(null);
+                if (table != null) {
+                    if (tables == null) {
+                        tables = new ArrayList<>();
+                        blocks = new ArrayList<>();
+                    }
+                    tables.add(table);
+                    blocks.add((TableBlock) node);
+                }
+            }
+        }
+        return tables == null ? parents : new ChildBatchIterator(parents, tables, blocks, body, dto, context, reserve);
+    }
+
+    @Override
+    public boolean hasNext() {
+        boolean hasNext = position < batch.size() || parents.hasNext();
+        if (!hasNext) {
+            previous.forEach((name, rows) -> {
+                if (rows == null) {
+                    childRows.remove(name);
+                } else {
+                    childRows.put(name, rows);
+                }
+            });
+        }
+        return hasNext;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (position == batch.size()) {
+            loadBatch();
+        }
+        for (int i = 0; i < tables.size(); i++) {
+            List<Map<String, Object>> rows = children.get(i).get(position);
+            childRows.put(tables.get(i).getTableName(), rows != null ? rows : Collections.emptyList());
+        }
+        return batch.get(position++);
+    }
+
+    private void loadBatch() {
+        List<Map<String, Object>> parentRows = new ArrayList<>(batchSize);
+        while (parentRows.size() < batchSize && parents.hasNext()) {
+            parentRows.add(parents.next());
+        }
+        if (parentRows.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        batch = Collections.unmodifiableList(parentRows);
+        position = 0;
+        if (takeResolved()) {
+            return;
+        }
+
+        //потомки всех уровней для всего пакета, затем потомки этого уровня по строкам пакета
+        int height = resolveDescendants(body, batch);
+        if (!takeResolved()) {
+            throw new IllegalStateException("Child rows of " + tables.get(0).getTableName() + " are not resolved");
+        }
+        if (reserve != null) {
+            reserve.accept(height);
+        }
+    }
+
+    /**
+     * Потомки строк пакета, загруженные заранее (внешним пакетом или {@link #resolveDescendants})
+     *
+     * @return false, если потомки загружены не для всех строк пакета
+     */
+    private boolean takeResolved() {
+        for (ExcelChildTableData table : tables) {
+            Map<Map<String, Object>, Deque<List<Map<String, Object>>>> byParent = resolvedRows.get(table.getTableName());
+            if (byParent == null) {
+                return false;
+            }
+            Map<Map<String, Object>, Integer> needed = new IdentityHashMap<>();
+            for (Map<String, Object> row : batch) {
+                int count = needed.merge(row, 1, Integer::sum);
+                Deque<List<Map<String, Object>>> rows = byParent.get(row);
+                if (rows == null || rows.size() < count) {
+                    return false;
+                }
+            }
+        }
+        for (int i = 0; i < tables.size(); i++) {
+            Map<Map<String, Object>, Deque<List<Map<String, Object>>>> byParent = resolvedRows.get(tables.get(i).getTableName());
+            List<List<Map<String, Object>>> resolved = new ArrayList<>(batch.size());
+            for (Map<String, Object> row : batch) {
+                Deque<List<Map<String, Object>>> rows = byParent.get(row);
+                resolved.add(rows.poll());
+                if (rows.isEmpty()) {
+                    byParent.remove(row);
+                }
+            }
+            children.set(i, resolved);
+        }
+        return true;
+    }
+
+    /**
+     * Загрузка потомков всех уровней для строк rows (шаблон строки - rowBody): resolver каждой вложенной таблицы
+     * вызывается для всех строк уровня сразу (кусками по batchSize), результат кладется в {@link SheetContext#getResolvedRows()}
+     *
+     * @return высота строк rows вместе с потомками всех уровней
+     */
+    private int resolveDescendants(List<TemplateNode> rowBody, List<Map<String, Object>> rows) {
+        int height = rows.size() * BlockHeights.measureRows(rowBody, dto);
+        for (TemplateNode node : rowBody) {
+            ExcelChildTableData table = node instanceof TableBlock
+                    ? dto.findChildTable(((TableBlock) node).getName()).orElse(null)
+                    : null;
+            if (table == null || rows.isEmpty()) {
+                continue;
+            }
+            Map<Map<String, Object>, Deque<List<Map<String, Object>>>> byParent =
+                    resolvedRows.computeIfAbsent(table.getTableName(), name -> new IdentityHashMap<>());
+            List<Map<String, Object>> tableRows = new ArrayList<>();
+            for (int from = 0; from < rows.size(); from += table.getBatchSize()) {
+                List<Map<String, Object>> parentRows = Collections.unmodifiableList(
+                        rows.subList(from, Math.min(rows.size(), from + table.getBatchSize())));
+                List<List<Map<String, Object>>> resolved = table.getResolver().resolve(parentRows);
+                if (resolved == null || resolved.size() != parentRows.size()) {
+                    throw new IllegalStateException("Resolver of " + table.getTableName() + " returned "
+                            + (resolved == null ? "null" : resolved.size() + " items") + " for " + parentRows.size() + " parent rows");
+                }
+                for (int i = 0; i < parentRows.size(); i++) {
+                    List<Map<String, Object>> children = resolved.get(i) != null ? resolved.get(i) : Collections.emptyList();
+                    byParent.computeIfAbsent(parentRows.get(i), row -> new ArrayDeque<>()).add(children);
+                    tableRows.addAll(children);
+                }
+            }
+            height += resolveDescendants(((TableBlock) node).getBody(), tableRows);
+        }
+        return height;
+    }
+}
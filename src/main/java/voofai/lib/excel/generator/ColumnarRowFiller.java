@@ -0,0 +1,97 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.excel.dto.ExcelColumnarTableData;
+import voofai.lib.excel.template.Placeholder;
+import voofai.lib.excel.template.TemplateRow;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Заполнение строк из {@link ExcelColumnarTableData}: колонки для ячеек-параметров строки шаблона
+ * находятся один раз, значения читаются по номеру колонки и пишутся тем же путем, что и значения из Map
+ * (конвертеры, хранение строк, hyperlinks). Числа без своих конвертеров Double/Long пишутся в ячейку без упаковки
+ * (целые больше 2^53 - строкой, как конвертер Long по умолчанию)
+ */
+final class ColumnarRowFiller implements RowFiller {
+    private final ExcelColumnarTableData data;
+    private final CellValueWriter writer;
+    private final boolean plainDoubles;
+    private final boolean plainLongs;
+    // строка шаблона -> номер колонки для каждого placeholder (-1 = нет колонки)
+    private final Map<TemplateRow, int[]> slots = new IdentityHashMap<>();
+    private int rowIndex;
+
+    ColumnarRowFiller(ExcelColumnarTableData data, CellValueWriter writer, ValueConverters valueConverters) {
+        this.data = data;
+        this.writer = writer;
+        this.plainDoubles = valueConverters.isDefault(Double.class);
+        this.plainLongs = valueConverters.isDefault(Long.class);
+    }
+
+    /**
+     * @param rowIndex номер строки данных, которой заполнять следующие строки шаблона
+     */
+    void moveTo(int rowIndex) {
+        this.rowIndex = rowIndex;
+    }
+
+    @Override
+    public void fill(Row row, TemplateRow template) {
+        if (row == null || template.getPlaceholders().isEmpty()) {
+            return;
+        }
+
+        List<Placeholder> placeholders = template.getPlaceholders();
+        int[] columns = slots.computeIfAbsent(template, this::resolve);
+        for (int i = 0; i < columns.length; i++) {
+            Placeholder placeholder = placeholders.get(i);
+            Cell cell = row.getCell(placeholder.getColumn());
+            if (cell != null) {
+                write(cell, placeholder, columns[i]);
+            }
+        }
+    }
+
+    private void write(Cell cell, Placeholder placeholder, int column) {
+        if (column < 0 || data.isNull(column, rowIndex)) {
+            writer.write(cell, placeholder, null);
+            return;
+        }
+        switch (data.getColumnType(column)) {
+            case DOUBLE:
+                double number = data.getDouble(column, rowIndex);
+                if (plainDoubles) {
+                    cell.setCellValue(number);
+                } else {
+                    writer.write(cell, placeholder, number);
+                }
+                break;
+            case LONG:
+                long value = data.getLong(column, rowIndex);
+                if (!plainLongs) {
+                    writer.write(cell, placeholder, value);
+                } else if (ValueConverters.isExact(value)) {
+                    cell.setCellValue(value);
+                } else {
+                    writer.write(cell, placeholder, Long.toString(value));
+                }
+                break;
+            default:
+                writer.write(cell, placeholder, data.getString(column, rowIndex));
+        }
+    }
+
+    private int[] resolve(TemplateRow template) {
+        List<Placeholder> placeholders = template.getPlaceholders();
+        int[] columns = new int[placeholders.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = data.getColumnIndex(placeholders.get(i).getKey());
+        }
+        return columns;
+    }
+}
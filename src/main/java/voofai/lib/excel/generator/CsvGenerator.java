@@ -0,0 +1,49 @@
+package voofai.lib.excel.generator;
+
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.template.CompiledExcelTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Flat CSV/TSV export of one #TABLE of an Excel template.
+ * Columns are the placeholders #key# of the table rows (row by row, left to right),
+ * every data row of the table becomes one line. Rows are written straight to the output, no workbook is built
+ */
+public interface CsvGenerator {
+
+    /**
+     * Write the first #TABLE of the template
+     *
+     * @param template     compiled excel template
+     * @param dto          data (simple, columnar or bean table)
+     * @param outputStream stream to write result data (not closed)
+     * @throws IOException exception while writing
+     */
+    void createByTemplate(CompiledExcelTemplate template, ExcelData dto, OutputStream outputStream) throws IOException;
+
+    /**
+     * Write #TABLE with given name
+     *
+     * @param template     compiled excel template
+     * @param tableName    table name, e.g. #TABLE&amp;rows#
+     * @param dto          data (simple, columnar or bean table)
+     * @param outputStream stream to write result data (not closed)
+     * @throws IOException exception while writing
+     */
+    void createByTemplate(CompiledExcelTemplate template, String tableName, ExcelData dto,
+                          OutputStream outputStream) throws IOException;
+
+    /**
+     * Write #TABLE with given name as text
+     *
+     * @param template  compiled excel template
+     * @param tableName table name, e.g. #TABLE&amp;rows#
+     * @param dto       data (simple, columnar or bean table)
+     * @param writer    writer for result text (flushed, not closed)
+     * @throws IOException exception while writing
+     */
+    void createByTemplate(CompiledExcelTemplate template, String tableName, ExcelData dto, Writer writer) throws IOException;
+}
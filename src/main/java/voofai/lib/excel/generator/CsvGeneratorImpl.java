@@ -0,0 +1,289 @@
+package voofai.lib.excel.generator;
+
+import voofai.lib.convert.ValueConverter;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.excel.dto.ExcelBeanTableData;
+import voofai.lib.excel.dto.ExcelColumnarTableData;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.template.CompiledExcelTemplate;
+import voofai.lib.excel.template.Placeholder;
+import voofai.lib.excel.template.RangeBlock;
+import voofai.lib.excel.template.SheetTemplate;
+import voofai.lib.excel.template.TableBlock;
+import voofai.lib.excel.template.TemplateNode;
+import voofai.lib.excel.template.TemplateRow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Выгрузка таблицы шаблона в CSV/TSV: строки данных читаются по одной и сразу пишутся в буфер,
+ * в памяти только буфер и текущая строка.
+ * Колонки = ячейки-параметры строк body таблицы (вложенные таблицы и range не выгружаются)
+ */
+public class CsvGeneratorImpl implements CsvGenerator {
+    private final CsvSettings settings;
+
+    public CsvGeneratorImpl() {
+        this(CsvSettings.defaults());
+    }
+
+    public CsvGeneratorImpl(CsvSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public void createByTemplate(CompiledExcelTemplate template, ExcelData dto, OutputStream outputStream) throws IOException {
+        TableBlock table = findTable(template, null)
+                .orElseThrow(() -> new IllegalArgumentException("Template has no #TABLE"));
+        Writer writer = new OutputStreamWriter(outputStream, settings.getCharset());
+        write(table, dto, writer);
+        writer.flush();
+    }
+
+    @Override
+    public void createByTemplate(CompiledExcelTemplate template, String tableName, ExcelData dto,
+                                 OutputStream outputStream) throws IOException {
+        Writer writer = new OutputStreamWriter(outputStream, settings.getCharset());
+        createByTemplate(template, tableName, dto, writer);
+    }
+
+    @Override
+    public void createByTemplate(CompiledExcelTemplate template, String tableName, ExcelData dto, Writer writer) throws IOException {
+        TableBlock table = findTable(template, tableName)
+                .orElseThrow(() -> new IllegalArgumentException("Table " + tableName + " not found in template"));
+        write(table, dto, writer);
+        writer.flush();
+    }
+
+    /**
+     * Запись заголовка и строк таблицы
+     *
+     * @param table  шаблон таблицы
+     * @param dto    данные
+     * @param writer куда писать
+     */
+    private void write(TableBlock table, ExcelData dto, Writer writer) throws IOException {
+        List<Placeholder> columns = columns(table);
+        ExcelData data = dto.freeze();
+        Line line = new Line(writer);
+
+        if (settings.isHeader()) {
+            for (Placeholder column : columns) {
+                line.text(column.getKey());
+            }
+            line.end();
+        }
+
+        //строки Map
+        Optional<ExcelSimpleTableData> simple = data.findSimpleTable(table.getName());
+        if (simple.isPresent()) {
+            Iterator<Map<String, Object>> rows = simple.get().rows();
+            while (rows.hasNext()) {
+                Map<String, Object> row = rows.next();
+                for (Placeholder column : columns) {
+                    line.value(row.get(column.getKey()));
+                }
+                line.end();
+            }
+            line.flush();
+            return;
+        }
+
+        //колоночные данные (номера колонок находятся один раз)
+        Optional<ExcelColumnarTableData> columnar = data.findColumnarTable(table.getName());
+        if (columnar.isPresent()) {
+            writeColumnar(columnar.get(), columns, line);
+            line.flush();
+            return;
+        }
+
+        //объекты (POJO), accessors находятся один раз на класс
+        Optional<ExcelBeanTableData<?>> beans = data.findBeanTable(table.getName());
+        if (beans.isPresent()) {
+            List<Function<Object, Object>> accessors = new ArrayList<>(columns.size());
+            for (Placeholder column : columns) {
+                accessors.add(BeanAccessors.accessor(beans.get().getBeanType(), column.getKey()));
+            }
+            Iterator<?> rows = beans.get().rows();
+            while (rows.hasNext()) {
+                Object bean = rows.next();
+                for (Function<Object, Object> accessor : accessors) {
+                    line.value(bean == null ? null : accessor.apply(bean));
+                }
+                line.end();
+            }
+        }
+        line.flush();
+    }
+
+    private void writeColumnar(ExcelColumnarTableData data, List<Placeholder> columns, Line line) throws IOException {
+        int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = data.getColumnIndex(columns.get(i).getKey());
+        }
+        for (int row = 0; row < data.getRowCount(); row++) {
+            for (int column : indexes) {
+                if (column < 0 || data.isNull(column, row)) {
+                    line.text("");
+                    continue;
+                }
+                switch (data.getColumnType(column)) {
+                    case DOUBLE:
+                        line.number(data.getDouble(column, row));
+                        break;
+                    case LONG:
+                        line.number(data.getLong(column, row));
+                        break;
+                    default:
+                        line.text(data.getString(column, row));
+                }
+            }
+            line.end();
+        }
+    }
+
+    /**
+     * Ячейки-параметры строк body по порядку строк (вложенные таблицы и range пропускаются)
+     */
+    private List<Placeholder> columns(TableBlock table) {
+        List<Placeholder> columns = new ArrayList<>();
+        for (TemplateNode node : table.getBody()) {
+            if (node instanceof TemplateRow) {
+                columns.addAll(((TemplateRow) node).getPlaceholders());
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Таблица по названию (null = первая таблица шаблона), в том числе вложенная в range или другую таблицу
+     */
+    private Optional<TableBlock> findTable(CompiledExcelTemplate template, String tableName) {
+        for (SheetTemplate sheet : template.getSheets()) {
+            Optional<TableBlock> table = findTable(sheet.getNodes(), tableName);
+            if (table.isPresent()) {
+                return table;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<TableBlock> findTable(List<TemplateNode> nodes, String tableName) {
+        for (TemplateNode node : nodes) {
+            List<List<TemplateNode>> children = new ArrayList<>();
+            if (node instanceof TableBlock) {
+                TableBlock table = (TableBlock) node;
+                if (tableName == null || tableName.equals(table.getName())) {
+                    return Optional.of(table);
+                }
+                children.add(table.getBody());
+            } else if (node instanceof RangeBlock) {
+                RangeBlock range = (RangeBlock) node;
+                children.add(range.getHeader());
+                children.add(range.getBody());
+                children.add(range.getBodyFooter());
+                children.add(range.getFooter());
+            }
+            for (List<TemplateNode> child : children) {
+                Optional<TableBlock> table = findTable(child, tableName);
+                if (table.isPresent()) {
+                    return table;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Текущая строка: значения с экранированием пишутся в буфер, буфер сбрасывается во writer по заполнении
+     */
+    private final class Line {
+        private final Writer writer;
+        private final StringBuilder buffer;
+        private final char delimiter = settings.getDelimiter();
+        private final char quote = settings.getQuote();
+        private final ValueConverters valueConverters = settings.getValueConverters();
+        private boolean first = true;
+
+        Line(Writer writer) {
+            this.writer = writer;
+            this.buffer = new StringBuilder(settings.getBufferSize() + 1024);
+        }
+
+        void value(Object value) {
+            if (value == null) {
+                text("");
+                return;
+            }
+            ValueConverter<Object> converter = valueConverters.find(value.getClass());
+            text(converter.toText(value));
+        }
+
+        /**
+         * Число колоночных данных (без упаковки и поиска конвертера)
+         */
+        void number(double value) {
+            text(valueConverters.doubleToText(value));
+        }
+
+        void number(long value) {
+            text(valueConverters.longToText(value));
+        }
+
+        void text(String text) {
+            if (!first) {
+                buffer.append(delimiter);
+            }
+            first = false;
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+            if (!needsQuotes(text)) {
+                buffer.append(text);
+                return;
+            }
+            buffer.append(quote);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == quote) {
+                    buffer.append(quote);
+                }
+                buffer.append(c);
+            }
+            buffer.append(quote);
+        }
+
+        void end() throws IOException {
+            buffer.append(settings.getLineSeparator());
+            first = true;
+            if (buffer.length() >= settings.getBufferSize()) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            writer.append(buffer);
+            buffer.setLength(0);
+        }
+
+        private boolean needsQuotes(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == delimiter || c == quote || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package voofai.lib.excel.generator;
+
+import lombok.Builder;
+import lombok.Getter;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.output.PackageOutput;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Настройки выгрузки таблицы в CSV/TSV {@link CsvGeneratorImpl}
+ */
+@Getter
+@Builder
+public class CsvSettings {
+    // десятичная точка: запятая локали ru совпала бы с разделителем и число бралось бы в кавычки
+    private static final ValueConverters DEFAULT_CONVERTERS = ValueConverters.builder().locale(Locale.ROOT).build();
+
+    /**
+     * Разделитель значений
+     */
+    @Builder.Default
+    private final char delimiter = ',';
+
+    /**
+     * Кавычка: значения с разделителем, кавычкой или переводом строки берутся в кавычки (кавычка внутри удваивается)
+     */
+    @Builder.Default
+    private final char quote = '"';
+
+    /**
+     * Разделитель строк (RFC 4180 = CRLF)
+     */
+    @Builder.Default
+    private final String lineSeparator = "\r\n";
+
+    /**
+     * Кодировка при записи в OutputStream
+     */
+    @Builder.Default
+    private final Charset charset = StandardCharsets.UTF_8;
+
+    /**
+     * Первая строка = ключи #key# колонок
+     */
+    @Builder.Default
+    private final boolean header = true;
+
+    /**
+     * Размер буфера записи (в символах)
+     */
+    @Builder.Default
+    private final int bufferSize = PackageOutput.DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Преобразование значений в текст (по умолчанию конвертеры Excel с локалью {@link Locale#ROOT}: 1.5, 01.08.2021)
+     */
+    @Builder.Default
+    private final ValueConverters valueConverters = DEFAULT_CONVERTERS;
+
+    public static CsvSettings defaults() {
+        return CsvSettings.builder().build();
+    }
+
+    /**
+     * Значения через табуляцию
+     */
+    public static CsvSettings tsv() {
+        return CsvSettings.builder().delimiter('\t').build();
+    }
+}
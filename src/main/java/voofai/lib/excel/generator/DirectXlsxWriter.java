@@ -0,0 +1,1039 @@
+package voofai.lib.excel.generator;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.SharedFormula;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.TempFile;
+import voofai.lib.convert.ValueConverter;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.excel.dto.ExcelBeanTableData;
+import voofai.lib.excel.dto.ExcelColumnarTableData;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableDataWrapper;
+import voofai.lib.excel.template.CompiledExcelTemplate;
+import voofai.lib.excel.template.ExcelTemplateCompiler;
+import voofai.lib.excel.template.MergedRegion;
+import voofai.lib.excel.template.Placeholder;
+import voofai.lib.excel.template.RangeBlock;
+import voofai.lib.excel.template.SheetTemplate;
+import voofai.lib.excel.template.TableBlock;
+import voofai.lib.excel.template.TemplateNode;
+import voofai.lib.excel.template.TemplateRow;
+import voofai.lib.metrics.GenerationRecorder;
+import voofai.lib.output.OutputSettings;
+import voofai.lib.output.PackageOutput;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Движок {@link voofai.lib.excel.dto.WorkBookType#XLSX_DIRECT}: xml листов шаблона читается через StAX,
+ * блоки #TABLE/#RANGE разворачиваются и параметры подставляются по ходу чтения,
+ * части zip пишутся сразу в выходной поток (первые байты уходят до заполнения листов).
+ * <p>
+ * Книга не строится: значения пишутся inline-строками и числами, стили и общие строки шаблона копируются как есть.
+ * В памяти держатся только строки шаблона текущего листа и merged regions результата.
+ * Ссылки формул в строках вне таблиц переносятся на строки результата (как при shiftRows в XLSX), формулы строк таблиц
+ * копируются как есть. Общие (shared) формулы разворачиваются в обычные: ведущая ячейка при копировании строки
+ * повторилась бы вместе с ref/si.
+ * Не поддерживаются: hyperlinks листа (удаляются, ссылки указывали бы на строки шаблона),
+ * calcChain (удаляется, Excel пересоздает его).
+ * <p>
+ * С пулом листов ({@link ExcelGeneratorSettings#isParallelSheets()}) каждый лист пишется отдельной задачей
+ * в свой временный файл (уже сжатым), затем части собираются в zip по порядку шаблона без повторного сжатия.
+ * Листы не зависят друг от друга: стили и общие строки шаблона одни на книгу и копируются как есть,
+ * значения пишутся inline
+ */
+final class DirectXlsxWriter {
+    private static final String WORKBOOK = "xl/workbook.xml";
+    private static final String WORKBOOK_RELS = "xl/_rels/workbook.xml.rels";
+    private static final String CONTENT_TYPES = "[Content_Types].xml";
+    private static final String CALC_CHAIN = "calcChain.xml";
+    private static final String REL_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    //писатель StAX пишет по нескольку символов, а каждая запись в zip вызывает Deflater
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final XMLInputFactory INPUT_FACTORY = inputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory EVENTS = XMLEventFactory.newInstance();
+
+    private final ValueConverters valueConverters;
+    private final OutputSettings outputSettings;
+    // null = листы пишутся по очереди прямо в выходной поток
+    private final ForkJoinPool sheetPool;
+
+    DirectXlsxWriter(ValueConverters valueConverters, OutputSettings outputSettings, ForkJoinPool sheetPool) {
+        this.valueConverters = valueConverters;
+        this.outputSettings = outputSettings;
+        this.sheetPool = sheetPool;
+    }
+
+    /**
+     * Содержимое шаблона (zip): новый поток с начала файла на каждый вызов
+     */
+    @FunctionalInterface
+    interface Content {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Шаблон для прямой записи: скомпилированные листы и содержимое zip
+     * (zip читается дважды: workbook.xml, затем все части по порядку)
+     */
+    static final class Template {
+        private final List<SheetTemplate> sheets;
+        private final Content content;
+
+        Template(List<SheetTemplate> sheets, Content content) {
+            this.sheets = sheets;
+            this.content = content;
+        }
+
+        static Template of(CompiledExcelTemplate compiled) {
+            return new Template(compiled.getSheets(), compiled::newInputStream);
+        }
+    }
+
+    /**
+     * Генерация xlsx прямо в выходной поток (поток не закрывается)
+     *
+     * @param template     скомпилированные листы и содержимое шаблона
+     * @param dto          данные (замороженные)
+     * @param outputStream куда писать результат
+     * @param recorder     метрики генерации
+     */
+    void write(Template template, ExcelData dto, OutputStream outputStream,
+               GenerationRecorder recorder) throws IOException {
+        List<String> sheetNames = new ArrayList<>();
+        Map<String, SheetTemplate> sheets = sheetParts(template, sheetNames);
+        FormulaBook formulaBook = new FormulaBook(sheetNames);
+        for (SheetTemplate sheet : template.sheets) {
+            //новые листы потребовали бы переписать workbook.xml, его relationships и [Content_Types].xml
+            if (sheet.getSheetName().startsWith(ExcelTemplateCompiler.SHEETS) && dto.findSheets(sheet.getSheetName()).isPresent()) {
+                throw new IllegalStateException("Sheet fan-out " + sheet.getSheetName()
+                        + " is not supported by XLSX_DIRECT, use XLSX_STREAMING");
+            }
+        }
+        if (sheetPool != null && sheets.size() > 1) {
+            writeParallel(template, sheets, sheetNames, dto, outputStream, recorder);
+            return;
+        }
+
+        ZipOutputStream zip = new ZipOutputStream(PackageOutput.buffered(outputStream, outputSettings));
+        zip.setLevel(outputSettings.getCompressionLevel());
+        try (ZipInputStream in = new ZipInputStream(template.content.open())) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (name.endsWith(CALC_CHAIN)) {
+                    continue;
+                }
+
+                zip.putNextEntry(new ZipEntry(name));
+                SheetTemplate sheet = sheets.get(name);
+                if (sheet != null) {
+                    SheetContext context = new SheetContext();
+                    new SheetWriter(dto, context, formulaBook).write(sheet, in, zip);
+                    recorder.count(context.getRowsCopied(), 0, context.getMergedRegions().size(),
+                            context.getPlaceholdersResolved());
+                } else {
+                    copyPart(name, in, zip);
+                }
+                zip.closeEntry();
+            }
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Параллельная запись: xml листов шаблона читается в память, листы пишутся задачами {@link #sheetPool},
+     * остальные части копируются при сборке zip (первые байты уходят после заполнения всех листов).
+     * Ждет окончания всех листов, первая ошибка пробрасывается дальше
+     */
+    private void writeParallel(Template template, Map<String, SheetTemplate> sheets, List<String> sheetNames,
+                               ExcelData dto, OutputStream outputStream, GenerationRecorder recorder) throws IOException {
+        Map<String, byte[]> sheetXml = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(template.content.open())) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (sheets.containsKey(entry.getName())) {
+                    sheetXml.put(entry.getName(), IOUtils.toByteArray(in));
+                }
+            }
+        }
+
+        Map<String, ForkJoinTask<SheetPart>> tasks = new HashMap<>();
+        for (Map.Entry<String, byte[]> xml : sheetXml.entrySet()) {
+            SheetTemplate sheet = sheets.get(xml.getKey());
+            //книга для разбора формул у каждого листа своя: XSSFEvaluationWorkbook кэширует без синхронизации
+            tasks.put(xml.getKey(), sheetPool.submit(() -> writeSheetPart(sheet, xml.getValue(), dto,
+                    new FormulaBook(sheetNames), recorder)));
+        }
+
+        Map<String, SheetPart> parts = new HashMap<>();
+        RuntimeException failure = null;
+        for (Map.Entry<String, ForkJoinTask<SheetPart>> task : tasks.entrySet()) {
+            try {
+                parts.put(task.getKey(), task.getValue().join());
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        try {
+            if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            } else if (failure != null) {
+                throw failure;
+            }
+            assemble(template, parts, outputStream);
+        } finally {
+            for (SheetPart part : parts.values()) {
+                Files.deleteIfExists(part.file);
+            }
+        }
+    }
+
+    /**
+     * Лист, записанный во временный файл: сжатый deflate xml, контрольная сумма и размер до сжатия
+     */
+    private static final class SheetPart {
+        private final Path file;
+        private final long crc;
+        private final long size;
+
+        SheetPart(Path file, long crc, long size) {
+            this.file = file;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Задача пула: лист шаблона с данными пишется во временный файл
+     */
+    private SheetPart writeSheetPart(SheetTemplate sheet, byte[] xml, ExcelData dto, FormulaBook formulaBook,
+                                     GenerationRecorder recorder) {
+        try {
+            Path file = TempFile.createTempFile("poi-direct-sheet", ".deflate").toPath();
+            CRC32 crc = new CRC32();
+            Deflater deflater = new Deflater(outputSettings.getCompressionLevel(), true);
+            try {
+                try (OutputStream out = new CheckedOutputStream(new DeflaterOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE), deflater, BUFFER_SIZE), crc)) {
+                    SheetContext context = new SheetContext();
+                    new SheetWriter(dto, context, formulaBook).write(sheet, new ByteArrayInputStream(xml), out);
+                    recorder.count(context.getRowsCopied(), 0, context.getMergedRegions().size(),
+                            context.getPlaceholdersResolved());
+                }
+                return new SheetPart(file, crc.getValue(), deflater.getBytesRead());
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            } finally {
+                deflater.end();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сборка zip по порядку частей шаблона: листы копируются из временных файлов уже сжатыми
+     */
+    private void assemble(Template template, Map<String, SheetPart> parts, OutputStream outputStream) throws IOException {
+        OutputStream buffered = PackageOutput.buffered(outputStream, outputSettings);
+        ZipArchiveOutputStream zip = PackageOutput.withLevel(new ZipArchiveOutputStream(buffered), outputSettings);
+        try (ZipInputStream in = new ZipInputStream(template.content.open())) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (name.endsWith(CALC_CHAIN)) {
+                    continue;
+                }
+
+                SheetPart part = parts.get(name);
+                if (part != null) {
+                    ZipArchiveEntry raw = new ZipArchiveEntry(name);
+                    raw.setMethod(ZipEntry.DEFLATED);
+                    raw.setCrc(part.crc);
+                    raw.setSize(part.size);
+                    raw.setCompressedSize(Files.size(part.file));
+                    try (InputStream deflated = new BufferedInputStream(Files.newInputStream(part.file), BUFFER_SIZE)) {
+                        zip.addRawArchiveEntry(raw, deflated);
+                    }
+                } else {
+                    zip.putArchiveEntry(new ZipArchiveEntry(name));
+                    copyPart(name, in, zip);
+                    zip.closeArchiveEntry();
+                }
+            }
+        }
+        zip.finish();
+        buffered.flush();
+    }
+
+    /**
+     * Копирование части шаблона, которая не является листом (ссылки на calcChain удаляются)
+     */
+    private void copyPart(String name, InputStream in, OutputStream out) throws IOException {
+        if (CONTENT_TYPES.equals(name)) {
+            copyXml(in, out, e -> "Override".equals(e.getName().getLocalPart())
+                    && attribute(e, "PartName").endsWith(CALC_CHAIN));
+        } else if (WORKBOOK_RELS.equals(name)) {
+            copyXml(in, out, e -> "Relationship".equals(e.getName().getLocalPart())
+                    && attribute(e, "Target").endsWith(CALC_CHAIN));
+        } else {
+            IOUtils.copy(in, out);
+        }
+    }
+
+    /**
+     * Имена частей zip с xml листов -> шаблон листа (по workbook.xml и его relationships)
+     *
+     * @param template   скомпилированные листы и содержимое шаблона
+     * @param sheetNames сюда добавляются названия всех листов книги по порядку
+     */
+    private Map<String, SheetTemplate> sheetParts(Template template, List<String> sheetNames) throws IOException {
+        List<String> sheetIds = new ArrayList<>();
+        Map<String, String> targets = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(template.content.open())) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (WORKBOOK.equals(entry.getName())) {
+                    readXml(in, e -> {
+                        if ("sheet".equals(e.getName().getLocalPart())) {
+                            Attribute id = e.getAttributeByName(new QName(REL_NS, "id"));
+                            sheetIds.add(id != null ? id.getValue() : null);
+                            sheetNames.add(attribute(e, "name"));
+                        }
+                    });
+                } else if (WORKBOOK_RELS.equals(entry.getName())) {
+                    readXml(in, e -> {
+                        if ("Relationship".equals(e.getName().getLocalPart())) {
+                            String target = attribute(e, "Target");
+                            targets.put(attribute(e, "Id"), target.startsWith("/") ? target.substring(1) : "xl/" + target);
+                        }
+                    });
+                }
+            }
+        }
+
+        Map<String, SheetTemplate> sheets = new HashMap<>();
+        for (SheetTemplate sheet : template.sheets) {
+            String part = sheet.getSheetIndex() < sheetIds.size() ? targets.get(sheetIds.get(sheet.getSheetIndex())) : null;
+            if (part == null) {
+                throw new IOException("Sheet " + sheet.getSheetName() + " not found in " + WORKBOOK);
+            }
+            sheets.put(part, sheet);
+        }
+        return sheets;
+    }
+
+    /**
+     * Копирование xml без элементов, подходящих под skip (вместе с содержимым)
+     */
+    private void copyXml(InputStream in, OutputStream out, Predicate<StartElement> skip) throws IOException {
+        try {
+            XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(new NonClosingInputStream(in));
+            XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(new BufferedWriter(
+                    new OutputStreamWriter(new NonClosingOutputStream(out), StandardCharsets.UTF_8), BUFFER_SIZE));
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement() && skip.test(event.asStartElement())) {
+                    skipElement(reader);
+                } else {
+                    writer.add(event);
+                }
+            }
+            writer.flush();
+            writer.close();
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid template xml", e);
+        }
+    }
+
+    private void readXml(InputStream in, StartElementHandler handler) throws IOException {
+        try {
+            XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(new NonClosingInputStream(in));
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    handler.accept(event.asStartElement());
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid template xml", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StartElementHandler {
+        void accept(StartElement element);
+    }
+
+    /**
+     * Пропуск содержимого элемента, начало которого уже прочитано
+     */
+    private static void skipElement(XMLEventReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+        }
+    }
+
+    private static String attribute(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute != null ? attribute.getValue() : "";
+    }
+
+    private static XMLInputFactory inputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Парсер StAX закрывает поток в конце документа, а это поток текущей части zip
+     */
+    private static final class NonClosingInputStream extends FilterInputStream {
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            //поток zip закрывается вызывающим кодом
+        }
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Строка шаблона: начало элемента row и ячейки
+     */
+    private static final class RowXml {
+        private final StartElement start;
+        private final List<CellXml> cells = new ArrayList<>();
+
+        RowXml(StartElement start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * Ячейка шаблона: номер колонки, начало элемента c и его содержимое (v, f, is)
+     */
+    private static final class CellXml {
+        private final int column;
+        private final StartElement start;
+        private final List<XMLEvent> content = new ArrayList<>();
+        //текст обычной формулы (null = нет формулы или формула массива)
+        private String formula;
+        //общая (shared) формула: элемент f не копируется, formula - ее текст для этой ячейки (null = не разобрана)
+        private boolean shared;
+        //si общей формулы (для ведомых ячеек текст известен только после чтения ведущей)
+        private String sharedIndex;
+
+        CellXml(int column, StartElement start) {
+            this.column = column;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Значения ячеек-параметров одной строки данных
+     */
+    @FunctionalInterface
+    private interface RowValues {
+
+        /**
+         * @param template строка шаблона
+         * @param index    номер placeholder в строке шаблона
+         * @return значение (null = пустая строка)
+         */
+        Object get(TemplateRow template, int index);
+    }
+
+    private static RowValues mapValues(Map<String, Object> map) {
+        return (template, index) -> map.get(template.getPlaceholders().get(index).getKey());
+    }
+
+    /**
+     * Значения из {@link ExcelColumnarTableData} (колонки для строки шаблона находятся один раз)
+     */
+    private static final class ColumnarValues implements RowValues {
+        private final ExcelColumnarTableData data;
+        private final Map<TemplateRow, int[]> slots = new IdentityHashMap<>();
+        private int rowIndex;
+
+        ColumnarValues(ExcelColumnarTableData data) {
+            this.data = data;
+        }
+
+        @Override
+        public Object get(TemplateRow template, int index) {
+            int column = slots.computeIfAbsent(template, row -> row.getPlaceholders().stream()
+                    .mapToInt(placeholder -> data.getColumnIndex(placeholder.getKey()))
+                    .toArray())[index];
+            if (column < 0 || data.isNull(column, rowIndex)) {
+                return null;
+            }
+            switch (data.getColumnType(column)) {
+                case DOUBLE:
+                    return data.getDouble(column, rowIndex);
+                case LONG:
+                    return data.getLong(column, rowIndex);
+                default:
+                    return data.getString(column, rowIndex);
+            }
+        }
+    }
+
+    /**
+     * Значения из объектов (accessors для строки шаблона находятся один раз)
+     */
+    private static final class BeanValues implements RowValues {
+        private final Class<?> beanType;
+        private final Map<TemplateRow, List<Function<Object, Object>>> slots = new IdentityHashMap<>();
+        private Object bean;
+
+        BeanValues(Class<?> beanType) {
+            this.beanType = beanType;
+        }
+
+        @Override
+        public Object get(TemplateRow template, int index) {
+            List<Function<Object, Object>> accessors = slots.computeIfAbsent(template, row -> {
+                List<Function<Object, Object>> list = new ArrayList<>();
+                for (Placeholder placeholder : row.getPlaceholders()) {
+                    list.add(BeanAccessors.accessor(beanType, placeholder.getKey()));
+                }
+                return list;
+            });
+            return bean == null ? null : accessors.get(index).apply(bean);
+        }
+    }
+
+    /**
+     * Запись одного листа: строки шаблона читаются в память, sheetData результата пишется по одной строке
+     */
+    private final class SheetWriter {
+        private final ExcelData dto;
+        private final SheetContext context;
+        private final FormulaBook formulaBook;
+        private final Map<Integer, RowXml> rows = new HashMap<>();
+        private XMLEventWriter writer;
+        private String sheetName;
+        private int rowNum;
+
+        SheetWriter(ExcelData dto, SheetContext context, FormulaBook formulaBook) {
+            this.dto = dto;
+            this.context = context;
+            this.formulaBook = formulaBook;
+        }
+
+        void write(SheetTemplate sheet, InputStream in, OutputStream out) throws IOException {
+            sheetName = sheet.getSheetName();
+            try {
+                XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(new NonClosingInputStream(in));
+                writer = OUTPUT_FACTORY.createXMLEventWriter(new BufferedWriter(
+                        new OutputStreamWriter(new NonClosingOutputStream(out), StandardCharsets.UTF_8), BUFFER_SIZE));
+                while (reader.hasNext()) {
+                    XMLEvent event = reader.nextEvent();
+                    if (!event.isStartElement()) {
+                        writer.add(event);
+                        continue;
+                    }
+
+                    String name = event.asStartElement().getName().getLocalPart();
+                    if ("dimension".equals(name) || "hyperlinks".equals(name)) {
+                        //размер листа и ссылки относятся к строкам шаблона
+                        skipElement(reader);
+                    } else if ("mergeCells".equals(name)) {
+                        skipElement(reader);
+                        writeMergedRegions(event.asStartElement().getName());
+                    } else if ("sheetData".equals(name)) {
+                        writer.add(event);
+                        readRows(reader, sheet.getSheetIndex());
+                        List<TemplateNode> nodes = sheet.getNodes();
+                        rowNum = nodes.isEmpty() ? 0 : nodes.get(0).getFirstRow();
+                        writeSheetNodes(sheet, nodes);
+                    } else {
+                        writer.add(event);
+                    }
+                }
+                writer.flush();
+                writer.close();
+                reader.close();
+            } catch (XMLStreamException e) {
+                throw new IOException("Invalid template sheet " + sheet.getSheetName(), e);
+            }
+        }
+
+        /**
+         * Чтение строк шаблона до конца sheetData (конец sheetData остается в reader и пишется основным циклом)
+         */
+        private void readRows(XMLEventReader reader, int sheetIndex) throws XMLStreamException {
+            //si -> [текст, область ref] ведущих ячеек общих формул
+            Map<String, String[]> sharedFormulas = new HashMap<>();
+            List<int[]> sharedCells = new ArrayList<>();
+            int lastRow = -1;
+            while (!reader.peek().isEndElement()) {
+                XMLEvent event = reader.nextEvent();
+                if (!event.isStartElement()) {
+                    continue;
+                }
+                StartElement rowStart = event.asStartElement();
+                String ref = attribute(rowStart, "r");
+                lastRow = ref.isEmpty() ? lastRow + 1 : Integer.parseInt(ref) - 1;
+                RowXml row = new RowXml(rowStart);
+                rows.put(lastRow, row);
+
+                //ячейки строки
+                int lastColumn = -1;
+                while (!reader.peek().isEndElement()) {
+                    XMLEvent cellEvent = reader.nextEvent();
+                    if (!cellEvent.isStartElement()) {
+                        continue;
+                    }
+                    String cellRef = attribute(cellEvent.asStartElement(), "r");
+                    lastColumn = cellRef.isEmpty() ? lastColumn + 1 : new CellReference(cellRef).getCol();
+                    CellXml cell = new CellXml(lastColumn, cellEvent.asStartElement());
+                    int depth = 1;
+                    StringBuilder formula = null;
+                    String sharedRef = null;
+                    while (true) {
+                        XMLEvent content = reader.nextEvent();
+                        depth += content.isStartElement() ? 1 : content.isEndElement() ? -1 : 0;
+                        if (depth == 0) {
+                            break;
+                        }
+                        if (content.isStartElement() && "f".equals(content.asStartElement().getName().getLocalPart())) {
+                            String type = attribute(content.asStartElement(), "t");
+                            if ("shared".equals(type)) {
+                                cell.shared = true;
+                                cell.sharedIndex = attribute(content.asStartElement(), "si");
+                                sharedRef = attribute(content.asStartElement(), "ref");
+                            }
+                            formula = type.isEmpty() || cell.shared ? new StringBuilder() : null;
+                        } else if (content.isEndElement() && "f".equals(content.asEndElement().getName().getLocalPart())
+                                && formula != null) {
+                            if (!cell.shared) {
+                                cell.formula = formula.toString();
+                            } else if (!sharedRef.isEmpty() && formula.length() > 0) {
+                                sharedFormulas.put(cell.sharedIndex, new String[]{formula.toString(), sharedRef});
+                            }
+                            formula = null;
+                            if (cell.shared) {
+                                continue;
+                            }
+                        } else if (content.isCharacters() && formula != null) {
+                            formula.append(content.asCharacters().getData());
+                        }
+                        if (!cell.shared || formula == null) {
+                            cell.content.add(content);
+                        }
+                    }
+                    if (cell.shared) {
+                        sharedCells.add(new int[]{lastRow, row.cells.size()});
+                    }
+                    row.cells.add(cell);
+                }
+                reader.nextEvent();
+            }
+
+            for (int[] sharedCell : sharedCells) {
+                CellXml cell = rows.get(sharedCell[0]).cells.get(sharedCell[1]);
+                String[] master = sharedFormulas.get(cell.sharedIndex);
+                if (master != null) {
+                    cell.formula = expandSharedFormula(master[0], CellRangeAddress.valueOf(master[1]), sheetIndex,
+                            sharedCell[0], cell.column);
+                }
+            }
+        }
+
+        /**
+         * Текст общей формулы для ячейки (row, column): ссылки формулы ведущей ячейки сдвигаются, как в XSSFCell
+         *
+         * @return текст формулы или null, если формула не разбирается (например, ссылается на имена книги),
+         * тогда ячейка копируется без формулы с кэшированным значением
+         */
+        private String expandSharedFormula(String formula, CellRangeAddress ref, int sheetIndex, int row, int column) {
+            if (row == ref.getFirstRow() && column == ref.getFirstColumn()) {
+                return formula;
+            }
+            try {
+                Ptg[] ptgs = FormulaParser.parse(formula, formulaBook.get(), FormulaType.CELL, sheetIndex, ref.getFirstRow());
+                Ptg[] moved = new SharedFormula(SpreadsheetVersion.EXCEL2007)
+                        .convertSharedFormulas(ptgs, row - ref.getFirstRow(), column - ref.getFirstColumn());
+                return FormulaRenderer.toFormulaString(formulaBook.get(), moved);
+            } catch (FormulaParseException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Запись элементов верхнего уровня листа: высота записанных блоков запоминается для переноса ссылок формул
+         * в следующих строках (map строк нужен только если вне таблиц есть формулы)
+         */
+        private void writeSheetNodes(SheetTemplate sheet, List<TemplateNode> nodes) throws XMLStreamException {
+            RowValues values = mapValues(dto.getParams());
+            TemplateRowMap rowMap = hasFormulas(nodes)
+                    ? new TemplateRowMap(nodes, dto, formulaBook, sheet.getSheetIndex(), sheet.getSheetName(),
+                            SpreadsheetVersion.EXCEL2007.getMaxRows())
+                    : null;
+            for (int i = 0; i < nodes.size(); i++) {
+                TemplateNode node = nodes.get(i);
+                if (node instanceof TemplateRow) {
+                    writeRow((TemplateRow) node, values, rowMap);
+                    continue;
+                }
+                int start = rowNum;
+                writeNodes(Collections.singletonList(node), values);
+                if (rowMap != null) {
+                    rowMap.setHeight(i, rowNum - start);
+                }
+            }
+        }
+
+        private boolean hasFormulas(List<TemplateNode> nodes) {
+            for (TemplateNode node : nodes) {
+                RowXml row = node instanceof TemplateRow ? rows.get(node.getFirstRow()) : null;
+                if (row != null && row.cells.stream().anyMatch(cell -> cell.formula != null)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void writeNodes(List<TemplateNode> nodes, RowValues values) throws XMLStreamException {
+            for (TemplateNode node : nodes) {
+                if (node instanceof TemplateRow) {
+                    writeRow((TemplateRow) node, values, null);
+                } else if (node instanceof RangeBlock) {
+                    writeRange((RangeBlock) node);
+                } else {
+                    writeTable((TableBlock) node);
+                }
+            }
+        }
+
+        private void writeTable(TableBlock table) throws XMLStreamException {
+            if (table.getBody().isEmpty()) {
+                return;
+            }
+
+            List<Map<String, Object>> childRows = context.getChildRows().get(table.getName());
+            if (childRows != null) {
+                Iterator<Map<String, Object>> tableRows = ChildBatchIterator.wrap(childRows.iterator(), table.getBody(), dto, context);
+                while (tableRows.hasNext()) {
+                    writeNodes(table.getBody(), mapValues(tableRows.next()));
+                }
+                return;
+            }
+
+            Optional<ExcelSimpleTableData> data = dto.findSimpleTable(table.getName());
+            if (data.isPresent()) {
+                Iterator<Map<String, Object>> tableRows = ChildBatchIterator.wrap(data.get().rows(), table.getBody(), dto, context);
+                while (tableRows.hasNext()) {
+                    writeNodes(table.getBody(), mapValues(tableRows.next()));
+                }
+                return;
+            }
+
+            Optional<ExcelColumnarTableData> columnar = dto.findColumnarTable(table.getName());
+            if (columnar.isPresent()) {
+                ColumnarValues values = new ColumnarValues(columnar.get());
+                for (int i = 0; i < columnar.get().getRowCount(); i++) {
+                    values.rowIndex = i;
+                    writeNodes(table.getBody(), values);
+                }
+                return;
+            }
+
+            Optional<ExcelBeanTableData<?>> beans = dto.findBeanTable(table.getName());
+            if (beans.isPresent()) {
+                BeanValues values = new BeanValues(beans.get().getBeanType());
+                Iterator<?> tableRows = beans.get().rows();
+                while (tableRows.hasNext()) {
+                    values.bean = tableRows.next();
+                    writeNodes(table.getBody(), values);
+                }
+            }
+        }
+
+        private void writeRange(RangeBlock range) throws XMLStreamException {
+            if (range.getName().startsWith(ExcelTemplateCompiler.RANGE_LIST)) {
+                for (ExcelTemplateTableDataWrapper dataItem : dto.findExtendedTables(ExcelTemplateCompiler.RANGE_LIST)) {
+                    fillRange(range, dataItem.getTableName());
+                }
+            } else {
+                fillRange(range, range.getName());
+            }
+        }
+
+        private void fillRange(RangeBlock template, String mapKey) throws XMLStreamException {
+            Optional<LinkedList<ExcelTemplateTableData>> tables = dto.findExtendedTable(mapKey)
+                    .map(ExcelTemplateTableDataWrapper::getTableRowsData);
+            if (template.getBody().isEmpty() || !tables.isPresent()) {
+                return;
+            }
+
+            for (ExcelTemplateTableData dataItem : tables.get()) {
+                RangeAggregator aggregator = template.getAggregates().isEmpty()
+                        ? null
+                        : new RangeAggregator(template.getAggregates(), valueConverters);
+                if (!dataItem.getHeader().isEmpty() && !template.getHeader().isEmpty()) {
+                    writeNodes(template.getHeader(), mapValues(dataItem.getHeader()));
+                }
+                Iterator<Map<String, Object>> bodyRows = ChildBatchIterator.wrap(dataItem.bodyRows(), template.getBody(), dto, context);
+                while (bodyRows.hasNext()) {
+                    Map<String, Object> bodyRow = bodyRows.next();
+                    if (aggregator != null) {
+                        aggregator.accept(bodyRow);
+                    }
+                    writeNodes(template.getBody(), mapValues(bodyRow));
+                }
+                for (Map<String, Object> map : RangeAggregator.bodyFooterRows(template, dataItem)) {
+                    writeNodes(template.getBodyFooter(), mapValues(aggregator != null ? aggregator.withTotals(map) : map));
+                }
+                if ((!dataItem.getFooter().isEmpty() || template.isFooterAggregated()) && !template.getFooter().isEmpty()) {
+                    writeNodes(template.getFooter(),
+                            mapValues(aggregator != null ? aggregator.withTotals(dataItem.getFooter()) : dataItem.getFooter()));
+                }
+            }
+        }
+
+        /**
+         * Копия строки шаблона с номером rowNum и значениями параметров
+         *
+         * @param rowMap перенос ссылок формул строки (null = формулы копируются как есть)
+         */
+        private void writeRow(TemplateRow template, RowValues values, TemplateRowMap rowMap) throws XMLStreamException {
+            int destinationRowNum = rowNum++;
+            //строки за пределом листа эксель не откроет
+            if (destinationRowNum > SpreadsheetVersion.EXCEL2007.getLastRowIndex()) {
+                throw new IllegalStateException("Sheet " + sheetName + " is full: row " + (destinationRowNum + 1) + " exceeds "
+                        + SpreadsheetVersion.EXCEL2007.getMaxRows() + " rows, enable sheetSharding for XLSX_STREAMING");
+            }
+            RowXml row = rows.get(template.getRowNum());
+            if (row == null) {
+                return;
+            }
+
+            writer.add(withAttributes(row.start, Collections.singletonMap("r", String.valueOf(destinationRowNum + 1)),
+                    "spans"));
+            List<Placeholder> placeholders = template.getPlaceholders();
+            for (CellXml cell : row.cells) {
+                String ref = CellReference.convertNumToColString(cell.column) + (destinationRowNum + 1);
+                int index = placeholderIndex(placeholders, cell.column);
+                String formula = cell.formula == null ? null : rowMap != null ? rowMap.moveReferences(cell.formula) : cell.formula;
+                if (index < 0 && formula != null && (cell.shared || !formula.equals(cell.formula))) {
+                    //кэшированное значение относилось к старым ссылкам или ячейкам, Excel пересчитает формулу
+                    writer.add(withAttributes(cell.start, Collections.singletonMap("r", ref), "t"));
+                    QName name = cell.start.getName();
+                    writeElement(new QName(name.getNamespaceURI(), "f", name.getPrefix()), null, formula);
+                    writer.add(EVENTS.createEndElement(name, null));
+                } else if (index < 0) {
+                    writer.add(withAttributes(cell.start, Collections.singletonMap("r", ref)));
+                    for (XMLEvent event : cell.content) {
+                        writer.add(event);
+                    }
+                    writer.add(EVENTS.createEndElement(cell.start.getName(), null));
+                } else {
+                    writeValue(cell.start, ref, values.get(template, index));
+                }
+            }
+            writer.add(EVENTS.createEndElement(row.start.getName(), null));
+
+            context.rowCopied();
+            context.placeholdersResolved(placeholders.size());
+            for (MergedRegion merged : template.getMergedRegions()) {
+                context.getMergedRegions().add(merged.at(destinationRowNum));
+            }
+        }
+
+        /**
+         * Ячейка-параметр: число или inline-строка (стиль ячейки шаблона сохраняется)
+         */
+        private void writeValue(StartElement cell, String ref, Object value) throws XMLStreamException {
+            QName name = cell.getName();
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put("r", ref);
+
+            ValueConverter<Object> converter = value == null ? null : valueConverters.find(value.getClass());
+            if (converter != null && converter.isNumeric(value)) {
+                double number = converter.toNumber(value);
+                boolean finite = !Double.isNaN(number) && !Double.isInfinite(number);
+                if (!finite) {
+                    attributes.put("t", "e");
+                }
+                writer.add(withAttributes(cell, attributes, "t"));
+                writeElement(new QName(name.getNamespaceURI(), "v", name.getPrefix()), null,
+                        finite ? number(number) : "#NUM!");
+            } else {
+                attributes.put("t", "inlineStr");
+                writer.add(withAttributes(cell, attributes, "t"));
+                QName is = new QName(name.getNamespaceURI(), "is", name.getPrefix());
+                writer.add(EVENTS.createStartElement(is, null, null));
+                writeElement(new QName(name.getNamespaceURI(), "t", name.getPrefix()),
+                        EVENTS.createAttribute(new QName(XMLConstants.XML_NS_URI, "space", "xml"), "preserve"),
+                        converter == null ? "" : converter.toText(value));
+                writer.add(EVENTS.createEndElement(is, null));
+            }
+            writer.add(EVENTS.createEndElement(name, null));
+        }
+
+        private void writeElement(QName name, Attribute attribute, String text) throws XMLStreamException {
+            writer.add(EVENTS.createStartElement(name,
+                    attribute == null ? null : Collections.singletonList(attribute).iterator(), null));
+            writer.add(EVENTS.createCharacters(text));
+            writer.add(EVENTS.createEndElement(name, null));
+        }
+
+        private void writeMergedRegions(QName name) throws XMLStreamException {
+            List<CellRangeAddress> mergedRegions = context.getMergedRegions();
+            if (mergedRegions.isEmpty()) {
+                return;
+            }
+            writer.add(EVENTS.createStartElement(name, Collections.singletonList(
+                    EVENTS.createAttribute("count", String.valueOf(mergedRegions.size()))).iterator(), null));
+            QName mergeCell = new QName(name.getNamespaceURI(), "mergeCell", name.getPrefix());
+            for (CellRangeAddress merged : mergedRegions) {
+                writer.add(EVENTS.createStartElement(mergeCell, Collections.singletonList(
+                        EVENTS.createAttribute("ref", merged.formatAsString())).iterator(), null));
+                writer.add(EVENTS.createEndElement(mergeCell, null));
+            }
+            writer.add(EVENTS.createEndElement(name, null));
+        }
+    }
+
+    private static int placeholderIndex(List<Placeholder> placeholders, int column) {
+        for (int i = 0; i < placeholders.size(); i++) {
+            if (placeholders.get(i).getColumn() == column) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Начало элемента с замененными атрибутами (и без атрибутов removed)
+     */
+    @SuppressWarnings("unchecked")
+    private static StartElement withAttributes(StartElement element, Map<String, String> replaced, String... removed) {
+        List<Attribute> attributes = new ArrayList<>();
+        Iterator<Attribute> iterator = element.getAttributes();
+        while (iterator.hasNext()) {
+            Attribute attribute = iterator.next();
+            String name = attribute.getName().getLocalPart();
+            boolean skip = attribute.getName().getNamespaceURI().isEmpty()
+                    && (replaced.containsKey(name) || contains(removed, name));
+            if (!skip) {
+                attributes.add(attribute);
+            }
+        }
+        replaced.forEach((name, value) -> attributes.add(EVENTS.createAttribute(name, value)));
+        return EVENTS.createStartElement(element.getName(), attributes.iterator(), element.getNamespaces());
+    }
+
+    private static boolean contains(String[] values, String value) {
+        for (String item : values) {
+            if (item.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Число без лишнего ".0" для целых значений
+     */
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+}
@@ -1,12 +1,24 @@
 package voofai.lib.excel.generator;
 
 import org.apache.poi.ss.usermodel.Workbook;
+import voofai.lib.batch.BatchItem;
+import voofai.lib.batch.BatchResult;
+import voofai.lib.batch.BatchRunner;
+import voofai.lib.batch.BatchSettings;
 import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSheetsData;
 import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.excel.template.CompiledExcelTemplate;
+import voofai.lib.excel.template.WorkbookPool;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.stream.Stream;
 
 /**
  * Read template file as Workbook and fill cells with required data
@@ -29,6 +41,52 @@ public interface ExcelGenerator {
                           InputStream templateFile,
                           OutputStream outputStream) throws IOException;
 
+    /**
+     * Open excel template file in place and fill with data from dto.
+     * Template is read with random access (only needed parts are loaded, images and other
+     * binary parts are copied from file to output stream), the file itself is not modified
+     *
+     * @param workBookType .xls vs .xlsx file format
+     * @param dto          data to fill template with
+     * @param templateFile excel template to make copy and fill with data
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to open template file
+     */
+    void createByTemplate(WorkBookType workBookType,
+                          ExcelData dto,
+                          Path templateFile,
+                          OutputStream outputStream) throws IOException;
+
+    /**
+     * Open excel template file in place and fill with data from dto
+     * (see {@link #createByTemplate(WorkBookType, ExcelData, Path, OutputStream)})
+     *
+     * @param workBookType .xls vs .xlsx file format
+     * @param dto          data to fill template with
+     * @param templateFile excel template to make copy and fill with data
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to open template file
+     */
+    void createByTemplate(WorkBookType workBookType,
+                          ExcelData dto,
+                          File templateFile,
+                          OutputStream outputStream) throws IOException;
+
+    /**
+     * Read excel template through memory mapping of the channel and fill with data from dto.
+     * Template content is not copied into heap (XLS is read by POIFS straight from the channel)
+     *
+     * @param workBookType .xls vs .xlsx file format
+     * @param dto          data to fill template with
+     * @param templateFile channel of excel template, read from its start (closed after generation)
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to read template
+     */
+    void createByTemplate(WorkBookType workBookType,
+                          ExcelData dto,
+                          FileChannel templateFile,
+                          OutputStream outputStream) throws IOException;
+
     /**
      * Read excell template file and fill with data from dto
      *
@@ -52,4 +110,99 @@ public interface ExcelGenerator {
      */
     Workbook createWorkbookByTemplate(WorkBookType workBookType, ExcelData dto, byte[] templateFile)
             throws IOException;
+
+    /**
+     * Fill already compiled excel template with data from dto
+     * (template markers are not parsed again, see {@link CompiledExcelTemplate})
+     *
+     * @param template     compiled excel template to make copy and fill with data
+     * @param dto          data to fill template with
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to parse template into Workbook
+     */
+    void createByTemplate(CompiledExcelTemplate template, ExcelData dto, OutputStream outputStream) throws IOException;
+
+    /**
+     * Fill already compiled excel template with data from dto
+     * (template markers are not parsed again, see {@link CompiledExcelTemplate})
+     *
+     * @param template compiled excel template to make copy and fill with data
+     * @param dto      data to fill template with
+     * @return Workbook
+     * @throws IOException exception while trying to parse template into Workbook
+     */
+    Workbook createWorkbookByTemplate(CompiledExcelTemplate template, ExcelData dto) throws IOException;
+
+    /**
+     * Fill workbook taken from pool of parsed templates with data from dto
+     * (template is neither parsed nor compiled again, see {@link WorkbookPool})
+     *
+     * @param template     pool of parsed copies of compiled excel template
+     * @param dto          data to fill template with
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to parse template into Workbook (pool is empty)
+     */
+    void createByTemplate(WorkbookPool template, ExcelData dto, OutputStream outputStream) throws IOException;
+
+    /**
+     * Fill workbook taken from pool of parsed templates with data from dto
+     * (template is neither parsed nor compiled again, see {@link WorkbookPool})
+     *
+     * @param template pool of parsed copies of compiled excel template
+     * @param dto      data to fill template with
+     * @return Workbook
+     * @throws IOException exception while trying to parse template into Workbook (pool is empty)
+     */
+    Workbook createWorkbookByTemplate(WorkbookPool template, ExcelData dto) throws IOException;
+
+    /**
+     * Fan-out of template sheets: every sheet named {@code #SHEETS...} which has {@link ExcelSheetsData}
+     * is copied once per item and filled with the item data, other sheets are filled with dto
+     * (template is compiled once, each copy is filled directly from the compiled sheet)
+     *
+     * @param template     compiled excel template (XLSX_DIRECT does not support fan-out)
+     * @param dto          data of the other sheets
+     * @param sheets       sheet names and data of every template sheet to fan out
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to parse template into Workbook
+     */
+    default void createByTemplate(CompiledExcelTemplate template, ExcelData dto, Collection<ExcelSheetsData> sheets,
+                                  OutputStream outputStream) throws IOException {
+        createByTemplate(template, dto.withSheets(sheets), outputStream);
+    }
+
+    /**
+     * Fill one compiled template with data of every item and write results to items outputs.
+     * At most {@link BatchSettings#getMaxInFlight()} workbooks are rendered (and kept in memory) at once,
+     * failed items are reported in result and do not abort the batch.
+     * Template markers are compiled once for the whole batch, but POI has no cheap deep copy of a parsed workbook,
+     * so every item parses its own workbook from the template bytes ({@link CompiledExcelTemplate#newWorkbook()},
+     * XLSX_DIRECT streams the template without parsing it)
+     *
+     * @param template compiled excel template
+     * @param items    data and output of every workbook
+     * @param settings concurrency settings
+     * @return rendered items count and failures
+     */
+    default BatchResult createByTemplate(CompiledExcelTemplate template, Stream<BatchItem<ExcelData>> items,
+                                         BatchSettings settings) {
+        return BatchRunner.run(items, settings, (dto, outputStream) -> createByTemplate(template, dto, outputStream));
+    }
+
+    /**
+     * Fill template with data of every item and write results to items outputs
+     * (template is compiled once, see {@link #createByTemplate(CompiledExcelTemplate, Stream, BatchSettings)})
+     *
+     * @param workBookType .xls vs .xlsx file format
+     * @param templateFile excel template to make copies and fill with data
+     * @param items        data and output of every workbook
+     * @param settings     concurrency settings
+     * @return rendered items count and failures
+     * @throws IOException exception while trying to parse template into Workbook
+     */
+    default BatchResult createByTemplate(WorkBookType workBookType, InputStream templateFile,
+                                         Stream<BatchItem<ExcelData>> items, BatchSettings settings)
+            throws IOException {
+        return createByTemplate(CompiledExcelTemplate.compile(workBookType, templateFile), items, settings);
+    }
 }
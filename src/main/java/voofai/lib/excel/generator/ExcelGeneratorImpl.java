@@ -1,35 +1,64 @@
 package voofai.lib.excel.generator;
 
-import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.PaneInformation;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFHyperlink;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+import voofai.lib.convert.ValueConverter;
 import voofai.lib.excel.dto.*;
+import voofai.lib.excel.template.*;
+import voofai.lib.input.MappedInput;
+import voofai.lib.metrics.GenerationPhase;
+import voofai.lib.metrics.GenerationRecorder;
+import voofai.lib.output.PackageOutput;
 
 import javax.validation.constraints.NotNull;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.math.BigDecimal;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.text.SimpleDateFormat;
-import java.time.LocalDate;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 public class ExcelGeneratorImpl implements ExcelGenerator {
 
     //template special symbols
-    protected static final String TABLE = "#TABLE";
-    protected static final String RANGE = "#RANGE";
-    protected static final String RANGE_LIST = "#RANGELIST";
-    protected static final String BODY = "#Body";
-    protected static final String FOOTER = "#Footer";
-    protected static final String BODY_FOOTER = "#BodyFooter";
+    protected static final String TABLE = ExcelTemplateCompiler.TABLE;
+    protected static final String RANGE = ExcelTemplateCompiler.RANGE;
+    protected static final String RANGE_LIST = ExcelTemplateCompiler.RANGE_LIST;
+    protected static final String SHEETS = ExcelTemplateCompiler.SHEETS;
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+    private static final String SHARD = "#SHARD ";
+    private static final String COPY = "#COPY ";
+    // минимальное расширение места под блок, если строк больше, чем удалось измерить заранее
+    private static final int MIN_RESERVED_ROWS = 64;
+    protected static final String BODY = ExcelTemplateCompiler.BODY;
+    protected static final String FOOTER = ExcelTemplateCompiler.FOOTER;
+    protected static final String BODY_FOOTER = ExcelTemplateCompiler.BODY_FOOTER;
     protected static final String PAGE_BREAKER = "$PageBreaker$";
     protected static final String PAGE_NUM = "$pageNum$";
 
@@ -37,30 +66,202 @@ public class ExcelGeneratorImpl implements ExcelGenerator {
     protected static final String dateTimePattern = "dd.MM.yyyy";
     protected static final DateTimeFormatter localDateFormat = DateTimeFormatter.ofPattern(dateTimePattern);
 
+    private final ExcelGeneratorSettings settings;
+    private final DirectXlsxWriter directWriter;
+
+    public ExcelGeneratorImpl() {
+        this(ExcelGeneratorSettings.defaults());
+    }
+
+    public ExcelGeneratorImpl(ExcelGeneratorSettings settings) {
+        this.settings = settings;
+        this.directWriter = new DirectXlsxWriter(settings.getValueConverters(), settings.getOutputSettings(),
+                settings.isParallelSheets() ? settings.getSheetPool() : null);
+    }
+
     @Override
     public Workbook createWorkbookByTemplate(WorkBookType workBookType, ExcelData dto,
                                              InputStream templateFile) throws IOException {
-        Workbook workbook = parseTemplateIntoWorkBook(workBookType, templateFile);
-        return fillWorkbookWithData(dto, workbook);
+        return generate(workBookType, dto, () -> parseTemplateIntoWorkBook(workBookType, templateFile), null, null);
     }
 
     @Override
     public Workbook createWorkbookByTemplate(WorkBookType workBookType, ExcelData dto,
                                              byte[] templateFile) throws IOException {
         try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(templateFile)) {
-            Workbook workbook = parseTemplateIntoWorkBook(workBookType, inputStream);
-            return fillWorkbookWithData(dto, workbook);
+            return generate(workBookType, dto, () -> parseTemplateIntoWorkBook(workBookType, inputStream), null, null);
         }
     }
 
     @Override
     public void createByTemplate(WorkBookType workBookType, ExcelData dto,
                                  InputStream templateFile, OutputStream outputStream) throws IOException {
-        Workbook workbook = parseTemplateIntoWorkBook(workBookType, templateFile);
-        fillWorkbookWithData(dto, workbook);
-        workbook.write(outputStream);
+        if (WorkBookType.XLSX_DIRECT.equals(workBookType)) {
+            generateDirect(dto, () -> DirectXlsxWriter.Template.of(CompiledExcelTemplate.compile(workBookType, templateFile)),
+                    outputStream);
+            return;
+        }
+        generate(workBookType, dto, () -> parseTemplateIntoWorkBook(workBookType, templateFile), null, outputStream);
+    }
+
+    @Override
+    public void createByTemplate(WorkBookType workBookType, ExcelData dto,
+                                 Path templateFile, OutputStream outputStream) throws IOException {
+        if (WorkBookType.XLSX_DIRECT.equals(workBookType)) {
+            generateDirect(dto, () -> directTemplate(templateFile), outputStream);
+            return;
+        }
+        if (WorkBookType.XLS.equals(workBookType)) {
+            //POIFS читает файл через read-only memory mapping
+            try (POIFSFileSystem fs = new POIFSFileSystem(templateFile.toFile(), true)) {
+                generate(workBookType, dto, () -> new HSSFWorkbook(fs), null, outputStream);
+            }
+            return;
+        }
+
+        //zip читается с произвольным доступом, части шаблона загружаются по мере надобности
+        OPCPackage templatePackage = openPackage(templateFile);
+        try {
+            generate(workBookType, dto, () -> new XSSFWorkbook(templatePackage), null, outputStream);
+        } finally {
+            //не close(): он сохранит изменения обратно в файл шаблона
+            templatePackage.revert();
+        }
+    }
+
+    @Override
+    public void createByTemplate(WorkBookType workBookType, ExcelData dto,
+                                 File templateFile, OutputStream outputStream) throws IOException {
+        createByTemplate(workBookType, dto, templateFile.toPath(), outputStream);
+    }
+
+    @Override
+    public void createByTemplate(WorkBookType workBookType, ExcelData dto,
+                                 FileChannel templateFile, OutputStream outputStream) throws IOException {
+        if (WorkBookType.XLS.equals(workBookType)) {
+            //POIFS читает блоки прямо из канала (и закрывает его)
+            try (POIFSFileSystem fs = new POIFSFileSystem(templateFile, true)) {
+                generate(workBookType, dto, () -> new HSSFWorkbook(fs), null, outputStream);
+            }
+            return;
+        }
+
+        try (FileChannel channel = templateFile) {
+            ByteBuffer content = MappedInput.map(channel);
+            if (WorkBookType.XLSX_DIRECT.equals(workBookType)) {
+                generateDirect(dto, () -> new DirectXlsxWriter.Template(
+                                ExcelTemplateCompiler.compile(new XSSFWorkbook(MappedInput.stream(content))),
+                                () -> MappedInput.stream(content)),
+                        outputStream);
+                return;
+            }
+            generate(workBookType, dto, () -> parseTemplateIntoWorkBook(workBookType, MappedInput.stream(content)), null,
+                    outputStream);
+        }
     }
 
+    @Override
+    public Workbook createWorkbookByTemplate(CompiledExcelTemplate template, ExcelData dto) throws IOException {
+        return generate(template.getWorkBookType(), dto, template::newWorkbook, template.getSheets(), null);
+    }
+
+    @Override
+    public void createByTemplate(CompiledExcelTemplate template, ExcelData dto,
+                                 OutputStream outputStream) throws IOException {
+        if (WorkBookType.XLSX_DIRECT.equals(template.getWorkBookType())) {
+            generateDirect(dto, () -> DirectXlsxWriter.Template.of(template), outputStream);
+            return;
+        }
+        generate(template.getWorkBookType(), dto, template::newWorkbook, template.getSheets(), outputStream);
+    }
+
+    @Override
+    public Workbook createWorkbookByTemplate(WorkbookPool template, ExcelData dto) throws IOException {
+        return generate(template.getTemplate().getWorkBookType(), dto, template::take,
+                template.getTemplate().getSheets(), null);
+    }
+
+    @Override
+    public void createByTemplate(WorkbookPool template, ExcelData dto,
+                                 OutputStream outputStream) throws IOException {
+        if (WorkBookType.XLSX_DIRECT.equals(template.getTemplate().getWorkBookType())) {
+            //разобранные книги пула не нужны, шаблон читается напрямую
+            generateDirect(dto, () -> DirectXlsxWriter.Template.of(template.getTemplate()), outputStream);
+            return;
+        }
+        generate(template.getTemplate().getWorkBookType(), dto, template::take,
+                template.getTemplate().getSheets(), outputStream);
+    }
+
+    /**
+     * Источник шаблона (разбор файла, копия скомпилированного шаблона, пул)
+     */
+    @FunctionalInterface
+    private interface TemplateSource<T> {
+        T open() throws IOException;
+    }
+
+    /**
+     * Генерация с замером фаз для {@link ExcelGeneratorSettings#getGenerationListener()}
+     *
+     * @param workBookType формат
+     * @param dto          данные
+     * @param template     источник книги-шаблона
+     * @param sheets       скомпилированные листы (null = компилировать шаблон)
+     * @param outputStream куда записать результат (null = только заполнить книгу)
+     * @return заполненная книга
+     */
+    private Workbook generate(WorkBookType workBookType, ExcelData dto, TemplateSource<Workbook> template,
+                              List<SheetTemplate> sheets, OutputStream outputStream) throws IOException {
+        GenerationRecorder recorder = GenerationRecorder.start(settings.getGenerationListener(), "excel", workBookType.name());
+        try {
+            long start = recorder.now();
+            Workbook workbook = template.open();
+            start = recorder.phase(GenerationPhase.PARSE, start, sheets == null);
+            if (sheets == null) {
+                sheets = ExcelTemplateCompiler.compile(workbook);
+                recorder.phase(GenerationPhase.COMPILE, start, false);
+            }
+
+            Workbook result = fillWorkbookWithData(workBookType, dto, workbook, sheets, recorder);
+            if (outputStream != null) {
+                start = recorder.now();
+                write(result, recorder.countBytes(outputStream));
+                recorder.phase(GenerationPhase.WRITE, start, false);
+            }
+            recorder.finish(null);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            recorder.finish(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Генерация {@link WorkBookType#XLSX_DIRECT}: xml шаблона переписывается сразу в outputStream
+     *
+     * @param dto          данные
+     * @param template     источник скомпилированного шаблона
+     * @param outputStream куда записать результат
+     */
+    private void generateDirect(ExcelData dto, TemplateSource<DirectXlsxWriter.Template> template,
+                                OutputStream outputStream) throws IOException {
+        GenerationRecorder recorder = GenerationRecorder.start(settings.getGenerationListener(), "excel",
+                WorkBookType.XLSX_DIRECT.name());
+        try {
+            long start = recorder.now();
+            DirectXlsxWriter.Template compiled = template.open();
+            start = recorder.phase(GenerationPhase.COMPILE, start);
+
+            //заполнение и запись идут одним проходом
+            directWriter.write(compiled, dto.freeze(), recorder.countBytes(outputStream), recorder);
+            recorder.phase(GenerationPhase.WRITE, start, false);
+            recorder.finish(null);
+        } catch (IOException | RuntimeException e) {
+            recorder.finish(e);
+            throw e;
+        }
+    }
 
     private Workbook parseTemplateIntoWorkBook(WorkBookType workBookType,
                                                InputStream templateFile) throws IOException {
@@ -69,6 +270,63 @@ public class ExcelGeneratorImpl implements ExcelGenerator {
                 : new XSSFWorkbook(templateFile);
     }
 
+    /**
+     * Шаблон XLSX_DIRECT из файла: листы компилируются по пакету, открытому с произвольным доступом,
+     * при записи zip читается потоком из файла (содержимое шаблона в heap не загружается)
+     */
+    private DirectXlsxWriter.Template directTemplate(Path templateFile) throws IOException {
+        List<SheetTemplate> sheets;
+        OPCPackage templatePackage = openPackage(templateFile);
+        try {
+            sheets = ExcelTemplateCompiler.compile(new XSSFWorkbook(templatePackage));
+        } finally {
+            templatePackage.revert();
+        }
+        return new DirectXlsxWriter.Template(sheets,
+                () -> new BufferedInputStream(Files.newInputStream(templateFile), PackageOutput.DEFAULT_BUFFER_SIZE));
+    }
+
+    /**
+     * Открытие xlsx-файла без чтения в память. Пакет открывается на запись, иначе POI не запишет результат,
+     * поэтому после записи его нужно закрывать через revert()
+     */
+    private OPCPackage openPackage(Path templateFile) throws IOException {
+        try {
+            return OPCPackage.open(templateFile.toFile(), PackageAccess.READ_WRITE);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Invalid template " + templateFile, e);
+        }
+    }
+
+    /**
+     * Запись результата с уровнем сжатия из настроек (временные файлы потоковой книги удаляются после записи).
+     * Уровень сжатия потоковой книги задается при ее создании, см. {@link #fillStreamingWorkbook}
+     */
+    private void write(Workbook workbook, OutputStream outputStream) throws IOException {
+        try {
+            if (workbook instanceof XSSFWorkbook) {
+                PackageOutput.write((XSSFWorkbook) workbook, outputStream, settings.getOutputSettings());
+            } else {
+                OutputStream buffered = PackageOutput.buffered(outputStream, settings.getOutputSettings());
+                workbook.write(buffered);
+                buffered.flush();
+            }
+        } finally {
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) workbook).dispose();
+            }
+        }
+    }
+
+    private Workbook fillWorkbookWithData(WorkBookType workBookType, @NotNull ExcelData dto,
+                                          Workbook workbook, List<SheetTemplate> sheets, GenerationRecorder recorder) {
+        //snapshot with indexed table lookup (free if dto is already frozen)
+        ExcelData data = dto.freeze();
+        return WorkBookType.XLSX_STREAMING.equals(workBookType) || WorkBookType.XLSX_DIRECT.equals(workBookType)
+                ? fillStreamingWorkbook(data, (XSSFWorkbook) workbook, sheets, recorder)
+                : fillWorkbookWithData(data, workbook, sheets, recorder);
+    }
+
     /**
      * !!Side effected code
      * <p>
@@ -76,291 +334,857 @@ public class ExcelGeneratorImpl implements ExcelGenerator {
      *
      * @param dto      data to fill the workbook
      * @param workbook source template
+     * @param sheets   compiled template of each sheet
+     * @param recorder metrics of generation
      */
-    private Workbook fillWorkbookWithData(@NotNull ExcelData dto, Workbook workbook) {
-        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-            //choose list
-            Sheet sheet = workbook.getSheetAt(i);
+    private Workbook fillWorkbookWithData(@NotNull ExcelData dto, Workbook workbook, List<SheetTemplate> sheets,
+                                          GenerationRecorder recorder) {
+        for (SheetJob job : prepareSheets(dto, workbook, sheets)) {
+            //choose list (template sheets #SHEETS are already copied for each item)
+            Sheet sheet = job.sheet;
+            SheetTemplate sheetTemplate = job.template;
+            ExcelData data = job.data;
+
+            //filling template with data node by node
+            //offset = number of rows inserted above current node
+            //(if there is a PAGE_BREAKER - page footers are written before rows that do not fit the current page)
+            int offset = 0;
+            List<TemplateNode> nodes = sheetTemplate.getNodes();
+            PageBreaks pages = settings.isPageBreaks() ? PageBreaks.find(sheet, nodes) : null;
+            SheetContext context = new SheetContext(null, pages);
+            long start = recorder.now();
+            for (int i = 0; i < nodes.size(); i++) {
+                TemplateNode node = nodes.get(i);
+                boolean pageContent = pages != null && pages.isContent(i);
+
+                //simple data = dto.params
+                if (node instanceof TemplateRow) {
+                    if (pageContent) {
+                        int rowNum = node.getFirstRow() + offset;
+                        offset += breakPage(sheet, rowNum, context) - rowNum;
+                    }
+                    fillCells(sheet.getRow(node.getFirstRow() + offset), (TemplateRow) node, data.getParams());
+                    context.placeholdersResolved(((TemplateRow) node).getPlaceholders().size());
+
+                    //page footer template is filled, it is deleted with the other templates
+                    if (pages != null && i == pages.getCloseIndex()) {
+                        int footerStart = nodes.get(pages.getOpenIndex()).getFirstRow() + offset;
+                        context.deleteRows(footerStart, node.getFirstRow() + offset);
+                        pages.start(footerStart + 1);
+                    }
 
-            //filling template with data row by row
-            int rowNum = sheet.getFirstRowNum();
-            while (rowNum <= sheet.getLastRowNum()) {
+                    //create table or range right after its template
+                    //(rows beneath are shifted once by the whole height of the block)
+                } else {
+                    int rowNum = node.getLastRow() + offset + 1;
+                    context.deleteRows(node.getFirstRow() + offset, node.getLastRow() + offset);
+                    start = recorder.phase(GenerationPhase.FILL, start);
+                    int height = BlockHeights.measureBlock(node, data);
+                    if (pageContent) {
+                        height += pages.footerRows(height);
+                    }
+                    context.rowsShifted(insertRows(sheet, rowNum, height));
+                    context.startBlock(rowNum, rowNum + height);
+                    start = recorder.phase(GenerationPhase.SHIFT_ROWS, start);
+                    offset += context.endBlock(createBlock(sheet, sheet, node, offset, rowNum, data, context)) - rowNum;
+                }
+            }
+            start = recorder.phase(GenerationPhase.FILL, start);
+
+            //merged regions of all created rows at once
+            //(rows are only inserted below already created blocks, so collected regions stay in place)
+            addMergedRegions(sheet, context.getMergedRegions());
+            start = recorder.phase(GenerationPhase.MERGED_REGIONS, start);
+
+            //delete unnecessary data (range start\end, table start\end, etc.) and unused reserved rows
+            List<int[]> templates = mergeRows(context.getDeletedRows());
+            context.rowsShifted(deleteRows(sheet, templates));
+            start = recorder.phase(GenerationPhase.DELETE_TEMPLATES, start, pages != null);
+
+            //page breaks by the final row numbers
+            if (pages != null) {
+                pages.setRowBreaks(sheet, templates);
+                recorder.phase(GenerationPhase.PAGE_BREAKS, start, false);
+            }
+            recorder.count(context.getRowsCopied(), context.getRowsShifted(), context.getMergedRegions().size(),
+                    context.getPlaceholdersResolved());
+        }
+        return workbook;
+    }
 
-                Row row = sheet.getRow(rowNum);
 
-                //check if there is a range start
-                if (startWithString(row, RANGE)) {
-                    String cellVal = row.getCell(0).getStringCellValue();
-                    //create range and set rowNum = last range row
-                    rowNum = createRange(sheet, rowNum, dto, cellVal);
+    /**
+     * !!Side effected code
+     * <p>
+     * filling entire workbook with data from dto, rows are written strictly in order through SXSSFWorkbook:
+     * each sheet gets an empty copy (column widths, print setup, drawings) which is filled from the template sheet,
+     * then template sheets are removed.
+     * Formulas are copied as is (without shifting their references).
+     * Sheets are independent here (no row shifting, no shared string table), so with
+     * {@link ExcelGeneratorSettings#isParallelSheets()} they are filled concurrently
+     *
+     * @param dto      data to fill the workbook
+     * @param template source template
+     * @param sheets   compiled template of each sheet
+     * @param recorder metrics of generation
+     */
+    private Workbook fillStreamingWorkbook(@NotNull ExcelData dto, XSSFWorkbook template, List<SheetTemplate> sheets,
+                                           GenerationRecorder recorder) {
+        int sheetsCount = template.getNumberOfSheets();
+        int activeSheet = template.getActiveSheetIndex();
+
+        //пустые копии листов (строки шаблона остаются в исходных листах)
+        List<XSSFSheet> copies = new ArrayList<>(sheetsCount);
+        for (int i = 0; i < sheetsCount; i++) {
+            XSSFSheet copy = template.cloneSheet(i);
+            clearSheet(copy);
+            copyPrintTitles(template.getSheetAt(i), copy);
+            copies.add(copy);
+        }
 
-                    //check if there is table start
-                } else if (startWithString(row, TABLE)) {
-                    String cellVal = row.getCell(0).getStringCellValue();
-                    //create table and set rowNum = last table row
-                    rowNum = createTable(sheet, rowNum, dto, cellVal);
+        //листы #SHEETS: первый элемент заполняет пустую копию, остальные - новые листы с ее оформлением сразу за ней
+        //(временные названия, окончательные ставятся после удаления листов-шаблонов)
+        Set<String> takenNames = takenSheetNames(dto, sheets);
+        List<String> sheetNames = new ArrayList<>();
+        List<SheetJob> jobs = new ArrayList<>();
+        for (SheetTemplate sheetTemplate : sheets) {
+            XSSFSheet copy = copies.get(sheetTemplate.getSheetIndex());
+            Optional<ExcelSheetsData> fanOut = findSheets(dto, sheetTemplate);
+            if (!fanOut.isPresent()) {
+                jobs.add(new SheetJob(copy, sheetTemplate, dto));
+                sheetNames.add(sheetTemplate.getSheetName());
+                continue;
+            }
+            List<ExcelSheetData> items = fanOut.get().getSheets();
+            if (items.isEmpty()) {
+                template.removeSheetAt(template.getSheetIndex(copy));
+                continue;
+            }
+            List<String> copyNames = new ArrayList<>(items.size() - 1);
+            for (int i = 1; i < items.size(); i++) {
+                copyNames.add(COPY + (jobs.size() + i));
+            }
+            List<Sheet> itemSheets = new ArrayList<>(items.size());
+            itemSheets.add(copy);
+            //листы элементов пустые, поэтому копируется только оформление (cloneSheet копировал бы рисунки и связи листа)
+            Sheet source = template.getSheetAt(sheetTemplate.getSheetIndex());
+            itemSheets.addAll(addSheetsAfter(template, copy, copyNames, name -> createLayoutSheet(template, source, name)));
+            for (int i = 0; i < items.size(); i++) {
+                jobs.add(new SheetJob(itemSheets.get(i), sheetTemplate, sheetData(items.get(i))));
+                sheetNames.add(uniqueSheetName(items.get(i), i, takenNames));
+            }
+        }
 
-                    //simple data = dto.params
-                } else {
-                    rowNum = fillCells(sheet, rowNum, dto.getParams(), dto);
-                }
+        SXSSFWorkbook workbook = new SXSSFWorkbook(template, settings.getStreamingWindowSize(),
+                settings.isStreamingCompressTempFiles(), false) {
+            @Override
+            protected ZipArchiveOutputStream createArchiveOutputStream(OutputStream out) {
+                return PackageOutput.withLevel(super.createArchiveOutputStream(out), settings.getOutputSettings());
             }
+        };
 
-            //delete unnecessary data (range start\end, table start\end, etc.)
-            deleteAllTemplates(sheet);
+        //формулы разбираются по названиям листов шаблона: в книгу параллельно добавляются листы продолжения
+        List<String> templateNames = new ArrayList<>(sheetsCount);
+        for (int i = 0; i < sheetsCount; i++) {
+            templateNames.add(template.getSheetName(i));
+        }
+        List<Runnable> sheetTasks = new ArrayList<>(jobs.size());
+        List<SheetShards> shards = new ArrayList<>(jobs.size());
+        for (SheetJob job : jobs) {
+            Sheet source = template.getSheetAt(job.template.getSheetIndex());
+            Sheet sheet = workbook.getSheetAt(template.getSheetIndex(job.sheet));
+            SheetShards sheetShards = settings.isSheetSharding()
+                    ? new SheetShards(source, job.data.getParams(), sheet, shardRows(workbook))
+                    : null;
+            shards.add(sheetShards);
+            sheetTasks.add(() -> fillStreamingSheet(job.data, source, sheet, job.template, sheetShards,
+                    new FormulaBook(templateNames), recorder));
+        }
+        runSheetTasks(sheetTasks);
 
-            //if there is a PAGE_BREAKER - add page breaker for each n rows (and add current row number)
-            //splitPage(sheet); //todo just uncomment if you need it (expensive thing)
+        //удаление листов-шаблонов
+        for (int i = sheetsCount - 1; i >= 0; i--) {
+            workbook.removeSheetAt(i);
         }
+        if (settings.isSheetSharding()) {
+            sheetNames = orderShards(workbook, sheetNames, shards, takenNames);
+        }
+        for (int i = 0; i < sheetNames.size(); i++) {
+            workbook.setSheetName(i, sheetNames.get(i));
+        }
+        activeSheet = Math.min(activeSheet, workbook.getNumberOfSheets() - 1);
+        workbook.setActiveSheet(activeSheet);
+        workbook.setSelectedTab(activeSheet);
         return workbook;
     }
 
+    /**
+     * Заполнение одного листа потоковой книги строками листа-шаблона
+     *
+     * @param dto           данные
+     * @param source        лист-шаблон
+     * @param sheet         пустая копия листа
+     * @param sheetTemplate скомпилированный шаблон листа
+     * @param shards        продолжение листа на новых листах (null = без продолжения)
+     * @param formulaBook   названия листов шаблона для разбора формул
+     * @param recorder      метрики генерации
+     */
+    private void fillStreamingSheet(ExcelData dto, Sheet source, Sheet sheet, SheetTemplate sheetTemplate, SheetShards shards,
+                                    FormulaBook formulaBook, GenerationRecorder recorder) {
+        //offset = разница между номером строки в результате и в шаблоне
+        int offset = 0;
+        SheetContext context = new SheetContext(shards);
+        //строки шаблона над текущей таблицей (повторяются на новых листах)
+        List<TemplateRow> header = new ArrayList<>();
+        //строки пишутся без shiftRows, поэтому ссылки формул вне таблиц переносятся по высоте блоков
+        List<TemplateNode> nodes = sheetTemplate.getNodes();
+        TemplateRowMap rowMap = new TemplateRowMap(nodes, dto, formulaBook, sheetTemplate.getSheetIndex(), source.getSheetName(),
+                shards != null ? shards.getMaxRows() : sheet.getWorkbook().getSpreadsheetVersion().getMaxRows());
+        long start = recorder.now();
+        for (int i = 0; i < nodes.size(); i++) {
+            TemplateNode node = nodes.get(i);
+
+            //simple data = dto.params
+            if (node instanceof TemplateRow) {
+                Row sourceRow = source.getRow(node.getFirstRow());
+                if (sourceRow != null) {
+                    int rowNum = node.getFirstRow() + offset;
+                    Row row = copyRow(sheet, sourceRow, rowNum, (TemplateRow) node, context);
+                    if (shards != null && !shards.getSheets().isEmpty()) {
+                        rowMap.sheetContinued();
+                    }
+                    moveFormulaReferences(sourceRow, row, rowMap);
+                    fillCells(row, (TemplateRow) node, dto.getParams());
+                    context.placeholdersResolved(((TemplateRow) node).getPlaceholders().size());
+                    header.add((TemplateRow) node);
+                }
+
+                //table or range instead of its template
+            } else {
+                if (shards != null) {
+                    shards.setHeader(new ArrayList<>(header));
+                }
+                header.clear();
+                int rowNum = node.getFirstRow() + offset;
+                int nextRowNum = createBlock(sheet, source, node, 0, rowNum, dto, context);
+                rowMap.setHeight(i, nextRowNum - rowNum);
+                offset += nextRowNum - (node.getLastRow() + 1 + offset);
+            }
+        }
+        start = recorder.phase(GenerationPhase.FILL, start);
+        addMergedRegions(shards != null ? shards.getCurrent() : sheet, context.getMergedRegions());
+        recorder.phase(GenerationPhase.MERGED_REGIONS, start, false);
+        long mergedRegions = context.getMergedRegions().size() + (shards != null ? shards.getMergedRegionsAdded() : 0);
+        recorder.count(context.getRowsCopied(), context.getRowsShifted(), mergedRegions, context.getPlaceholdersResolved());
+    }
 
     /**
-     * Fill cells with data from {@param map}
-     * create new rows for tables\ranges if needed
+     * Перенос ссылок формул скопированной строки на строки результата (как при shiftRows в XLS/XLSX)
      *
-     * @param sheet  current sheet
-     * @param rowNum current rowNum
-     * @param map    plain data
-     * @param dto    data
-     * @return next row num (including all subtables rows)
+     * @param sourceRow строка шаблона
+     * @param row       скопированная строка
+     * @param rowMap    номера строк шаблона -> номера строк результата
      */
+    private void moveFormulaReferences(Row sourceRow, Row row, TemplateRowMap rowMap) {
+        for (Cell sourceCell : sourceRow) {
+            if (sourceCell.getCellType() != CellType.FORMULA) {
+                continue;
+            }
+            String formula = sourceCell.getCellFormula();
+            String moved = rowMap.moveReferences(formula);
+            if (!moved.equals(formula)) {
+                row.getCell(sourceCell.getColumnIndex()).setCellFormula(moved);
+            }
+        }
+    }
 
-    private int fillCells(Sheet sheet, int rowNum, Map<String, Object> map, ExcelData dto) {
-        SimpleDateFormat format = new SimpleDateFormat(dateTimePattern);
+    /**
+     * Количество строк в одном листе при продолжении листов
+     */
+    private int shardRows(Workbook workbook) {
+        int maxRows = workbook.getSpreadsheetVersion().getMaxRows();
+        return settings.getShardRows() > 0 ? Math.min(settings.getShardRows(), maxRows) : maxRows;
+    }
 
-        Row row = sheet.getRow(rowNum);
-        if (row == null) {
-            return rowNum + 1;
+    /**
+     * Переход на новый лист: merged regions заполненной части добавляются в предыдущий лист
+     * (регионы, выходящие за лист, обрезаются), на новом листе повторяются строки заголовка
+     *
+     * @param shards  продолжение листа
+     * @param rowNum  сквозной номер первой строки нового листа
+     * @param context merged regions и счетчики листа
+     */
+    private void nextShard(SheetShards shards, int rowNum, SheetContext context) {
+        if (shards.getHeader().size() >= shards.getMaxRows()) {
+            throw new IllegalStateException("Sheet " + shards.getSource().getSheetName() + " can not be continued: "
+                    + shards.getHeader().size() + " header rows do not leave room for data in " + shards.getMaxRows() + " rows");
         }
 
-        Iterator<Cell> iterator = row.cellIterator();
+        int lastRow = shards.getMaxRows() - 1;
+        List<CellRangeAddress> mergedRegions = context.getMergedRegions();
+        mergedRegions.replaceAll(merged -> merged.getLastRow() <= lastRow
+                ? merged
+                : new CellRangeAddress(merged.getFirstRow(), lastRow, merged.getFirstColumn(), merged.getLastColumn()));
+        mergedRegions.removeIf(merged -> merged.getNumberOfCells() < 2);
+        addMergedRegions(shards.getCurrent(), mergedRegions);
+        int added = mergedRegions.size();
+        mergedRegions.clear();
+
+        shards.next(createShard(shards), rowNum, added);
+        List<TemplateRow> header = shards.getHeader();
+        for (int i = 0; i < header.size(); i++) {
+            TemplateRow template = header.get(i);
+            Row row = copyRow(shards.getCurrent(), shards.getSource().getRow(template.getFirstRow()),
+                    rowNum - header.size() + i, template, context);
+            fillCells(row, template, shards.getParams());
+            context.placeholdersResolved(template.getPlaceholders().size());
+        }
+    }
 
-        // for each cell of current row
-        while (iterator.hasNext()) {
-            Cell cell = iterator.next();
+    /**
+     * Продолжение листа: новый лист с оформлением листа-шаблона, см. {@link #createLayoutSheet}.
+     * Книга общая для параллельно заполняемых листов, поэтому лист создается под ее блокировкой.
+     * Другие листы список листов книги не читают: формулы разбираются по {@link FormulaBook} с названиями листов шаблона
+     */
+    private Sheet createShard(SheetShards shards) {
+        Workbook workbook = shards.getCurrent().getWorkbook();
+        synchronized (workbook) {
+            return createLayoutSheet(workbook, shards.getSource(), SHARD + workbook.getNumberOfSheets());
+        }
+    }
 
-            //breakpoint
-            if (!hasKey(cell)) {
-                continue;
+    /**
+     * Новый лист в конце книги с оформлением листа-шаблона (ширина и стиль колонок, закрепление, параметры печати),
+     * рисунки и связи листа не копируются
+     *
+     * @param workbook книга
+     * @param source   лист-шаблон
+     * @param name     название нового листа
+     */
+    private Sheet createLayoutSheet(Workbook workbook, Sheet source, String name) {
+        Sheet sheet = workbook.createSheet(name);
+        sheet.setDefaultColumnWidth(source.getDefaultColumnWidth());
+        sheet.setDefaultRowHeight(source.getDefaultRowHeight());
+        int lastColumn = 0;
+        for (Row row : source) {
+            lastColumn = Math.max(lastColumn, row.getLastCellNum());
+        }
+        for (int column = 0; column < lastColumn; column++) {
+            sheet.setColumnWidth(column, source.getColumnWidth(column));
+            sheet.setColumnHidden(column, source.isColumnHidden(column));
+            CellStyle style = source.getColumnStyle(column);
+            if (style != null) {
+                sheet.setDefaultColumnStyle(column, style);
             }
+        }
 
-            String cellVal = cell.getStringCellValue();
-
-            //check if there are subTables to create
-            if (cell.getColumnIndex() == 0 && cellVal.startsWith(RANGE)) {
-                //create range (return last row number)
-                return createRange(sheet, rowNum, dto, cellVal);
+        PaneInformation pane = source.getPaneInformation();
+        if (pane != null && pane.isFreezePane()) {
+            sheet.createFreezePane(pane.getVerticalSplitPosition(), pane.getHorizontalSplitPosition(),
+                    pane.getVerticalSplitLeftColumn(), pane.getHorizontalSplitTopRow());
+        }
+        sheet.setDisplayGridlines(source.isDisplayGridlines());
+        sheet.setPrintGridlines(source.isPrintGridlines());
+        sheet.setFitToPage(source.getFitToPage());
+        PrintSetup print = source.getPrintSetup();
+        sheet.getPrintSetup().setLandscape(print.getLandscape());
+        sheet.getPrintSetup().setPaperSize(print.getPaperSize());
+        sheet.getPrintSetup().setScale(print.getScale());
+        sheet.getPrintSetup().setFitWidth(print.getFitWidth());
+        sheet.getPrintSetup().setFitHeight(print.getFitHeight());
+        for (short margin : new short[]{Sheet.LeftMargin, Sheet.RightMargin, Sheet.TopMargin, Sheet.BottomMargin}) {
+            sheet.setMargin(margin, source.getMargin(margin));
+        }
+        copyPrintTitles(source, sheet);
+        return sheet;
+    }
 
-                //create table (return last row number)
-            } else if (cell.getColumnIndex() == 0 && cellVal.startsWith(TABLE)) {
-                return createTable(sheet, rowNum, dto, cellVal);
+    /**
+     * Новые листы встают сразу за своим листом и получают его название с номером: "Лист (2)", "Лист (3)" ...
+     *
+     * @param workbook   книга без листов-шаблонов
+     * @param sheetNames названия заполненных листов по порядку
+     * @param shards     продолжение каждого листа
+     * @param takenNames занятые названия листов
+     * @return названия всех листов по порядку
+     */
+    private List<String> orderShards(Workbook workbook, List<String> sheetNames, List<SheetShards> shards,
+                                     Set<String> takenNames) {
+        List<String> names = new ArrayList<>();
+        int position = 0;
+        for (int i = 0; i < sheetNames.size(); i++) {
+            names.add(sheetNames.get(i));
+            position++;
+            for (Sheet shard : shards.get(i).getSheets()) {
+                workbook.setSheetOrder(shard.getSheetName(), position++);
+                names.add(uniqueSheetName(sheetNames.get(i), takenNames));
+            }
+        }
+        return names;
+    }
 
-                //plain data - just take data from map
-            } else {
-                String key = cellVal.substring(1, cellVal.length() - 1);
-                if (!map.containsKey(key)) {
-                    cell.setCellValue("");
+    /**
+     * Заполнение листов: по очереди или параллельно в {@link ExcelGeneratorSettings#getSheetPool()}.
+     * Ждет окончания всех листов, первая ошибка пробрасывается дальше
+     *
+     * @param sheetTasks заполнение каждого листа
+     */
+    private void runSheetTasks(List<Runnable> sheetTasks) {
+        if (!settings.isParallelSheets() || sheetTasks.size() < 2) {
+            sheetTasks.forEach(Runnable::run);
+            return;
+        }
 
-                    //set value based on cell type
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(sheetTasks.size());
+        for (Runnable sheetTask : sheetTasks) {
+            tasks.add(settings.getSheetPool().submit(sheetTask));
+        }
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
                 } else {
-                    Object param = map.get(key);
-                    if (param == null) {
-                        cell.setCellValue("");
-                    } else if (param instanceof Date) {
-                        cell.setCellValue(format.format(param));
-                    } else if (param instanceof LocalDate) {
-                        cell.setCellValue(localDateFormat.format((LocalDate) param));
-                    } else if (param instanceof Double) {
-                        cell.setCellValue((Double) param);
-                    } else if (param instanceof BigDecimal) {
-                        BigDecimal bigDecimal = (BigDecimal) param;
-                        cell.setCellValue(bigDecimal.doubleValue());
-                    } else {
-                        cell.setCellValue(param.toString());
-                        if (cell.getHyperlink() != null && cell.getHyperlink().getType() == HyperlinkType.URL) {
-                            cell.getHyperlink().setAddress(param.toString());
-                        }
-                    }
+                    failure.addSuppressed(e);
                 }
             }
         }
-        return rowNum + 1;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Удаление строк, merged regions и ссылок из листа (остается только оформление)
+     */
+    private void clearSheet(XSSFSheet sheet) {
+        List<Row> rows = new ArrayList<>();
+        sheet.rowIterator().forEachRemaining(rows::add);
+        rows.forEach(sheet::removeRow);
+
+        List<Integer> mergedRegions = new ArrayList<>();
+        for (int i = 0; i < sheet.getNumMergedRegions(); i++) {
+            mergedRegions.add(i);
+        }
+        sheet.removeMergedRegions(mergedRegions);
+
+        for (XSSFHyperlink hyperlink : new ArrayList<>(sheet.getHyperlinkList())) {
+            sheet.removeHyperlink(hyperlink.getFirstRow(), hyperlink.getFirstColumn());
+        }
     }
 
     /**
-     * Check if cell contains specific data
-     * (telling that we should fill some data or just skip this cell)
+     * Лист для заполнения: лист книги, его скомпилированный шаблон и данные
+     * (для листов #SHEETS - копия листа-шаблона и данные элемента)
      */
-    private boolean hasKey(Cell cell) {
-        if (cell == null || !CellType.STRING.equals(cell.getCellType())) {
-            return false;
+    private static final class SheetJob {
+        private final Sheet sheet;
+        private final SheetTemplate template;
+        private final ExcelData data;
+
+        SheetJob(Sheet sheet, SheetTemplate template, ExcelData data) {
+            this.sheet = sheet;
+            this.template = template;
+            this.data = data;
         }
-        String cellVal = cell.getStringCellValue();
-        return (cellVal.startsWith("#") && cellVal.endsWith("#"));
     }
 
     /**
-     * Check that first cell value equals key value
+     * Подготовка листов XLS/XLSX: каждый лист-шаблон #SHEETS копируется для каждого элемента {@link ExcelSheetsData}
+     * до заполнения (копируются только строки шаблона, план листа общий), копии сразу получают свои названия
+     * и встают за шаблоном. Лист-шаблон без элементов удаляется
      *
-     * @param row current row
-     * @param key key to find
-     * @return boolean
+     * @param dto      данные
+     * @param workbook книга-шаблон
+     * @param sheets   скомпилированные листы
+     * @return листы для заполнения в порядке следования
      */
-    private boolean hasString(Row row, String key) {
-        if (row != null) {
-            Cell firstCell = row.getCell(0);
-            return firstCell != null
-                    && CellType.STRING.equals(firstCell.getCellType())
-                    && firstCell.getStringCellValue().equals(key);
+    private List<SheetJob> prepareSheets(ExcelData dto, Workbook workbook, List<SheetTemplate> sheets) {
+        //листы до изменения их порядка
+        List<Sheet> templates = new ArrayList<>(sheets.size());
+        for (SheetTemplate sheetTemplate : sheets) {
+            templates.add(workbook.getSheetAt(sheetTemplate.getSheetIndex()));
         }
-        return false;
+
+        Set<String> takenNames = takenSheetNames(dto, sheets);
+        List<SheetJob> jobs = new ArrayList<>(sheets.size());
+        for (int i = 0; i < sheets.size(); i++) {
+            SheetTemplate sheetTemplate = sheets.get(i);
+            Sheet sheet = templates.get(i);
+            Optional<ExcelSheetsData> fanOut = findSheets(dto, sheetTemplate);
+            if (!fanOut.isPresent()) {
+                jobs.add(new SheetJob(sheet, sheetTemplate, dto));
+                continue;
+            }
+
+            List<ExcelSheetData> items = fanOut.get().getSheets();
+            if (items.isEmpty()) {
+                workbook.removeSheetAt(workbook.getSheetIndex(sheet));
+                continue;
+            }
+            List<String> names = new ArrayList<>(items.size());
+            for (int item = 0; item < items.size(); item++) {
+                names.add(uniqueSheetName(items.get(item), item, takenNames));
+            }
+            List<Sheet> itemSheets = new ArrayList<>(items.size());
+            itemSheets.add(sheet);
+            itemSheets.addAll(cloneSheets(workbook, sheet, names.subList(1, names.size())));
+            workbook.setSheetName(workbook.getSheetIndex(sheet), names.get(0));
+            for (int item = 0; item < items.size(); item++) {
+                jobs.add(new SheetJob(itemSheets.get(item), sheetTemplate, sheetData(items.get(item))));
+            }
+        }
+        if (workbook.getActiveSheetIndex() >= workbook.getNumberOfSheets()) {
+            workbook.setActiveSheet(0);
+        }
+        return jobs;
+    }
+
+    /**
+     * Копии листа #SHEETS, которые встают сразу за ним.
+     * Копии добавляются в конец книги сразу с названием (cloneSheet без названия подбирает " (n)" перебором
+     * всех листов на каждую копию)
+     *
+     * @param workbook книга
+     * @param sheet    копируемый лист
+     * @param names    уникальные названия копий
+     * @return копии в порядке названий
+     */
+    private List<Sheet> cloneSheets(Workbook workbook, Sheet sheet, List<String> names) {
+        int position = workbook.getSheetIndex(sheet);
+        return addSheetsAfter(workbook, sheet, names, name -> {
+            Sheet copy;
+            if (workbook instanceof XSSFWorkbook) {
+                copy = ((XSSFWorkbook) workbook).cloneSheet(position, name);
+            } else {
+                //HSSF: название копии подбирается по названию исходного листа, копия сразу переименовывается
+                copy = workbook.cloneSheet(position);
+                workbook.setSheetName(workbook.getNumberOfSheets() - 1, name);
+            }
+            copy.setSelected(false);
+            copyPrintTitles(sheet, copy);
+            return copy;
+        });
+    }
+
+    /**
+     * Новые листы сразу за листом sheet: листы создаются в конце книги, затем листы, стоявшие за sheet,
+     * переносятся в конец по одному (порядок меняется один раз на лист шаблона, а не на каждый новый лист)
+     *
+     * @param workbook книга
+     * @param sheet    лист, за которым встают новые листы
+     * @param names    уникальные названия новых листов
+     * @param newSheet создание листа в конце книги по названию
+     * @return новые листы в порядке названий
+     */
+    private List<Sheet> addSheetsAfter(Workbook workbook, Sheet sheet, List<String> names, Function<String, Sheet> newSheet) {
+        int position = workbook.getSheetIndex(sheet);
+        int following = workbook.getNumberOfSheets() - position - 1;
+        List<Sheet> sheets = new ArrayList<>(names.size());
+        for (String name : names) {
+            sheets.add(newSheet.apply(name));
+        }
+        for (int i = 0; i < following; i++) {
+            workbook.setSheetOrder(workbook.getSheetName(position + 1), workbook.getNumberOfSheets() - 1);
+        }
+        return sheets;
+    }
+
+    /**
+     * Сквозные строки и столбцы печати (хранятся в книге, при копировании листа не переносятся)
+     */
+    private void copyPrintTitles(Sheet sheet, Sheet copy) {
+        copy.setRepeatingRows(sheet.getRepeatingRows());
+        copy.setRepeatingColumns(sheet.getRepeatingColumns());
+    }
+
+    /**
+     * Данные размножения для листа-шаблона #SHEETS
+     */
+    private Optional<ExcelSheetsData> findSheets(ExcelData dto, SheetTemplate sheetTemplate) {
+        return sheetTemplate.getSheetName().startsWith(SHEETS)
+                ? dto.findSheets(sheetTemplate.getSheetName())
+                : Optional.empty();
+    }
+
+    /**
+     * Названия обычных листов (в нижнем регистре: эксель не различает регистр в названиях листов)
+     */
+    private Set<String> takenSheetNames(ExcelData dto, List<SheetTemplate> sheets) {
+        Set<String> names = new HashSet<>();
+        for (SheetTemplate sheetTemplate : sheets) {
+            if (!findSheets(dto, sheetTemplate).isPresent()) {
+                names.add(sheetTemplate.getSheetName().toLowerCase(Locale.ROOT));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Допустимое и уникальное название листа элемента #SHEETS (без названия = номер элемента)
+     */
+    private String uniqueSheetName(ExcelSheetData item, int index, Set<String> takenNames) {
+        return uniqueSheetName(WorkbookUtil.createSafeSheetName(item.getSheetName() != null
+                ? item.getSheetName()
+                : String.valueOf(index + 1)), takenNames);
+    }
+
+    /**
+     * Уникальное название листа: занятое название получает номер " (2)", " (3)" ...
+     */
+    private String uniqueSheetName(String name, Set<String> takenNames) {
+        String unique = name;
+        for (int i = 2; !takenNames.add(unique.toLowerCase(Locale.ROOT)); i++) {
+            String suffix = " (" + i + ")";
+            unique = name.substring(0, Math.min(name.length(), MAX_SHEET_NAME_LENGTH - suffix.length())) + suffix;
+        }
+        return unique;
+    }
+
+    /**
+     * Данные листа элемента #SHEETS (неизменяемый снимок)
+     */
+    private ExcelData sheetData(ExcelSheetData item) {
+        return item.getData() != null ? item.getData().freeze() : new ExcelData().freeze();
     }
 
+
     /**
-     * Get data from map with type conversion
+     * Fill cells with data from {@param map}
+     *
+     * @param row      row to fill
+     * @param template compiled template of the row (placeholder cells)
+     * @param map      plain data
      */
-    private String getParam(String key, Map<String, Object> map) {
-        if (!map.containsKey(key)) {
-            return "";
+    private void fillCells(Row row, TemplateRow template, Map<String, Object> map) {
+        if (row == null || template.getPlaceholders().isEmpty()) {
+            return;
+        }
+
+        // for each placeholder cell of current row
+        for (Placeholder placeholder : template.getPlaceholders()) {
+            Cell cell = row.getCell(placeholder.getColumn());
+            if (cell != null) {
+                setCellValue(cell, placeholder, map.get(placeholder.getKey()));
+            }
         }
-        Object param = map.get(key);
+    }
+
+    /**
+     * Set value based on its type (see {@link ExcelGeneratorSettings#getValueConverters()})
+     *
+     * @param cell        placeholder cell
+     * @param placeholder compiled placeholder
+     * @param param       value (null or absent key = empty string)
+     */
+    private void setCellValue(Cell cell, Placeholder placeholder, Object param) {
         if (param == null) {
-            return "";
-        }
-        if (param instanceof Date) {
-            SimpleDateFormat format = new SimpleDateFormat(dateTimePattern);
-            return format.format(param);
-        }
-        if (param instanceof LocalDate) {
-            return localDateFormat.format((LocalDate) param);
-        }
-        if (param instanceof Double) {
-            DecimalFormat df = new DecimalFormat("#.#####");
-            DecimalFormatSymbols sym = DecimalFormatSymbols.getInstance();
-            sym.setDecimalSeparator(',');
-            df.setDecimalFormatSymbols(sym);
-            return df.format(param);
-        }
-        if (param instanceof BigDecimal) {
-            BigDecimal bigDecimal = (BigDecimal) param;
-            DecimalFormat df = new DecimalFormat("#.#####");
-            DecimalFormatSymbols sym = DecimalFormatSymbols.getInstance();
-            sym.setDecimalSeparator(',');
-            df.setDecimalFormatSymbols(sym);
-            return df.format(bigDecimal.doubleValue());
+            setCellString(cell, placeholder, "");
+            return;
+        }
+
+        //конвертер ищется один раз для класса значения
+        ValueConverter<Object> converter = settings.getValueConverters().find(param.getClass());
+        if (converter.isNumeric(param)) {
+            cell.setCellValue(converter.toNumber(param));
         } else {
-            return param.toString();
+            String text = converter.toText(param);
+            setCellString(cell, placeholder, text);
+            if (placeholder.isHyperlink() && cell.getHyperlink() != null) {
+                cell.getHyperlink().setAddress(text);
+            }
         }
     }
 
     /**
-     * Копирует строки между строками с значением cellVal. Заполняет скопированные строки.
-     *
-     * @param sheet   лист
-     * @param rowNum  номер строки
-     * @param dto     данные
-     * @param cellVal значение в ячейке (из него берется название range)
-     * @return номер строки окончания range
+     * Строковое значение ячейки: в таблицу общих строк или inline-строкой
+     * (см. {@link ExcelGeneratorSettings#getStringStorage()}, {@link ExcelGeneratorSettings#getInlineStringKeys()})
      */
-    private int createTable(Sheet sheet, int rowNum, ExcelData dto, String cellVal) {
+    private void setCellString(Cell cell, Placeholder placeholder, String text) {
+        if (cell instanceof XSSFCell && (StringStorage.INLINE.equals(settings.getStringStorage())
+                || settings.getInlineStringKeys().contains(placeholder.getKey()))) {
+            setInlineString((XSSFCell) cell, text);
+        } else {
+            cell.setCellValue(text);
+        }
+    }
 
-        //пропускаем строку "идентификатор начала"
-        rowNum++;
-        //шаблон строк
-        List<Row> sourceRows = new ArrayList<>();
-        while (rowNum < sheet.getLastRowNum() && !hasString(sheet.getRow(rowNum), cellVal)) {
-            sourceRows.add(sheet.getRow(rowNum));
-            rowNum++;
+    /**
+     * Запись строки в саму ячейку (&lt;c t="inlineStr"&gt;&lt;is&gt;), минуя таблицу общих строк.
+     * POI для inlineStr пишет значение в &lt;v&gt;, которое Excel не читает, поэтому &lt;is&gt; заполняется напрямую
+     */
+    private static void setInlineString(XSSFCell cell, String text) {
+        if (text.length() > SpreadsheetVersion.EXCEL2007.getMaxTextLength()) {
+            throw new IllegalArgumentException("The maximum length of cell contents (text) is "
+                    + SpreadsheetVersion.EXCEL2007.getMaxTextLength() + " characters");
+        }
+        CTCell ctCell = cell.getCTCell();
+        if (ctCell.isSetF()) {
+            ctCell.unsetF();
         }
-        //пропускаем строку "идентификатор окончания"
-        rowNum++;
+        if (ctCell.isSetV()) {
+            ctCell.unsetV();
+        }
+        ctCell.setT(STCellType.INLINE_STR);
+        ctCell.setIs(new XSSFRichTextString(text).getCTRst());
+    }
+
+    /**
+     * Заполнение строк шаблона данными из map
+     */
+    private RowFiller mapFiller(Map<String, Object> map) {
+        return (row, template) -> fillCells(row, template, map);
+    }
 
-        Optional<LinkedList<Map<String, Object>>> data = dto.getSimpleTables().stream()
-                .filter(range -> range.getTableName().equals(cellVal))
-                .findFirst()
-                .map(ExcelSimpleTableData::getTableRowsData);
+    /**
+     * Создание таблицы или range по шаблону
+     *
+     * @param sheet     лист
+     * @param source    лист с шаблоном строк
+     * @param node      шаблон таблицы или range
+     * @param srcOffset смещение строк шаблона относительно скомпилированного плана
+     * @param rowNum    первая строка для заполнения
+     * @param dto           данные
+     * @param context       merged regions созданных строк (добавляются в лист одним пакетом) и счетчики
+     * @return номер последней незаполненной строки
+     */
+    private int createBlock(Sheet sheet, Sheet source, TemplateNode node, int srcOffset, int rowNum, ExcelData dto,
+                            SheetContext context) {
+        return node instanceof RangeBlock
+                ? createRange(sheet, source, (RangeBlock) node, srcOffset, rowNum, dto, context)
+                : createTable(sheet, source, (TableBlock) node, srcOffset, rowNum, dto, context);
+    }
 
+    /**
+     * Копирует строки шаблона таблицы для каждой строки данных. Заполняет скопированные строки.
+     *
+     * @param sheet     лист
+     * @param source        лист с шаблоном строк
+     * @param table         шаблон таблицы
+     * @param srcOffset     смещение строк шаблона относительно скомпилированного плана
+     * @param rowNum        первая строка для заполнения
+     * @param dto           данные
+     * @param context       merged regions созданных строк (добавляются в лист одним пакетом) и счетчики
+     * @return номер последней незаполненной строки
+     */
+    private int createTable(Sheet sheet, Sheet source, TableBlock table, int srcOffset, int rowNum, ExcelData dto,
+                            SheetContext context) {
         //условия продолжения
-        if (sourceRows.isEmpty() || !data.isPresent()) {
+        if (table.getBody().isEmpty()) {
             return rowNum;
         }
 
-        //создание таблиц из шаблонов для каждого dataItem
-        for (Map<String, Object> dataItem : data.get()) {
-            int startRow = rowNum;
-            rowNum = copyRowsAndFillData(dataItem, sheet, startRow, dto, sourceRows);
+        //строки вложенной таблицы, загруженные пакетом для текущей родительской строки
+        List<Map<String, Object>> childRows = context.getChildRows().get(table.getName());
+        if (childRows != null) {
+            Iterator<Map<String, Object>> rows = ChildBatchIterator.wrap(childRows.iterator(), table.getBody(), dto, context,
+                    reservation(sheet, context));
+            while (rows.hasNext()) {
+                rowNum = copyRowsAndFillData(mapFiller(rows.next()), sheet, source, rowNum, srcOffset, dto, table.getBody(), context);
+            }
+            return rowNum;
         }
 
-        return rowNum;
-    }
+        //создание таблиц из шаблонов для каждого dataItem (ленивые строки читаются по одной)
+        Optional<ExcelSimpleTableData> data = dto.findSimpleTable(table.getName());
+        if (data.isPresent()) {
+            Iterator<Map<String, Object>> rows = ChildBatchIterator.wrap(data.get().rows(), table.getBody(), dto, context,
+                    reservation(sheet, context));
+            while (rows.hasNext()) {
+                rowNum = copyRowsAndFillData(mapFiller(rows.next()), sheet, source, rowNum, srcOffset, dto, table.getBody(), context);
+            }
+            return rowNum;
+        }
 
-    private int copyRowsAndFillData(Map<String, Object> dataItem, Sheet sheet, int rowNum, ExcelData dto, List<Row> sourceRows) {
-        copyRows(sheet, sourceRows, rowNum);
+        //колоночные данные (одна курсорная строка на всю таблицу)
+        Optional<ExcelColumnarTableData> columnar = dto.findColumnarTable(table.getName());
+        if (columnar.isPresent()) {
+            ColumnarRowFiller filler = new ColumnarRowFiller(columnar.get(), this::setCellValue, settings.getValueConverters());
+            for (int i = 0; i < columnar.get().getRowCount(); i++) {
+                filler.moveTo(i);
+                rowNum = copyRowsAndFillData(filler, sheet, source, rowNum, srcOffset, dto, table.getBody(), context);
+            }
+            return rowNum;
+        }
 
-        //Заполнение данными
-        for (int index = 0; index < sourceRows.size(); index++) {
-            //вложенные таблицы
-            if (startWithString(sheet.getRow(rowNum), TABLE)) {
-                index = decreaseNumberOfRowsToFill(sheet, rowNum, sourceRows.size(), index);
+        //объекты (POJO), свойства читаются через accessors, найденные один раз на класс
+        Optional<ExcelBeanTableData<?>> beans = dto.findBeanTable(table.getName());
+        if (beans.isPresent()) {
+            BeanRowFiller filler = new BeanRowFiller(beans.get().getBeanType(), this::setCellValue);
+            Iterator<?> rows = beans.get().rows();
+            while (rows.hasNext()) {
+                filler.moveTo(rows.next());
+                rowNum = copyRowsAndFillData(filler, sheet, source, rowNum, srcOffset, dto, table.getBody(), context);
             }
-            // заполнение данными (приравниваем rowNum к последней незаполненной строке)
-            rowNum = fillCells(sheet, rowNum, dataItem, dto);
         }
         return rowNum;
     }
 
     /**
-     * Залипуха, связанная с вложенными таблицами
+     * Копирование строк шаблона и заполнение их данными
+     * (вложенные таблицы и range сразу разворачиваются, их шаблоны не копируются)
+     *
+     * @param dataItem      данные для строк шаблона
+     * @param sheet         лист
+     * @param source        лист с шаблоном строк
+     * @param rowNum        первая строка для заполнения
+     * @param srcOffset     смещение строк шаблона относительно скомпилированного плана
+     * @param dto           данные
+     * @param sourceRows    шаблон строк
+     * @param context       merged regions созданных строк и счетчики
+     * @return номер последней незаполненной строки
      */
-    private int decreaseNumberOfRowsToFill(Sheet sheet, int rowNum, int rowsSize, int index) {
-        //название вложенной таблицы
-        String stopWordInner = sheet.getRow(rowNum).getCell(0).getStringCellValue();
-        //уменьшаем количество строк для fillRange на длину вложенного range
-        int counter = 1;
-        while (!hasString(sheet.getRow(rowNum + counter), stopWordInner) && counter <= rowsSize) {
-            counter++;
+    private int copyRowsAndFillData(RowFiller dataItem, Sheet sheet, Sheet source, int rowNum, int srcOffset,
+                                    ExcelData dto, List<TemplateNode> sourceRows, SheetContext context) {
+        //копия строк шаблона не делится между листами
+        SheetShards shards = context.getShards();
+        if (shards != null && !shards.fits(rowNum, BlockHeights.measureRows(sourceRows, dto))) {
+            nextShard(shards, rowNum, context);
+        }
+
+        for (TemplateNode node : sourceRows) {
+            if (node instanceof TemplateRow) {
+                rowNum = breakPage(sheet, rowNum, context);
+                Row row = copyRow(sheet, source.getRow(node.getFirstRow() + srcOffset), rowNum, (TemplateRow) node, context);
+                // заполнение данными (приравниваем rowNum к последней незаполненной строке)
+                dataItem.fill(row, (TemplateRow) node);
+                context.placeholdersResolved(((TemplateRow) node).getPlaceholders().size());
+                rowNum++;
+
+                //вложенные таблицы
+            } else {
+                rowNum = createBlock(sheet, source, node, srcOffset, rowNum, dto, context);
+            }
         }
-        return index + counter + 2;
+        return rowNum;
     }
 
     /**
-     * Копирует строки между двумя ячейками с значением cellVal. Создает range на основе скопированных строк.
+     * Создает range на основе шаблона строк.
      *
-     * @param sheet       лист
-     * @param startRowNum номер строки
-     * @param dto         данные
-     * @param cellVal     значение в ячейке (из него берется название range)
-     * @return номер строки окончания range
+     * @param sheet     лист
+     * @param source    лист с шаблоном строк
+     * @param range     шаблон range
+     * @param srcOffset смещение строк шаблона относительно скомпилированного плана
+     * @param rowNum    первая строка для заполнения
+     * @param dto           данные
+     * @param context       merged regions созданных строк (добавляются в лист одним пакетом) и счетчики
+     * @return номер последней незаполненной строки
      */
-    private int createRange(Sheet sheet, int startRowNum, ExcelData dto, String cellVal) {
-        //пропускаем строку "идентификатор начала"
-        int rowNum = startRowNum + 1;
-
-        //шаблон строк
-        ExcelTemplateTableRows template = createTemplate(sheet, rowNum, cellVal);
-        //пролистываем шаблон
-        while (rowNum < sheet.getLastRowNum() && !hasString(sheet.getRow(rowNum), cellVal)) {
-            rowNum++;
-        }
-        rowNum++;
-
+    private int createRange(Sheet sheet, Sheet source, RangeBlock range, int srcOffset, int rowNum, ExcelData dto,
+                            SheetContext context) {
         //создание нескольких таблиц из шаблона
-        if (cellVal.startsWith(RANGE_LIST)) {
+        if (range.getName().startsWith(RANGE_LIST)) {
 
-            Set<ExcelTemplateTableDataWrapper> tables = dto.getExtendedTables()
-                    .stream()
-                    .filter(range -> range.getTableName().startsWith(RANGE_LIST))
-                    .collect(Collectors.toSet());
-
-            for (ExcelTemplateTableDataWrapper dataItem : tables) {
-                rowNum = fillRange(sheet, template, dto, dataItem.getTableName(), rowNum);
+            for (ExcelTemplateTableDataWrapper dataItem : findRangeListTables(dto)) {
+                rowNum = fillRange(sheet, source, range, srcOffset, dto, dataItem.getTableName(), rowNum, context);
             }
 
             //создание одной таблицы
         } else {
-            rowNum = fillRange(sheet, template, dto, cellVal, rowNum);
+            rowNum = fillRange(sheet, source, range, srcOffset, dto, range.getName(), rowNum, context);
         }
 
         return rowNum;
@@ -370,60 +1194,59 @@ public class ExcelGeneratorImpl implements ExcelGenerator {
      * Заполнение шаблона строк данными
      *
      * @param sheet       лист
-     * @param template    шаблон строк
+     * @param source      лист с шаблоном строк
+     * @param template    шаблон range
+     * @param srcOffset   смещение строк шаблона относительно скомпилированного плана
      * @param dto         данные
      * @param mapKey      ключ нужной мапы
-     * @param startRowNum первая строка для заполнения
+     * @param startRowNum   первая строка для заполнения
+     * @param context       merged regions созданных строк и счетчики
      * @return номер последней незаполненной строки
      */
-    private int fillRange(Sheet sheet, ExcelTemplateTableRows template, ExcelData dto, String mapKey, int startRowNum) {
+    private int fillRange(Sheet sheet, Sheet source, RangeBlock template, int srcOffset,
+                          ExcelData dto, String mapKey, int startRowNum, SheetContext context) {
         int rowNum = startRowNum;
 
-        Optional<LinkedList<ExcelTemplateTableData>> tables = dto.getExtendedTables().stream()
-                .filter(range -> range.getTableName().equals(mapKey))
-                .findFirst()
-                .map(ExcelTemplateTableDataWrapper::getTableRowsData);
-
-        List<Row> sourceRows = template.getBody();
+        Optional<LinkedList<ExcelTemplateTableData>> tables = findExtendedTable(dto, mapKey);
 
         //условия продолжения
-        if (sourceRows.isEmpty() || !tables.isPresent()) {
+        if (template.getBody().isEmpty() || !tables.isPresent()) {
             return rowNum;
         }
 
         //создание таблиц из щаблонов
         for (ExcelTemplateTableData dataItem : tables.get()) {
+            //итоги для bodyFooter и footer считаются по ходу заполнения body
+            RangeAggregator aggregator = template.getAggregates().isEmpty()
+                    ? null
+                    : new RangeAggregator(template.getAggregates(), settings.getValueConverters());
 
             //создание header
             if (!dataItem.getHeader().isEmpty() && !template.getHeader().isEmpty()) {
-                copyRows(sheet, template.getHeader(), rowNum); //копии строк шаблона
-                for (int i = 0; i < template.getHeader().size(); i++) {
-                    rowNum = fillCells(sheet, rowNum, dataItem.getHeader(), dto); // заполнение данными (приравниваем rowNum к последней незаполненной строке)
-                }
+                rowNum = copyRowsAndFillData(mapFiller(dataItem.getHeader()), sheet, source, rowNum, srcOffset, dto, template.getHeader(), context);
             }
 
-            //создание body
-            for (Map<String, Object> map : dataItem.getBody()) {
-                int startRow = rowNum;
-                rowNum = copyRowsAndFillData(map, sheet, startRow, dto, sourceRows);
+            //создание body (ленивые строки читаются по одной, вложенные таблицы - пакетами)
+            Iterator<Map<String, Object>> bodyRows = ChildBatchIterator.wrap(dataItem.bodyRows(), template.getBody(), dto, context,
+                    reservation(sheet, context));
+            while (bodyRows.hasNext()) {
+                Map<String, Object> bodyRow = bodyRows.next();
+                if (aggregator != null) {
+                    aggregator.accept(bodyRow);
+                }
+                rowNum = copyRowsAndFillData(mapFiller(bodyRow), sheet, source, rowNum, srcOffset, dto, template.getBody(), context);
             }
 
-            //создание bodyFooter
-            if (!dataItem.getBodyFooter().isEmpty() && !template.getBodyFooter().isEmpty()) {
-                for (Map<String, Object> map : dataItem.getBodyFooter()) {
-                    copyRows(sheet, template.getBodyFooter(), rowNum); //копии строк шаблона
-                    for (int i = 0; i < template.getBodyFooter().size(); i++) {
-                        rowNum = fillCells(sheet, rowNum, map, dto); // заполнение данными (приравниваем rowNum к последней незаполненной строке)
-                    }
-                }
+            //создание bodyFooter (с итогами пишется и без данных bodyFooter)
+            for (Map<String, Object> map : RangeAggregator.bodyFooterRows(template, dataItem)) {
+                rowNum = copyRowsAndFillData(mapFiller(aggregator != null ? aggregator.withTotals(map) : map),
+                        sheet, source, rowNum, srcOffset, dto, template.getBodyFooter(), context);
             }
 
-            //создание footer
-            if (!dataItem.getFooter().isEmpty() && !template.getFooter().isEmpty()) {
-                copyRows(sheet, template.getFooter(), rowNum); //копии строк шаблона
-                for (int i = 0; i < template.getFooter().size(); i++) {
-                    rowNum = fillCells(sheet, rowNum, dataItem.getFooter(), dto); // заполнение данными (приравниваем rowNum к последней незаполненной строке)
-                }
+            //создание footer (с итогами пишется и без данных footer)
+            if ((!dataItem.getFooter().isEmpty() || template.isFooterAggregated()) && !template.getFooter().isEmpty()) {
+                Map<String, Object> footer = aggregator != null ? aggregator.withTotals(dataItem.getFooter()) : dataItem.getFooter();
+                rowNum = copyRowsAndFillData(mapFiller(footer), sheet, source, rowNum, srcOffset, dto, template.getFooter(), context);
             }
         }
 
@@ -431,71 +1254,75 @@ public class ExcelGeneratorImpl implements ExcelGenerator {
     }
 
     /**
-     * Возвращает объект ExcelTemplate - шаблоны строк для построения рэнджа
+     * Освобождение места под count строк начиная с rowNum одним сдвигом нижележащих строк
      *
-     * @param sheet       лист
-     * @param startRowNum номер строки
-     * @param stopWord    название рэнджа
-     * @return ExcelTemplate
+     * @param sheet  лист
+     * @param rowNum первая строка для вставки
+     * @param count  количество вставляемых строк
+     * @return количество сдвинутых строк
      */
-    private ExcelTemplateTableRows createTemplate(Sheet sheet, int startRowNum, String stopWord) {
-        int rowNum = startRowNum;
-        ExcelTemplateTableRows template = new ExcelTemplateTableRows();
-        /* копии строк, пока не найдет стоп-слово или до конца листа */
-
-        //header для range (обязательный !!может быть ноль строк)
-        while (rowNum < sheet.getLastRowNum() && !hasString(sheet.getRow(rowNum), BODY + stopWord)) {
-            template.addHeader(sheet.getRow(rowNum));
-            rowNum++;
+    private int insertRows(Sheet sheet, int rowNum, int count) {
+        if (count <= 0 || rowNum > sheet.getLastRowNum()) {
+            return 0;
         }
-        rowNum++; //проматываем строку BODY + stopWord
 
-        //body (обязательный элемент)
-        while (bodyEnds(sheet, rowNum, stopWord)) {
-
-            //bodyFooter (необязательный элемент, может не быть вовсе)
-            if (hasString(sheet.getRow(rowNum), BODY_FOOTER + stopWord)) {
-                rowNum++;
-                // копируем, пока не встретим stopWord или footer
-                while (bodyFooterEnds(sheet, rowNum, stopWord)) {
-                    template.addBodyFooter(sheet.getRow(rowNum));
-                    rowNum++;
-                }
+        //залипуха с номером последней строки в экселе (причина = считаем с 0)
+        int maxWorkSheetRowNum = sheet.getWorkbook().getSpreadsheetVersion().getMaxRows() - 1; //начинается с нуля (max для XLSX = 1048575)
+        int lastRow = maxWorkSheetRowNum == sheet.getLastRowNum()
+                ? maxWorkSheetRowNum - 1
+                : sheet.getLastRowNum();
 
-                //Footer (необязательный элемент, может не быть вовсе)
-            } else if (hasString(sheet.getRow(rowNum), FOOTER + stopWord)) {
-                rowNum++;
-                // копируем, пока не встретим stopWord
-                while (bodyEnds(sheet, rowNum, stopWord)) {
-                    template.addFooter(sheet.getRow(rowNum));
-                    rowNum++;
-                }
+        sheet.shiftRows(rowNum, lastRow, count);
 
-                //Body
-            } else {
-                template.addBody(sheet.getRow(rowNum));
-                rowNum++;
+        //HSSF оставляет на освободившемся месте пустые строки, иначе copyRow сдвинет их повторно
+        for (int i = rowNum; i < rowNum + count; i++) {
+            Row row = sheet.getRow(i);
+            if (row != null) {
+                sheet.removeRow(row);
             }
         }
-
-        return template;
+        return lastRow - rowNum + 1;
     }
 
     /**
-     * Окончание body шаблона
+     * Расширение места, зарезервированного под заполняемый блок, чтобы строки [rowNum, rowNum + count) были свободны
+     * (строки ниже зарезервированного места сдвигаются один раз)
+     *
+     * @param sheet   лист
+     * @param rowNum  первая строка, которая будет записана
+     * @param count   количество строк
+     * @param context зарезервированное место
      */
-    private boolean bodyEnds(Sheet sheet, int rowNum, String stopWord) {
-        return rowNum < sheet.getLastRowNum()
-                && !hasString(sheet.getRow(rowNum), stopWord);
+    private void reserveRows(Sheet sheet, int rowNum, int count, SheetContext context) {
+        int end = rowNum + count;
+        if (!context.isReserving() || end <= context.getReservedEnd()) {
+            return;
+        }
+        //не больше, чем помещается в лист (иначе ошибку о переполнении даст copyRow)
+        int free = sheet.getWorkbook().getSpreadsheetVersion().getMaxRows() - 1 - sheet.getLastRowNum();
+        int added = Math.min(end - context.getReservedEnd(), Math.max(1, free));
+        context.rowsShifted(insertRows(sheet, context.getReservedEnd(), added));
+        context.reserved(context.getReservedEnd() + added);
     }
 
     /**
-     * Окончание bodyFooter шаблона
+     * Резервирование места под пакет родительских строк с потомками (см. {@link ChildBatchIterator}):
+     * потомки не измерены заранее, место под весь пакет освобождается одним сдвигом
+     *
+     * @param sheet   лист
+     * @param context зарезервированное место
+     * @return получатель высоты пакета
      */
-    private boolean bodyFooterEnds(Sheet sheet, int rowNum, String stopWord) {
-        return rowNum < sheet.getLastRowNum()
-                && !hasString(sheet.getRow(rowNum), stopWord)
-                && !hasString(sheet.getRow(rowNum), FOOTER + stopWord);
+    private IntConsumer reservation(Sheet sheet, SheetContext context) {
+        return rows -> reserveRows(sheet, context.getNextRow(), rows, context);
+    }
+
+    private Optional<LinkedList<ExcelTemplateTableData>> findExtendedTable(ExcelData dto, String tableName) {
+        return dto.findExtendedTable(tableName).map(ExcelTemplateTableDataWrapper::getTableRowsData);
+    }
+
+    private List<ExcelTemplateTableDataWrapper> findRangeListTables(ExcelData dto) {
+        return dto.findExtendedTables(RANGE_LIST);
     }
 
     /**
@@ -515,62 +1342,253 @@ public class ExcelGeneratorImpl implements ExcelGenerator {
     }
 
     /**
-     * Удаление шаблонов для range
+     * Промежутки строк шаблонов для range и таблиц и незанятых зарезервированных строк одним списком:
+     * позиции шаблонов записываются при заполнении (по разобранному плану), значения ячеек не читаются,
+     * поэтому данные, похожие на идентификаторы (#TABLE..., #RANGE...), строк не удаляют
+     *
+     * @param rows промежутки [первая строка, последняя строка] в любом порядке
+     * @return непересекающиеся промежутки по возрастанию (соседние и вложенные объединены)
+     */
+    private static List<int[]> mergeRows(List<int[]> rows) {
+        List<int[]> gaps = new ArrayList<>(rows);
+        gaps.sort(Comparator.comparingInt(gap -> gap[0]));
+        List<int[]> merged = new ArrayList<>();
+        for (int[] gap : gaps) {
+            int[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && previous[1] + 1 >= gap[0]) {
+                previous[1] = Math.max(previous[1], gap[1]);
+            } else {
+                merged.add(new int[]{gap[0], gap[1]});
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Удаление промежутков строк: merged regions удаляются одним вызовом,
+     * каждый кусок строк между промежутками сдвигается вверх один раз
      *
      * @param sheet лист
+     * @param gaps  непересекающиеся промежутки [первая строка, последняя строка] по возрастанию
+     * @return количество сдвинутых строк
      */
-    private void deleteAllTemplates(Sheet sheet) {
-        for (int rowNum = sheet.getFirstRowNum(); rowNum < sheet.getLastRowNum(); rowNum++) {
-            Row row = sheet.getRow(rowNum);
+    private int deleteRows(Sheet sheet, List<int[]> gaps) {
+        if (gaps.isEmpty()) {
+            return 0;
+        }
 
-            //проверяем есть ли идентификатор начала range
-            if (startWithString(row, RANGE) || startWithString(row, TABLE)) {
-                int endRowNum = rowNum;
-                //название range
-                String cellVal = row.getCell(0).getStringCellValue();
+        //удаление merged regions, которые начинаются в удаляемых строках;
+        //регионы внутри сдвигаемых кусков тоже снимаются и добавляются обратно уже сдвинутыми
+        //(shiftRows добавляет каждый сдвинутый регион через addMergedRegion с проверкой всех регионов листа)
+        int lastRowNum = sheet.getLastRowNum();
+        List<CellRangeAddress> mergedRegions = sheet.getMergedRegions();
+        List<Integer> mergedToDell = new ArrayList<>();
+        List<CellRangeAddress> shiftedMerged = new ArrayList<>();
+        for (int i = 0; i < mergedRegions.size(); i++) {
+            CellRangeAddress merged = mergedRegions.get(i);
+            if (inGaps(gaps, merged.getFirstRow())) {
+                mergedToDell.add(i);
+                continue;
+            }
+            int shift = shiftOf(gaps, lastRowNum, merged);
+            if (shift != 0) {
+                mergedToDell.add(i);
+                shiftedMerged.add(new CellRangeAddress(merged.getFirstRow() - shift, merged.getLastRow() - shift,
+                        merged.getFirstColumn(), merged.getLastColumn()));
+            }
+        }
+        if (!mergedToDell.isEmpty()) {
+            sheet.removeMergedRegions(mergedToDell);
+        }
 
-                //проматываем до окончания range
-                endRowNum++;
-                while (endRowNum < sheet.getLastRowNum() && !hasString(sheet.getRow(endRowNum), cellVal)) {
-                    endRowNum++;
-                }
-                if (endRowNum < sheet.getLastRowNum()) {
-                    endRowNum++;
+        //очистка содержимого
+        for (int[] gap : gaps) {
+            for (int i = gap[0]; i <= gap[1]; i++) {
+                Row row = sheet.getRow(i);
+                if (row != null) {
+                    sheet.removeRow(row);
                 }
+            }
+        }
 
-                //удаление range
-                dellRange(sheet, rowNum, endRowNum);
+        //шифт вверх: кусок между промежутками сдвигается на количество удаленных выше строк
+        int removed = 0;
+        int shifted = 0;
+        for (int g = 0; g < gaps.size(); g++) {
+            int[] gap = gaps.get(g);
+            removed += gap[1] - gap[0] + 1;
+            int from = gap[1] + 1;
+            int to = g + 1 < gaps.size() ? gaps.get(g + 1)[0] - 1 : lastRowNum;
+            if (from <= to) {
+                sheet.shiftRows(from, to, -removed);
+                shifted += to - from + 1;
             }
         }
+
+        //куски сдвигаются вверх с сохранением порядка, поэтому сдвинутые регионы не пересекаются
+        for (CellRangeAddress merged : shiftedMerged) {
+            sheet.addMergedRegionUnsafe(merged);
+        }
+        return shifted;
+    }
+
+    /**
+     * На сколько строк вверх сдвинется merged region при удалении промежутков
+     *
+     * @return 0, если регион выше промежутков или не помещается целиком в один сдвигаемый кусок
+     * (такие регионы остаются на shiftRows)
+     */
+    private int shiftOf(List<int[]> gaps, int lastRowNum, CellRangeAddress merged) {
+        int removed = 0;
+        for (int g = 0; g < gaps.size(); g++) {
+            int[] gap = gaps.get(g);
+            if (merged.getFirstRow() < gap[0]) {
+                return 0;
+            }
+            removed += gap[1] - gap[0] + 1;
+            int to = g + 1 < gaps.size() ? gaps.get(g + 1)[0] - 1 : lastRowNum;
+            if (merged.getFirstRow() <= to) {
+                return merged.getLastRow() <= to ? removed : 0;
+            }
+        }
+        return 0;
     }
 
-    private void copyRow(Sheet sheet, Row sourceRow, int destinationRowNum) {
-        copyRow(sheet, sourceRow, destinationRowNum, true);
+    /**
+     * Попадает ли строка в один из промежутков (промежутки отсортированы)
+     */
+    private boolean inGaps(List<int[]> gaps, int rowNum) {
+        int low = 0;
+        int high = gaps.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int[] gap = gaps.get(mid);
+            if (rowNum < gap[0]) {
+                high = mid - 1;
+            } else if (rowNum > gap[1]) {
+                low = mid + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Копирование строки
+     * Копирование строки шаблона, merged regions строки берутся из скомпилированного плана
      *
      * @param sheet             лист назначения
-     * @param sourceRow         source
+     * @param sourceRow         source (null = пустая строка)
      * @param destinationRowNum номер строки, в которую копировать
+     * @param template          скомпилированная строка шаблона
+     * @param context           сюда добавляются merged regions новой строки и счетчики
+     *                          (при продолжении листа номер строки сквозной, строка создается в текущем листе)
+     * @return новая строка
      */
-    private void copyRow(Sheet sheet, Row sourceRow, int destinationRowNum, boolean copyMergedRanges) {
+    private Row copyRow(Sheet sheet, Row sourceRow, int destinationRowNum, TemplateRow template,
+                        SheetContext context) {
+        SheetShards shards = context.getShards();
+        if (shards != null) {
+            if (shards.rowOf(destinationRowNum) >= shards.getMaxRows()) {
+                nextShard(shards, destinationRowNum, context);
+            }
+            sheet = shards.getCurrent();
+            destinationRowNum = shards.rowOf(destinationRowNum);
+        }
+
+        //строки сверх зарезервированного места (ленивые строки): место удваивается одним сдвигом
+        if (context.isReserving()) {
+            if (destinationRowNum >= context.getReservedEnd()) {
+                reserveRows(sheet, destinationRowNum, Math.max(MIN_RESERVED_ROWS, destinationRowNum - context.getBlockStart()), context);
+            }
+            context.rowWritten(destinationRowNum);
+        }
+
+        context.rowsShifted(copyRow(sheet, sourceRow, destinationRowNum));
+        context.rowCopied();
+        if (sourceRow != null) {
+            for (MergedRegion merged : template.getMergedRegions()) {
+                context.getMergedRegions().add(merged.at(destinationRowNum));
+            }
+        }
+        return sheet.getRow(destinationRowNum);
+    }
+
+    /**
+     * Добавление merged regions одним пакетом: без проверки пересечений на каждое добавление
+     * (addMergedRegion каждый раз разбирает и сравнивает все регионы листа), с одной проверкой в конце
+     *
+     * @param sheet         лист
+     * @param mergedRegions новые регионы
+     */
+    private void addMergedRegions(Sheet sheet, List<CellRangeAddress> mergedRegions) {
+        if (mergedRegions.isEmpty()) {
+            return;
+        }
+        for (CellRangeAddress merged : mergedRegions) {
+            sheet.addMergedRegionUnsafe(merged);
+        }
+        validateMergedRegions(sheet.getMergedRegions());
+    }
+
+    /**
+     * Проверка, что merged regions не пересекаются (сортировка по первой строке вместо сравнения всех пар)
+     *
+     * @param mergedRegions все регионы листа
+     * @throws IllegalStateException если регионы пересекаются
+     */
+    private void validateMergedRegions(List<CellRangeAddress> mergedRegions) {
+        List<CellRangeAddress> sorted = new ArrayList<>(mergedRegions);
+        sorted.sort(Comparator.comparingInt(CellRangeAddress::getFirstRow));
+
+        //регионы, которые еще не закончились к текущей строке
+        List<CellRangeAddress> open = new ArrayList<>();
+        for (CellRangeAddress region : sorted) {
+            open.removeIf(other -> other.getLastRow() < region.getFirstRow());
+            for (CellRangeAddress other : open) {
+                if (region.intersects(other)) {
+                    throw new IllegalStateException("The range " + region.formatAsString()
+                            + " intersects with another merged region " + other.formatAsString() + " in this sheet");
+                }
+            }
+            open.add(region);
+        }
+    }
+
+    /**
+     * Копирование строки (без merged regions)
+     *
+     * @param sheet             лист назначения
+     * @param sourceRow         source (null = пустая строка)
+     * @param destinationRowNum номер строки, в которую копировать
+     * @return количество сдвинутых строк
+     */
+    private int copyRow(Sheet sheet, Row sourceRow, int destinationRowNum) {
+        int maxWorkSheetRowNum = sheet.getWorkbook().getSpreadsheetVersion().getMaxRows() - 1; //начинается с нуля (max для XLSX = 1048575)
+        if (destinationRowNum > maxWorkSheetRowNum) {
+            throw new IllegalStateException("Sheet " + sheet.getSheetName() + " is full: row " + (destinationRowNum + 1)
+                    + " exceeds " + (maxWorkSheetRowNum + 1) + " rows, enable sheetSharding for XLSX_STREAMING");
+        }
         Row newRow = sheet.getRow(destinationRowNum);
+        int shifted = 0;
 
         // Если есть - шифт строк. Если нет - создание строки
         if (newRow != null) {
             //залипуха с номером последней строки в экселе (причина = считаем с 0)
-            int maxWorkSheetRowNum = sheet.getWorkbook().getSpreadsheetVersion().getMaxRows() - 1; //начинается с нуля (max для XLSX = 1048575)
             int lastRow = maxWorkSheetRowNum == sheet.getLastRowNum()
                     ? maxWorkSheetRowNum - 1
                     : sheet.getLastRowNum();
 
             sheet.shiftRows(destinationRowNum, lastRow, 1);
+            shifted = lastRow - destinationRowNum + 1;
             newRow = sheet.createRow(destinationRowNum);
         } else {
             newRow = sheet.createRow(destinationRowNum);
         }
+        if (sourceRow == null) {
+            return shifted;
+        }
+        newRow.setHeight(sourceRow.getHeight());
 
         Iterator<Cell> cellIterator = sourceRow.cellIterator();
         while (cellIterator.hasNext()) {
@@ -580,7 +1598,9 @@ public class ExcelGeneratorImpl implements ExcelGenerator {
             // style
             newCell.setCellStyle(oldCell.getCellStyle());
             newCell.setCellComment(oldCell.getCellComment());
-            newCell.setCellType(oldCell.getCellType());
+            if (oldCell.getCellType() != CellType.FORMULA) {
+                newCell.setCellType(oldCell.getCellType());
+            }
 
             //hyperlink
             Hyperlink hyperlink = oldCell.getHyperlink();
@@ -616,189 +1636,36 @@ public class ExcelGeneratorImpl implements ExcelGenerator {
                     newCell.setBlank();
             }
         }
-
-        // Копирование merged Regions
-        if (copyMergedRanges) {
-            sourceRow.getSheet().getMergedRegions().stream()
-                    .filter(merged -> merged.getFirstRow() == sourceRow.getRowNum())
-                    .forEach(merged -> {
-                        int lastRow = destinationRowNum + (merged.getLastRow() - merged.getFirstRow());
-                        CellRangeAddress newCellRangeAddress = new CellRangeAddress(
-                                destinationRowNum, lastRow, merged.getFirstColumn(), merged.getLastColumn());
-                        sheet.addMergedRegion(newCellRangeAddress);
-                    });
-        }
+        return shifted;
     }
 
     /**
-     * Проверка налиия ключа-идентификатора данных в первой ячейке (startsWith)
+     * Подвал страницы перед строкой содержимого, которая не помещается на текущую страницу (см. {@link PageBreaks}):
+     * в зарезервированном под блок месте подвал пишется без сдвигов, между строками шаблона - одним сдвигом на подвал
      *
-     * @param row строка
-     * @param key искомый ключ
-     * @return boolean
+     * @param sheet   лист
+     * @param rowNum  строка для строки содержимого
+     * @param context разбивка на страницы, merged regions и счетчики
+     * @return строка для строки содержимого (после подвала)
      */
-    private boolean startWithString(Row row, String key) {
-        if (row != null) {
-            Cell firstCell = row.getCell(0);
-            return firstCell != null
-                    && CellType.STRING.equals(firstCell.getCellType())
-                    && firstCell.getStringCellValue().startsWith(key);
+    private int breakPage(Sheet sheet, int rowNum, SheetContext context) {
+        PageBreaks pages = context.getPages();
+        if (pages == null || !pages.isStarted()) {
+            return rowNum;
         }
-        return false;
-    }
-
-    /**
-     * Если есть строка с пометкой PAGE_BREAKER - разбить на страницы
-     * пример строки-идентификатора
-     * $PageBreaker$33-2
-     * , где 33 - количество строк, через которые вставлять разрыв страницы
-     * 2 - номер первой страницы
-     *
-     * @param sheet лист
-     */
-    private void splitPage(Sheet sheet) {
-        int rowNum = sheet.getFirstRowNum();
-        while (rowNum < sheet.getLastRowNum()) {
-            Row row = sheet.getRow(rowNum);
-
-            //признак необходимости постраничной разбивки
-            if (startWithString(row, PAGE_BREAKER)) {
-                String cellVal = row.getCell(0).getStringCellValue();
-                String restData = cellVal.substring(PAGE_BREAKER.length());
-                String[] params = restData.split("-");
-
-                //получаем длину строк в листе и номер первого листа
-                int pageLength = Integer.parseInt(params[0]);
-                int firstPage = Integer.parseInt(params[1]);
-
-                //постраничная разбивка
-                splitPage(sheet, rowNum, pageLength, firstPage);
-
-                break;
+        if (pages.isPageFull()) {
+            List<TemplateRow> footer = pages.getFooter();
+            if (!context.isReserving()) {
+                context.rowsShifted(insertRows(sheet, rowNum, footer.size()));
             }
-            rowNum++;
-        }
-    }
-
-    /**
-     * Разбивка на страницы начиная с указанной строки
-     *
-     * @param sheet            лист
-     * @param templateStartRow начальна трока
-     */
-    private void splitPage(Sheet sheet, int templateStartRow, int pageLength, int startPage) {
-        int pageNum = startPage;
-        int rowNum = templateStartRow;
-
-        //создаем шаблон с строками, копируемыми в конец каждого листа (номер листа к примеру)
-        List<Row> template = new ArrayList<>();
-        rowNum++;
-        while (rowNum < sheet.getLastRowNum() && !startWithString(sheet.getRow(rowNum), PAGE_BREAKER)) {
-            template.add(sheet.getRow(rowNum));
-            rowNum++;
-        }
-        rowNum++;
-
-        int templateEndRow = rowNum;
-
-        //пролистываем на длину pageLength
-        rowNum = rowNum + 1 + pageLength - template.size();
-
-        while ((sheet.getLastRowNum() - rowNum) > pageLength) { //пока до конца листа не останется строк меньше, чем pageLength
-            //копирование строк из шаблона
-            copyRows(sheet, template, rowNum);
-
-            //проставляем номер страницы
-            for (int i = 0; i <= template.size(); i++) {
-                if (sheet.getRow(rowNum) == null) {
-                    break;
-                }
-                Iterator<Cell> iterator = sheet.getRow(rowNum).cellIterator();
-                while (iterator.hasNext()) {
-                    Cell cell = iterator.next();
-                    if (cell != null
-                            && CellType.STRING.equals(cell.getCellType())
-                            && cell.getStringCellValue().equals(PAGE_NUM)
-                    ) {
-                        //задание номера текущего листа
-                        pageNum++;
-                        cell.setCellValue(pageNum);
-                    }
-                }
+            int page = pages.pageBroken(rowNum + footer.size() - 1);
+            for (int i = 0; i < footer.size(); i++) {
+                Row row = copyRow(sheet, sheet.getRow(pages.getFooterStart() + i), rowNum, footer.get(i), context);
+                pages.setPageNumber(row, i, page);
                 rowNum++;
             }
-
-            //добавляем разрыв страниц
-            sheet.setRowBreak(rowNum - 2);
-
-            //пролистываем на длину pageLength
-            rowNum = rowNum + pageLength;
         }
-
-        //удаляем шаблон
-        dellRange(sheet, templateStartRow, templateEndRow);
-    }
-
-    /**
-     * Копирование строк исходных строк в данный sheet, начиная с строки startRow
-     *
-     * @param sheet      лист назначения
-     * @param sourceRows source
-     * @param startRow   первая строка назначения
-     */
-    private void copyRows(Sheet sheet, List<Row> sourceRows, int startRow) {
-        //копия строк
-        int destinationRowNum = startRow;
-        for (Row row : sourceRows) {
-            if (row == null) {
-                continue;
-            }
-            copyRow(sheet, row, destinationRowNum, false);
-            destinationRowNum++;
-        }
-
-        //создание копий merged regions
-        destinationRowNum = startRow;
-        for (Row row : sourceRows) {
-            if (row == null) {
-                continue;
-            }
-            for (CellRangeAddress merged : row.getSheet().getMergedRegions()) {
-                if (merged.getFirstRow() == row.getRowNum()) {
-                    int lastRow = destinationRowNum + (merged.getLastRow() - merged.getFirstRow());
-                    CellRangeAddress newCellRangeAddress = new CellRangeAddress(
-                            destinationRowNum, lastRow, merged.getFirstColumn(), merged.getLastColumn());
-                    sheet.addMergedRegion(newCellRangeAddress);
-                }
-            }
-            destinationRowNum++;
-        }
-    }
-
-    /**
-     * удаление строк
-     *
-     * @param sheet    лист
-     * @param startRow первая строка рэнжда
-     * @param endRow   последняя
-     */
-    private void dellRange(Sheet sheet, int startRow, int endRow) {
-        //удаление merged regions
-        for (int rowNum = startRow; rowNum < endRow; rowNum++) {
-            int rowNumToDell = 0;
-            for (CellRangeAddress merged : sheet.getMergedRegions()) {
-                if (merged.getFirstRow() == rowNum) {
-                    sheet.removeMergedRegion(rowNumToDell);
-                } else {
-                    rowNumToDell++;
-                }
-            }
-        }
-        //очистка содержимого
-        for (int i = startRow; i < endRow; i++) {
-            sheet.removeRow(sheet.getRow(i));
-        }
-        //шифт вверх
-        sheet.shiftRows(endRow, sheet.getLastRowNum(), startRow - endRow);
+        pages.contentRow();
+        return rowNum;
     }
 }
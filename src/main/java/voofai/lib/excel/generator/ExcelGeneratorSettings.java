@@ -0,0 +1,108 @@
+package voofai.lib.excel.generator;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.metrics.GenerationListener;
+import voofai.lib.output.OutputSettings;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Настройки генератора {@link ExcelGeneratorImpl}
+ */
+@Getter
+@Builder
+public class ExcelGeneratorSettings {
+
+    /**
+     * Количество строк, которые держатся в памяти при записи {@link voofai.lib.excel.dto.WorkBookType#XLSX_STREAMING},
+     * остальные сбрасываются во временный файл
+     */
+    @Builder.Default
+    private final int streamingWindowSize = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+
+    /**
+     * Сжимать временные файлы {@link voofai.lib.excel.dto.WorkBookType#XLSX_STREAMING}
+     */
+    @Builder.Default
+    private final boolean streamingCompressTempFiles = false;
+
+    /**
+     * Заполнять листы {@link voofai.lib.excel.dto.WorkBookType#XLSX_STREAMING} и {@link voofai.lib.excel.dto.WorkBookType#XLSX_DIRECT}
+     * параллельно (листы независимы, XLSX_DIRECT пишет каждый лист в отдельную часть zip).
+     * Для XLS/XLSX листы заполняются по очереди: сдвиг строк меняет формулы во всех листах книги,
+     * а таблица общих строк одна на книгу
+     */
+    @Builder.Default
+    private final boolean parallelSheets = false;
+
+    /**
+     * Пул для параллельного заполнения листов
+     */
+    @Builder.Default
+    private final ForkJoinPool sheetPool = ForkJoinPool.commonPool();
+
+    /**
+     * Разбивать листы XLS/XLSX на страницы по строке-идентификатору $PageBreaker$ (длина страницы и номер первой страницы),
+     * вставляя в конце каждой страницы подвал с номером страницы и разрыв страницы.
+     * Для {@link voofai.lib.excel.dto.WorkBookType#XLSX_STREAMING} не выполняется (строки пишутся без сдвигов)
+     */
+    @Builder.Default
+    private final boolean pageBreaks = false;
+
+    /**
+     * Продолжать лист {@link voofai.lib.excel.dto.WorkBookType#XLSX_STREAMING} на новых листах, когда строки
+     * не помещаются в лист: таблица переносится целыми копиями строк шаблона, на каждом новом листе повторяются
+     * строки шаблона над таблицей. Новые листы встают сразу за исходным и называются "Лист (2)", "Лист (3)" ...
+     * Без продолжения (и для XLS/XLSX/XLSX_DIRECT) переполнение листа = {@link IllegalStateException}
+     */
+    @Builder.Default
+    private final boolean sheetSharding = false;
+
+    /**
+     * Количество строк в одном листе при {@link #isSheetSharding()} (0 = предел формата, 1 048 576 строк)
+     */
+    @Builder.Default
+    private final int shardRows = 0;
+
+    /**
+     * Хранение строковых значений параметров в XLSX: таблица общих строк (SST) или inline-строки в ячейках.
+     * {@link voofai.lib.excel.dto.WorkBookType#XLSX_STREAMING} и {@link voofai.lib.excel.dto.WorkBookType#XLSX_DIRECT}
+     * всегда пишут inline-строки, в XLS строки хранятся только в SST
+     */
+    @Builder.Default
+    private final StringStorage stringStorage = StringStorage.SHARED;
+
+    /**
+     * Ключи параметров (колонки таблиц), которые пишутся inline-строками при {@link StringStorage#SHARED}:
+     * уникальные значения (id, имена) не раздувают SST, повторяющиеся остаются общими
+     */
+    @Builder.Default
+    private final Set<String> inlineStringKeys = Collections.emptySet();
+
+    /**
+     * Преобразование значений параметров в значения ячеек (даты, числа и т.д.)
+     */
+    @Builder.Default
+    private final ValueConverters valueConverters = ValueConverters.defaults();
+
+    /**
+     * Уровень сжатия и буфер записи результата (для XLS сжатие не применяется, только буфер)
+     */
+    @Builder.Default
+    private final OutputSettings outputSettings = OutputSettings.defaults();
+
+    /**
+     * Получатель замеров фаз генерации и счетчиков (null = замеры не выполняются),
+     * например {@code voofai.lib.metrics.jfr.JfrGenerationListener} из дополнительного модуля jfr
+     */
+    private final GenerationListener generationListener;
+
+    public static ExcelGeneratorSettings defaults() {
+        return ExcelGeneratorSettings.builder().build();
+    }
+}
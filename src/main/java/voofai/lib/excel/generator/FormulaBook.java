@@ -0,0 +1,34 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.util.List;
+
+/**
+ * Книга с названиями листов шаблона для разбора формул (создается при первой формуле).
+ * Заполняемая книга для этого не подходит: при параллельном заполнении в нее добавляются листы,
+ * а разбор формулы перебирает листы книги. Книга не потокобезопасна, у каждого листа результата своя
+ */
+final class FormulaBook {
+    private final List<String> sheetNames;
+    private XSSFEvaluationWorkbook workbook;
+
+    /**
+     * @param sheetNames названия листов шаблона по порядку (не меняются после создания)
+     */
+    FormulaBook(List<String> sheetNames) {
+        this.sheetNames = sheetNames;
+    }
+
+    XSSFEvaluationWorkbook get() {
+        if (workbook == null) {
+            XSSFWorkbook book = new XSSFWorkbook();
+            for (String sheetName : sheetNames) {
+                book.createSheet(sheetName);
+            }
+            workbook = XSSFEvaluationWorkbook.create(book);
+        }
+        return workbook;
+    }
+}
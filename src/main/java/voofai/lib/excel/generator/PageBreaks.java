@@ -0,0 +1,211 @@
+package voofai.lib.excel.generator;
+
+import lombok.Getter;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import voofai.lib.excel.template.TemplateNode;
+import voofai.lib.excel.template.TemplateRow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбивка листа XLS/XLSX на страницы по строке-идентификатору $PageBreaker$ (см. {@link ExcelGeneratorSettings#isPageBreaks()}).
+ * Пример строки-идентификатора: $PageBreaker$33-2, где 33 - количество строк на странице (вместе со строками подвала),
+ * 2 - номер первой страницы. Строки между открывающей и закрывающей строкой $PageBreaker$ - подвал страницы.
+ * <p>
+ * Подвал вставляется при заполнении, перед первой строкой содержимого, которая не помещается на текущую страницу
+ * (строки пишутся по порядку, поэтому строки ниже не сдвигаются на каждую страницу).
+ * Страницы отсчитываются от закрывающей строки-идентификатора, строки выше нее не разбиваются,
+ * пустые строки шаблона в конце листа не считаются содержимым.
+ * Позиции разрывов записываются до удаления шаблонов и пересчитываются после
+ */
+@Getter
+final class PageBreaks {
+    private final int openIndex;
+    private final int closeIndex;
+    private final int contentEnd;
+    private final int firstPage;
+    private final int bodySize;
+    private final List<TemplateRow> footer;
+    // [строка подвала, колонка] ячеек $pageNum$
+    private final List<int[]> pageNumCells;
+    // последние строки подвалов (номера строк до удаления шаблонов)
+    private final List<Integer> breaks = new ArrayList<>();
+    // первая строка шаблона подвала, -1 = страницы еще не начались
+    private int footerStart = -1;
+    private int contentRows;
+
+    private PageBreaks(int openIndex, int closeIndex, int contentEnd, int firstPage, int bodySize,
+                       List<TemplateRow> footer, List<int[]> pageNumCells) {
+        this.openIndex = openIndex;
+        this.closeIndex = closeIndex;
+        this.contentEnd = contentEnd;
+        this.firstPage = firstPage;
+        this.bodySize = bodySize;
+        this.footer = footer;
+        this.pageNumCells = pageNumCells;
+    }
+
+    /**
+     * Поиск шаблона подвала среди строк листа (до заполнения, строки шаблона еще на своих местах)
+     *
+     * @param sheet лист
+     * @param nodes скомпилированный план листа
+     * @return разбивка или null, если строки $PageBreaker$ нет
+     */
+    static PageBreaks find(Sheet sheet, List<TemplateNode> nodes) {
+        int openIndex = findMarker(sheet, nodes, 0);
+        if (openIndex < 0) {
+            return null;
+        }
+        int closeIndex = findMarker(sheet, nodes, openIndex + 1);
+        if (closeIndex < 0) {
+            throw new IllegalStateException("Closing " + ExcelGeneratorImpl.PAGE_BREAKER + " row not found after row "
+                    + (nodes.get(openIndex).getFirstRow() + 1));
+        }
+
+        //получаем длину страницы и номер первой страницы
+        String[] params = sheet.getRow(nodes.get(openIndex).getFirstRow()).getCell(0).getStringCellValue()
+                .substring(ExcelGeneratorImpl.PAGE_BREAKER.length()).split("-");
+        int pageLength = Integer.parseInt(params[0].trim());
+        int firstPage = params.length > 1 ? Integer.parseInt(params[1].trim()) : 1;
+
+        //шаблон подвала: строки и ячейки номера страницы
+        List<TemplateRow> footer = new ArrayList<>();
+        List<int[]> pageNumCells = new ArrayList<>();
+        for (int i = openIndex + 1; i < closeIndex; i++) {
+            if (!(nodes.get(i) instanceof TemplateRow)) {
+                throw new IllegalStateException("Page footer between " + ExcelGeneratorImpl.PAGE_BREAKER
+                        + " rows must not contain tables or ranges");
+            }
+            Row row = sheet.getRow(nodes.get(i).getFirstRow());
+            if (row != null) {
+                for (Cell cell : row) {
+                    if (CellType.STRING.equals(cell.getCellType()) && ExcelGeneratorImpl.PAGE_NUM.equals(cell.getStringCellValue())) {
+                        pageNumCells.add(new int[]{footer.size(), cell.getColumnIndex()});
+                    }
+                }
+            }
+            footer.add((TemplateRow) nodes.get(i));
+        }
+        int bodySize = pageLength - footer.size();
+        if (bodySize <= 0) {
+            throw new IllegalArgumentException("Page length " + pageLength
+                    + " must be greater than page footer (" + footer.size() + " rows)");
+        }
+
+        //содержимое заканчивается на последнем блоке или непустой строке
+        int contentEnd = nodes.size() - 1;
+        while (contentEnd > closeIndex && nodes.get(contentEnd) instanceof TemplateRow
+                && isBlank(sheet.getRow(nodes.get(contentEnd).getFirstRow()))) {
+            contentEnd--;
+        }
+        return new PageBreaks(openIndex, closeIndex, contentEnd, firstPage, bodySize, footer, pageNumCells);
+    }
+
+    /**
+     * Начало страниц: шаблон подвала заполнен параметрами
+     *
+     * @param footerStart первая строка шаблона подвала
+     */
+    void start(int footerStart) {
+        this.footerStart = footerStart;
+    }
+
+    boolean isStarted() {
+        return footerStart >= 0;
+    }
+
+    /**
+     * Элемент шаблона листа с этим индексом - содержимое страниц
+     */
+    boolean isContent(int nodeIndex) {
+        return nodeIndex > closeIndex && nodeIndex <= contentEnd;
+    }
+
+    /**
+     * Текущая страница заполнена (следующей строке содержимого нужен подвал перед ней)
+     */
+    boolean isPageFull() {
+        return contentRows > 0 && contentRows % bodySize == 0;
+    }
+
+    /**
+     * Строка содержимого записана
+     */
+    void contentRow() {
+        contentRows++;
+    }
+
+    /**
+     * Подвал страницы записан
+     *
+     * @param lastRow последняя строка подвала (разрыв страницы после нее)
+     * @return номер законченной страницы
+     */
+    int pageBroken(int lastRow) {
+        breaks.add(lastRow);
+        return firstPage + breaks.size() - 1;
+    }
+
+    /**
+     * Количество строк подвалов, которые могут понадобиться для rows строк содержимого
+     */
+    int footerRows(int rows) {
+        return (rows + bodySize - 1) / bodySize * footer.size();
+    }
+
+    /**
+     * Номер страницы в ячейки $pageNum$ скопированной строки подвала
+     *
+     * @param row       строка подвала
+     * @param footerRow номер строки в подвале
+     * @param page      номер страницы
+     */
+    void setPageNumber(Row row, int footerRow, int page) {
+        for (int[] pageNumCell : pageNumCells) {
+            if (pageNumCell[0] == footerRow) {
+                row.getCell(pageNumCell[1]).setCellValue(page);
+            }
+        }
+    }
+
+    /**
+     * Разрывы страниц по итоговым номерам строк (XSSF не сдвигает разрывы при shiftRows, поэтому ставятся после удаления)
+     *
+     * @param sheet   лист
+     * @param deleted удаленные промежутки [первая строка, последняя строка] по возрастанию
+     */
+    void setRowBreaks(Sheet sheet, List<int[]> deleted) {
+        int gap = 0;
+        int deletedAbove = 0;
+        for (int rowNum : breaks) {
+            while (gap < deleted.size() && deleted.get(gap)[1] < rowNum) {
+                deletedAbove += deleted.get(gap)[1] - deleted.get(gap)[0] + 1;
+                gap++;
+            }
+            sheet.setRowBreak(rowNum - deletedAbove);
+        }
+    }
+
+    private static int findMarker(Sheet sheet, List<TemplateNode> nodes, int fromIndex) {
+        for (int i = fromIndex; i < nodes.size(); i++) {
+            if (nodes.get(i) instanceof TemplateRow) {
+                Row row = sheet.getRow(nodes.get(i).getFirstRow());
+                Cell firstCell = row != null ? row.getCell(0) : null;
+                if (firstCell != null && CellType.STRING.equals(firstCell.getCellType())
+                        && firstCell.getStringCellValue().startsWith(ExcelGeneratorImpl.PAGE_BREAKER)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isBlank(Row row) {
+        return row == null || row.getPhysicalNumberOfCells() == 0;
+    }
+}
@@ -0,0 +1,115 @@
+package voofai.lib.excel.generator;
+
+import voofai.lib.convert.ValueConverter;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.excel.dto.ExcelTemplateTableData;
+import voofai.lib.excel.template.Aggregate;
+import voofai.lib.excel.template.RangeBlock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Итоги range (см. {@link Aggregate}), которые накапливаются по мере заполнения строк body,
+ * без повторного прохода по данным и без формул.
+ * count = количество непустых значений колонки, sum/min/max/avg считаются по числовым значениям
+ * (числовой конвертер в {@link ValueConverters}), min/max/avg без чисел = пустая ячейка
+ */
+final class RangeAggregator {
+    private final List<Aggregate> aggregates;
+    private final ValueConverters valueConverters;
+    private final Map<String, ColumnStats> columns = new LinkedHashMap<>();
+
+    RangeAggregator(List<Aggregate> aggregates, ValueConverters valueConverters) {
+        this.aggregates = aggregates;
+        this.valueConverters = valueConverters;
+        for (Aggregate aggregate : aggregates) {
+            columns.putIfAbsent(aggregate.getColumn(), new ColumnStats());
+        }
+    }
+
+    /**
+     * Строки bodyFooter блока данных: данные bodyFooter, а если их нет и в bodyFooter есть итоги - одна строка только с итогами
+     *
+     * @param template шаблон range
+     * @param dataItem данные блока range
+     * @return строки bodyFooter (пусто = bodyFooter не пишется)
+     */
+    static List<Map<String, Object>> bodyFooterRows(RangeBlock template, ExcelTemplateTableData dataItem) {
+        if (template.getBodyFooter().isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (dataItem.getBodyFooter().isEmpty() && template.isBodyFooterAggregated()) {
+            return Collections.singletonList(Collections.emptyMap());
+        }
+        return dataItem.getBodyFooter();
+    }
+
+    /**
+     * Учет строки body
+     *
+     * @param row данные строки
+     */
+    void accept(Map<String, Object> row) {
+        for (Map.Entry<String, ColumnStats> column : columns.entrySet()) {
+            Object value = row.get(column.getKey());
+            if (value != null) {
+                column.getValue().accept(value, valueConverters.find(value.getClass()));
+            }
+        }
+    }
+
+    /**
+     * Данные строки bodyFooter/footer вместе с итогами (значения, переданные явно, не заменяются)
+     *
+     * @param map данные строки
+     * @return новая мапа
+     */
+    Map<String, Object> withTotals(Map<String, Object> map) {
+        Map<String, Object> values = new HashMap<>(map.size() + aggregates.size());
+        for (Aggregate aggregate : aggregates) {
+            values.put(aggregate.getKey(), columns.get(aggregate.getColumn()).total(aggregate.getFunction()));
+        }
+        values.putAll(map);
+        return values;
+    }
+
+    private static final class ColumnStats {
+        private long count;
+        private long numbers;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        void accept(Object value, ValueConverter<Object> converter) {
+            count++;
+            if (converter.isNumeric()) {
+                double number = converter.toNumber(value);
+                numbers++;
+                sum += number;
+                min = Math.min(min, number);
+                max = Math.max(max, number);
+            }
+        }
+
+        Object total(Aggregate.Function function) {
+            switch (function) {
+                case SUM:
+                    return sum;
+                case COUNT:
+                    return count;
+                case MIN:
+                    return numbers > 0 ? min : null;
+                case MAX:
+                    return numbers > 0 ? max : null;
+                case AVG:
+                    return numbers > 0 ? sum / numbers : null;
+                default:
+                    throw new IllegalArgumentException("Unknown aggregate function " + function);
+            }
+        }
+    }
+}
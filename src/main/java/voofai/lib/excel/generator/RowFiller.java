@@ -0,0 +1,17 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.usermodel.Row;
+import voofai.lib.excel.template.TemplateRow;
+
+/**
+ * Заполнение ячеек-параметров скопированной строки шаблона значениями одной строки данных
+ */
+@FunctionalInterface
+interface RowFiller {
+
+    /**
+     * @param row      строка для заполнения (может быть null)
+     * @param template скомпилированная строка шаблона
+     */
+    void fill(Row row, TemplateRow template);
+}
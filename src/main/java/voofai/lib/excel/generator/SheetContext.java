@@ -0,0 +1,113 @@
+package voofai.lib.excel.generator;
+
+import lombok.Getter;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Результат заполнения одного листа: merged regions созданных строк (добавляются в лист одним пакетом)
+ * и счетчики для {@link voofai.lib.metrics.GenerationListener}, строки вложенных таблиц текущей родительской строки
+ * и потомки следующих уровней, загруженные для всего пакета (см. {@link ChildBatchIterator}),
+ * продолжение листа на новых листах (см. {@link SheetShards}, null = без продолжения),
+ * место, зарезервированное в XLS/XLSX под заполняемый блок (строки [nextRow, reservedEnd) пустые),
+ * строки, удаляемые после заполнения (шаблоны блоков и незанятое зарезервированное место),
+ * разбивка на страницы (см. {@link PageBreaks}, null = без разбивки).
+ * Лист заполняется одним потоком, поэтому счетчики - обычные поля
+ */
+@Getter
+final class SheetContext {
+    private final List<CellRangeAddress> mergedRegions = new ArrayList<>();
+    private final Map<String, List<Map<String, Object>>> childRows = new HashMap<>();
+    // вложенная таблица -> родительская строка -> потомки, загруженные заранее пакетом внешних строк
+    private final Map<String, Map<Map<String, Object>, Deque<List<Map<String, Object>>>>> resolvedRows = new HashMap<>();
+    private final SheetShards shards;
+    private final PageBreaks pages;
+    private final List<int[]> deletedRows = new ArrayList<>();
+    private int blockStart;
+    private int nextRow;
+    // -1 = место не резервируется (потоковые движки пишут строки по порядку без сдвигов)
+    private int reservedEnd = -1;
+    private long rowsCopied;
+    private long rowsShifted;
+    private long placeholdersResolved;
+
+    SheetContext() {
+        this(null, null);
+    }
+
+    SheetContext(SheetShards shards) {
+        this(shards, null);
+    }
+
+    SheetContext(SheetShards shards, PageBreaks pages) {
+        this.shards = shards;
+        this.pages = pages;
+    }
+
+    /**
+     * Начало заполнения блока на месте: строки [rowNum, reservedEnd) свободны
+     */
+    void startBlock(int rowNum, int reservedEnd) {
+        this.blockStart = rowNum;
+        this.nextRow = rowNum;
+        this.reservedEnd = reservedEnd;
+    }
+
+    /**
+     * Расширение зарезервированного места (строки ниже уже сдвинуты)
+     */
+    void reserved(int reservedEnd) {
+        this.reservedEnd = reservedEnd;
+    }
+
+    /**
+     * Строка записана в зарезервированное место
+     */
+    void rowWritten(int rowNum) {
+        nextRow = rowNum + 1;
+    }
+
+    /**
+     * Строки [from, to] удаляются после заполнения листа
+     * (позиции шаблонов известны из разобранного плана, текст ячеек повторно не читается)
+     */
+    void deleteRows(int from, int to) {
+        deletedRows.add(new int[]{from, to});
+    }
+
+    /**
+     * Конец заполнения блока: незанятые строки зарезервированного места удаляются вместе с шаблонами
+     *
+     * @param rowNum первая строка после блока
+     * @return первая строка после зарезервированного места
+     */
+    int endBlock(int rowNum) {
+        int end = Math.max(rowNum, reservedEnd);
+        if (rowNum < end) {
+            deleteRows(rowNum, end - 1);
+        }
+        reservedEnd = -1;
+        return end;
+    }
+
+    boolean isReserving() {
+        return reservedEnd >= 0;
+    }
+
+    void rowCopied() {
+        rowsCopied++;
+    }
+
+    void rowsShifted(long rows) {
+        rowsShifted += rows;
+    }
+
+    void placeholdersResolved(long placeholders) {
+        placeholdersResolved += placeholders;
+    }
+}
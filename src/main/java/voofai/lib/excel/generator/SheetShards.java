@@ -0,0 +1,83 @@
+package voofai.lib.excel.generator;
+
+import lombok.Getter;
+import org.apache.poi.ss.usermodel.Sheet;
+import voofai.lib.excel.template.TemplateRow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Продолжение листа {@link voofai.lib.excel.dto.WorkBookType#XLSX_STREAMING} на новых листах (шардах),
+ * когда строки не помещаются в лист (см. {@link ExcelGeneratorSettings#isSheetSharding()}).
+ * Номера строк при заполнении сквозные (как будто лист один), шард переводит их в номера строк текущего листа.
+ * На каждом новом листе сначала повторяются строки шаблона над таблицей (заголовок)
+ */
+@Getter
+final class SheetShards {
+    private final Sheet source;
+    private final Map<String, Object> params;
+    private final int maxRows;
+    private final List<Sheet> sheets = new ArrayList<>();
+    private Sheet current;
+    private int base;
+    private List<TemplateRow> header = Collections.emptyList();
+    private long mergedRegionsAdded;
+
+    /**
+     * @param source  лист-шаблон (оформление новых листов и строки заголовка)
+     * @param params  параметры для строк заголовка
+     * @param sheet   первый лист
+     * @param maxRows количество строк в одном листе
+     */
+    SheetShards(Sheet source, Map<String, Object> params, Sheet sheet, int maxRows) {
+        this.source = source;
+        this.params = params;
+        this.current = sheet;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Номер строки в текущем листе
+     *
+     * @param rowNum сквозной номер строки
+     */
+    int rowOf(int rowNum) {
+        return rowNum - base;
+    }
+
+    /**
+     * Помещаются ли height строк начиная с rowNum в текущий лист.
+     * Сразу под заголовком нового листа строки помещаются всегда (иначе шарды создавались бы без конца)
+     *
+     * @param rowNum сквозной номер первой строки
+     * @param height количество строк
+     */
+    boolean fits(int rowNum, int height) {
+        int row = rowOf(rowNum);
+        return row + height <= maxRows || (!sheets.isEmpty() && row <= header.size());
+    }
+
+    /**
+     * Строки шаблона, которые повторяются вверху каждого нового листа (для текущей таблицы верхнего уровня)
+     */
+    void setHeader(List<TemplateRow> header) {
+        this.header = header;
+    }
+
+    /**
+     * Переход на новый лист: сквозная строка rowNum становится первой строкой под заголовком
+     *
+     * @param sheet                новый лист
+     * @param rowNum               сквозной номер первой строки нового листа
+     * @param previousMergedRegions количество merged regions, добавленных в предыдущий лист
+     */
+    void next(Sheet sheet, int rowNum, int previousMergedRegions) {
+        sheets.add(sheet);
+        current = sheet;
+        base = rowNum - header.size();
+        mergedRegionsAdded += previousMergedRegions;
+    }
+}
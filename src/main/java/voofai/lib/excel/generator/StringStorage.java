@@ -0,0 +1,18 @@
+package voofai.lib.excel.generator;
+
+/**
+ * How string values of placeholders are stored in XLSX cells (see {@link ExcelGeneratorSettings#getStringStorage()})
+ */
+public enum StringStorage {
+
+    /**
+     * Shared strings table: repeated values are stored once (low-cardinality data)
+     */
+    SHARED,
+
+    /**
+     * Inline strings: value is written into the cell itself, the shared strings table does not grow
+     * (high-cardinality data such as ids and names)
+     */
+    INLINE
+}
@@ -0,0 +1,215 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.Area3DPxg;
+import org.apache.poi.ss.formula.ptg.AreaErrPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Ref3DPxg;
+import org.apache.poi.ss.formula.ptg.RefPtg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.template.TemplateNode;
+import voofai.lib.excel.template.TemplateRow;
+
+import java.util.List;
+
+/**
+ * Номера строк листа-шаблона -> номера строк результата для потоковых движков, которые пишут строки по порядку
+ * без сдвигов: ссылки формул в строках вне таблиц переносятся так же, как их сдвинул бы shiftRows в XLS/XLSX.
+ * Ссылка на строку таблицы или range = первая строка блока, конец области в блоке = последняя строка блока.
+ * Высота уже записанных блоков точная, следующих - по {@link BlockHeights}. Если высота следующего блока
+ * заранее неизвестна (ленивые строки, вложенные {@link voofai.lib.excel.dto.ExcelChildTableData}) или строки
+ * попадают на продолжение листа (sheetSharding), ссылку перенести нельзя: вместо формулы с неверной ссылкой
+ * выбрасывается {@link IllegalStateException}
+ */
+final class TemplateRowMap {
+    // строка результата неизвестна
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final List<TemplateNode> nodes;
+    private final int[] heights;
+    // высота элемента известна (строка, блок без ленивых строк и потомков или уже записанный блок)
+    private final boolean[] exact;
+    private final int maxRows;
+    private final FormulaBook formulaBook;
+    private final int sheetIndex;
+    private final String sheetName;
+    private boolean continued;
+
+    /**
+     * @param nodes       элементы верхнего уровня листа-шаблона
+     * @param dto         данные (ожидаемая высота блоков)
+     * @param formulaBook книга для разбора формул (нужны названия листов)
+     * @param sheetIndex  номер листа-шаблона в книге
+     * @param sheetName   название листа-шаблона
+     * @param maxRows     количество строк в одном листе результата (при продолжении листа - в одном шарде)
+     */
+    TemplateRowMap(List<TemplateNode> nodes, ExcelData dto, FormulaBook formulaBook, int sheetIndex, String sheetName,
+                   int maxRows) {
+        this.nodes = nodes;
+        this.heights = new int[nodes.size()];
+        this.exact = new boolean[nodes.size()];
+        this.formulaBook = formulaBook;
+        this.sheetIndex = sheetIndex;
+        this.sheetName = sheetName;
+        this.maxRows = maxRows;
+        for (int i = 0; i < heights.length; i++) {
+            TemplateNode node = nodes.get(i);
+            heights[i] = node instanceof TemplateRow ? 1 : BlockHeights.measureBlock(node, dto);
+            exact[i] = BlockHeights.isExact(node, dto);
+        }
+    }
+
+    /**
+     * Фактическая высота записанного блока
+     *
+     * @param index  номер элемента верхнего уровня
+     * @param height количество строк
+     */
+    void setHeight(int index, int height) {
+        heights[index] = height;
+        exact[index] = true;
+    }
+
+    /**
+     * Следующие строки пишутся на продолжение листа (sheetSharding): номера строк в нем другие
+     */
+    void sheetContinued() {
+        continued = true;
+    }
+
+    /**
+     * Формула строки шаблона с перенесенными ссылками на строки этого листа
+     * (формула, которую не удалось разобрать, например с именами из книги, остается как есть)
+     *
+     * @param formula формула ячейки шаблона
+     * @return формула для строки результата
+     * @throws IllegalStateException если ссылка ведет за блок, высота которого еще неизвестна,
+     *                               или на строки другого листа при продолжении листа
+     */
+    String moveReferences(String formula) {
+        XSSFEvaluationWorkbook workbook = formulaBook.get();
+        Ptg[] ptgs;
+        try {
+            ptgs = FormulaParser.parse(formula, workbook, FormulaType.CELL, sheetIndex);
+        } catch (FormulaParseException e) {
+            return formula;
+        }
+
+        boolean moved = false;
+        for (int i = 0; i < ptgs.length; i++) {
+            Ptg ptg = ptgs[i];
+            if ((ptg instanceof RefPtgBase || ptg instanceof AreaPtgBase) && isThisSheet(ptg) && continued) {
+                throw new IllegalStateException("Formula " + formula + " of sheet " + sheetName
+                        + " is written on a continuation sheet, references to its rows can not be moved");
+            }
+            if (ptg instanceof RefPtgBase && isThisSheet(ptg)) {
+                RefPtgBase ref = (RefPtgBase) ptg;
+                int row = checked(formula, first(ref.getRow()));
+                moved |= row != ref.getRow();
+                ref.setRow(row);
+            } else if (ptg instanceof AreaPtgBase && isThisSheet(ptg)) {
+                AreaPtgBase area = (AreaPtgBase) ptg;
+                if (area.getFirstRow() == 0 && area.getLastRow() == SpreadsheetVersion.EXCEL2007.getLastRowIndex()) {
+                    continue;
+                }
+                int firstRow = checked(formula, first(area.getFirstRow()));
+                int lastRow = checked(formula, last(area.getLastRow()));
+                moved |= firstRow != area.getFirstRow() || lastRow != area.getLastRow();
+                if (lastRow < firstRow) {
+                    //область целиком в пустом блоке (shiftRows при удалении строк шаблона дал бы #REF!)
+                    ptgs[i] = new AreaErrPtg();
+                } else {
+                    area.setFirstRow(firstRow);
+                    area.setLastRow(lastRow);
+                }
+            }
+        }
+        return moved ? FormulaRenderer.toFormulaString(workbook, ptgs) : formula;
+    }
+
+    /**
+     * Перенесенная строка должна быть известна и находиться в том же листе результата
+     */
+    private int checked(String formula, int row) {
+        if (row == UNKNOWN) {
+            throw new IllegalStateException("Formula " + formula + " of sheet " + sheetName + " refers to rows below a table"
+                    + " whose height is not known before it is written (lazy or child rows): move the formula below the table"
+                    + " or use XLS/XLSX");
+        }
+        if (row >= maxRows) {
+            throw new IllegalStateException("Formula " + formula + " of sheet " + sheetName
+                    + " refers to rows which are continued on another sheet");
+        }
+        return row;
+    }
+
+    /**
+     * Строка результата для ссылки на строку (или начала области), UNKNOWN = неизвестна
+     */
+    int first(int row) {
+        return map(row, false);
+    }
+
+    /**
+     * Строка результата для конца области, UNKNOWN = неизвестна
+     */
+    int last(int row) {
+        return map(row, true);
+    }
+
+    private int map(int row, boolean last) {
+        if (nodes.isEmpty() || row < nodes.get(0).getFirstRow()) {
+            return row;
+        }
+
+        //начало элемента в результате = его строка в шаблоне + сумма изменений высоты элементов выше
+        int offset = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            TemplateNode node = nodes.get(i);
+            if (row <= node.getLastRow()) {
+                int start = node.getFirstRow() + offset;
+                if (node instanceof TemplateRow) {
+                    return start;
+                }
+                if (exact[i] && start + heights[i] > maxRows) {
+                    //блок переходит на продолжение листа (копия строк шаблона переносится целиком, иногда раньше maxRows)
+                    return maxRows;
+                }
+                if (!last) {
+                    return start;
+                }
+                return exact[i] ? start + heights[i] - 1 : UNKNOWN;
+            }
+            if (!exact[i]) {
+                return UNKNOWN;
+            }
+            offset += heights[i] - (node.getLastRow() - node.getFirstRow() + 1);
+        }
+        return row + offset;
+    }
+
+    private boolean isThisSheet(Ptg ptg) {
+        if (ptg instanceof RefPtg || ptg instanceof AreaPtg) {
+            return true;
+        }
+        if (ptg instanceof Ref3DPxg) {
+            Ref3DPxg ref = (Ref3DPxg) ptg;
+            return ref.getExternalWorkbookNumber() < 1 && ref.getLastSheetName() == null
+                    && sheetName.equalsIgnoreCase(ref.getSheetName());
+        }
+        if (ptg instanceof Area3DPxg) {
+            Area3DPxg area = (Area3DPxg) ptg;
+            return area.getExternalWorkbookNumber() < 1 && area.getLastSheetName() == null
+                    && sheetName.equalsIgnoreCase(area.getSheetName());
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package voofai.lib.excel.template;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+
+/**
+ * Ячейка #BodyFooter/#Footer вида #function:column# (например #sum:amount#): итог по колонке column строк #Body,
+ * считается во время заполнения range и пишется значением, без формул
+ */
+@Getter
+@RequiredArgsConstructor
+public final class Aggregate {
+    /**
+     * Итоговые функции
+     */
+    public enum Function {
+        SUM, COUNT, MIN, MAX, AVG
+    }
+
+    private final Function function;
+    private final String column;
+
+    /**
+     * Разбор ключа ячейки-параметра
+     *
+     * @param key ключ без символов #
+     * @return итог или null, если ключ не вида function:column
+     */
+    static Aggregate parse(String key) {
+        int separator = key.indexOf(ExcelTemplateCompiler.AGGREGATE_SEPARATOR);
+        if (separator <= 0 || separator == key.length() - 1) {
+            return null;
+        }
+        String function = key.substring(0, separator);
+        for (Function value : Function.values()) {
+            if (value.name().toLowerCase(Locale.ROOT).equals(function)) {
+                return new Aggregate(value, key.substring(separator + 1));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return ключ ячейки-параметра (function:column)
+     */
+    public String getKey() {
+        return function.name().toLowerCase(Locale.ROOT) + ExcelTemplateCompiler.AGGREGATE_SEPARATOR + column;
+    }
+}
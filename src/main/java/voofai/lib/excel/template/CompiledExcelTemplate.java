@@ -0,0 +1,152 @@
+package voofai.lib.excel.template;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import voofai.lib.excel.dto.WorkBookType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Эксель-шаблон, разобранный один раз в неизменяемый план (см. {@link ExcelTemplateCompiler}).
+ * Планы кэшируются по хэшу содержимого шаблона, поэтому повторная компиляция того же файла бесплатна.
+ * Кэш ограничен по количеству шаблонов (см. {@link #setCacheSize(int)}): давно не использованные планы вытесняются.
+ * Экземпляр неизменяемый и может использоваться из нескольких потоков одновременно
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CompiledExcelTemplate {
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    private static volatile int cacheSize = DEFAULT_CACHE_SIZE;
+    // LRU: порядок доступа, самый старый план вытесняется при переполнении
+    private static final Map<String, CompiledExcelTemplate> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, CompiledExcelTemplate>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledExcelTemplate> eldest) {
+                    return size() > cacheSize;
+                }
+            });
+
+    private final WorkBookType workBookType;
+    @Getter(AccessLevel.NONE)
+    private final byte[] content;
+    private final String contentHash;
+    private final List<SheetTemplate> sheets;
+
+    /**
+     * Compile template or take already compiled one from cache
+     *
+     * @param workBookType .xls vs .xlsx file format
+     * @param templateFile excel template
+     * @return compiled template
+     * @throws IOException exception while trying to parse template into Workbook
+     */
+    public static CompiledExcelTemplate compile(WorkBookType workBookType, byte[] templateFile) throws IOException {
+        final String hash = hash(workBookType, templateFile);
+        CompiledExcelTemplate compiled = CACHE.get(hash);
+        if (compiled != null) {
+            return compiled;
+        }
+
+        final byte[] content = templateFile.clone();
+        try (Workbook workbook = parse(workBookType, new ByteArrayInputStream(content))) {
+            compiled = new CompiledExcelTemplate(workBookType, content, hash, ExcelTemplateCompiler.compile(workbook));
+        }
+        final CompiledExcelTemplate previous = CACHE.putIfAbsent(hash, compiled);
+        return previous != null ? previous : compiled;
+    }
+
+    /**
+     * Compile template or take already compiled one from cache
+     *
+     * @param workBookType .xls vs .xlsx file format
+     * @param templateFile excel template (stream is read fully, but not closed)
+     * @return compiled template
+     * @throws IOException exception while trying to parse template into Workbook
+     */
+    public static CompiledExcelTemplate compile(WorkBookType workBookType, InputStream templateFile) throws IOException {
+        return compile(workBookType, IOUtils.toByteArray(templateFile));
+    }
+
+    /**
+     * Remove all compiled templates from cache
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * Max number of compiled templates kept in cache, least recently used ones are evicted
+     * (0 = compiled templates are not cached)
+     *
+     * @param maxTemplates max number of cached templates
+     */
+    public static void setCacheSize(int maxTemplates) {
+        if (maxTemplates < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxTemplates);
+        }
+        synchronized (CACHE) {
+            cacheSize = maxTemplates;
+            Iterator<String> eldest = CACHE.keySet().iterator();
+            while (CACHE.size() > maxTemplates) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * New workbook parsed from template content
+     *
+     * @return fresh workbook to fill with data
+     * @throws IOException exception while trying to parse template into Workbook
+     */
+    public Workbook newWorkbook() throws IOException {
+        return parse(workBookType, new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Template content for engines reading the template file directly
+     *
+     * @return stream over template content
+     */
+    public InputStream newInputStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    private static Workbook parse(WorkBookType workBookType, InputStream templateFile) throws IOException {
+        return WorkBookType.XLS.equals(workBookType)
+                ? new HSSFWorkbook(templateFile)
+                : new XSSFWorkbook(templateFile);
+    }
+
+    private static String hash(WorkBookType workBookType, byte[] templateFile) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(workBookType.name().getBytes(StandardCharsets.UTF_8));
+            byte[] bytes = digest.digest(templateFile);
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package voofai.lib.excel.template;
+
+import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Однократный разбор размеченного эксель-шаблона в неизменяемый план {@link SheetTemplate}.
+ * Строки-идентификаторы (#TABLE, #RANGE, #Body, #BodyFooter, #Footer) и ячейки вида #key#
+ * ищутся только здесь, при заполнении данными шаблон повторно не сканируется
+ */
+public final class ExcelTemplateCompiler {
+
+    //template special symbols
+    public static final String TABLE = "#TABLE";
+    public static final String RANGE = "#RANGE";
+    public static final String RANGE_LIST = "#RANGELIST";
+    public static final String SHEETS = "#SHEETS";
+    public static final String BODY = "#Body";
+    public static final String FOOTER = "#Footer";
+    public static final String BODY_FOOTER = "#BodyFooter";
+    public static final String KEY_MARKER = "#";
+    public static final String AGGREGATE_SEPARATOR = ":";
+
+    private ExcelTemplateCompiler() {
+    }
+
+    /**
+     * Разбор всех листов книги
+     *
+     * @param workbook шаблон
+     * @return планы листов в порядке следования листов
+     */
+    public static List<SheetTemplate> compile(Workbook workbook) {
+        List<SheetTemplate> sheets = new ArrayList<>(workbook.getNumberOfSheets());
+        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+            sheets.add(compile(workbook.getSheetAt(i), i));
+        }
+        return Collections.unmodifiableList(sheets);
+    }
+
+    /**
+     * Разбор одного листа
+     *
+     * @param sheet      лист шаблона
+     * @param sheetIndex номер листа в книге
+     * @return план листа
+     */
+    public static SheetTemplate compile(Sheet sheet, int sheetIndex) {
+        Map<Integer, List<MergedRegion>> mergedRegions = indexMergedRegions(sheet);
+        List<TemplateNode> nodes = parseNodes(sheet, mergedRegions, sheet.getFirstRowNum(), sheet.getLastRowNum() + 1);
+        return new SheetTemplate(sheetIndex, sheet.getSheetName(), nodes);
+    }
+
+    /**
+     * Разбор строк [fromRow, toRow) в последовательность элементов
+     */
+    private static List<TemplateNode> parseNodes(Sheet sheet, Map<Integer, List<MergedRegion>> mergedRegions,
+                                                 int fromRow, int toRow) {
+        List<TemplateNode> nodes = new ArrayList<>();
+        int rowNum = fromRow;
+        while (rowNum < toRow) {
+            String marker = firstCellString(sheet.getRow(rowNum));
+
+            if (marker != null && marker.startsWith(RANGE)) {
+                int endRow = findRow(sheet, marker, rowNum + 1, toRow);
+                nodes.add(parseRange(sheet, mergedRegions, marker, rowNum, endRow));
+                rowNum = endRow + 1;
+
+            } else if (marker != null && marker.startsWith(TABLE)) {
+                int endRow = findRow(sheet, marker, rowNum + 1, toRow);
+                nodes.add(new TableBlock(marker, rowNum, endRow, parseNodes(sheet, mergedRegions, rowNum + 1, endRow)));
+                rowNum = endRow + 1;
+
+            } else {
+                nodes.add(new TemplateRow(rowNum, findPlaceholders(sheet.getRow(rowNum)),
+                        mergedRegions.getOrDefault(rowNum, Collections.emptyList())));
+                rowNum++;
+            }
+        }
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Разбор range на header, body, bodyFooter и footer
+     */
+    private static RangeBlock parseRange(Sheet sheet, Map<Integer, List<MergedRegion>> mergedRegions,
+                                         String name, int startRow, int endRow) {
+        //header (обязательный !!может быть ноль строк)
+        int bodyMarker = findRow(sheet, BODY + name, startRow + 1, endRow);
+        List<TemplateNode> header = parseNodes(sheet, mergedRegions, startRow + 1, bodyMarker);
+        if (bodyMarker == endRow) {
+            return new RangeBlock(name, startRow, endRow, header, Collections.emptyList(), Collections.emptyList(),
+                    Collections.emptyList(), Collections.emptyList(), false, false);
+        }
+
+        //bodyFooter и footer (необязательные элементы, может не быть вовсе)
+        int bodyFooterMarker = findRow(sheet, BODY_FOOTER + name, bodyMarker + 1, endRow);
+        int footerMarker = findRow(sheet, FOOTER + name,
+                bodyFooterMarker < endRow ? bodyFooterMarker + 1 : bodyMarker + 1, endRow);
+        int bodyEnd = Math.min(bodyFooterMarker, footerMarker);
+
+        List<TemplateNode> body = parseNodes(sheet, mergedRegions, bodyMarker + 1, bodyEnd);
+        List<TemplateNode> bodyFooter = bodyFooterMarker < footerMarker
+                ? parseNodes(sheet, mergedRegions, bodyFooterMarker + 1, footerMarker)
+                : Collections.emptyList();
+        List<TemplateNode> footer = footerMarker < endRow
+                ? parseNodes(sheet, mergedRegions, footerMarker + 1, endRow)
+                : Collections.emptyList();
+
+        List<Aggregate> aggregates = new ArrayList<>();
+        findAggregates(bodyFooter, aggregates);
+        int bodyFooterAggregates = aggregates.size();
+        findAggregates(footer, aggregates);
+
+        return new RangeBlock(name, startRow, endRow, header, body, bodyFooter, footer,
+                aggregates.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(aggregates),
+                bodyFooterAggregates > 0, aggregates.size() > bodyFooterAggregates);
+    }
+
+    /**
+     * Поиск итогов (#function:column#) в строках bodyFooter/footer, вложенные таблицы заполняются своими данными
+     */
+    private static void findAggregates(List<TemplateNode> nodes, List<Aggregate> aggregates) {
+        for (TemplateNode node : nodes) {
+            if (node instanceof TemplateRow) {
+                for (Placeholder placeholder : ((TemplateRow) node).getPlaceholders()) {
+                    Aggregate aggregate = Aggregate.parse(placeholder.getKey());
+                    if (aggregate != null) {
+                        aggregates.add(aggregate);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Индекс merged regions листа: строка шаблона -> регионы, которые в ней начинаются
+     * (getMergedRegions разбирает все регионы листа, поэтому вызывается один раз на лист)
+     */
+    private static Map<Integer, List<MergedRegion>> indexMergedRegions(Sheet sheet) {
+        Map<Integer, List<MergedRegion>> index = new HashMap<>();
+        for (CellRangeAddress merged : sheet.getMergedRegions()) {
+            index.computeIfAbsent(merged.getFirstRow(), rowNum -> new ArrayList<>())
+                    .add(new MergedRegion(merged.getLastRow() - merged.getFirstRow(),
+                            merged.getFirstColumn(), merged.getLastColumn()));
+        }
+        index.replaceAll((rowNum, regions) -> Collections.unmodifiableList(regions));
+        return index;
+    }
+
+    /**
+     * Поиск строки, первая ячейка которой равна key
+     *
+     * @return номер найденной строки или toRow, если строки нет
+     */
+    private static int findRow(Sheet sheet, String key, int fromRow, int toRow) {
+        for (int rowNum = fromRow; rowNum < toRow; rowNum++) {
+            if (key.equals(firstCellString(sheet.getRow(rowNum)))) {
+                return rowNum;
+            }
+        }
+        return toRow;
+    }
+
+    /**
+     * Поиск ячеек вида #key#
+     */
+    private static List<Placeholder> findPlaceholders(Row row) {
+        if (row == null) {
+            return Collections.emptyList();
+        }
+        List<Placeholder> placeholders = new ArrayList<>();
+        Iterator<Cell> iterator = row.cellIterator();
+        while (iterator.hasNext()) {
+            Cell cell = iterator.next();
+            if (hasKey(cell)) {
+                String cellVal = cell.getStringCellValue();
+                Hyperlink hyperlink = cell.getHyperlink();
+                placeholders.add(new Placeholder(cell.getColumnIndex(), cellVal.substring(1, cellVal.length() - 1),
+                        hyperlink != null && hyperlink.getType() == HyperlinkType.URL));
+            }
+        }
+        return placeholders.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(placeholders);
+    }
+
+    /**
+     * Check if cell contains specific data
+     * (telling that we should fill some data or just skip this cell)
+     */
+    private static boolean hasKey(Cell cell) {
+        if (cell == null || !CellType.STRING.equals(cell.getCellType())) {
+            return false;
+        }
+        String cellVal = cell.getStringCellValue();
+        return cellVal.length() > 1 && cellVal.startsWith(KEY_MARKER) && cellVal.endsWith(KEY_MARKER);
+    }
+
+    /**
+     * Строковое значение первой ячейки строки (или null)
+     */
+    private static String firstCellString(Row row) {
+        if (row == null) {
+            return null;
+        }
+        Cell firstCell = row.getCell(0);
+        return firstCell != null && CellType.STRING.equals(firstCell.getCellType())
+                ? firstCell.getStringCellValue()
+                : null;
+    }
+}
@@ -0,0 +1,26 @@
+package voofai.lib.excel.template;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * Merged region, начинающийся в строке шаблона (строки считаются относительно этой строки)
+ */
+@Getter
+@RequiredArgsConstructor
+public final class MergedRegion {
+    private final int rowSpan;
+    private final int firstColumn;
+    private final int lastColumn;
+
+    /**
+     * Merged region для копии строки шаблона
+     *
+     * @param rowNum строка, в которую скопирована строка шаблона
+     * @return новый регион
+     */
+    public CellRangeAddress at(int rowNum) {
+        return new CellRangeAddress(rowNum, rowNum + rowSpan, firstColumn, lastColumn);
+    }
+}
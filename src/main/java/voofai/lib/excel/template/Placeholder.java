@@ -0,0 +1,16 @@
+package voofai.lib.excel.template;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Ячейка шаблона вида #key#, которую нужно заполнить значением по ключу key
+ * (hyperlink = в ячейке есть URL-ссылка, адрес которой тоже заменяется значением)
+ */
+@Getter
+@RequiredArgsConstructor
+public final class Placeholder {
+    private final int column;
+    private final String key;
+    private final boolean hyperlink;
+}
@@ -0,0 +1,41 @@
+package voofai.lib.excel.template;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Range: строки между двумя строками-идентификаторами #RANGE...,
+ * разбитые на header, #Body, #BodyFooter и #Footer.
+ * aggregates = итоги по строкам body из ячеек #BodyFooter и #Footer (см. {@link Aggregate})
+ */
+@Getter
+public final class RangeBlock extends TemplateNode {
+    private final String name;
+    private final List<TemplateNode> header;
+    private final List<TemplateNode> body;
+    private final List<TemplateNode> bodyFooter;
+    private final List<TemplateNode> footer;
+    private final List<Aggregate> aggregates;
+
+    // bodyFooter содержит итоги и пишется (одной строкой) даже без данных bodyFooter
+    private final boolean bodyFooterAggregated;
+
+    // footer содержит итоги и пишется даже без данных footer
+    private final boolean footerAggregated;
+
+    RangeBlock(String name, int startRow, int endRow,
+               List<TemplateNode> header, List<TemplateNode> body,
+               List<TemplateNode> bodyFooter, List<TemplateNode> footer,
+               List<Aggregate> aggregates, boolean bodyFooterAggregated, boolean footerAggregated) {
+        super(startRow, endRow);
+        this.name = name;
+        this.header = header;
+        this.body = body;
+        this.bodyFooter = bodyFooter;
+        this.footer = footer;
+        this.aggregates = aggregates;
+        this.bodyFooterAggregated = bodyFooterAggregated;
+        this.footerAggregated = footerAggregated;
+    }
+}
@@ -0,0 +1,17 @@
+package voofai.lib.excel.template;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Разобранный шаблон одного листа: элементы верхнего уровня в порядке следования строк
+ */
+@Getter
+@RequiredArgsConstructor
+public final class SheetTemplate {
+    private final int sheetIndex;
+    private final String sheetName;
+    private final List<TemplateNode> nodes;
+}
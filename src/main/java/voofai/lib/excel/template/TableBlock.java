@@ -0,0 +1,21 @@
+package voofai.lib.excel.template;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Таблица: строки между двумя строками-идентификаторами #TABLE...
+ * Строки body копируются для каждой строки данных
+ */
+@Getter
+public final class TableBlock extends TemplateNode {
+    private final String name;
+    private final List<TemplateNode> body;
+
+    TableBlock(String name, int startRow, int endRow, List<TemplateNode> body) {
+        super(startRow, endRow);
+        this.name = name;
+        this.body = body;
+    }
+}
@@ -0,0 +1,15 @@
+package voofai.lib.excel.template;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Элемент разобранного шаблона листа: простая строка, таблица или range.
+ * Занимает в шаблоне строки с firstRow по lastRow включительно
+ */
+@Getter
+@RequiredArgsConstructor
+public abstract class TemplateNode {
+    private final int firstRow;
+    private final int lastRow;
+}
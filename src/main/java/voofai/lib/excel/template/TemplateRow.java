@@ -0,0 +1,24 @@
+package voofai.lib.excel.template;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Обычная строка шаблона с заранее найденными ячейками-параметрами и merged regions, которые в ней начинаются
+ */
+@Getter
+public final class TemplateRow extends TemplateNode {
+    private final List<Placeholder> placeholders;
+    private final List<MergedRegion> mergedRegions;
+
+    TemplateRow(int rowNum, List<Placeholder> placeholders, List<MergedRegion> mergedRegions) {
+        super(rowNum, rowNum);
+        this.placeholders = placeholders;
+        this.mergedRegions = mergedRegions;
+    }
+
+    public int getRowNum() {
+        return getFirstRow();
+    }
+}
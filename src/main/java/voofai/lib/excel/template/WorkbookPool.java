@@ -0,0 +1,36 @@
+package voofai.lib.excel.template;
+
+import lombok.Getter;
+import org.apache.poi.ss.usermodel.Workbook;
+import voofai.lib.pool.PrototypePool;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Pool of workbooks already parsed from compiled template (see {@link PrototypePool}).
+ * POI has no cheap deep copy of a parsed workbook, so copies are parsed in advance in background
+ */
+@Getter
+public class WorkbookPool extends PrototypePool<Workbook> {
+
+    private final CompiledExcelTemplate template;
+
+    /**
+     * @param template compiled excel template
+     * @param size     how many parsed workbooks are kept ready
+     */
+    public WorkbookPool(CompiledExcelTemplate template, int size) {
+        super(template::newWorkbook, size);
+        this.template = template;
+    }
+
+    /**
+     * @param template compiled excel template
+     * @param size     how many parsed workbooks are kept ready
+     * @param executor executor to parse workbooks in background
+     */
+    public WorkbookPool(CompiledExcelTemplate template, int size, Executor executor) {
+        super(template::newWorkbook, size, executor);
+        this.template = template;
+    }
+}
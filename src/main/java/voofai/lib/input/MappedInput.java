@@ -0,0 +1,79 @@
+package voofai.lib.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Чтение шаблона из FileChannel через read-only memory mapping: содержимое файла не копируется в heap,
+ * страницы подгружаются ОС по мере чтения
+ */
+public final class MappedInput {
+
+    private MappedInput() {
+    }
+
+    /**
+     * Отображение всего файла в память (позиция канала не меняется)
+     *
+     * @param channel канал файла шаблона (не закрывается)
+     * @return read-only буфер с содержимым файла
+     * @throws IOException файл больше 2 Гб или ошибка отображения
+     */
+    public static ByteBuffer map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Template is too large to be mapped: " + size + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /**
+     * Поток по содержимому буфера (у каждого потока своя позиция, буфер можно читать несколько раз)
+     *
+     * @param buffer буфер из {@link #map(FileChannel)}
+     * @return новый поток с начала буфера
+     */
+    public static InputStream stream(ByteBuffer buffer) {
+        return new BufferInputStream(buffer.duplicate());
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package voofai.lib.metrics;
+
+/**
+ * Instrumentation hook of generators: per-phase durations and counters of every generated document.
+ * Callbacks are made on the generating thread (phases of parallel sheets - on sheet threads),
+ * so implementations must be fast and thread safe.
+ * Without listener generators do not measure anything
+ */
+public interface GenerationListener {
+
+    /**
+     * Generation of document started
+     *
+     * @param stats metrics of the document (filled while generation goes on)
+     */
+    default void onStart(GenerationStats stats) {
+    }
+
+    /**
+     * Phase of generation started on the current thread (which phase it is becomes known in
+     * {@link #onPhase(GenerationStats, GenerationPhase, long)} called on the same thread when it finishes)
+     *
+     * @param stats metrics of the document
+     */
+    default void onPhaseStart(GenerationStats stats) {
+    }
+
+    /**
+     * Phase of generation finished (the same phase may be reported several times, e.g. for every sheet)
+     *
+     * @param stats         metrics of the document
+     * @param phase         finished phase
+     * @param durationNanos phase duration
+     */
+    default void onPhase(GenerationStats stats, GenerationPhase phase, long durationNanos) {
+    }
+
+    /**
+     * Generation of document finished
+     *
+     * @param stats metrics of the document
+     * @param error exception that stopped generation or null on success
+     */
+    void onFinish(GenerationStats stats, Throwable error);
+}
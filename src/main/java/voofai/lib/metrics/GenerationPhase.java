@@ -0,0 +1,23 @@
+package voofai.lib.metrics;
+
+/**
+ * Phases of document generation reported to {@link GenerationListener}
+ */
+public enum GenerationPhase {
+    // разбор шаблона (zip и xml)
+    PARSE,
+    // поиск разметки в шаблоне (если шаблон не скомпилирован заранее)
+    COMPILE,
+    // копирование строк шаблона и заполнение их данными
+    FILL,
+    // сдвиг строк под вставляемые таблицы и range
+    SHIFT_ROWS,
+    // добавление merged regions созданных строк
+    MERGED_REGIONS,
+    // удаление строк-шаблонов
+    DELETE_TEMPLATES,
+    // разбивка на страницы ($PageBreaker$)
+    PAGE_BREAKS,
+    // запись результата
+    WRITE
+}
@@ -0,0 +1,163 @@
+package voofai.lib.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Collects metrics of one document for {@link GenerationListener} (used by generators).
+ * Without listener all methods do nothing and {@link #now()} does not even read the clock
+ */
+public final class GenerationRecorder {
+
+    private static final GenerationRecorder NONE = new GenerationRecorder(null, null);
+
+    private final GenerationListener listener;
+    private final GenerationStats stats;
+    private final long startNanos;
+    private CountingOutputStream output;
+
+    private GenerationRecorder(GenerationListener listener, GenerationStats stats) {
+        this.listener = listener;
+        this.stats = stats;
+        this.startNanos = listener != null ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Start recording of a document
+     *
+     * @param listener  listener (null = nothing is recorded)
+     * @param generator excel or word
+     * @param format    document format
+     * @return recorder of the document
+     */
+    public static GenerationRecorder start(GenerationListener listener, String generator, String format) {
+        if (listener == null) {
+            return NONE;
+        }
+        GenerationRecorder recorder = new GenerationRecorder(listener, new GenerationStats(generator, format));
+        listener.onStart(recorder.stats);
+        return recorder;
+    }
+
+    /**
+     * Next phase starts now
+     *
+     * @return current time for {@link #phase(GenerationPhase, long)} (0 without listener)
+     */
+    public long now() {
+        if (listener == null) {
+            return 0L;
+        }
+        listener.onPhaseStart(stats);
+        return System.nanoTime();
+    }
+
+    /**
+     * Phase started at startNanos is finished, the next phase starts
+     *
+     * @param phase      finished phase
+     * @param startNanos result of {@link #now()} taken before the phase
+     * @return current time (start of the next phase)
+     */
+    public long phase(GenerationPhase phase, long startNanos) {
+        return phase(phase, startNanos, true);
+    }
+
+    /**
+     * Phase started at startNanos is finished
+     *
+     * @param phase      finished phase
+     * @param startNanos result of {@link #now()} or of the previous phase
+     * @param next       another phase follows on this thread (false for the last phase, so that
+     *                   {@link GenerationListener#onPhaseStart(GenerationStats)} is not left without its phase)
+     * @return current time (start of the next phase)
+     */
+    public long phase(GenerationPhase phase, long startNanos, boolean next) {
+        if (listener == null) {
+            return 0L;
+        }
+        long end = System.nanoTime();
+        synchronized (this) {
+            stats.addPhase(phase, end - startNanos);
+        }
+        listener.onPhase(stats, phase, end - startNanos);
+        if (next) {
+            listener.onPhaseStart(stats);
+        }
+        return end;
+    }
+
+    /**
+     * Counters of generated rows (added once per sheet)
+     *
+     * @param rowsCopied           template rows copied
+     * @param rowsShifted          rows moved by shiftRows
+     * @param mergedRegions        merged regions added
+     * @param placeholdersResolved placeholders filled with data
+     */
+    public void count(long rowsCopied, long rowsShifted, long mergedRegions, long placeholdersResolved) {
+        if (listener == null) {
+            return;
+        }
+        synchronized (this) {
+            stats.addRowsCopied(rowsCopied);
+            stats.addRowsShifted(rowsShifted);
+            stats.addMergedRegions(mergedRegions);
+            stats.addPlaceholders(placeholdersResolved);
+        }
+    }
+
+    /**
+     * @param outputStream result stream
+     * @return stream counting written bytes (the same stream without listener)
+     */
+    public OutputStream countBytes(OutputStream outputStream) {
+        if (listener == null) {
+            return outputStream;
+        }
+        output = new CountingOutputStream(outputStream);
+        return output;
+    }
+
+    /**
+     * Generation finished, listener gets complete metrics
+     *
+     * @param error exception that stopped generation or null
+     */
+    public void finish(Throwable error) {
+        if (listener == null) {
+            return;
+        }
+        synchronized (this) {
+            if (output != null) {
+                stats.addBytesWritten(output.count);
+            }
+            stats.setTotalNanos(System.nanoTime() - startNanos);
+        }
+        listener.onFinish(stats, error);
+    }
+
+    /**
+     * Подсчет записанных байт
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
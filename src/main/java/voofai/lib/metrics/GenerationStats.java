@@ -0,0 +1,69 @@
+package voofai.lib.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Metrics of one generated document (see {@link GenerationListener})
+ */
+@Getter
+public class GenerationStats {
+
+    // excel или word
+    private final String generator;
+
+    // формат документа (WorkBookType для excel)
+    private final String format;
+
+    @Getter(AccessLevel.NONE)
+    private final long[] phaseNanos = new long[GenerationPhase.values().length];
+    private long totalNanos;
+    private long rowsCopied;
+    private long rowsShifted;
+    private long mergedRegionsAdded;
+    private long placeholdersResolved;
+    private long bytesWritten;
+
+    GenerationStats(String generator, String format) {
+        this.generator = generator;
+        this.format = format;
+    }
+
+    /**
+     * Total duration of the phase (sum over all sheets)
+     *
+     * @param phase generation phase
+     * @return duration in nanoseconds
+     */
+    public long getPhaseNanos(GenerationPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    void addPhase(GenerationPhase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    void addRowsCopied(long rows) {
+        rowsCopied += rows;
+    }
+
+    void addRowsShifted(long rows) {
+        rowsShifted += rows;
+    }
+
+    void addMergedRegions(long regions) {
+        mergedRegionsAdded += regions;
+    }
+
+    void addPlaceholders(long placeholders) {
+        placeholdersResolved += placeholders;
+    }
+
+    void addBytesWritten(long bytes) {
+        bytesWritten += bytes;
+    }
+}
@@ -0,0 +1,58 @@
+package voofai.lib.output;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.ooxml.POIXMLDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Запись документов с учетом {@link OutputSettings}. Выходной поток не закрывается
+ */
+public final class PackageOutput {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private PackageOutput() {
+    }
+
+    /**
+     * Буфер перед выходным потоком (после записи нужен flush(), close() закрыл бы и выходной поток)
+     *
+     * @param outputStream выходной поток
+     * @param settings     настройки записи
+     * @return буферизованный поток или сам outputStream, если буфер не задан
+     */
+    public static OutputStream buffered(OutputStream outputStream, OutputSettings settings) {
+        return settings.getBufferSize() > 0
+                ? new BufferedOutputStream(outputStream, settings.getBufferSize())
+                : outputStream;
+    }
+
+    /**
+     * Zip-поток с заданным уровнем сжатия
+     *
+     * @param archive  zip-поток (новый или созданный POI)
+     * @param settings настройки записи
+     * @return тот же archive
+     */
+    public static ZipArchiveOutputStream withLevel(ZipArchiveOutputStream archive, OutputSettings settings) {
+        archive.setLevel(settings.getCompressionLevel());
+        return archive;
+    }
+
+    /**
+     * Запись xlsx/docx пакета. POI использует переданный ZipArchiveOutputStream как есть,
+     * поэтому уровень сжатия задается до записи
+     *
+     * @param document     документ (XSSFWorkbook, XWPFDocument)
+     * @param outputStream выходной поток
+     * @param settings     настройки записи
+     */
+    public static void write(POIXMLDocument document, OutputStream outputStream, OutputSettings settings) throws IOException {
+        OutputStream buffered = buffered(outputStream, settings);
+        document.write(withLevel(new ZipArchiveOutputStream(buffered), settings));
+        buffered.flush();
+    }
+}
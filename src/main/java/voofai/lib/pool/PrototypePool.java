@@ -0,0 +1,180 @@
+package voofai.lib.pool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of already parsed templates.
+ * Every taken instance is a fresh copy owned by the caller (it is filled with data and written),
+ * pool parses replacements in background, so generation does not wait for template parsing.
+ * If pool is empty (burst of requests), template is parsed by the calling thread.
+ * Pool is thread safe
+ *
+ * @param <T> parsed template type ({@link org.apache.poi.ss.usermodel.Workbook},
+ *            {@link org.apache.poi.xwpf.usermodel.XWPFDocument})
+ */
+public class PrototypePool<T extends Closeable> implements Closeable {
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+    // простаивающий поток фонового разбора завершается (пул, который забыли закрыть, не держит потоков)
+    private static final long IDLE_SECONDS = 30;
+
+    private final Parser<? extends T> parser;
+    private final int size;
+    private final Executor executor;
+    // собственный executor пула (null = executor передан снаружи и не останавливается при закрытии)
+    private final ExecutorService ownExecutor;
+    private final BlockingQueue<T> ready;
+
+    // количество разборов, которые уже запущены в фоне
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Template parsing
+     *
+     * @param <T> parsed template type
+     */
+    @FunctionalInterface
+    public interface Parser<T> {
+        T parse() throws IOException;
+    }
+
+    /**
+     * Pool refilled by its own background daemon thread (one copy is parsed at a time,
+     * idle thread stops and is recreated on demand), the thread is stopped by {@link #close()}
+     *
+     * @param parser parses new copy of template
+     * @param size   how many parsed copies are kept ready
+     */
+    public PrototypePool(Parser<? extends T> parser, int size) {
+        this(parser, size, null, newExecutor());
+    }
+
+    /**
+     * @param parser   parses new copy of template
+     * @param size     how many parsed copies are kept ready
+     * @param executor executor to parse copies in background (not shut down by {@link #close()})
+     */
+    public PrototypePool(Parser<? extends T> parser, int size, Executor executor) {
+        this(parser, size, executor, null);
+    }
+
+    private PrototypePool(Parser<? extends T> parser, int size, Executor executor, ExecutorService ownExecutor) {
+        if (size < 1) {
+            //собственный executor еще не создал ни одного потока
+            throw new IllegalArgumentException("Pool size must be positive: " + size);
+        }
+        if (executor == null && ownExecutor == null) {
+            throw new IllegalArgumentException("Executor is required");
+        }
+        this.parser = parser;
+        this.size = size;
+        this.executor = ownExecutor != null ? ownExecutor : executor;
+        this.ownExecutor = ownExecutor;
+        this.ready = new ArrayBlockingQueue<>(size);
+        refill();
+    }
+
+    /**
+     * Take parsed template (or parse it now, if pool is empty)
+     *
+     * @return fresh copy of template, caller is responsible for closing it
+     * @throws IOException exception while trying to parse template
+     */
+    public T take() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Prototype pool is closed");
+        }
+        T prototype = ready.poll();
+        refill();
+        return prototype != null ? prototype : parser.parse();
+    }
+
+    /**
+     * Stop refilling and close all parsed copies that were not taken
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownExecutor != null) {
+            //уже запущенный разбор доработает и закроет свою копию сам
+            ownExecutor.shutdown();
+        }
+        drain();
+    }
+
+    /**
+     * Запуск фоновых разборов, пока готовых и запущенных меньше size
+     * (не больше size за вызов: при синхронном executor ошибка разбора иначе повторялась бы бесконечно)
+     */
+    private void refill() {
+        for (int attempt = 0; attempt < size && !closed; attempt++) {
+            int started = pending.get();
+            if (ready.size() + started >= size) {
+                return;
+            }
+            if (pending.compareAndSet(started, started + 1)) {
+                try {
+                    executor.execute(this::parseInBackground);
+                } catch (RejectedExecutionException e) {
+                    pending.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Один поток-демон: фоновый разбор не конкурирует с генерацией за ядра и не занимает общий ForkJoinPool
+     */
+    private static ExecutorService newExecutor() {
+        final String prefix = "prototype-pool-" + POOL_NUMBER.incrementAndGet();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, prefix);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void parseInBackground() {
+        try {
+            T prototype = parser.parse();
+            if (closed || !ready.offer(prototype)) {
+                closeQuietly(prototype);
+            } else if (closed) {
+                //пул закрыли, пока копия добавлялась
+                drain();
+            }
+        } catch (IOException | RuntimeException e) {
+            //ошибка разбора повторится в take() и будет выброшена вызывающему
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    private void drain() {
+        T prototype;
+        while ((prototype = ready.poll()) != null) {
+            closeQuietly(prototype);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //копия не использовалась, закрывается только для освобождения ресурсов
+        }
+    }
+}
@@ -19,6 +19,9 @@ public class WordData {
     // key = параметр в excel-ячейке, val = значение
     private final Map<String, String> params = new HashMap<>();
 
+    // key = параметр, val = значение любого типа (в текст преобразуется генератором, см. ValueConverters)
+    private final Map<String, Object> values = new HashMap<>();
+
     public WordData addParam(String key, String val) {
         params.put(key, val);
         return this;
@@ -35,6 +38,11 @@ public class WordData {
         return this;
     }
 
+    public WordData addValue(String key, Object val) {
+        values.put(key, val);
+        return this;
+    }
+
     public WordData addAll(Map<String, String> newParams) {
         params.putAll(newParams);
         return this;
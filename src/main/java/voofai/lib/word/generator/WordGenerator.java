@@ -1,11 +1,22 @@
 package voofai.lib.word.generator;
 
+import org.apache.poi.util.IOUtils;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import voofai.lib.batch.BatchItem;
+import voofai.lib.batch.BatchResult;
+import voofai.lib.batch.BatchRunner;
+import voofai.lib.batch.BatchSettings;
+import voofai.lib.pool.PrototypePool;
 import voofai.lib.word.dto.WordData;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.stream.Stream;
 
 /**
  * Read template file as XWPFDocument and fill cells with required data
@@ -24,6 +35,40 @@ public interface WordGenerator {
      */
     void createByTemplate(WordData dto, InputStream template, OutputStream outputStream) throws IOException;
 
+    /**
+     * Open word template file in place and fill with data from dto.
+     * Template is read with random access (images and other binary parts are copied
+     * from file to output stream), the file itself is not modified
+     *
+     * @param dto          data to fill template with
+     * @param template     word template to make copy and fill with data
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to open template file
+     */
+    void createByTemplate(WordData dto, Path template, OutputStream outputStream) throws IOException;
+
+    /**
+     * Open word template file in place and fill with data from dto
+     * (see {@link #createByTemplate(WordData, Path, OutputStream)})
+     *
+     * @param dto          data to fill template with
+     * @param template     word template to make copy and fill with data
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to open template file
+     */
+    void createByTemplate(WordData dto, File template, OutputStream outputStream) throws IOException;
+
+    /**
+     * Read word template through memory mapping of the channel and fill with data from dto
+     * (template content is not copied into heap)
+     *
+     * @param dto          data to fill template with
+     * @param template     channel of word template, read from its start (closed after generation)
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to read template
+     */
+    void createByTemplate(WordData dto, FileChannel template, OutputStream outputStream) throws IOException;
+
     /**
      * Read word template file and fill with data from dto
      *
@@ -41,4 +86,58 @@ public interface WordGenerator {
      * @throws IOException exception while trying to parse InputStream into XWPFDocument
      */
     XWPFDocument createDocByTemplate(WordData dto, byte[] templateFile) throws IOException;
+
+    /**
+     * Fill document taken from pool of parsed templates with data from dto
+     * (e.g. {@code new PrototypePool<>(() -> new XWPFDocument(new ByteArrayInputStream(templateFile)), 4)})
+     *
+     * @param dto          data to fill template with
+     * @param template     pool of parsed copies of word template
+     * @param outputStream stream to write result data
+     * @throws IOException exception while trying to parse template into XWPFDocument (pool is empty)
+     */
+    void createByTemplate(WordData dto, PrototypePool<XWPFDocument> template, OutputStream outputStream)
+            throws IOException;
+
+    /**
+     * Fill document taken from pool of parsed templates with data from dto
+     *
+     * @param dto      data to fill template with
+     * @param template pool of parsed copies of word template
+     * @return XWPFDocument
+     * @throws IOException exception while trying to parse template into XWPFDocument (pool is empty)
+     */
+    XWPFDocument createDocByTemplate(WordData dto, PrototypePool<XWPFDocument> template) throws IOException;
+
+    /**
+     * Fill template with data of every item and write results to items outputs.
+     * At most {@link BatchSettings#getMaxInFlight()} documents are rendered (and kept in memory) at once,
+     * failed items are reported in result and do not abort the batch.
+     * Every item parses its own document from templateFile (POI has no cheap deep copy of a parsed document)
+     *
+     * @param templateFile word template to make copies and fill with data
+     * @param items        data and output of every document
+     * @param settings     concurrency settings
+     * @return rendered items count and failures
+     */
+    default BatchResult createByTemplate(byte[] templateFile, Stream<BatchItem<WordData>> items,
+                                         BatchSettings settings) {
+        return BatchRunner.run(items, settings,
+                (dto, outputStream) -> createByTemplate(dto, new ByteArrayInputStream(templateFile), outputStream));
+    }
+
+    /**
+     * Fill template with data of every item and write results to items outputs
+     * (template stream is read once, see {@link #createByTemplate(byte[], Stream, BatchSettings)})
+     *
+     * @param template word template to make copies and fill with data
+     * @param items    data and output of every document
+     * @param settings concurrency settings
+     * @return rendered items count and failures
+     * @throws IOException exception while trying to read template
+     */
+    default BatchResult createByTemplate(InputStream template, Stream<BatchItem<WordData>> items,
+                                         BatchSettings settings) throws IOException {
+        return createByTemplate(IOUtils.toByteArray(template), items, settings);
+    }
 }
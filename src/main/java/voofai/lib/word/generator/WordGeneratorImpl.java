@@ -1,15 +1,30 @@
 package voofai.lib.word.generator;
 
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.xwpf.usermodel.*;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.input.MappedInput;
+import voofai.lib.metrics.GenerationListener;
+import voofai.lib.metrics.GenerationPhase;
+import voofai.lib.metrics.GenerationRecorder;
+import voofai.lib.output.OutputSettings;
+import voofai.lib.output.PackageOutput;
+import voofai.lib.pool.PrototypePool;
 import voofai.lib.word.dto.WordData;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.function.BiConsumer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.ToIntBiFunction;
 
 public class WordGeneratorImpl implements WordGenerator {
 
@@ -17,6 +32,38 @@ public class WordGeneratorImpl implements WordGenerator {
     protected static final String STARTER = "#*";
     protected static final String END = "*#";
 
+    private final ValueConverters valueConverters;
+    private final GenerationListener generationListener;
+    private final OutputSettings outputSettings;
+
+    public WordGeneratorImpl() {
+        this(ValueConverters.defaults());
+    }
+
+    public WordGeneratorImpl(ValueConverters valueConverters) {
+        this(valueConverters, null);
+    }
+
+    /**
+     * @param valueConverters    преобразование значений в текст
+     * @param generationListener получатель замеров фаз генерации (null = замеры не выполняются)
+     */
+    public WordGeneratorImpl(ValueConverters valueConverters, GenerationListener generationListener) {
+        this(valueConverters, generationListener, OutputSettings.defaults());
+    }
+
+    /**
+     * @param valueConverters    преобразование значений в текст
+     * @param generationListener получатель замеров фаз генерации (null = замеры не выполняются)
+     * @param outputSettings     уровень сжатия и буфер записи результата
+     */
+    public WordGeneratorImpl(ValueConverters valueConverters, GenerationListener generationListener,
+                             OutputSettings outputSettings) {
+        this.valueConverters = valueConverters;
+        this.generationListener = generationListener;
+        this.outputSettings = outputSettings;
+    }
+
     //predicates
     private final Predicate<XWPFParagraph> filterOnlyParagraphWithNotEmptyRuns = p -> !p.getRuns().isEmpty();
     private final Predicate<XWPFParagraph> filterOnlyParagraphWithStarterOnFirstRunString = p -> {
@@ -40,8 +87,9 @@ public class WordGeneratorImpl implements WordGenerator {
         firstRun.setText(textNoStarter, 0);
     };
 
-    //biConsumers
-    private final BiConsumer<XWPFParagraph, WordData> processParagraph = (paragraph, dto) -> {
+    //functions (результат = количество подставленных параметров)
+    private final ToIntBiFunction<XWPFParagraph, WordData> processParagraph = (paragraph, dto) -> {
+        int replaced = 0;
         int searchPos = 0;
         TextSegment startRange = paragraph.searchText(STARTER, new PositionInParagraph(searchPos, 0, 0));
         TextSegment endRange = paragraph.searchText(END, new PositionInParagraph(searchPos, 0, 0));
@@ -61,15 +109,26 @@ public class WordGeneratorImpl implements WordGenerator {
             //run with oldText
             XWPFRun oldRun = paragraph.getRuns().get(startPos);
             final String paramVal = removeStartEnd(segmentText);
-            final String newVal = dto.getParams().getOrDefault(paramVal, "");
+            final String newVal = getParam(dto, paramVal);
             oldRun.setText(newVal, 0);
+            replaced++;
 
             searchPos = startPos + 1;
             startRange = paragraph.searchText(STARTER, new PositionInParagraph(searchPos, 0, 0));
             endRange = paragraph.searchText(END, new PositionInParagraph(searchPos, 0, 0));
         }
+        return replaced;
     };
 
+    /**
+     * Значение параметра: строковый параметр или значение, преобразованное в текст через valueConverters
+     */
+    private String getParam(WordData dto, String key) {
+        return dto.getParams().containsKey(key)
+                ? dto.getParams().get(key)
+                : valueConverters.toText(dto.getValues().get(key));
+    }
+
     /**
      * Обрезает STARTER и END
      */
@@ -92,44 +151,122 @@ public class WordGeneratorImpl implements WordGenerator {
      *
      * @param doc исходный шаблон
      * @param dto данные
-     * @return Workbook
+     * @return количество подставленных параметров
      */
-    private XWPFDocument generateWord(XWPFDocument doc, WordData dto) {
+    private long generateWord(XWPFDocument doc, WordData dto) {
 
         //plain text
-        doc.getParagraphs().stream()
+        long replaced = doc.getParagraphs().stream()
                 .filter(filterOnlyParagraphWithNotEmptyRuns)
                 .filter(filterOnlyParagraphWithStarterOnFirstRunString)
                 .peek(removeStarterFromFirstRunString)
-                .forEach(paragraph -> processParagraph.accept(paragraph, dto));
+                .mapToLong(paragraph -> processParagraph.applyAsInt(paragraph, dto))
+                .sum();
 
         //tables
-        doc.getTables().forEach(table -> table.getRows().forEach(row ->
-                row.getTableCells().stream()
-                        .filter(filterOnlyCellsWithStartEnd)
-                        .forEach(cell -> cell.getParagraphs().forEach(p -> processParagraph.accept(p, dto)))));
+        replaced += doc.getTables().stream()
+                .flatMap(table -> table.getRows().stream())
+                .flatMap(row -> row.getTableCells().stream())
+                .filter(filterOnlyCellsWithStartEnd)
+                .flatMap(cell -> cell.getParagraphs().stream())
+                .mapToLong(p -> processParagraph.applyAsInt(p, dto))
+                .sum();
+
+        return replaced;
+    }
+
+    /**
+     * Источник документа-шаблона (разбор файла, копия из пула)
+     */
+    @FunctionalInterface
+    private interface TemplateSource {
+        XWPFDocument open() throws IOException;
+    }
 
-        return doc;
+    /**
+     * Генерация с замером фаз для generationListener
+     *
+     * @param dto          данные
+     * @param template     источник документа-шаблона
+     * @param outputStream куда записать результат (null = только заполнить документ)
+     * @return заполненный документ
+     */
+    private XWPFDocument generate(WordData dto, TemplateSource template, OutputStream outputStream) throws IOException {
+        GenerationRecorder recorder = GenerationRecorder.start(generationListener, "word", "DOCX");
+        try {
+            long start = recorder.now();
+            XWPFDocument doc = template.open();
+            start = recorder.phase(GenerationPhase.PARSE, start);
+            long replaced = generateWord(doc, dto);
+            start = recorder.phase(GenerationPhase.FILL, start, outputStream != null);
+            recorder.count(0, 0, 0, replaced);
+            if (outputStream != null) {
+                PackageOutput.write(doc, recorder.countBytes(outputStream), outputSettings);
+                recorder.phase(GenerationPhase.WRITE, start, false);
+            }
+            recorder.finish(null);
+            return doc;
+        } catch (IOException | RuntimeException e) {
+            recorder.finish(e);
+            throw e;
+        }
     }
 
     @Override
     public XWPFDocument createDocByTemplate(WordData dto, InputStream template) throws IOException {
-        XWPFDocument doc = new XWPFDocument(template);
-        return generateWord(doc, dto);
+        return generate(dto, () -> new XWPFDocument(template), null);
     }
 
     @Override
     public XWPFDocument createDocByTemplate(WordData dto, byte[] templateFile) throws IOException {
         try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(templateFile)) {
-            XWPFDocument doc = new XWPFDocument(inputStream);
-            return generateWord(doc, dto);
+            return generate(dto, () -> new XWPFDocument(inputStream), null);
         }
     }
 
     @Override
     public void createByTemplate(WordData dto, InputStream template, OutputStream outputStream) throws IOException {
-        XWPFDocument doc = new XWPFDocument(template);
-        generateWord(doc, dto);
-        doc.write(outputStream);
+        generate(dto, () -> new XWPFDocument(template), outputStream);
+    }
+
+    @Override
+    public XWPFDocument createDocByTemplate(WordData dto, PrototypePool<XWPFDocument> template) throws IOException {
+        return generate(dto, template::take, null);
+    }
+
+    @Override
+    public void createByTemplate(WordData dto, PrototypePool<XWPFDocument> template,
+                                 OutputStream outputStream) throws IOException {
+        generate(dto, template::take, outputStream).close();
+    }
+
+    @Override
+    public void createByTemplate(WordData dto, Path template, OutputStream outputStream) throws IOException {
+        //пакет открывается на запись (иначе POI не запишет результат), поэтому закрывается через revert(),
+        //close() сохранил бы изменения обратно в файл шаблона
+        OPCPackage templatePackage;
+        try {
+            templatePackage = OPCPackage.open(template.toFile(), PackageAccess.READ_WRITE);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Invalid template " + template, e);
+        }
+        try {
+            generate(dto, () -> new XWPFDocument(templatePackage), outputStream);
+        } finally {
+            templatePackage.revert();
+        }
+    }
+
+    @Override
+    public void createByTemplate(WordData dto, File template, OutputStream outputStream) throws IOException {
+        createByTemplate(dto, template.toPath(), outputStream);
+    }
+
+    @Override
+    public void createByTemplate(WordData dto, FileChannel template, OutputStream outputStream) throws IOException {
+        try (FileChannel channel = template) {
+            ByteBuffer content = MappedInput.map(channel);
+            generate(dto, () -> new XWPFDocument(MappedInput.stream(content)), outputStream);
+        }
     }
 }
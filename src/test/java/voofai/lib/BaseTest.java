@@ -1,8 +1,13 @@
 package voofai.lib;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.io.TempDir;
+import voofai.lib.excel.dto.WorkBookType;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -23,4 +28,25 @@ public abstract class BaseTest {
         assertTrue(IOUtils.contentEquals(expected, actual));
     }
 
+    /**
+     * Excel template built in code
+     *
+     * @param type    XLS builds HSSF workbook, other types XSSF
+     * @param builder fills the new empty workbook with template sheets
+     * @return template file content
+     */
+    protected static byte[] template(WorkBookType type, TemplateBuilder builder) throws IOException {
+        try (Workbook workbook = WorkBookType.XLS.equals(type) ? new HSSFWorkbook() : new XSSFWorkbook();
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            builder.build(workbook);
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    @FunctionalInterface
+    protected interface TemplateBuilder {
+        void build(Workbook workbook) throws IOException;
+    }
+
 }
@@ -0,0 +1,118 @@
+package voofai.lib.batch;
+
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchRunnerTest extends BaseTest {
+
+    @Test
+    void runReportsFailuresTest() {
+        Map<String, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+
+        BatchResult result = BatchRunner.run(IntStream.range(0, 20).mapToObj(i -> new BatchItem<>("item" + i, i,
+                        () -> outputs.computeIfAbsent("item" + i, id -> new ByteArrayOutputStream()))),
+                BatchSettings.builder().maxInFlight(4).build(),
+                (data, outputStream) -> {
+                    if (data % 7 == 3) {
+                        throw new IOException("broken " + data);
+                    }
+                    outputStream.write(String.valueOf(data).getBytes(StandardCharsets.UTF_8));
+                });
+
+        assertFalse(result.isSuccess());
+        assertEquals(20, result.getSubmitted());
+        assertEquals(17, result.getSucceeded());
+        assertEquals(3, result.getFailures().size());
+        assertEquals("item3", result.getFailures().get(0).getId());
+        assertEquals(10, result.getFailures().get(1).getIndex());
+        assertEquals("broken 17", result.getFailures().get(2).getError().getMessage());
+        assertEquals("19", new String(outputs.get("item19").toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void runBoundsItemsInFlightTest() {
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger maxTakenAhead = new AtomicInteger();
+
+        BatchResult result = BatchRunner.run(IntStream.range(0, 50)
+                        .peek(i -> maxTakenAhead.accumulateAndGet(taken.incrementAndGet() - finished.get(), Math::max))
+                        .mapToObj(i -> new BatchItem<>(String.valueOf(i), i, ByteArrayOutputStream::new)),
+                BatchSettings.builder().maxInFlight(3).build(),
+                (data, outputStream) -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                        finished.incrementAndGet();
+                    }
+                });
+
+        assertTrue(result.isSuccess());
+        assertEquals(50, result.getSucceeded());
+        assertTrue(maxRunning.get() <= 3);
+        assertTrue(maxTakenAhead.get() <= 3);
+    }
+
+    @Test
+    void runReportsErrorsTest() {
+        BatchResult result = BatchRunner.run(IntStream.range(0, 5)
+                        .mapToObj(i -> new BatchItem<>(String.valueOf(i), i, ByteArrayOutputStream::new)),
+                BatchSettings.builder().maxInFlight(2).build(),
+                (data, outputStream) -> {
+                    if (data == 2) {
+                        throw new NoClassDefFoundError("missing");
+                    }
+                });
+
+        //Error does not make the item vanish
+        assertFalse(result.isSuccess());
+        assertEquals(5, result.getSubmitted());
+        assertEquals(4, result.getSucceeded());
+        assertEquals(1, result.getFailures().size());
+        assertEquals("2", result.getFailures().get(0).getId());
+        assertTrue(result.getFailures().get(0).getError() instanceof NoClassDefFoundError);
+    }
+
+    @Test
+    void runInterruptedTest() {
+        BatchResult result;
+        try {
+            result = BatchRunner.run(IntStream.range(0, 20)
+                            .peek(i -> {
+                                if (i == 5) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            })
+                            .mapToObj(i -> new BatchItem<>(String.valueOf(i), i, ByteArrayOutputStream::new)),
+                    BatchSettings.builder().maxInFlight(2).build(),
+                    (data, outputStream) -> outputStream.write(data));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+
+        //started items are finished, the rest is not taken
+        assertTrue(result.isInterrupted());
+        assertFalse(result.isSuccess());
+        assertEquals(6, result.getSubmitted());
+        assertEquals(6, result.getSucceeded());
+        assertTrue(result.getFailures().isEmpty());
+    }
+}
@@ -0,0 +1,104 @@
+package voofai.lib.convert;
+
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValueConvertersTest extends BaseTest {
+
+    private final ValueConverters converters = ValueConverters.defaults();
+
+    @Test
+    void defaultsTest() {
+        assertEquals("", converters.toText(null));
+        assertEquals("text", converters.toText("text"));
+        assertEquals("01.08.2021", converters.toText(LocalDate.of(2021, 8, 1)));
+        assertEquals("01.08.2021 10:15:30", converters.toText(LocalDateTime.of(2021, 8, 1, 10, 15, 30)));
+        assertEquals("01.08.2021", converters.toText(new GregorianCalendar(2021, Calendar.AUGUST, 1).getTime()));
+        assertEquals("12,34568", converters.toText(12.345678));
+        assertEquals("1000", converters.toText(new BigDecimal("1000.000")));
+        assertEquals("42", converters.toText(42));
+        assertEquals("true", converters.toText(Boolean.TRUE));
+    }
+
+    @Test
+    void numericTest() {
+        assertTrue(converters.find(Double.class).isNumeric());
+        assertTrue(converters.find(Long.class).isNumeric());
+        assertEquals(42.0, converters.find(Integer.class).toNumber(42));
+        assertEquals(10.5, converters.find(BigDecimal.class).toNumber(new BigDecimal("10.5")));
+        assertFalse(converters.find(String.class).isNumeric());
+        assertFalse(converters.find(LocalDate.class).isNumeric());
+    }
+
+    @Test
+    void largeIntegersAsTextTest() {
+        ValueConverter<Object> longs = converters.find(Long.class);
+        assertTrue(longs.isNumeric(1L << 53));
+        assertTrue(longs.isNumeric(-(1L << 53)));
+        assertFalse(longs.isNumeric((1L << 53) + 1));
+        assertFalse(longs.isNumeric(Long.MIN_VALUE));
+        assertEquals("9223372036854775807", longs.toText(Long.MAX_VALUE));
+
+        ValueConverter<Object> bigIntegers = converters.find(BigInteger.class);
+        assertTrue(bigIntegers.isNumeric(BigInteger.valueOf(42)));
+        assertFalse(bigIntegers.isNumeric(new BigInteger("123456789012345678901234567890")));
+        assertTrue(converters.find(Integer.class).isNumeric(Integer.MIN_VALUE));
+    }
+
+    @Test
+    void primitivesTest() {
+        assertEquals("12,34568", converters.doubleToText(12.345678));
+        assertEquals("NaN", converters.doubleToText(Double.NaN));
+        assertEquals("9223372036854775807", converters.longToText(Long.MAX_VALUE));
+        assertTrue(converters.isDefault(Double.class));
+        assertTrue(ValueConverters.isExact(-(1L << 53)));
+        assertFalse(ValueConverters.isExact((1L << 53) + 1));
+
+        //own converter of Double is used for primitive doubles too
+        ValueConverters custom = ValueConverters.builder()
+                .register(Double.class, value -> "d" + value)
+                .build();
+        assertFalse(custom.isDefault(Double.class));
+        assertTrue(custom.isDefault(Long.class));
+        assertEquals("d1.5", custom.doubleToText(1.5));
+        assertEquals("7", custom.longToText(7));
+    }
+
+    @Test
+    void booleanTest() {
+        assertEquals("false", converters.toText(false));
+        assertFalse(converters.find(Boolean.class).isNumeric(true));
+        ValueConverters custom = ValueConverters.builder().booleanText("Да", "Нет").build();
+        assertEquals("Да", custom.toText(true));
+        assertEquals("Нет", custom.toText(Boolean.FALSE));
+    }
+
+    @Test
+    void customConverterTest() {
+        ValueConverters custom = ValueConverters.builder()
+                .locale(Locale.US)
+                .datePattern("yyyy-MM-dd")
+                .register(CharSequence.class, value -> "<" + value + ">")
+                .build();
+
+        assertEquals("2021-08-01", custom.toText(LocalDate.of(2021, 8, 1)));
+        assertEquals("1.5", custom.toText(1.5));
+        //String has own default converter, StringBuilder is found through interface
+        assertEquals("text", custom.toText("text"));
+        assertEquals("<text>", custom.toText(new StringBuilder("text")));
+        assertSame(custom.find(StringBuilder.class), custom.find(StringBuilder.class));
+    }
+}
@@ -0,0 +1,48 @@
+package voofai.lib.excel.dto;
+
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExcelColumnarTableDataTest extends BaseTest {
+
+    @Test
+    void columnsGrowWithRowsTest() {
+        ExcelColumnarTableData table = new ExcelColumnarTableData("#TABLE&table#", 1);
+        int name = table.addColumn("name", ExcelColumnarTableData.ColumnType.STRING);
+        int amount = table.addColumn("amount", ExcelColumnarTableData.ColumnType.DOUBLE);
+        int count = table.addColumn("count", ExcelColumnarTableData.ColumnType.LONG);
+
+        for (int i = 0; i < 100; i++) {
+            table.addRow();
+            table.setString(name, "name" + i);
+            if (i % 2 == 0) {
+                table.setDouble(amount, i * 1.5);
+            }
+            table.setLong(count, i);
+        }
+
+        assertEquals(100, table.getRowCount());
+        assertEquals(amount, table.getColumnIndex("amount"));
+        assertEquals(-1, table.getColumnIndex("unknown"));
+        assertEquals("name99", table.getString(name, 99));
+        assertEquals(147.0, table.getDouble(amount, 98));
+        assertTrue(table.isNull(amount, 99));
+        assertFalse(table.isNull(count, 99));
+        assertEquals(99L, table.getLong(count, 99));
+    }
+
+    @Test
+    void wrongColumnTypeTest() {
+        ExcelColumnarTableData table = new ExcelColumnarTableData("#TABLE&table#");
+        int name = table.addColumn("name", ExcelColumnarTableData.ColumnType.STRING);
+        table.addRow();
+
+        assertThrows(IllegalArgumentException.class, () -> table.setDouble(name, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> table.addColumn("name", ExcelColumnarTableData.ColumnType.LONG));
+    }
+}
@@ -0,0 +1,57 @@
+package voofai.lib.excel.dto;
+
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExcelDataTest extends BaseTest {
+
+    @Test
+    void freezeTest() {
+        ExcelData data = new ExcelData().addParam("date", "01.08.2021");
+        ExcelSimpleTableData table = new ExcelSimpleTableData("#TABLE&table#");
+        data.getSimpleTables().add(table);
+
+        ExcelData frozen = data.freeze();
+
+        assertFalse(data.isFrozen());
+        assertTrue(frozen.isFrozen());
+        assertSame(frozen, frozen.freeze());
+        assertSame(table, frozen.findSimpleTable("#TABLE&table#").orElseThrow(AssertionError::new));
+        assertFalse(frozen.findSimpleTable("#TABLE&other#").isPresent());
+        assertEquals("01.08.2021", frozen.getParams().get("date"));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.addParam("date", "02.08.2021"));
+        assertThrows(UnsupportedOperationException.class,
+                () -> frozen.getSimpleTables().add(new ExcelSimpleTableData("#TABLE&other#")));
+
+        //snapshot does not see later changes of source
+        data.getSimpleTables().add(new ExcelSimpleTableData("#TABLE&other#"));
+        assertFalse(frozen.findSimpleTable("#TABLE&other#").isPresent());
+    }
+
+    @Test
+    void extendedTablesOrderTest() {
+        ExcelData data = new ExcelData();
+        for (int i = 0; i < 20; i++) {
+            data.getExtendedTables().add(new ExcelTemplateTableDataWrapper("#RANGELIST&" + i + "#"));
+        }
+        data.getExtendedTables().add(new ExcelTemplateTableDataWrapper("#RANGE&single#"));
+
+        List<String> names = data.freeze().findExtendedTables("#RANGELIST").stream()
+                .map(ExcelTemplateTableDataWrapper::getTableName)
+                .collect(Collectors.toList());
+
+        assertEquals(20, names.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("#RANGELIST&" + i + "#", names.get(i));
+        }
+    }
+}
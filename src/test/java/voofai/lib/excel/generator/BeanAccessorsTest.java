@@ -0,0 +1,74 @@
+package voofai.lib.excel.generator;
+
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BeanAccessorsTest extends BaseTest {
+
+    @Test
+    void accessorTest() {
+        Invoice invoice = new Invoice();
+
+        assertEquals("INV-1", BeanAccessors.accessor(Invoice.class, "number").apply(invoice));
+        assertEquals(true, BeanAccessors.accessor(Invoice.class, "paid").apply(invoice));
+        assertEquals(3L, BeanAccessors.accessor(Invoice.class, "lines").apply(invoice));
+        assertEquals(new BigDecimal("10.50"), BeanAccessors.accessor(Invoice.class, "amount").apply(invoice));
+        assertEquals("RUB", BeanAccessors.accessor(Invoice.class, "currency").apply(invoice));
+        assertNull(BeanAccessors.accessor(Invoice.class, "unknown").apply(invoice));
+        //cell ## has empty key
+        assertNull(BeanAccessors.accessor(Invoice.class, "").apply(invoice));
+        //methods of Object are not properties
+        assertNull(BeanAccessors.accessor(Invoice.class, "class").apply(invoice));
+        assertNull(BeanAccessors.accessor(Invoice.class, "hashCode").apply(invoice));
+    }
+
+    @Test
+    void accessorCachedTest() {
+        assertSame(BeanAccessors.accessor(Invoice.class, "number"), BeanAccessors.accessor(Invoice.class, "number"));
+    }
+
+    @Test
+    void parentLoaderClassNotCachedTest() {
+        //JDK class outlives the library classloader, caching it would pin the library
+        assertEquals(true, BeanAccessors.accessor(String.class, "empty").apply(""));
+        assertNotSame(BeanAccessors.accessor(String.class, "empty"), BeanAccessors.accessor(String.class, "empty"));
+    }
+
+    @Test
+    void nonPublicClassTest() {
+        assertEquals("hidden", BeanAccessors.accessor(Hidden.class, "value").apply(new Hidden()));
+    }
+
+    public static class Invoice {
+        public final String currency = "RUB";
+
+        public String getNumber() {
+            return "INV-1";
+        }
+
+        public boolean isPaid() {
+            return true;
+        }
+
+        public long lines() {
+            return 3L;
+        }
+
+        public BigDecimal getAmount() {
+            return new BigDecimal("10.50");
+        }
+    }
+
+    private static class Hidden {
+        public String getValue() {
+            return "hidden";
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.excel.dto.ExcelColumnarTableData;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.excel.template.CompiledExcelTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvGeneratorImplTest extends BaseTest {
+    private static CompiledExcelTemplate template;
+
+    @BeforeAll
+    static void compileTemplate() throws IOException {
+        template = CompiledExcelTemplate.compile(WorkBookType.XLSX, template(WorkBookType.XLSX, workbook -> {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("#title#");
+            sheet.createRow(1).createCell(0).setCellValue("Name");
+            sheet.createRow(2).createCell(0).setCellValue("#TABLE&rows#");
+            Row body = sheet.createRow(3);
+            body.createCell(0).setCellValue("#name#");
+            body.createCell(1).setCellValue("#amount#");
+            body.createCell(3).setCellValue("#date#");
+            sheet.createRow(4).createCell(0).setCellValue("#TABLE&rows#");
+            sheet.createRow(5).createCell(0).setCellValue("#TABLE&other#");
+            sheet.createRow(6).createCell(1).setCellValue("#code#");
+            sheet.createRow(7).createCell(2).setCellValue("#count#");
+            sheet.createRow(8).createCell(0).setCellValue("#TABLE&other#");
+        }));
+    }
+
+    @Test
+    void createByTemplateTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CsvGeneratorImpl().createByTemplate(template, rows(), out);
+
+        assertEquals("name,amount,date\r\n"
+                        + "\"a,b\",1.5,01.08.2021\r\n"
+                        + "\"say \"\"hi\"\"\",2,\r\n"
+                        + "\"line\nbreak\",,\r\n",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void createByTemplateTsvTest() throws IOException {
+        StringWriter writer = new StringWriter();
+        CsvSettings settings = CsvSettings.builder()
+                .delimiter('\t')
+                .lineSeparator("\n")
+                .header(false)
+                .build();
+        new CsvGeneratorImpl(settings).createByTemplate(template, "#TABLE&rows#", rows(), writer);
+
+        assertEquals("a,b\t1.5\t01.08.2021\n"
+                + "\"say \"\"hi\"\"\"\t2\t\n"
+                + "\"line\nbreak\"\t\t\n", writer.toString());
+    }
+
+    @Test
+    void createByTemplateLocaleTest() throws IOException {
+        //decimal comma of ru locale is quoted in comma separated values
+        StringWriter writer = new StringWriter();
+        CsvSettings settings = CsvSettings.builder()
+                .header(false)
+                .valueConverters(ValueConverters.defaults())
+                .build();
+        new CsvGeneratorImpl(settings).createByTemplate(template, "#TABLE&rows#", rows(), writer);
+
+        assertTrue(writer.toString().startsWith("\"a,b\",\"1,5\",01.08.2021\r\n"));
+    }
+
+    @Test
+    void createByTemplateColumnarTest() throws IOException {
+        ExcelColumnarTableData other = new ExcelColumnarTableData("#TABLE&other#");
+        int code = other.addColumn("code", ExcelColumnarTableData.ColumnType.STRING);
+        int count = other.addColumn("count", ExcelColumnarTableData.ColumnType.LONG);
+        other.addRow();
+        other.setString(code, "A1");
+        other.setLong(count, 10);
+        other.addRow();
+        other.setString(code, "B2");
+        ExcelData data = new ExcelData();
+        data.getColumnarTables().add(other);
+
+        StringWriter writer = new StringWriter();
+        CsvGeneratorImpl generator = new CsvGeneratorImpl(CsvSettings.tsv());
+        generator.createByTemplate(template, "#TABLE&other#", data, writer);
+
+        assertEquals("code\tcount\r\nA1\t10\r\nB2\t\r\n", writer.toString());
+        assertThrows(IllegalArgumentException.class,
+                () -> generator.createByTemplate(template, "#TABLE&missing#", data, new StringWriter()));
+    }
+
+    private ExcelData rows() {
+        ExcelSimpleTableData rows = new ExcelSimpleTableData("#TABLE&rows#");
+        rows.addTableRowData(row("a,b", 1.5, LocalDate.of(2021, 8, 1)));
+        rows.addTableRowData(row("say \"hi\"", 2, null));
+        rows.addTableRowData(row("line\nbreak", null, null));
+        ExcelData data = new ExcelData().addParam("title", "ignored");
+        data.getSimpleTables().add(rows);
+        return data;
+    }
+
+    private Map<String, Object> row(String name, Object amount, Object date) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("name", name);
+        row.put("amount", amount);
+        row.put("date", date);
+        return row;
+    }
+}
@@ -0,0 +1,210 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+import voofai.lib.excel.dto.ExcelChildTableData;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableDataWrapper;
+import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.metrics.GenerationStats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExcelGeneratorChildTablesTest extends BaseTest {
+
+    private final ExcelGeneratorImpl excelGenerator = new ExcelGeneratorImpl();
+
+    @Test
+    void createByTemplateChildTablesTest() throws IOException {
+        byte[] template = template(WorkBookType.XLSX, workbook -> {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("#RANGE&orders#");
+            sheet.createRow(1).createCell(0).setCellValue("#Body#RANGE&orders#");
+            sheet.createRow(2).createCell(0).setCellValue("#order#");
+            sheet.createRow(3).createCell(0).setCellValue("#TABLE&items#");
+            sheet.createRow(4).createCell(1).setCellValue("#item#");
+            sheet.createRow(5).createCell(0).setCellValue("#TABLE&items#");
+            sheet.createRow(6).createCell(0).setCellValue("#RANGE&orders#");
+        });
+
+        for (WorkBookType type : Arrays.asList(WorkBookType.XLSX, WorkBookType.XLSX_STREAMING, WorkBookType.XLSX_DIRECT)) {
+            //order i has i - 1 items, children are resolved for 2 orders at once
+            List<Integer> batches = new ArrayList<>();
+            ExcelTemplateTableData orders = new ExcelTemplateTableData(Stream.of(1, 2, 3, 4, 5)
+                    .map(i -> Collections.<String, Object>singletonMap("order", "order" + i)));
+            ExcelTemplateTableDataWrapper range = new ExcelTemplateTableDataWrapper("#RANGE&orders#");
+            range.addTableRowData(orders);
+            ExcelData data = new ExcelData();
+            data.getExtendedTables().add(range);
+            data.getChildTables().add(new ExcelChildTableData("#TABLE&items#", 2, parents -> {
+                batches.add(parents.size());
+                return parents.stream()
+                        .map(parent -> {
+                            int order = Integer.parseInt(((String) parent.get("order")).substring(5));
+                            return Stream.iterate(1, i -> i + 1).limit(order - 1)
+                                    .map(i -> Collections.<String, Object>singletonMap("item", parent.get("order") + "-" + i))
+                                    .collect(Collectors.toList());
+                        })
+                        .collect(Collectors.toList());
+            }));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            excelGenerator.createByTemplate(type, data, new ByteArrayInputStream(template), out);
+
+            assertEquals(Arrays.asList(2, 2, 1), batches, type.name());
+            try (Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+                Sheet sheet = actual.getSheetAt(0);
+                List<String> rows = new ArrayList<>();
+                for (int i = 0; i <= sheet.getLastRowNum(); i++) {
+                    Row row = sheet.getRow(i);
+                    rows.add(row.getCell(0, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue()
+                            + row.getCell(1, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue());
+                }
+                assertEquals(Arrays.asList("order1", "order2", "order2-1", "order3", "order3-1", "order3-2",
+                        "order4", "order4-1", "order4-2", "order4-3", "order5", "order5-1", "order5-2", "order5-3", "order5-4"),
+                        rows, type.name());
+            }
+        }
+    }
+
+    @Test
+    void createByTemplateChildTablesReservedTest() throws IOException {
+        for (WorkBookType type : new WorkBookType[]{WorkBookType.XLS, WorkBookType.XLSX}) {
+            byte[] template = template(type, workbook -> {
+                Sheet sheet = workbook.createSheet();
+                sheet.createRow(0).createCell(0).setCellValue("#TABLE&orders#");
+                sheet.createRow(1).createCell(0).setCellValue("#order#");
+                sheet.createRow(2).createCell(0).setCellValue("#TABLE&items#");
+                sheet.createRow(3).createCell(1).setCellValue("#item#");
+                sheet.createRow(4).createCell(0).setCellValue("#TABLE&items#");
+                sheet.createRow(5).createCell(0).setCellValue("#TABLE&orders#");
+                sheet.createRow(6).createCell(0).setCellValue("below");
+                sheet.addMergedRegion(new CellRangeAddress(6, 6, 0, 1));
+            });
+
+            //each of 3 orders has 300 items, children are resolved for 2 orders at once
+            ExcelSimpleTableData orders = new ExcelSimpleTableData("#TABLE&orders#");
+            for (int i = 1; i <= 3; i++) {
+                orders.addTableRowData(Collections.singletonMap("order", "order" + i));
+            }
+            ExcelData data = new ExcelData();
+            data.getSimpleTables().add(orders);
+            data.getChildTables().add(new ExcelChildTableData("#TABLE&items#", 2, parents -> parents.stream()
+                    .map(parent -> Stream.iterate(1, i -> i + 1).limit(300)
+                            .map(i -> Collections.<String, Object>singletonMap("item", parent.get("order") + "-" + i))
+                            .collect(Collectors.toList()))
+                    .collect(Collectors.toList())));
+
+            List<GenerationStats> finished = new ArrayList<>();
+            ExcelGeneratorImpl generator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                    .generationListener((stats, error) -> finished.add(stats))
+                    .build());
+            try (Workbook actual = generator.createWorkbookByTemplate(type, data, template)) {
+                Sheet sheet = actual.getSheetAt(0);
+                int rowNum = 0;
+                for (int order = 1; order <= 3; order++) {
+                    assertEquals("order" + order, sheet.getRow(rowNum++).getCell(0).getStringCellValue(), type.name());
+                    for (int item = 1; item <= 300; item++) {
+                        assertEquals("order" + order + "-" + item, sheet.getRow(rowNum++).getCell(1).getStringCellValue(), type.name());
+                    }
+                }
+                assertEquals("below", sheet.getRow(rowNum).getCell(0).getStringCellValue(), type.name());
+                assertEquals(Collections.singletonList(new CellRangeAddress(rowNum, rowNum, 0, 1)), sheet.getMergedRegions(), type.name());
+                for (int i = rowNum + 1; i <= sheet.getLastRowNum(); i++) {
+                    assertTrue(sheet.getRow(i) == null || sheet.getRow(i).getPhysicalNumberOfCells() == 0, type.name());
+                }
+            }
+            //one shift per batch and one when the template rows are deleted (row by row: 2 rows below per item)
+            assertTrue(finished.get(0).getRowsShifted() < 1000, type.name() + ": " + finished.get(0).getRowsShifted());
+        }
+    }
+
+    @Test
+    void createByTemplateGrandchildTablesTest() throws IOException {
+        for (WorkBookType type : new WorkBookType[]{WorkBookType.XLS, WorkBookType.XLSX}) {
+            byte[] template = template(type, workbook -> {
+                Sheet sheet = workbook.createSheet();
+                sheet.createRow(0).createCell(0).setCellValue("#TABLE&orders#");
+                sheet.createRow(1).createCell(0).setCellValue("#order#");
+                sheet.createRow(2).createCell(0).setCellValue("#TABLE&items#");
+                sheet.createRow(3).createCell(1).setCellValue("#item#");
+                sheet.createRow(4).createCell(0).setCellValue("#TABLE&parts#");
+                sheet.createRow(5).createCell(2).setCellValue("#part#");
+                sheet.createRow(6).createCell(0).setCellValue("#TABLE&parts#");
+                sheet.createRow(7).createCell(0).setCellValue("#TABLE&items#");
+                sheet.createRow(8).createCell(0).setCellValue("#TABLE&orders#");
+                sheet.createRow(9).createCell(0).setCellValue("below");
+            });
+
+            //4 orders, 50 items per order, 2 parts per item, children are resolved for 2 orders at once
+            ExcelSimpleTableData orders = new ExcelSimpleTableData("#TABLE&orders#");
+            for (int i = 1; i <= 4; i++) {
+                orders.addTableRowData(Collections.singletonMap("order", "order" + i));
+            }
+            List<Integer> itemCalls = new ArrayList<>();
+            List<Integer> partCalls = new ArrayList<>();
+            ExcelData data = new ExcelData();
+            data.getSimpleTables().add(orders);
+            data.getChildTables().add(new ExcelChildTableData("#TABLE&items#", 2, parents -> {
+                itemCalls.add(parents.size());
+                return parents.stream()
+                        .map(parent -> Stream.iterate(1, i -> i + 1).limit(50)
+                                .map(i -> Collections.<String, Object>singletonMap("item", parent.get("order") + "-" + i))
+                                .collect(Collectors.toList()))
+                        .collect(Collectors.toList());
+            }));
+            data.getChildTables().add(new ExcelChildTableData("#TABLE&parts#", parents -> {
+                partCalls.add(parents.size());
+                return parents.stream()
+                        .map(parent -> Arrays.<Map<String, Object>>asList(
+                                Collections.singletonMap("part", parent.get("item") + "a"),
+                                Collections.singletonMap("part", parent.get("item") + "b")))
+                        .collect(Collectors.toList());
+            }));
+
+            List<GenerationStats> finished = new ArrayList<>();
+            ExcelGeneratorImpl generator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                    .generationListener((stats, error) -> finished.add(stats))
+                    .build());
+            try (Workbook actual = generator.createWorkbookByTemplate(type, data, template)) {
+                Sheet sheet = actual.getSheetAt(0);
+                int rowNum = 0;
+                for (int order = 1; order <= 4; order++) {
+                    assertEquals("order" + order, sheet.getRow(rowNum++).getCell(0).getStringCellValue(), type.name());
+                    for (int item = 1; item <= 50; item++) {
+                        String name = "order" + order + "-" + item;
+                        assertEquals(name, sheet.getRow(rowNum++).getCell(1).getStringCellValue(), type.name());
+                        assertEquals(name + "a", sheet.getRow(rowNum++).getCell(2).getStringCellValue(), type.name());
+                        assertEquals(name + "b", sheet.getRow(rowNum++).getCell(2).getStringCellValue(), type.name());
+                    }
+                }
+                assertEquals("below", sheet.getRow(rowNum).getCell(0).getStringCellValue(), type.name());
+            }
+
+            //each level is resolved once per batch of orders, not once per parent row
+            assertEquals(Arrays.asList(2, 2), itemCalls, type.name());
+            assertEquals(Arrays.asList(100, 100), partCalls, type.name());
+            //one shift per batch of orders and one when the template rows are deleted
+            assertTrue(finished.get(0).getRowsShifted() < 1000, type.name() + ": " + finished.get(0).getRowsShifted());
+        }
+    }
+}
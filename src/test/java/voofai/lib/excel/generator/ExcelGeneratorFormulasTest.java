@@ -0,0 +1,187 @@
+package voofai.lib.excel.generator;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.WorkBookType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExcelGeneratorFormulasTest extends BaseTest {
+
+    private final ExcelGeneratorImpl excelGenerator = new ExcelGeneratorImpl();
+
+    @Test
+    void createByTemplateStreamingFormulasOverLazyRowsTest() throws IOException {
+        for (boolean above : new boolean[]{true, false}) {
+            byte[] template = template(WorkBookType.XLSX, workbook -> {
+                Sheet sheet = workbook.createSheet();
+                sheet.createRow(0).createCell(0).setCellFormula(above ? "COUNTA(A3:A3)" : "1");
+                sheet.createRow(1).createCell(0).setCellValue("#TABLE&lazy#");
+                sheet.createRow(2).createCell(0).setCellValue("#value#");
+                sheet.createRow(3).createCell(0).setCellValue("#TABLE&lazy#");
+                sheet.createRow(4).createCell(0).setCellFormula("COUNTA(A3:A3)");
+            });
+
+            for (WorkBookType type : new WorkBookType[]{WorkBookType.XLSX_STREAMING, WorkBookType.XLSX_DIRECT}) {
+                ExcelData data = new ExcelData();
+                data.getSimpleTables().add(new ExcelSimpleTableData("#TABLE&lazy#", Stream.iterate(1, i -> i + 1).limit(3)
+                        .map(i -> Collections.<String, Object>singletonMap("value", "v" + i))));
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                if (above) {
+                    //height of the lazy table is not known when the formula above it is written
+                    assertThrows(IllegalStateException.class,
+                            () -> excelGenerator.createByTemplate(type, data, new ByteArrayInputStream(template), out), type.name());
+                    continue;
+                }
+                excelGenerator.createByTemplate(type, data, new ByteArrayInputStream(template), out);
+                try (Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+                    assertEquals("COUNTA(A2:A4)", actual.getSheetAt(0).getRow(4).getCell(0).getCellFormula(), type.name());
+                }
+            }
+        }
+    }
+
+    /**
+     * Cell values, formulas, styles and merged regions of the streaming result are the same as of XLSX result
+     */
+
+    @Test
+    void createByTemplateDirectSharedFormulasTest() throws IOException {
+        byte[] template = template(WorkBookType.XLSX, workbook -> {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("#TABLE&items#");
+            for (int rowNum = 1; rowNum <= 2; rowNum++) {
+                Row body = sheet.createRow(rowNum);
+                body.createCell(0).setCellValue("#amount#");
+                body.createCell(1).setCellFormula("A" + (rowNum + 1) + "*2");
+            }
+            sheet.createRow(3).createCell(0).setCellValue("#TABLE&items#");
+        });
+
+        //POI writes plain formulas, Excel saves a column of similar formulas as one shared formula
+        ByteArrayOutputStream shared = new ByteArrayOutputStream();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(template));
+             ZipOutputStream zip = new ZipOutputStream(shared)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                zip.putNextEntry(new ZipEntry(entry.getName()));
+                byte[] content = IOUtils.toByteArray(in);
+                if (entry.getName().endsWith("sheet1.xml")) {
+                    content = new String(content, StandardCharsets.UTF_8)
+                            .replace("<f>A2*2</f>", "<f t=\"shared\" ref=\"B2:B3\" si=\"0\">A2*2</f>")
+                            .replace("<f>A3*2</f>", "<f t=\"shared\" si=\"0\"/>")
+                            .getBytes(StandardCharsets.UTF_8);
+                }
+                zip.write(content);
+                zip.closeEntry();
+            }
+        }
+
+        ExcelData data = new ExcelData();
+        data.getSimpleTables().add(new ExcelSimpleTableData("#TABLE&items#", Stream.of(1, 2, 3)
+                .map(i -> Collections.<String, Object>singletonMap("amount", i))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        excelGenerator.createByTemplate(WorkBookType.XLSX_DIRECT, data, new ByteArrayInputStream(shared.toByteArray()), out);
+
+        //every copy of the body gets plain formulas instead of a repeated shared formula master
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (entry.getName().endsWith("sheet1.xml")) {
+                    String xml = new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+                    assertFalse(xml.contains("shared"), xml);
+                }
+            }
+        }
+        try (Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = actual.getSheetAt(0);
+            for (int rowNum = 0; rowNum < 6; rowNum++) {
+                assertEquals(rowNum / 2 + 1, sheet.getRow(rowNum).getCell(0).getNumericCellValue());
+                assertEquals(rowNum % 2 == 0 ? "A2*2" : "A3*2", sheet.getRow(rowNum).getCell(1).getCellFormula());
+            }
+            assertEquals(5, sheet.getLastRowNum());
+        }
+    }
+
+    @Test
+    void createByTemplateSheetShardingFormulasTest() throws IOException {
+        byte[] template = template(WorkBookType.XLSX, workbook -> {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellFormula("COUNTA(A3:A3)");
+            sheet.createRow(1).createCell(0).setCellValue("#TABLE&rows#");
+            sheet.createRow(2).createCell(0).setCellValue("#name#");
+            sheet.createRow(3).createCell(0).setCellValue("#TABLE&rows#");
+        });
+        ExcelSimpleTableData rows = new ExcelSimpleTableData("#TABLE&rows#");
+        for (int i = 1; i <= 10; i++) {
+            rows.addTableRowData(Collections.singletonMap("name", "name" + i));
+        }
+        ExcelData data = new ExcelData();
+        data.getSimpleTables().add(rows);
+
+        //the table is continued on the next sheet, the formula above it can not refer to all of its rows
+        ExcelGeneratorImpl generator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .sheetSharding(true)
+                .shardRows(6)
+                .build());
+        assertThrows(IllegalStateException.class, () -> generator.createByTemplate(WorkBookType.XLSX_STREAMING, data,
+                new ByteArrayInputStream(template), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void createByTemplateParallelSheetShardingFormulasTest() throws IOException {
+        byte[] template = template(WorkBookType.XLSX, workbook -> {
+            for (int i = 1; i <= 4; i++) {
+                Sheet sheet = workbook.createSheet("Data" + i);
+                sheet.createRow(0).createCell(0).setCellValue("#TABLE&rows#");
+                sheet.createRow(1).createCell(0).setCellValue("#name#");
+                sheet.createRow(2).createCell(0).setCellValue("#TABLE&rows#");
+                sheet.createRow(3).createCell(0).setCellFormula("Other!A1");
+            }
+            workbook.createSheet("Other").createRow(0).createCell(0).setCellValue("other");
+        });
+        ExcelSimpleTableData rows = new ExcelSimpleTableData("#TABLE&rows#");
+        for (int i = 1; i <= 100; i++) {
+            rows.addTableRowData(Collections.singletonMap("name", "name" + i));
+        }
+        ExcelData data = new ExcelData();
+        data.getSimpleTables().add(rows);
+
+        //sheets are continued while the other sheets parse formulas with sheet names
+        ExcelGeneratorImpl generator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .parallelSheets(true)
+                .sheetSharding(true)
+                .shardRows(10)
+                .build());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.createByTemplate(WorkBookType.XLSX_STREAMING, data, new ByteArrayInputStream(template), out);
+
+        try (Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(4 * 11 + 1, actual.getNumberOfSheets());
+            for (int i = 1; i <= 4; i++) {
+                Cell formula = actual.getSheet("Data" + i + " (11)").getRow(0).getCell(0);
+                assertEquals("Other!A1", formula.getCellFormula());
+            }
+        }
+    }
+}
@@ -1,22 +1,52 @@
 package voofai.lib.excel.generator;
 
 import bad.robot.excel.matchers.WorkbookMatcher;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.hamcrest.Matcher;
 import org.hamcrest.MatcherAssert;
 import org.junit.jupiter.api.Test;
 import voofai.lib.BaseTest;
+import voofai.lib.batch.BatchItem;
+import voofai.lib.batch.BatchResult;
+import voofai.lib.batch.BatchSettings;
+import voofai.lib.excel.dto.ExcelBeanTableData;
+import voofai.lib.excel.dto.ExcelColumnarTableData;
 import voofai.lib.excel.dto.ExcelData;
 import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableData;
 import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.excel.template.CompiledExcelTemplate;
+import voofai.lib.excel.template.WorkbookPool;
+import voofai.lib.metrics.GenerationPhase;
+import voofai.lib.metrics.GenerationStats;
+import voofai.lib.output.OutputSettings;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 class ExcelGeneratorImplTest extends BaseTest {
     private static final String TEMPLATE_PATH = "/excel/template.xlsx";
     private static final String EXPECTED_RESULT_PATH = "/excel/expected_result.xlsx";
@@ -39,6 +69,385 @@ class ExcelGeneratorImplTest extends BaseTest {
 
     }
 
+    @Test
+    void createWorkbookByCompiledTemplateTest() throws IOException {
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            //generate
+            CompiledExcelTemplate compiled = CompiledExcelTemplate.compile(WorkBookType.XLSX, template);
+            Workbook actual = excelGenerator.createWorkbookByTemplate(compiled, generateData());
+
+            //compare expected vs actual
+            try (InputStream expected = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH)) {
+                Matcher<Workbook> matcher = WorkbookMatcher.sameWorkbook(new XSSFWorkbook(expected));
+                MatcherAssert.assertThat("Workbooks to be identical", actual, matcher);
+            }
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplatePoolTest() throws IOException {
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH);
+             WorkbookPool pool = new WorkbookPool(CompiledExcelTemplate.compile(WorkBookType.XLSX, template), 2);
+             InputStream expected = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH)) {
+            Matcher<Workbook> matcher = WorkbookMatcher.sameWorkbook(new XSSFWorkbook(expected));
+
+            //every workbook is a fresh copy of template
+            for (int i = 0; i < 3; i++) {
+                Workbook actual = excelGenerator.createWorkbookByTemplate(pool, generateData());
+                MatcherAssert.assertThat("Workbooks to be identical", actual, matcher);
+            }
+        }
+    }
+
+    @Test
+    void createByTemplateFileTest() throws IOException {
+        File templateFile = newTempFile();
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            Files.copy(template, templateFile.toPath());
+        }
+        byte[] templateContent = Files.readAllBytes(templateFile.toPath());
+
+        //generate
+        File tempFile = newTempFile();
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            excelGenerator.createByTemplate(WorkBookType.XLSX, generateData(), templateFile, outputStream);
+        }
+
+        //compare expected vs actual, template file is not changed
+        try (InputStream expected = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH);
+             InputStream actual = new FileInputStream(tempFile)) {
+            Matcher<Workbook> matcher = WorkbookMatcher.sameWorkbook(new XSSFWorkbook(expected));
+            MatcherAssert.assertThat("Workbooks to be identical", new XSSFWorkbook(actual), matcher);
+        }
+        assertArrayEquals(templateContent, Files.readAllBytes(templateFile.toPath()));
+    }
+
+    @Test
+    void createByTemplateChannelTest() throws IOException {
+        File templateFile = newTempFile();
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            Files.copy(template, templateFile.toPath());
+        }
+
+        for (WorkBookType type : Arrays.asList(WorkBookType.XLSX, WorkBookType.XLSX_STREAMING, WorkBookType.XLSX_DIRECT)) {
+            //from memory mapped channel and from file (XLSX_DIRECT reads the file as stream, not into byte[])
+            ByteArrayOutputStream fromChannel = new ByteArrayOutputStream();
+            ByteArrayOutputStream fromPath = new ByteArrayOutputStream();
+            FileChannel channel = FileChannel.open(templateFile.toPath(), StandardOpenOption.READ);
+            excelGenerator.createByTemplate(type, generateData(), channel, fromChannel);
+            assertFalse(channel.isOpen(), type.name());
+            excelGenerator.createByTemplate(type, generateData(), templateFile.toPath(), fromPath);
+
+            try (InputStream expectedStream = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH);
+                 Workbook expected = new XSSFWorkbook(expectedStream);
+                 Workbook actualChannel = new XSSFWorkbook(new ByteArrayInputStream(fromChannel.toByteArray()));
+                 Workbook actualPath = new XSSFWorkbook(new ByteArrayInputStream(fromPath.toByteArray()))) {
+                assertSameSheet(expected.getSheetAt(0), actualChannel.getSheetAt(0));
+                assertSameSheet(expected.getSheetAt(0), actualPath.getSheetAt(0));
+            }
+        }
+    }
+
+    @Test
+    void createByTemplateStreamingTest() throws IOException {
+        File tempFile = newTempFile();
+
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH);
+             OutputStream outputStream = new FileOutputStream(tempFile)) {
+            excelGenerator.createByTemplate(WorkBookType.XLSX_STREAMING, generateData(), template, outputStream);
+        }
+
+        //compare expected vs actual (rows written in order, formulas below the table are shifted as in XLSX mode)
+        try (InputStream expectedStream = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH);
+             InputStream actualStream = new FileInputStream(tempFile);
+             Workbook expected = new XSSFWorkbook(expectedStream);
+             Workbook actual = new XSSFWorkbook(actualStream)) {
+            assertEquals(expected.getNumberOfSheets(), actual.getNumberOfSheets());
+            assertSameSheet(expected.getSheetAt(0), actual.getSheetAt(0));
+        }
+    }
+
+    @Test
+    void createByTemplateDirectTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            excelGenerator.createByTemplate(WorkBookType.XLSX_DIRECT, generateData(), template, out);
+        }
+
+        //compare expected vs actual (formulas below the table are shifted as in XLSX mode)
+        try (InputStream expectedStream = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH);
+             Workbook expected = new XSSFWorkbook(expectedStream);
+             Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertSameSheet(expected.getSheetAt(0), actual.getSheetAt(0));
+        }
+    }
+
+    private void assertSameSheet(Sheet expected, Sheet actual) {
+        assertEquals(expected.getSheetName(), actual.getSheetName());
+        assertEquals(expected.getLastRowNum(), actual.getLastRowNum());
+        for (Row expectedRow : expected) {
+            Row actualRow = actual.getRow(expectedRow.getRowNum());
+            for (Cell expectedCell : expectedRow) {
+                Cell actualCell = actualRow.getCell(expectedCell.getColumnIndex());
+                String address = expectedCell.getAddress().formatAsString();
+                assertEquals(String.valueOf(expectedCell), String.valueOf(actualCell), address);
+                assertEquals(expectedCell.getCellStyle().getIndex(), actualCell.getCellStyle().getIndex(), address);
+            }
+        }
+        assertEquals(expected.getMergedRegions(), actual.getMergedRegions());
+    }
+
+    @Test
+    void createByTemplateOutputSettingsTest() throws IOException {
+        ExcelGeneratorImpl storeOnlyGenerator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .outputSettings(OutputSettings.storeOnly())
+                .build());
+
+        for (WorkBookType type : Arrays.asList(WorkBookType.XLSX, WorkBookType.XLSX_STREAMING, WorkBookType.XLSX_DIRECT)) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            ByteArrayOutputStream stored = new ByteArrayOutputStream();
+            try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+                excelGenerator.createByTemplate(type, generateData(), template, compressed);
+            }
+            try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+                storeOnlyGenerator.createByTemplate(type, generateData(), template, stored);
+            }
+
+            //same content, larger file
+            assertTrue(stored.size() > compressed.size(), type.name());
+            try (Workbook expected = new XSSFWorkbook(new ByteArrayInputStream(compressed.toByteArray()));
+                 Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(stored.toByteArray()))) {
+                MatcherAssert.assertThat(type.name(), actual, WorkbookMatcher.sameWorkbook(expected));
+            }
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplateInlineStringsTest() throws IOException {
+        ExcelGeneratorImpl inlineGenerator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .stringStorage(StringStorage.INLINE)
+                .build());
+        ExcelGeneratorImpl inlineKeysGenerator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .inlineStringKeys(Collections.singleton("partNumber"))
+                .build());
+
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH);
+             InputStream keysTemplate = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH);
+             InputStream expectedStream = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH);
+             XSSFWorkbook expected = new XSSFWorkbook(expectedStream)) {
+            XSSFWorkbook inline = (XSSFWorkbook) inlineGenerator.createWorkbookByTemplate(WorkBookType.XLSX, generateData(), template);
+            XSSFWorkbook inlineKeys = (XSSFWorkbook) inlineKeysGenerator.createWorkbookByTemplate(WorkBookType.XLSX,
+                    generateData(), keysTemplate);
+
+            //same values, generated strings are not added to shared strings table
+            MatcherAssert.assertThat(inline, WorkbookMatcher.sameWorkbook(expected));
+            MatcherAssert.assertThat(inlineKeys, WorkbookMatcher.sameWorkbook(expected));
+            assertTrue(inline.getSharedStringSource().getUniqueCount() < inlineKeys.getSharedStringSource().getUniqueCount());
+            assertTrue(inlineKeys.getSharedStringSource().getUniqueCount() < expected.getSharedStringSource().getUniqueCount());
+
+            //inline strings survive write and read
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            inline.write(out);
+            try (Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+                MatcherAssert.assertThat(actual, WorkbookMatcher.sameWorkbook(expected));
+            }
+        }
+    }
+
+    @Test
+    void createByTemplateParallelSheetsTest() throws IOException {
+        //template with several identical sheets
+        byte[] template;
+        try (InputStream templateStream = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH);
+             Workbook workbook = new XSSFWorkbook(templateStream);
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int i = 0; i < 3; i++) {
+                workbook.cloneSheet(0);
+            }
+            workbook.write(out);
+            template = out.toByteArray();
+        }
+
+        ExcelGeneratorImpl parallelGenerator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .parallelSheets(true)
+                .build());
+        for (WorkBookType type : Arrays.asList(WorkBookType.XLSX_STREAMING, WorkBookType.XLSX_DIRECT)) {
+            ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+            ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+            excelGenerator.createByTemplate(type, generateData(),
+                    new ByteArrayInputStream(template), sequential);
+            parallelGenerator.createByTemplate(type, generateData(),
+                    new ByteArrayInputStream(template), parallel);
+
+            //compare sequential vs parallel
+            try (Workbook expected = new XSSFWorkbook(new ByteArrayInputStream(sequential.toByteArray()));
+                 Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(parallel.toByteArray()))) {
+                assertEquals(4, actual.getNumberOfSheets(), type.name());
+                for (int sheetNum = 0; sheetNum < expected.getNumberOfSheets(); sheetNum++) {
+                    assertEquals(expected.getSheetName(sheetNum), actual.getSheetName(sheetNum));
+                    assertEquals(expected.getSheetAt(sheetNum).getLastRowNum(), actual.getSheetAt(sheetNum).getLastRowNum());
+                    for (Row expectedRow : expected.getSheetAt(sheetNum)) {
+                        Row actualRow = actual.getSheetAt(sheetNum).getRow(expectedRow.getRowNum());
+                        for (int column = 0; column < expectedRow.getLastCellNum(); column++) {
+                            assertEquals(String.valueOf(expectedRow.getCell(column)), String.valueOf(actualRow.getCell(column)));
+                        }
+                    }
+                    assertEquals(expected.getSheetAt(sheetNum).getNumMergedRegions(),
+                            actual.getSheetAt(sheetNum).getNumMergedRegions());
+                }
+            }
+        }
+    }
+
+    @Test
+    void createByTemplateGenerationListenerTest() throws IOException {
+        List<GenerationStats> finished = new ArrayList<>();
+        ExcelGeneratorImpl generator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .generationListener((stats, error) -> {
+                    assertNull(error);
+                    finished.add(stats);
+                })
+                .build());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            generator.createByTemplate(WorkBookType.XLSX, generateData(), template, out);
+        }
+
+        assertEquals(1, finished.size());
+        GenerationStats stats = finished.get(0);
+        assertEquals("excel", stats.getGenerator());
+        assertEquals("XLSX", stats.getFormat());
+        assertTrue(stats.getRowsCopied() > 0);
+        assertTrue(stats.getPlaceholdersResolved() > 0);
+        assertEquals(out.size(), stats.getBytesWritten());
+        assertTrue(stats.getPhaseNanos(GenerationPhase.PARSE) > 0);
+        assertTrue(stats.getPhaseNanos(GenerationPhase.FILL) > 0);
+        assertTrue(stats.getPhaseNanos(GenerationPhase.WRITE) > 0);
+        assertTrue(stats.getTotalNanos() >= stats.getPhaseNanos(GenerationPhase.WRITE));
+    }
+
+    @Test
+    void createByTemplateBatchTest() throws IOException {
+        List<File> files = Stream.generate(this::newTempFile).limit(5).collect(Collectors.toList());
+        Stream<BatchItem<ExcelData>> items = files.stream()
+                .map(file -> new BatchItem<>(file.getName(), generateData(), () -> new FileOutputStream(file)));
+
+        BatchResult result;
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            result = excelGenerator.createByTemplate(WorkBookType.XLSX, template,
+                    Stream.concat(items, Stream.of(new BatchItem<>("broken", generateData(), () -> {
+                        throw new IOException("no output");
+                    }))),
+                    BatchSettings.builder().maxInFlight(2).build());
+        }
+
+        assertEquals(6, result.getSubmitted());
+        assertEquals(5, result.getSucceeded());
+        assertEquals("broken", result.getFailures().get(0).getId());
+        try (InputStream expected = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH)) {
+            Matcher<Workbook> matcher = WorkbookMatcher.sameWorkbook(new XSSFWorkbook(expected));
+            for (File file : files) {
+                try (InputStream actual = new FileInputStream(file)) {
+                    MatcherAssert.assertThat("Workbooks to be identical", new XSSFWorkbook(actual), matcher);
+                }
+            }
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplateLazyRowsTest() throws IOException {
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            //generate (rows are read from iterator while the table is filled)
+            Iterator<Map<String, Object>> rows = Stream.of(1, 2, 3, 954)
+                    .map(this::mapToExcelTableStringData)
+                    .iterator();
+            final ExcelData data = new ExcelData();
+            data.getSimpleTables().add(new ExcelSimpleTableData("#TABLE&table#", rows));
+            data.addParam("date", LocalDate.of(2021, 8, 1));
+            Workbook actual = excelGenerator.createWorkbookByTemplate(WorkBookType.XLSX, data, template);
+
+            //compare expected vs actual
+            try (InputStream expected = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH)) {
+                Matcher<Workbook> matcher = WorkbookMatcher.sameWorkbook(new XSSFWorkbook(expected));
+                MatcherAssert.assertThat("Workbooks to be identical", actual, matcher);
+            }
+            assertFalse(rows.hasNext());
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplateColumnarTest() throws IOException {
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            //generate (same rows as generateData, stored by columns)
+            ExcelColumnarTableData tableData = new ExcelColumnarTableData("#TABLE&table#", 4);
+            int[] columns = Stream.of("partNumber", "name", "itemType", "size")
+                    .mapToInt(key -> tableData.addColumn(key, ExcelColumnarTableData.ColumnType.STRING))
+                    .toArray();
+            for (int postFix : new int[]{1, 2, 3, 954}) {
+                tableData.addRow();
+                Map<String, Object> row = mapToExcelTableStringData(postFix);
+                tableData.setString(columns[0], (String) row.get("partNumber"));
+                tableData.setString(columns[1], (String) row.get("name"));
+                tableData.setString(columns[2], (String) row.get("itemType"));
+                tableData.setString(columns[3], (String) row.get("size"));
+            }
+            final ExcelData data = new ExcelData();
+            data.getColumnarTables().add(tableData);
+            data.addParam("date", LocalDate.of(2021, 8, 1));
+            Workbook actual = excelGenerator.createWorkbookByTemplate(WorkBookType.XLSX, data, template);
+
+            //compare expected vs actual
+            try (InputStream expected = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH)) {
+                Matcher<Workbook> matcher = WorkbookMatcher.sameWorkbook(new XSSFWorkbook(expected));
+                MatcherAssert.assertThat("Workbooks to be identical", actual, matcher);
+            }
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplateBeansTest() throws IOException {
+        try (InputStream template = ExcelGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            //generate (same rows as generateData, read from getters)
+            List<Part> parts = Stream.of(1, 2, 3, 954)
+                    .map(Part::new)
+                    .collect(Collectors.toList());
+            final ExcelData data = new ExcelData();
+            data.getBeanTables().add(new ExcelBeanTableData<>("#TABLE&table#", Part.class, parts));
+            data.addParam("date", LocalDate.of(2021, 8, 1));
+            Workbook actual = excelGenerator.createWorkbookByTemplate(WorkBookType.XLSX, data, template);
+
+            //compare expected vs actual
+            try (InputStream expected = ExcelGeneratorImplTest.class.getResourceAsStream(EXPECTED_RESULT_PATH)) {
+                Matcher<Workbook> matcher = WorkbookMatcher.sameWorkbook(new XSSFWorkbook(expected));
+                MatcherAssert.assertThat("Workbooks to be identical", actual, matcher);
+            }
+        }
+    }
+
+    @Test
+    void lazyRowsMixedWithRowsTest() {
+        ExcelSimpleTableData tableData = new ExcelSimpleTableData("#TABLE&table#", Collections.<Map<String, Object>>emptyIterator());
+        assertThrows(IllegalStateException.class, () -> tableData.addTableRowData(mapToExcelTableStringData(1)));
+        tableData.getTableRowsData().add(mapToExcelTableStringData(1));
+        assertThrows(IllegalStateException.class, tableData::rows);
+
+        ExcelTemplateTableData rangeData = new ExcelTemplateTableData(Collections.<Map<String, Object>>emptyIterator());
+        assertThrows(IllegalStateException.class, () -> rangeData.addBody(mapToExcelTableStringData(1)));
+        rangeData.getBody().add(mapToExcelTableStringData(1));
+        assertThrows(IllegalStateException.class, rangeData::bodyRows);
+    }
+
+    @Test
+    void lazyRowsReadOnceTest() {
+        ExcelSimpleTableData tableData = new ExcelSimpleTableData("#TABLE&table#",
+                () -> Stream.of(1, 2).map(this::mapToExcelTableStringData).spliterator());
+
+        assertTrue(tableData.isLazy());
+        assertTrue(tableData.rows().hasNext());
+        assertThrows(IllegalStateException.class, tableData::rows);
+    }
+
     private ExcelData generateData() {
         final ExcelSimpleTableData tableData = new ExcelSimpleTableData("#TABLE&table#");
         final ExcelData excelData = new ExcelData();
@@ -52,6 +461,30 @@ class ExcelGeneratorImplTest extends BaseTest {
         return excelData;
     }
 
+    public static class Part {
+        private final int postFix;
+
+        Part(int postFix) {
+            this.postFix = postFix;
+        }
+
+        public String getPartNumber() {
+            return String.format("partNumber%d", postFix);
+        }
+
+        public String getName() {
+            return String.format("name%d", postFix);
+        }
+
+        public String getItemType() {
+            return String.format("itemType%d", postFix);
+        }
+
+        public String getSize() {
+            return String.format("size%d", postFix);
+        }
+    }
+
     private Map<String, Object> mapToExcelTableStringData(int postFix) {
         Map<String, Object> map = new HashMap<>();
         map.put("partNumber", String.format("partNumber%d", postFix));
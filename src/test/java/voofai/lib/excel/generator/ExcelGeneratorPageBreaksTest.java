@@ -0,0 +1,145 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.metrics.GenerationStats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExcelGeneratorPageBreaksTest extends BaseTest {
+
+    @Test
+    void createWorkbookByTemplatePageBreaksTest() throws IOException {
+        ExcelGeneratorImpl generator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .pageBreaks(true)
+                .build());
+        ExcelSimpleTableData tableData = new ExcelSimpleTableData("#TABLE&rows#");
+        for (int i = 1; i <= 11; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("n", "data" + i);
+            tableData.addTableRowData(row);
+        }
+        ExcelData data = new ExcelData();
+        data.getSimpleTables().add(tableData);
+
+        for (WorkBookType type : new WorkBookType[]{WorkBookType.XLS, WorkBookType.XLSX}) {
+            //5 rows per page = 4 data rows + page footer
+            byte[] template = template(type, workbook -> {
+                Sheet sheet = workbook.createSheet();
+                sheet.createRow(0).createCell(0).setCellValue("$PageBreaker$5-1");
+                Row footer = sheet.createRow(1);
+                footer.createCell(0).setCellValue("page");
+                footer.createCell(1).setCellValue("$pageNum$");
+                sheet.addMergedRegion(new CellRangeAddress(1, 1, 2, 3));
+                sheet.createRow(2).createCell(0).setCellValue("$PageBreaker$");
+                sheet.createRow(3).createCell(0).setCellValue("#TABLE&rows#");
+                sheet.createRow(4).createCell(1).setCellValue("#n#");
+                sheet.addMergedRegion(new CellRangeAddress(4, 4, 2, 3));
+                sheet.createRow(5).createCell(0).setCellValue("#TABLE&rows#");
+            });
+
+            try (Workbook actual = generator.createWorkbookByTemplate(type, data, template)) {
+                Sheet sheet = actual.getSheetAt(0);
+                assertEquals("data1", sheet.getRow(0).getCell(1).getStringCellValue());
+                assertEquals("data4", sheet.getRow(3).getCell(1).getStringCellValue());
+                assertEquals("page", sheet.getRow(4).getCell(0).getStringCellValue());
+                assertEquals(1, (int) sheet.getRow(4).getCell(1).getNumericCellValue());
+                assertEquals("data5", sheet.getRow(5).getCell(1).getStringCellValue());
+                assertEquals(2, (int) sheet.getRow(9).getCell(1).getNumericCellValue());
+                assertEquals("data11", sheet.getRow(12).getCell(1).getStringCellValue());
+                //HSSF keeps empty rows after shifts
+                assertTrue(sheet.getRow(13) == null || sheet.getRow(13).getPhysicalNumberOfCells() == 0);
+                assertArrayEquals(new int[]{4, 9}, sheet.getRowBreaks());
+
+                //merged regions of data rows and page footers
+                assertEquals(13, sheet.getNumMergedRegions());
+                List<String> merged = sheet.getMergedRegions().stream()
+                        .map(CellRangeAddress::formatAsString)
+                        .collect(Collectors.toList());
+                assertTrue(merged.containsAll(Arrays.asList("C5:D5", "C10:D10", "C11:D11", "C13:D13")), merged::toString);
+            }
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplatePageBreaksScalingTest() throws IOException {
+        //static row after the table starts a new page, so footers are written both inside the table and between static rows
+        int count = 5003;
+        ExcelSimpleTableData tableData = new ExcelSimpleTableData("#TABLE&rows#");
+        for (int i = 1; i <= count; i++) {
+            tableData.addTableRowData(Collections.singletonMap("n", "data" + i));
+        }
+        ExcelData data = new ExcelData();
+        data.getSimpleTables().add(tableData);
+
+        for (WorkBookType type : new WorkBookType[]{WorkBookType.XLS, WorkBookType.XLSX}) {
+            //10 rows per page = 9 content rows + page footer
+            byte[] template = template(type, workbook -> {
+                Sheet sheet = workbook.createSheet();
+                sheet.createRow(0).createCell(0).setCellValue("title");
+                sheet.createRow(1).createCell(0).setCellValue("$PageBreaker$10-1");
+                Row footer = sheet.createRow(2);
+                footer.createCell(0).setCellValue("page");
+                footer.createCell(1).setCellValue("$pageNum$");
+                sheet.createRow(3).createCell(0).setCellValue("$PageBreaker$");
+                sheet.createRow(4).createCell(0).setCellValue("header");
+                sheet.createRow(5).createCell(0).setCellValue("#TABLE&rows#");
+                sheet.createRow(6).createCell(1).setCellValue("#n#");
+                sheet.createRow(7).createCell(0).setCellValue("#TABLE&rows#");
+                sheet.createRow(8).createCell(0).setCellValue("total");
+                sheet.createRow(9).createCell(0).setCellValue("after");
+            });
+
+            List<GenerationStats> finished = new ArrayList<>();
+            ExcelGeneratorImpl generator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                    .pageBreaks(true)
+                    .generationListener((stats, error) -> finished.add(stats))
+                    .build());
+            try (Workbook actual = generator.createWorkbookByTemplate(type, data, template)) {
+                Sheet sheet = actual.getSheetAt(0);
+                assertEquals("title", sheet.getRow(0).getCell(0).getStringCellValue(), type.name());
+
+                //content row c is at 1 + c + number of footers above it
+                int contentRows = count + 3;
+                for (int c = 0; c < contentRows; c++) {
+                    Row row = sheet.getRow(1 + c + c / 9);
+                    String expected = c == 0 ? "header" : c <= count ? "data" + c : c == count + 1 ? "total" : "after";
+                    assertEquals(expected, row.getCell(c == 0 || c > count ? 0 : 1).getStringCellValue(), type.name());
+                }
+                int pages = (contentRows - 1) / 9;
+                int[] breaks = new int[pages];
+                for (int page = 0; page < pages; page++) {
+                    Row row = sheet.getRow(10 + page * 10);
+                    assertEquals("page", row.getCell(0).getStringCellValue(), type.name());
+                    assertEquals(page + 1, (int) row.getCell(1).getNumericCellValue(), type.name());
+                    breaks[page] = 10 + page * 10;
+                }
+                //footer inserted between the table and the static row
+                int total = 1 + (count + 1) + (count + 1) / 9;
+                assertEquals("total", sheet.getRow(total).getCell(0).getStringCellValue(), type.name());
+                assertEquals("page", sheet.getRow(total - 1).getCell(0).getStringCellValue(), type.name());
+                assertArrayEquals(breaks, sheet.getRowBreaks(), type.name());
+            }
+            //rows below are not shifted once per page
+            assertTrue(finished.get(0).getRowsShifted() < 3 * count, type.name() + ": " + finished.get(0).getRowsShifted());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelTemplateTableData;
+import voofai.lib.excel.dto.ExcelTemplateTableDataWrapper;
+import voofai.lib.excel.dto.WorkBookType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExcelGeneratorRangesTest extends BaseTest {
+
+    private final ExcelGeneratorImpl excelGenerator = new ExcelGeneratorImpl();
+
+    @Test
+    void createByTemplateRangeAggregatesTest() throws IOException {
+        byte[] template = template(WorkBookType.XLSX, workbook -> {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("#RANGE&sales#");
+            sheet.createRow(1).createCell(0).setCellValue("#Body#RANGE&sales#");
+            Row body = sheet.createRow(2);
+            body.createCell(0).setCellValue("#name#");
+            body.createCell(1).setCellValue("#amount#");
+            sheet.createRow(3).createCell(0).setCellValue("#BodyFooter#RANGE&sales#");
+            Row bodyFooter = sheet.createRow(4);
+            bodyFooter.createCell(0).setCellValue("#label#");
+            bodyFooter.createCell(1).setCellValue("#sum:amount#");
+            sheet.createRow(5).createCell(0).setCellValue("#Footer#RANGE&sales#");
+            Row footer = sheet.createRow(6);
+            String[] totals = {"#count:name#", "#count:amount#", "#min:amount#", "#max:amount#", "#avg:amount#", "#max:name#"};
+            for (int i = 0; i < totals.length; i++) {
+                footer.createCell(i).setCellValue(totals[i]);
+            }
+            sheet.createRow(7).createCell(0).setCellValue("#RANGE&sales#");
+        });
+
+        ExcelTemplateTableData sales = new ExcelTemplateTableData();
+        for (int i = 1; i <= 4; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("name", "item" + i);
+            row.put("amount", i == 3 ? null : i * 10);
+            sales.addBody(row);
+        }
+        sales.addBodyFooter(Collections.singletonMap("label", "subtotal"));
+        ExcelTemplateTableDataWrapper range = new ExcelTemplateTableDataWrapper("#RANGE&sales#");
+        range.addTableRowData(sales);
+        ExcelData data = new ExcelData();
+        data.getExtendedTables().add(range);
+
+        for (WorkBookType type : Arrays.asList(WorkBookType.XLSX, WorkBookType.XLSX_DIRECT)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            excelGenerator.createByTemplate(type, data, new ByteArrayInputStream(template), out);
+
+            //footer is written without footer data, totals are plain values
+            try (Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+                Sheet sheet = actual.getSheetAt(0);
+                assertEquals("item4", sheet.getRow(3).getCell(0).getStringCellValue(), type.name());
+                assertEquals("subtotal", sheet.getRow(4).getCell(0).getStringCellValue(), type.name());
+                assertEquals(70, sheet.getRow(4).getCell(1).getNumericCellValue(), type.name());
+                Row totals = sheet.getRow(5);
+                assertEquals(4, totals.getCell(0).getNumericCellValue(), type.name());
+                assertEquals(3, totals.getCell(1).getNumericCellValue(), type.name());
+                assertEquals(10, totals.getCell(2).getNumericCellValue(), type.name());
+                assertEquals(40, totals.getCell(3).getNumericCellValue(), type.name());
+                assertEquals(70.0 / 3, totals.getCell(4).getNumericCellValue(), 1e-9, type.name());
+                assertEquals("", totals.getCell(5).getStringCellValue(), type.name());
+                assertEquals(5, sheet.getLastRowNum(), type.name());
+            }
+        }
+    }
+
+    @Test
+    void createByTemplateBodyFooterTotalsTest() throws IOException {
+        byte[] template = template(WorkBookType.XLSX, workbook -> {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("#RANGE&sales#");
+            sheet.createRow(1).createCell(0).setCellValue("#Body#RANGE&sales#");
+            Row body = sheet.createRow(2);
+            body.createCell(0).setCellValue("#name#");
+            body.createCell(1).setCellValue("#amount#");
+            sheet.createRow(3).createCell(0).setCellValue("#BodyFooter#RANGE&sales#");
+            sheet.createRow(4).createCell(1).setCellValue("#sum:amount#");
+            sheet.createRow(5).createCell(0).setCellValue("#RANGE&sales#");
+            sheet.createRow(6).createCell(0).setCellValue("after");
+        });
+
+        ExcelTemplateTableData sales = new ExcelTemplateTableData();
+        for (int i = 1; i <= 2; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("name", "item" + i);
+            row.put("amount", i * 10);
+            sales.addBody(row);
+        }
+        ExcelTemplateTableDataWrapper range = new ExcelTemplateTableDataWrapper("#RANGE&sales#");
+        range.addTableRowData(sales);
+        ExcelData data = new ExcelData();
+        data.getExtendedTables().add(range);
+
+        for (WorkBookType type : Arrays.asList(WorkBookType.XLSX, WorkBookType.XLSX_STREAMING, WorkBookType.XLSX_DIRECT)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            excelGenerator.createByTemplate(type, data, new ByteArrayInputStream(template), out);
+
+            //bodyFooter with totals only is written without bodyFooter data, rows below follow it
+            try (Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+                Sheet sheet = actual.getSheetAt(0);
+                assertEquals("item2", sheet.getRow(1).getCell(0).getStringCellValue(), type.name());
+                assertEquals(30, sheet.getRow(2).getCell(1).getNumericCellValue(), type.name());
+                assertEquals("after", sheet.getRow(3).getCell(0).getStringCellValue(), type.name());
+                assertEquals(3, sheet.getLastRowNum(), type.name());
+            }
+        }
+    }
+}
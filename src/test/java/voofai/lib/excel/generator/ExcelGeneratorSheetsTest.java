@@ -0,0 +1,184 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSheetsData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.excel.template.CompiledExcelTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExcelGeneratorSheetsTest extends BaseTest {
+
+    private final ExcelGeneratorImpl excelGenerator = new ExcelGeneratorImpl();
+
+    @Test
+    void createByTemplateSheetsFanOutTest() throws IOException {
+        ExcelSheetsData clients = new ExcelSheetsData("#SHEETS&clients#");
+        for (String client : new String[]{"Acme", "acme", "Bad/Name"}) {
+            ExcelSimpleTableData orders = new ExcelSimpleTableData("#TABLE&orders#");
+            for (int i = 1; i <= 2; i++) {
+                orders.addTableRowData(Collections.singletonMap("order", client + "-" + i));
+            }
+            ExcelData data = new ExcelData().addParam("client", client);
+            data.getSimpleTables().add(orders);
+            clients.addSheet(client, data);
+        }
+
+        for (WorkBookType type : Arrays.asList(WorkBookType.XLS, WorkBookType.XLSX, WorkBookType.XLSX_STREAMING)) {
+            byte[] template = template(type, workbook -> {
+                workbook.createSheet("Summary").createRow(0).createCell(0).setCellValue("#title#");
+                Sheet sheet = workbook.createSheet("#SHEETS&clients#");
+                sheet.createRow(0).createCell(0).setCellValue("#client#");
+                sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, 1));
+                sheet.setColumnWidth(1, 6000);
+                sheet.createRow(1).createCell(0).setCellValue("#TABLE&orders#");
+                sheet.createRow(2).createCell(1).setCellValue("#order#");
+                sheet.createRow(3).createCell(0).setCellValue("#TABLE&orders#");
+            });
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            excelGenerator.createByTemplate(CompiledExcelTemplate.compile(type, template), new ExcelData().addParam("title", "clients"),
+                    Collections.singletonList(clients), out);
+
+            try (Workbook actual = WorkBookType.XLS.equals(type)
+                    ? new HSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))
+                    : new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+                assertEquals(4, actual.getNumberOfSheets(), type.name());
+                assertEquals("clients", actual.getSheetAt(0).getRow(0).getCell(0).getStringCellValue(), type.name());
+                String[] names = {"Acme", "acme (2)", "Bad Name"};
+                String[] values = {"Acme", "acme", "Bad/Name"};
+                for (int i = 0; i < names.length; i++) {
+                    Sheet sheet = actual.getSheetAt(i + 1);
+                    assertEquals(names[i], sheet.getSheetName(), type.name());
+                    assertEquals(values[i], sheet.getRow(0).getCell(0).getStringCellValue(), type.name());
+                    assertEquals(values[i] + "-1", sheet.getRow(1).getCell(1).getStringCellValue(), type.name());
+                    assertEquals(values[i] + "-2", sheet.getRow(2).getCell(1).getStringCellValue(), type.name());
+                    //HSSF keeps empty rows after shifts
+                    assertTrue(sheet.getRow(3) == null || sheet.getRow(3).getPhysicalNumberOfCells() == 0, type.name());
+                    assertEquals(Collections.singletonList(new CellRangeAddress(0, 0, 0, 1)), sheet.getMergedRegions(), type.name());
+                    assertEquals(6000, sheet.getColumnWidth(1), type.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    void createByTemplateSheetsFanOutOrderTest() throws IOException {
+        //copies are appended at once, the sheets behind each #SHEETS template are moved after its copies
+        List<ExcelSheetsData> fanOut = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (String name : new String[]{"a", "b"}) {
+            ExcelSheetsData items = new ExcelSheetsData("#SHEETS&" + name + "#");
+            for (int i = 1; i <= ("a".equals(name) ? 200 : 2); i++) {
+                items.addSheet(name + i, new ExcelData().addParam("item", name + i));
+                expected.add(name + i);
+            }
+            fanOut.add(items);
+            expected.add("a".equals(name) ? "Middle" : "Last");
+        }
+
+        for (WorkBookType type : Arrays.asList(WorkBookType.XLS, WorkBookType.XLSX, WorkBookType.XLSX_STREAMING)) {
+            byte[] template = template(type, workbook -> {
+                workbook.createSheet("#SHEETS&a#").createRow(0).createCell(0).setCellValue("#item#");
+                workbook.createSheet("Middle").createRow(0).createCell(0).setCellValue("Middle");
+                workbook.createSheet("#SHEETS&b#").createRow(0).createCell(0).setCellValue("#item#");
+                workbook.createSheet("Last").createRow(0).createCell(0).setCellValue("Last");
+                workbook.setActiveSheet(3);
+            });
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            excelGenerator.createByTemplate(CompiledExcelTemplate.compile(type, template), new ExcelData(), fanOut, out);
+
+            try (Workbook actual = WorkBookType.XLS.equals(type)
+                    ? new HSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))
+                    : new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+                List<String> names = new ArrayList<>();
+                for (int i = 0; i < actual.getNumberOfSheets(); i++) {
+                    Sheet sheet = actual.getSheetAt(i);
+                    names.add(sheet.getSheetName());
+                    assertEquals(sheet.getSheetName(), sheet.getRow(0).getCell(0).getStringCellValue(), type.name());
+                }
+                assertEquals(expected, names, type.name());
+                assertTrue(actual.getActiveSheetIndex() < actual.getNumberOfSheets(), type.name());
+            }
+        }
+    }
+
+    @Test
+    void createByTemplateSheetShardingTest() throws IOException {
+        byte[] template = template(WorkBookType.XLSX, workbook -> {
+            Sheet sheet = workbook.createSheet("Data");
+            sheet.createRow(0).createCell(0).setCellValue("#title#");
+            sheet.createRow(1).createCell(0).setCellValue("Name");
+            sheet.addMergedRegion(new CellRangeAddress(1, 1, 0, 1));
+            sheet.setColumnWidth(0, 5000);
+            sheet.createRow(2).createCell(0).setCellValue("#TABLE&rows#");
+            sheet.createRow(3).createCell(0).setCellValue("#name#");
+            sheet.createRow(4).createCell(0).setCellValue("#note#");
+            sheet.createRow(5).createCell(0).setCellValue("#TABLE&rows#");
+            sheet.createRow(6).createCell(0).setCellValue("end");
+            workbook.createSheet("Other").createRow(0).createCell(0).setCellValue("other");
+        });
+
+        ExcelSimpleTableData rows = new ExcelSimpleTableData("#TABLE&rows#");
+        for (int i = 1; i <= 5; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("name", "name" + i);
+            row.put("note", "note" + i);
+            rows.addTableRowData(row);
+        }
+        ExcelData data = new ExcelData().addParam("title", "report");
+        data.getSimpleTables().add(rows);
+
+        //6 rows per sheet: 2 header rows and 2 copies of the 2-row body
+        ExcelGeneratorImpl generator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .sheetSharding(true)
+                .shardRows(6)
+                .build());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.createByTemplate(WorkBookType.XLSX_STREAMING, data, new ByteArrayInputStream(template), out);
+
+        try (Workbook actual = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(4, actual.getNumberOfSheets());
+            List<List<String>> sheets = new ArrayList<>();
+            for (Sheet sheet : actual) {
+                List<String> values = new ArrayList<>();
+                for (Row row : sheet) {
+                    values.add(row.getCell(0).getStringCellValue());
+                }
+                sheets.add(values);
+            }
+            assertEquals(Arrays.asList("Data", "Data (2)", "Data (3)", "Other"),
+                    Arrays.asList(actual.getSheetName(0), actual.getSheetName(1), actual.getSheetName(2), actual.getSheetName(3)));
+            assertEquals(Arrays.asList(
+                    Arrays.asList("report", "Name", "name1", "note1", "name2", "note2"),
+                    Arrays.asList("report", "Name", "name3", "note3", "name4", "note4"),
+                    Arrays.asList("report", "Name", "name5", "note5", "end"),
+                    Collections.singletonList("other")), sheets);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Collections.singletonList(new CellRangeAddress(1, 1, 0, 1)), actual.getSheetAt(i).getMergedRegions());
+                assertEquals(5000, actual.getSheetAt(i).getColumnWidth(0));
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package voofai.lib.excel.generator;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+import voofai.lib.BaseTest;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.excel.dto.ExcelColumnarTableData;
+import voofai.lib.excel.dto.ExcelData;
+import voofai.lib.excel.dto.ExcelSimpleTableData;
+import voofai.lib.excel.dto.WorkBookType;
+import voofai.lib.metrics.GenerationStats;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExcelGeneratorTablesTest extends BaseTest {
+
+    private final ExcelGeneratorImpl excelGenerator = new ExcelGeneratorImpl();
+
+    @Test
+    void createWorkbookByTemplateDeleteTemplatesTest() throws IOException {
+        ExcelSimpleTableData first = new ExcelSimpleTableData("#TABLE&first#");
+        first.addTableRowData(Collections.singletonMap("x", "x1"));
+        first.addTableRowData(Collections.singletonMap("x", "x2"));
+        ExcelSimpleTableData second = new ExcelSimpleTableData("#TABLE&second#");
+        second.addTableRowData(Collections.singletonMap("y", "y1"));
+        ExcelData data = new ExcelData();
+        data.getSimpleTables().add(first);
+        data.getSimpleTables().add(second);
+
+        for (WorkBookType type : new WorkBookType[]{WorkBookType.XLS, WorkBookType.XLSX}) {
+            //two template groups with merged regions above, inside, between and below them
+            byte[] template = template(type, workbook -> {
+                Sheet sheet = workbook.createSheet();
+                sheet.createRow(0).createCell(0).setCellValue("top");
+                sheet.addMergedRegion(new CellRangeAddress(0, 0, 0, 1));
+                sheet.createRow(1).createCell(0).setCellValue("#TABLE&first#");
+                sheet.createRow(2).createCell(1).setCellValue("#x#");
+                sheet.addMergedRegion(new CellRangeAddress(2, 2, 1, 2));
+                sheet.createRow(3).createCell(0).setCellValue("#TABLE&first#");
+                sheet.createRow(4).createCell(0).setCellValue("middle");
+                sheet.addMergedRegion(new CellRangeAddress(4, 4, 0, 2));
+                sheet.createRow(5).createCell(0).setCellValue("#TABLE&second#");
+                sheet.createRow(6).createCell(0).setCellValue("#y#");
+                sheet.createRow(7).createCell(0).setCellValue("#TABLE&second#");
+                sheet.createRow(8).createCell(0).setCellValue("bottom");
+                sheet.addMergedRegion(new CellRangeAddress(8, 9, 0, 1));
+                sheet.createRow(9).createCell(3).setCellValue("last");
+            });
+
+            try (Workbook actual = excelGenerator.createWorkbookByTemplate(type, data, template)) {
+                Sheet sheet = actual.getSheetAt(0);
+                assertEquals("top", sheet.getRow(0).getCell(0).getStringCellValue(), type.name());
+                assertEquals("x1", sheet.getRow(1).getCell(1).getStringCellValue(), type.name());
+                assertEquals("x2", sheet.getRow(2).getCell(1).getStringCellValue(), type.name());
+                assertEquals("middle", sheet.getRow(3).getCell(0).getStringCellValue(), type.name());
+                assertEquals("y1", sheet.getRow(4).getCell(0).getStringCellValue(), type.name());
+                assertEquals("bottom", sheet.getRow(5).getCell(0).getStringCellValue(), type.name());
+                assertEquals("last", sheet.getRow(6).getCell(3).getStringCellValue(), type.name());
+                for (int rowNum = 7; rowNum <= sheet.getLastRowNum(); rowNum++) {
+                    //HSSF keeps empty rows after shifts
+                    assertTrue(sheet.getRow(rowNum) == null || sheet.getRow(rowNum).getPhysicalNumberOfCells() == 0, type.name());
+                }
+
+                //regions of template rows are gone, the rest moved with their rows
+                List<String> merged = sheet.getMergedRegions().stream()
+                        .map(CellRangeAddress::formatAsString)
+                        .sorted()
+                        .collect(Collectors.toList());
+                assertEquals(Arrays.asList("A1:B1", "A4:C4", "A6:B7", "B2:C2", "B3:C3"), merged, type.name());
+            }
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplateMarkerLikeValuesTest() throws IOException {
+        //values in the first column look like template markers, but they are data and are not deleted
+        ExcelSimpleTableData table = new ExcelSimpleTableData("#TABLE&items#");
+        table.addTableRowData(Collections.singletonMap("name", "#TABLE&items#"));
+        table.addTableRowData(Collections.singletonMap("name", "#RANGE&other#"));
+        table.addTableRowData(Collections.singletonMap("name", "plain"));
+        ExcelData data = new ExcelData();
+        data.getSimpleTables().add(table);
+
+        for (WorkBookType type : new WorkBookType[]{WorkBookType.XLS, WorkBookType.XLSX}) {
+            byte[] template = template(type, workbook -> {
+                Sheet sheet = workbook.createSheet();
+                sheet.createRow(0).createCell(0).setCellValue("#TABLE&items#");
+                sheet.createRow(1).createCell(0).setCellValue("#name#");
+                sheet.createRow(2).createCell(0).setCellValue("#TABLE&items#");
+                sheet.createRow(3).createCell(0).setCellValue("bottom");
+            });
+
+            try (Workbook actual = excelGenerator.createWorkbookByTemplate(type, data, template)) {
+                Sheet sheet = actual.getSheetAt(0);
+                assertEquals("#TABLE&items#", sheet.getRow(0).getCell(0).getStringCellValue(), type.name());
+                assertEquals("#RANGE&other#", sheet.getRow(1).getCell(0).getStringCellValue(), type.name());
+                assertEquals("plain", sheet.getRow(2).getCell(0).getStringCellValue(), type.name());
+                assertEquals("bottom", sheet.getRow(3).getCell(0).getStringCellValue(), type.name());
+            }
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplateColumnarValuesTest() throws IOException {
+        byte[] template = template(WorkBookType.XLSX, workbook -> {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("#TABLE&rows#");
+            Row body = sheet.createRow(1);
+            body.createCell(0).setCellValue("#id#");
+            body.createCell(1).setCellValue("#count#");
+            body.createCell(2).setCellValue("#name#");
+            sheet.createRow(2).createCell(0).setCellValue("#TABLE&rows#");
+        });
+
+        ExcelColumnarTableData rows = new ExcelColumnarTableData("#TABLE&rows#");
+        int id = rows.addColumn("id", ExcelColumnarTableData.ColumnType.LONG);
+        int count = rows.addColumn("count", ExcelColumnarTableData.ColumnType.LONG);
+        int name = rows.addColumn("name", ExcelColumnarTableData.ColumnType.STRING);
+        rows.addRow();
+        rows.setLong(id, (1L << 53) + 1);
+        rows.setLong(count, 7);
+        rows.setString(name, "first");
+        ExcelData data = new ExcelData();
+        data.getColumnarTables().add(rows);
+        ExcelGeneratorImpl inlineGenerator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .stringStorage(StringStorage.INLINE)
+                .build());
+
+        //values go through converters and string storage of the generator like values of Map rows
+        try (XSSFWorkbook actual = (XSSFWorkbook) inlineGenerator.createWorkbookByTemplate(WorkBookType.XLSX, data,
+                new ByteArrayInputStream(template))) {
+            Row row = actual.getSheetAt(0).getRow(0);
+            assertEquals("9007199254740993", row.getCell(0).getStringCellValue());
+            assertEquals(7, row.getCell(1).getNumericCellValue());
+            assertEquals("first", row.getCell(2).getStringCellValue());
+            assertEquals(STCellType.INLINE_STR, ((XSSFCell) row.getCell(2)).getCTCell().getT());
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplateColumnarDoublesTest() throws IOException {
+        byte[] template = template(WorkBookType.XLSX, workbook -> {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("#TABLE&rows#");
+            sheet.createRow(1).createCell(0).setCellValue("#amount#");
+            sheet.createRow(2).createCell(0).setCellValue("#TABLE&rows#");
+        });
+
+        ExcelColumnarTableData rows = new ExcelColumnarTableData("#TABLE&rows#");
+        int amount = rows.addColumn("amount", ExcelColumnarTableData.ColumnType.DOUBLE);
+        rows.addRow();
+        rows.setDouble(amount, 12.5);
+        ExcelData data = new ExcelData();
+        data.getColumnarTables().add(rows);
+
+        //numeric cell without own converter, own converter of Double is still used
+        try (Workbook actual = excelGenerator.createWorkbookByTemplate(WorkBookType.XLSX, data, template)) {
+            assertEquals(12.5, actual.getSheetAt(0).getRow(0).getCell(0).getNumericCellValue());
+        }
+        ExcelGeneratorImpl customGenerator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                .valueConverters(ValueConverters.builder().register(Double.class, value -> value + " RUB").build())
+                .build());
+        try (Workbook actual = customGenerator.createWorkbookByTemplate(WorkBookType.XLSX, data, template)) {
+            assertEquals("12.5 RUB", actual.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+        }
+    }
+
+    @Test
+    void createWorkbookByTemplateLazyRowsReservedTest() throws IOException {
+        for (WorkBookType type : new WorkBookType[]{WorkBookType.XLS, WorkBookType.XLSX}) {
+            byte[] template = template(type, workbook -> {
+                Sheet sheet = workbook.createSheet();
+                sheet.createRow(0).createCell(0).setCellValue("title");
+                sheet.createRow(1).createCell(0).setCellValue("#TABLE&lazy#");
+                sheet.createRow(2).createCell(0).setCellValue("#value#");
+                sheet.createRow(3).createCell(0).setCellValue("#TABLE&lazy#");
+                sheet.createRow(4).createCell(0).setCellValue("below");
+                sheet.addMergedRegion(new CellRangeAddress(4, 4, 0, 1));
+            });
+
+            //rows beyond the measured height are reserved in growing chunks, not shifted one by one
+            List<GenerationStats> finished = new ArrayList<>();
+            ExcelGeneratorImpl generator = new ExcelGeneratorImpl(ExcelGeneratorSettings.builder()
+                    .generationListener((stats, error) -> finished.add(stats))
+                    .build());
+            ExcelData data = new ExcelData();
+            data.getSimpleTables().add(new ExcelSimpleTableData("#TABLE&lazy#", Stream.iterate(1, i -> i + 1).limit(1000)
+                    .map(i -> Collections.<String, Object>singletonMap("value", "v" + i))));
+            try (Workbook actual = generator.createWorkbookByTemplate(type, data, template)) {
+                Sheet sheet = actual.getSheetAt(0);
+                assertEquals("title", sheet.getRow(0).getCell(0).getStringCellValue(), type.name());
+                for (int i = 1; i <= 1000; i++) {
+                    assertEquals("v" + i, sheet.getRow(i).getCell(0).getStringCellValue(), type.name());
+                }
+                assertEquals("below", sheet.getRow(1001).getCell(0).getStringCellValue(), type.name());
+                assertEquals(Collections.singletonList(new CellRangeAddress(1001, 1001, 0, 1)), sheet.getMergedRegions(), type.name());
+                for (int rowNum = 1002; rowNum <= sheet.getLastRowNum(); rowNum++) {
+                    assertTrue(sheet.getRow(rowNum) == null || sheet.getRow(rowNum).getPhysicalNumberOfCells() == 0, type.name());
+                }
+            }
+            //table rows are shifted once when the template rows are deleted, row by row insertion would shift 2 rows below per row
+            assertTrue(finished.get(0).getRowsShifted() < 1100, type.name() + ": " + finished.get(0).getRowsShifted());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package voofai.lib.excel.template;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+import voofai.lib.excel.dto.WorkBookType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledExcelTemplateTest extends BaseTest {
+    private static final String TEMPLATE_PATH = "/excel/template.xlsx";
+
+    @Test
+    void compileTest() throws IOException {
+        CompiledExcelTemplate compiled = CompiledExcelTemplate.compile(WorkBookType.XLSX, readTemplate());
+
+        List<TemplateNode> nodes = compiled.getSheets().get(0).getNodes();
+        TableBlock table = (TableBlock) nodes.stream()
+                .filter(node -> node instanceof TableBlock)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+
+        assertEquals("#TABLE&table#", table.getName());
+        assertEquals(3, table.getFirstRow());
+        assertEquals(5, table.getLastRow());
+        assertEquals(1, table.getBody().size());
+
+        TemplateRow row = (TemplateRow) table.getBody().get(0);
+        assertEquals(4, row.getRowNum());
+        assertEquals("partNumber", row.getPlaceholders().get(0).getKey());
+        assertEquals(4, row.getPlaceholders().size());
+        assertTrue(row.getMergedRegions().isEmpty());
+    }
+
+    @Test
+    void compileMergedRegionsTest() throws IOException {
+        CompiledExcelTemplate compiled = CompiledExcelTemplate.compile(WorkBookType.XLSX, readTemplate());
+
+        TemplateRow row = (TemplateRow) compiled.getSheets().get(0).getNodes().stream()
+                .filter(node -> node instanceof TemplateRow && node.getFirstRow() == 7)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+
+        assertEquals(1, row.getMergedRegions().size());
+        MergedRegion merged = row.getMergedRegions().get(0);
+        assertEquals(0, merged.getRowSpan());
+        assertEquals(0, merged.getFirstColumn());
+        assertEquals(2, merged.getLastColumn());
+        assertEquals("A11:C11", merged.at(10).formatAsString());
+    }
+
+    @Test
+    void compileCachedByContentTest() throws IOException {
+        CompiledExcelTemplate first = CompiledExcelTemplate.compile(WorkBookType.XLSX, readTemplate());
+        CompiledExcelTemplate second = CompiledExcelTemplate.compile(WorkBookType.XLSX, readTemplate());
+
+        assertSame(first, second);
+        assertTrue(first.getContentHash().length() > 0);
+    }
+
+    @Test
+    void compileCacheEvictionTest() throws IOException {
+        byte[] template = readTemplate();
+        CompiledExcelTemplate.setCacheSize(2);
+        try {
+            //same content compiled for different types = different cache entries
+            CompiledExcelTemplate first = CompiledExcelTemplate.compile(WorkBookType.XLSX, template);
+            CompiledExcelTemplate.compile(WorkBookType.XLSX_STREAMING, template);
+            CompiledExcelTemplate.compile(WorkBookType.XLSX_DIRECT, template);
+
+            assertNotSame(first, CompiledExcelTemplate.compile(WorkBookType.XLSX, template));
+        } finally {
+            CompiledExcelTemplate.setCacheSize(CompiledExcelTemplate.DEFAULT_CACHE_SIZE);
+        }
+    }
+
+    private static byte[] readTemplate() throws IOException {
+        try (InputStream template = CompiledExcelTemplateTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            return IOUtils.toByteArray(template);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package voofai.lib.metrics;
+
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationRecorderTest extends BaseTest {
+
+    @Test
+    void recordTest() throws IOException {
+        List<String> events = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        GenerationListener listener = new GenerationListener() {
+            @Override
+            public void onStart(GenerationStats stats) {
+                events.add("start");
+            }
+
+            @Override
+            public void onPhase(GenerationStats stats, GenerationPhase phase, long durationNanos) {
+                events.add(phase.name());
+            }
+
+            @Override
+            public void onFinish(GenerationStats stats, Throwable error) {
+                events.add("finish");
+                errors.add(error);
+            }
+        };
+
+        GenerationRecorder recorder = GenerationRecorder.start(listener, "excel", "XLSX");
+        long start = recorder.now();
+        start = recorder.phase(GenerationPhase.FILL, start);
+        recorder.count(3, 2, 1, 5);
+        recorder.count(1, 0, 0, 1);
+        try (OutputStream out = recorder.countBytes(new ByteArrayOutputStream())) {
+            out.write(new byte[10]);
+            out.write(1);
+        }
+        recorder.phase(GenerationPhase.WRITE, start);
+        IllegalStateException error = new IllegalStateException("test");
+        recorder.finish(error);
+
+        assertEquals("[start, FILL, WRITE, finish]", events.toString());
+        assertSame(error, errors.get(0));
+    }
+
+    @Test
+    void phaseStartTest() {
+        List<String> events = new ArrayList<>();
+        GenerationListener listener = new GenerationListener() {
+            @Override
+            public void onPhaseStart(GenerationStats stats) {
+                events.add("begin");
+            }
+
+            @Override
+            public void onPhase(GenerationStats stats, GenerationPhase phase, long durationNanos) {
+                events.add(phase.name());
+            }
+
+            @Override
+            public void onFinish(GenerationStats stats, Throwable error) {
+                events.add("finish");
+            }
+        };
+
+        //every phase is started before it is reported, the next one starts when the previous is finished,
+        //nothing is started after the last phase
+        GenerationRecorder recorder = GenerationRecorder.start(listener, "excel", "XLSX");
+        long start = recorder.now();
+        start = recorder.phase(GenerationPhase.PARSE, start);
+        recorder.phase(GenerationPhase.WRITE, start, false);
+        recorder.finish(null);
+
+        assertEquals("[begin, PARSE, begin, WRITE, finish]", events.toString());
+    }
+
+    @Test
+    void statsTest() throws IOException {
+        List<GenerationStats> finished = new ArrayList<>();
+        GenerationRecorder recorder = GenerationRecorder.start((stats, error) -> finished.add(stats), "word", "DOCX");
+        long start = recorder.now();
+        recorder.phase(GenerationPhase.FILL, start);
+        recorder.phase(GenerationPhase.FILL, start);
+        recorder.count(3, 2, 1, 5);
+        recorder.count(1, 0, 0, 1);
+        try (OutputStream out = recorder.countBytes(new ByteArrayOutputStream())) {
+            out.write(new byte[10]);
+        }
+        recorder.finish(null);
+
+        GenerationStats stats = finished.get(0);
+        assertEquals("word", stats.getGenerator());
+        assertEquals(4, stats.getRowsCopied());
+        assertEquals(2, stats.getRowsShifted());
+        assertEquals(1, stats.getMergedRegionsAdded());
+        assertEquals(6, stats.getPlaceholdersResolved());
+        assertEquals(10, stats.getBytesWritten());
+        assertEquals(0, stats.getPhaseNanos(GenerationPhase.WRITE));
+        assertTrue(stats.getTotalNanos() >= stats.getPhaseNanos(GenerationPhase.FILL));
+    }
+
+    @Test
+    void withoutListenerTest() {
+        GenerationRecorder recorder = GenerationRecorder.start(null, "excel", "XLS");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, recorder.now());
+        assertSame(out, recorder.countBytes(out));
+        recorder.finish(null);
+    }
+}
@@ -0,0 +1,106 @@
+package voofai.lib.pool;
+
+import org.junit.jupiter.api.Test;
+import voofai.lib.BaseTest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrototypePoolTest extends BaseTest {
+
+    @Test
+    void takeTest() throws IOException {
+        List<Prototype> parsed = new ArrayList<>();
+        List<Runnable> background = new ArrayList<>();
+        PrototypePool<Prototype> pool = new PrototypePool<>(() -> add(parsed), 2, background::add);
+
+        //two copies are scheduled at once, nothing is parsed yet, so first copy is parsed by caller
+        assertEquals(2, background.size());
+        Prototype first = pool.take();
+        assertEquals(1, parsed.size());
+        assertEquals(2, background.size());
+
+        //background parsing fills the pool, next copies are taken from it
+        background.forEach(Runnable::run);
+        background.clear();
+        Prototype second = pool.take();
+        assertEquals(3, parsed.size());
+        assertNotSame(first, second);
+        assertEquals(1, background.size());
+
+        //not taken copies are closed with the pool
+        background.forEach(Runnable::run);
+        pool.close();
+        assertEquals(4, parsed.size());
+        assertFalse(parsed.get(1).closed);
+        assertTrue(parsed.get(2).closed);
+        assertTrue(parsed.get(3).closed);
+        assertThrows(IllegalStateException.class, pool::take);
+    }
+
+    @Test
+    void takeParseErrorTest() {
+        AtomicInteger attempts = new AtomicInteger();
+        PrototypePool<Prototype> pool = new PrototypePool<>(() -> {
+            attempts.incrementAndGet();
+            throw new IOException("broken template");
+        }, 1, Runnable::run);
+
+        //background error is not lost: it is thrown to the caller
+        IOException e = assertThrows(IOException.class, pool::take);
+        assertEquals("broken template", e.getMessage());
+        assertTrue(attempts.get() >= 2);
+    }
+
+    @Test
+    void defaultExecutorTest() throws Exception {
+        CountDownLatch parsed = new CountDownLatch(1);
+        AtomicReference<Thread> parser = new AtomicReference<>();
+        PrototypePool<Prototype> pool = new PrototypePool<>(() -> {
+            parser.set(Thread.currentThread());
+            parsed.countDown();
+            return new Prototype();
+        }, 1);
+
+        //copies are parsed by pool's own daemon thread, not by the common ForkJoinPool
+        assertTrue(parsed.await(10, TimeUnit.SECONDS));
+        assertTrue(parser.get().isDaemon());
+        assertFalse(parser.get() instanceof ForkJoinWorkerThread);
+        pool.close();
+        parser.get().join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(parser.get().isAlive());
+    }
+
+    @Test
+    void executorRequiredTest() {
+        assertThrows(IllegalArgumentException.class, () -> new PrototypePool<>(Prototype::new, 1, null));
+    }
+
+    private static Prototype add(List<Prototype> parsed) {
+        Prototype prototype = new Prototype();
+        parsed.add(prototype);
+        return prototype;
+    }
+
+    private static class Prototype implements Closeable {
+        private boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package voofai.lib.word.generator;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import voofai.lib.BaseTest;
+import voofai.lib.batch.BatchItem;
+import voofai.lib.batch.BatchResult;
+import voofai.lib.batch.BatchSettings;
+import voofai.lib.convert.ValueConverters;
+import voofai.lib.output.OutputSettings;
 import voofai.lib.word.dto.WordData;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class WordGeneratorImplTest extends BaseTest {
@@ -43,6 +60,93 @@ class WordGeneratorImplTest extends BaseTest {
         }
     }
 
+    @Test
+    void createByTemplateFileTest() throws IOException, URISyntaxException {
+        File templateFile = new File(WordGeneratorImplTest.class.getResource(TEMPLATE_PATH).toURI().getPath());
+        byte[] templateContent = Files.readAllBytes(templateFile.toPath());
+
+        //generate from file, from mapped channel and from stream
+        ByteArrayOutputStream fromFile = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromChannel = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromStream = new ByteArrayOutputStream();
+        wordGenerator.createByTemplate(generateData(), templateFile, fromFile);
+        wordGenerator.createByTemplate(generateData(), FileChannel.open(templateFile.toPath(), StandardOpenOption.READ), fromChannel);
+        try (InputStream template = WordGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            wordGenerator.createByTemplate(generateData(), template, fromStream);
+        }
+
+        //compare text, template file is not changed
+        try (XWPFWordExtractor expected = new XWPFWordExtractor(
+                new XWPFDocument(new ByteArrayInputStream(fromStream.toByteArray())));
+             XWPFWordExtractor actual = new XWPFWordExtractor(
+                     new XWPFDocument(new ByteArrayInputStream(fromFile.toByteArray())))) {
+            assertTrue(actual.getText().contains("9771232"));
+            assertEquals(expected.getText(), actual.getText());
+        }
+        try (XWPFWordExtractor expected = new XWPFWordExtractor(
+                new XWPFDocument(new ByteArrayInputStream(fromStream.toByteArray())));
+             XWPFWordExtractor actual = new XWPFWordExtractor(
+                     new XWPFDocument(new ByteArrayInputStream(fromChannel.toByteArray())))) {
+            assertEquals(expected.getText(), actual.getText());
+        }
+        assertArrayEquals(templateContent, Files.readAllBytes(templateFile.toPath()));
+    }
+
+    @Test
+    void createByTemplateOutputSettingsTest() throws IOException {
+        WordGeneratorImpl storeOnlyGenerator = new WordGeneratorImpl(ValueConverters.defaults(), null,
+                OutputSettings.storeOnly());
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        try (InputStream template = WordGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            wordGenerator.createByTemplate(generateData(), template, compressed);
+        }
+        try (InputStream template = WordGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            storeOnlyGenerator.createByTemplate(generateData(), template, stored);
+        }
+
+        //same text, larger file
+        assertTrue(stored.size() > compressed.size());
+        try (XWPFWordExtractor expected = new XWPFWordExtractor(
+                new XWPFDocument(new ByteArrayInputStream(compressed.toByteArray())));
+             XWPFWordExtractor actual = new XWPFWordExtractor(
+                     new XWPFDocument(new ByteArrayInputStream(stored.toByteArray())))) {
+            assertEquals(expected.getText(), actual.getText());
+        }
+    }
+
+    @Test
+    void createByTemplateBatchTest() throws IOException {
+        WordGeneratorImpl storeOnlyGenerator = new WordGeneratorImpl(ValueConverters.defaults(), null,
+                OutputSettings.storeOnly());
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] template;
+        try (InputStream templateStream = WordGeneratorImplTest.class.getResourceAsStream(TEMPLATE_PATH)) {
+            template = IOUtils.toByteArray(templateStream);
+        }
+        wordGenerator.createByTemplate(generateData(), new ByteArrayInputStream(template), compressed);
+
+        Map<String, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+        BatchResult result = storeOnlyGenerator.createByTemplate(template, Stream.of("a", "b")
+                        .map(id -> new BatchItem<>(id, generateData(),
+                                () -> outputs.computeIfAbsent(id, key -> new ByteArrayOutputStream()))),
+                BatchSettings.builder().maxInFlight(2).build());
+
+        //batch documents are written with output settings of the generator
+        assertTrue(result.isSuccess());
+        for (ByteArrayOutputStream stored : outputs.values()) {
+            assertTrue(stored.size() > compressed.size());
+            try (XWPFWordExtractor expected = new XWPFWordExtractor(
+                    new XWPFDocument(new ByteArrayInputStream(compressed.toByteArray())));
+                 XWPFWordExtractor actual = new XWPFWordExtractor(
+                         new XWPFDocument(new ByteArrayInputStream(stored.toByteArray())))) {
+                assertEquals(expected.getText(), actual.getText());
+            }
+        }
+        assertEquals(2, outputs.size());
+    }
+
     private WordData generateData() {
         return new WordData()
                 .addParam("toolSerial", 9771232)